@@ -0,0 +1,81 @@
+package com.lytov.diplom.dparser.bench;
+
+import com.lytov.diplom.dparser.service.cache.ParsedBpmn;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnKey;
+import com.lytov.diplom.dparser.service.dto.AnalyzeRow;
+import com.lytov.diplom.dparser.service.impl.MarkingService;
+import com.lytov.diplom.dparser.support.bpmn.BpmnSpec;
+import com.lytov.diplom.dparser.support.bpmn.SyntheticBpmnGenerator;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разметка рисков по уже разобранной модели (как при попадании в кэш) и сериализация результата.
+ * На каждую десятую вершину приходится строка NODE, на каждое двадцатое ребро — EDGE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MarkingBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int flowNodes;
+
+    private ParsedBpmn source;
+    private List<AnalyzeRow> rows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BpmnModelInstance model = Bpmn.readModelFromStream(
+                new ByteArrayInputStream(SyntheticBpmnGenerator.generate(BpmnSpec.of(flowNodes))));
+        source = new ParsedBpmn(new ParsedBpmnKey(UUID.randomUUID(), "bench"));
+        source.setModel(model);
+
+        rows = new ArrayList<>();
+        String riskId = UUID.randomUUID().toString();
+        int i = 0;
+        for (FlowNode node : model.getModelElementsByType(FlowNode.class)) {
+            if (i++ % 10 == 0) rows.add(new AnalyzeRow("NODE", node.getId(), riskId));
+        }
+        i = 0;
+        for (SequenceFlow flow : model.getModelElementsByType(SequenceFlow.class)) {
+            if (i++ % 20 == 0) rows.add(new AnalyzeRow("EDGE", flow.getId(), riskId));
+        }
+    }
+
+    @Benchmark
+    public BpmnModelInstance mark() {
+        return MarkingService.mark(source, rows);
+    }
+
+    @Benchmark
+    public BpmnModelInstance markAndWrite() {
+        BpmnModelInstance marked = MarkingService.mark(source, rows);
+        Bpmn.writeModelToStream(OutputStream.nullOutputStream(), marked);
+        return marked;
+    }
+}
@@ -0,0 +1,70 @@
+package com.lytov.diplom.dparser.bench;
+
+import com.lytov.diplom.dparser.configuration.parser.properties.OperationClassifierProperties;
+import com.lytov.diplom.dparser.service.classifier.OperationTypeClassifier;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.impl.BpmnToGraphParserImpl;
+import com.lytov.diplom.dparser.service.impl.ComponentParserImpl;
+import com.lytov.diplom.dparser.service.impl.StaxBpmnToGraphParser;
+import com.lytov.diplom.dparser.support.bpmn.BpmnSpec;
+import com.lytov.diplom.dparser.support.bpmn.SyntheticBpmnGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор BPMN: построение графа (DOM и StAX) и выделение компонентов.
+ * Throughput — операций в секунду, SampleTime — распределение задержек (p50/p99 в отчёте JMH).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ParseBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int flowNodes;
+
+    private byte[] xml;
+
+    // parse не обращается к зависимостям сервиса, Spring-контекст не нужен
+    private final BpmnToGraphParserImpl domParser = new BpmnToGraphParserImpl(null, null, null, null, null, null, null);
+    private final StaxBpmnToGraphParser staxParser = new StaxBpmnToGraphParser();
+    private final ComponentParserImpl componentParser = new ComponentParserImpl(new OperationTypeClassifier(new OperationClassifierProperties()));
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        xml = SyntheticBpmnGenerator.generate(BpmnSpec.of(flowNodes));
+    }
+
+    @Benchmark
+    public BpmnGraph domGraph() {
+        return domParser.parse(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public BpmnGraph staxGraph() {
+        return staxParser.parse(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public List<Component> components() {
+        return componentParser.parserComponents(new ByteArrayInputStream(xml));
+    }
+}
@@ -0,0 +1,76 @@
+package com.lytov.diplom.dparser.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.configuration.rabbit.GraphResultMessageConverter;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.ResultBpmnParserGraphDto;
+import com.lytov.diplom.dparser.service.impl.StaxBpmnToGraphParser;
+import com.lytov.diplom.dparser.support.bpmn.BpmnSpec;
+import com.lytov.diplom.dparser.support.bpmn.SyntheticBpmnGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.ByteArrayInputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация {@link ResultBpmnParserGraphDto}: JSON изменяемого графа, JSON компактного представления
+ * и бинарный формат для d-core.second-pars-result.exchange.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SerializationBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int flowNodes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GraphResultMessageConverter binaryConverter = new GraphResultMessageConverter();
+
+    private ResultBpmnParserGraphDto mutable;
+    private ResultBpmnParserGraphDto compact;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] xml = SyntheticBpmnGenerator.generate(BpmnSpec.of(flowNodes));
+        BpmnGraph graph = new StaxBpmnToGraphParser().parse(new ByteArrayInputStream(xml));
+        UUID processId = UUID.randomUUID();
+        mutable = new ResultBpmnParserGraphDto(processId, graph);
+        compact = new ResultBpmnParserGraphDto(processId, CompactBpmnGraph.of(graph).view());
+    }
+
+    @Benchmark
+    public byte[] jsonMutableGraph() throws Exception {
+        return objectMapper.writeValueAsBytes(mutable);
+    }
+
+    @Benchmark
+    public byte[] jsonCompactView() throws Exception {
+        return objectMapper.writeValueAsBytes(compact);
+    }
+
+    @Benchmark
+    public Message binary() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(GraphResultMessageConverter.CONTENT_TYPE);
+        return binaryConverter.toMessage(compact, properties);
+    }
+}
@@ -0,0 +1,32 @@
+package com.lytov.diplom.dparser.configuration.cache;
+
+import com.lytov.diplom.dparser.configuration.cache.properties.ParseResultStoreProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Пул записи результатов разбора в Postgres: батчи узлов и рёбер большого графа не задерживают ответ.
+ * Очередь конечна, переполнение отклоняет запись (AbortPolicy), а не выполняет её в потоке запроса.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ParseResultStoreExecutorConfiguration {
+
+    public static final String PARSE_RESULT_STORE_EXECUTOR = "parseResultStoreExecutor";
+
+    private final ParseResultStoreProperties properties;
+
+    @Bean(PARSE_RESULT_STORE_EXECUTOR)
+    public ThreadPoolTaskExecutor parseResultStoreExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getWriteConcurrency());
+        executor.setMaxPoolSize(properties.getWriteConcurrency());
+        executor.setQueueCapacity(properties.getWriteQueueCapacity());
+        executor.setThreadNamePrefix("parse-result-store-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(properties.getShutdownTimeout().toMillis());
+        return executor;
+    }
+}
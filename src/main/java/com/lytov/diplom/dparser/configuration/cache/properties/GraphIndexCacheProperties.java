@@ -0,0 +1,28 @@
+package com.lytov.diplom.dparser.configuration.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.cache.graph-index")
+public class GraphIndexCacheProperties {
+
+    /**
+     * Суммарный размер проиндексированных графов в вершинах плюс рёбрах.
+     */
+    private long maxWeight = 20_000_000;
+
+    /**
+     * Сколько индекс живёт без запросов. На свежесть не влияет: новая версия графа перестраивает индекс сразу.
+     */
+    private Duration expireAfterAccess = Duration.ofMinutes(30);
+
+    /**
+     * Сколько множеств достижимости запоминает один граф.
+     */
+    private int maxMemoizedReachability = 1024;
+}
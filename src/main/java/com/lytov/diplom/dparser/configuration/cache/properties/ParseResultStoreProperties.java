@@ -0,0 +1,38 @@
+package com.lytov.diplom.dparser.configuration.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.cache.parse-results")
+public class ParseResultStoreProperties {
+
+    /**
+     * Хранить ли графы и компоненты в Postgres, чтобы не разбирать файл заново после рестарта.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Строк в одном JDBC-батче при записи узлов, рёбер и компонентов.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Потоки, которые пишут результаты в Postgres. Запись идёт после ответа, не в потоке запроса.
+     */
+    private int writeConcurrency = 2;
+
+    /**
+     * Сколько результатов ждёт записи; сверх этого результат не сохраняется и при следующем промахе разбирается заново.
+     */
+    private int writeQueueCapacity = 100;
+
+    /**
+     * Сколько при остановке ждать записи уже принятых результатов.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+}
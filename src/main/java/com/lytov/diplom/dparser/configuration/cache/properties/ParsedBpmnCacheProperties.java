@@ -0,0 +1,23 @@
+package com.lytov.diplom.dparser.configuration.cache.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.cache.parsed-bpmn")
+public class ParsedBpmnCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Оценочный объём памяти под разобранные модели; вес записи считается от размера исходного XML.
+     */
+    private DataSize maxWeight = DataSize.ofMegabytes(256);
+
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+}
@@ -0,0 +1,33 @@
+package com.lytov.diplom.dparser.configuration.jobs;
+
+import com.lytov.diplom.dparser.configuration.jobs.properties.ParseJobProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Ограниченный пул асинхронных разборов. Очередь конечна: при переполнении задача отклоняется
+ * (AbortPolicy), а не выполняется в потоке Tomcat.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ParseJobExecutorConfiguration {
+
+    public static final String PARSE_JOB_EXECUTOR = "parseJobExecutor";
+
+    private final ParseJobProperties properties;
+
+    @Bean(PARSE_JOB_EXECUTOR)
+    public ThreadPoolTaskExecutor parseJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getCorePoolSize());
+        executor.setMaxPoolSize(Math.max(properties.getCorePoolSize(), properties.getMaxPoolSize()));
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("parse-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        // без срока ожидания флаг выше ничего не ждёт: контекст закрывается сразу после shutdown()
+        executor.setAwaitTerminationMillis(properties.getShutdownTimeout().toMillis());
+        return executor;
+    }
+}
@@ -0,0 +1,79 @@
+package com.lytov.diplom.dparser.configuration.jobs.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.jobs.parse")
+public class ParseJobProperties {
+
+    /**
+     * Потоки, которые выполняют асинхронные разборы.
+     */
+    private int corePoolSize = 2;
+
+    private int maxPoolSize = 4;
+
+    /**
+     * Сколько задач ждёт свободного потока; сверх этого POST .../jobs отвечает 503.
+     */
+    private int queueCapacity = 100;
+
+    /**
+     * Сколько при остановке ждать задач, уже взятых пулом. Недождавшиеся остаются RUNNING/QUEUED
+     * и помечаются FAILED при следующем старте этого экземпляра или по истечении {@link #jobTimeout}.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Имя экземпляра в parse_job: при старте FAILED сразу получают только его незавершённые задачи.
+     * Должно сохраняться между перезапусками и различаться у одновременно работающих экземпляров;
+     * по умолчанию — имя хоста, поэтому на общем хосте его нужно задать явно.
+     */
+    private String instanceId = hostName();
+
+    /**
+     * Задача, которая столько пробыла RUNNING (от started_at) или QUEUED (от created_at), считается
+     * брошенной упавшим экземпляром и помечается FAILED, чей бы она ни была. Должно быть заметно
+     * больше самого долгого разбора вместе с ожиданием в очереди пула.
+     */
+    private Duration jobTimeout = Duration.ofMinutes(30);
+
+    /**
+     * Как часто искать задачи старше {@link #jobTimeout}.
+     */
+    private Duration sweepInterval = Duration.ofMinutes(1);
+
+    /**
+     * Сколько хранятся задачи; более старые удаляются попутно с новыми запросами, не чаще раза в час.
+     */
+    private Duration retention = Duration.ofDays(7);
+
+    /**
+     * Сколько держится SSE-подписка на задачу.
+     */
+    private Duration sseTimeout = Duration.ofMinutes(10);
+
+    /**
+     * Как часто подписки сверяются с базой: задачу мог выполнить другой экземпляр.
+     */
+    private Duration ssePollInterval = Duration.ofSeconds(2);
+
+    private static String hostName() {
+        String hostName = System.getenv("HOSTNAME");
+        if (hostName != null && !hostName.isBlank()) {
+            return hostName;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "d-parser";
+        }
+    }
+}
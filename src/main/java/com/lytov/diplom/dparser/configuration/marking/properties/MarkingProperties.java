@@ -0,0 +1,24 @@
+package com.lytov.diplom.dparser.configuration.marking.properties;
+
+import com.lytov.diplom.dparser.domain.enums.MarkingMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.marking")
+public class MarkingProperties {
+
+    /**
+     * DOM — разметка копии модели Camunda из кэша разобранных файлов;
+     * STREAM — потоковая перезапись XML без модели и без DOM.
+     */
+    private MarkingMode mode = MarkingMode.DOM;
+
+    /**
+     * STREAM читает тело дважды: файл до этого размера держится в памяти, больший — во временном файле.
+     */
+    private DataSize streamBufferLimit = DataSize.ofMegabytes(16);
+}
@@ -0,0 +1,30 @@
+package com.lytov.diplom.dparser.configuration.parser;
+
+import com.lytov.diplom.dparser.configuration.parser.properties.BulkParseProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Пул пакетного разбора: поток ведёт файл от скачивания до разбора. Потоков больше, чем разрешений
+ * {@code ParseLimiter}, — лишние в это время ждут сеть, а не CPU.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class BulkParseExecutorConfiguration {
+
+    public static final String BULK_PARSE_EXECUTOR = "bulkParseExecutor";
+
+    private final BulkParseProperties properties;
+
+    @Bean(BULK_PARSE_EXECUTOR)
+    public ThreadPoolTaskExecutor bulkParseExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getDownloadConcurrency());
+        executor.setMaxPoolSize(properties.getDownloadConcurrency());
+        executor.setQueueCapacity(properties.getQueueCapacity());
+        executor.setThreadNamePrefix("bulk-parse-");
+        return executor;
+    }
+}
@@ -0,0 +1,40 @@
+package com.lytov.diplom.dparser.configuration.parser.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.bulk-parse")
+public class BulkParseProperties {
+
+    /**
+     * Сколько файлов принимает один запрос POST /api/v0/parsing-process/bulk.
+     */
+    private int maxFiles = 500;
+
+    /**
+     * Сколько файлов скачивается одновременно. CPU-разбор дополнительно ограничен
+     * d-parser.graph.max-parallel-parses, поэтому скачивание одних файлов идёт параллельно с разбором других.
+     */
+    private int downloadConcurrency = 16;
+
+    /**
+     * Очередь файлов, ждущих потока скачивания, общая для всех запросов; сверх неё файл получает ошибку.
+     */
+    private int queueCapacity = 2000;
+
+    /**
+     * Сколько тел скачанных, но ещё не разобранных файлов может лежать в памяти одновременно.
+     */
+    private DataSize maxBufferedSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Сколько ждать окончания всего пакета, прежде чем закрыть ответ.
+     */
+    private Duration timeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,35 @@
+package com.lytov.diplom.dparser.configuration.parser.properties;
+
+import com.lytov.diplom.dparser.domain.enums.GraphParserMode;
+import com.lytov.diplom.dparser.domain.enums.GraphResultFormat;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.graph")
+public class GraphParserProperties {
+
+    /**
+     * Реализация построения графа: DOM (Camunda model API) или STAX (потоковый проход без DOM).
+     */
+    private GraphParserMode parser = GraphParserMode.DOM;
+
+    /**
+     * Формат результата в d-core.second-pars-result.exchange: JSON или компактный BINARY
+     * (content-type {@value com.lytov.diplom.dparser.configuration.rabbit.GraphResultMessageConverter#CONTENT_TYPE}).
+     */
+    private GraphResultFormat resultFormat = GraphResultFormat.JSON;
+
+    /**
+     * Сколько файлов скачивается и разбирается одновременно; 0 — по числу доступных ядер.
+     */
+    private int maxParallelParses = 0;
+
+    /**
+     * Добавлять ли к результату структурный анализ графа ({@link com.lytov.diplom.dparser.service.graph.GraphAnalyzer}):
+     * циклы, топологический порядок, достижимость, доминаторы и степени вершин.
+     */
+    private boolean analyticsEnabled = false;
+}
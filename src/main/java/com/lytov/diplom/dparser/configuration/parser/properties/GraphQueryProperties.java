@@ -0,0 +1,21 @@
+package com.lytov.diplom.dparser.configuration.parser.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.graph.query")
+public class GraphQueryProperties {
+
+    /**
+     * Потолок числа путей в ответе; запрос может просить меньше.
+     */
+    private int maxPaths = 100;
+
+    /**
+     * Самый длинный путь в вершинах, который ищется между двумя узлами.
+     */
+    private int maxPathLength = 50;
+}
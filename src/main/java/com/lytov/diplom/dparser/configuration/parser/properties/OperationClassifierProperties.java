@@ -0,0 +1,31 @@
+package com.lytov.diplom.dparser.configuration.parser.properties;
+
+import com.lytov.diplom.dparser.domain.enums.OperationType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.operation-classifier")
+public class OperationClassifierProperties {
+
+    /**
+     * Подстроки в имени user task по типам операции, без учёта регистра. Если совпало несколько типов,
+     * берётся объявленный раньше в {@link OperationType}; ни одного — DATA_PROCESSING.
+     */
+    private Map<OperationType, List<String>> userTaskKeywords = new EnumMap<>(Map.of(
+            OperationType.APPROVAL, List.of("утверд", "approve"),
+            OperationType.USER_INPUT, List.of("ввод", "внести", "input")));
+
+    /**
+     * Слова в camunda:class, camunda:expression, camunda:delegateExpression, camunda:type, camunda:topic
+     * и connectorId service task, по которым вызов считается внешним (EXTERNAL_CALL). Совпадают только целые
+     * части идентификатора между границами camelCase, цифрами, '.', '-', '_' и прочими разделителями.
+     */
+    private List<String> externalCallKeywords = List.of("http", "rest");
+}
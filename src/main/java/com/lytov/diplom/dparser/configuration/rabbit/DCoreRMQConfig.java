@@ -20,6 +20,10 @@ public class DCoreRMQConfig {
 
     public static final String FROM_SPPR_MARKING_QUEUE = "d-sppr.marking.queue";
 
+    public static final String TO_SPPR_MARKING_RESULT_EXCHANGE = "d-sppr.marking-result.exchange";
+
+    public static final String TO_SPPR_MARKING_RESULT_QUEUE = "d-sppr.marking-result.queue";
+
     @Bean
     public FanoutExchange fromCoreSecondParsResultExchange() {
         return new FanoutExchange(FROM_CORE_SECOND_PARS_RESULT_EXCHANGE);
@@ -79,4 +83,24 @@ public class DCoreRMQConfig {
                 .bind(fromCoreMarkingQueue)
                 .to(fromCoreMarkingExchange);
     }
+
+    @Bean
+    public FanoutExchange toSpprMarkingResultExchange() {
+        return new FanoutExchange(TO_SPPR_MARKING_RESULT_EXCHANGE);
+    }
+
+    @Bean
+    public Queue toSpprMarkingResultQueue() {
+        return new Queue(TO_SPPR_MARKING_RESULT_QUEUE);
+    }
+
+    @Bean
+    public Binding toSpprMarkingResultBinding(
+            FanoutExchange toSpprMarkingResultExchange,
+            Queue toSpprMarkingResultQueue
+    ) {
+        return BindingBuilder
+                .bind(toSpprMarkingResultQueue)
+                .to(toSpprMarkingResultExchange);
+    }
 }
@@ -0,0 +1,82 @@
+package com.lytov.diplom.dparser.configuration.rabbit;
+
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphAnalyticsDto;
+import com.lytov.diplom.dparser.service.dto.ResultBpmnParserGraphDto;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Бинарный формат {@link ResultBpmnParserGraphDto}: заголовок, processId и граф
+ * в форме {@link CompactBpmnGraph#writeTo} — без JSON и без повторения рёбер в out/in.
+ * Результат с анализом графа пишется версией 2: после графа идёт {@link GraphAnalyticsDto#writeTo}.
+ */
+public class GraphResultMessageConverter implements MessageConverter {
+
+    public static final String CONTENT_TYPE = "application/vnd.d-parser.bpmn-graph+binary";
+
+    private static final int MAGIC = 0x42474201; // "BGB" + версия 1
+    private static final int MAGIC_WITH_ANALYTICS = 0x42474202;
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) {
+        if (!(object instanceof ResultBpmnParserGraphDto result)) {
+            throw new MessageConversionException("Unsupported payload for " + CONTENT_TYPE + ": "
+                    + (object == null ? "null" : object.getClass().getName()));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            boolean analytics = result.getAnalytics() != null && result.getGraph() != null;
+            out.writeInt(analytics ? MAGIC_WITH_ANALYTICS : MAGIC);
+            UUID processId = result.getProcessId();
+            out.writeBoolean(processId != null);
+            if (processId != null) {
+                out.writeLong(processId.getMostSignificantBits());
+                out.writeLong(processId.getLeastSignificantBits());
+            }
+            out.writeBoolean(result.getGraph() != null);
+            if (result.getGraph() != null) {
+                CompactBpmnGraph graph = CompactBpmnGraph.of(result.getGraph());
+                graph.writeTo(out);
+                if (analytics) {
+                    result.getAnalytics().writeTo(out, graph);
+                }
+            }
+        } catch (IOException e) {
+            throw new MessageConversionException("Failed to encode graph result", e);
+        }
+
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setContentLength(bytes.size());
+        return new Message(bytes.toByteArray(), messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBody()))) {
+            int magic = in.readInt();
+            if (magic != MAGIC && magic != MAGIC_WITH_ANALYTICS) {
+                throw new MessageConversionException("Unknown graph result encoding");
+            }
+            UUID processId = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+            CompactBpmnGraph graph = in.readBoolean() ? CompactBpmnGraph.readFrom(in) : null;
+            GraphAnalyticsDto analytics = magic == MAGIC_WITH_ANALYTICS && graph != null
+                    ? GraphAnalyticsDto.readFrom(in, graph)
+                    : null;
+            return new ResultBpmnParserGraphDto(processId, graph != null ? graph.view() : null, analytics);
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof MessageConversionException mce) throw mce;
+            throw new MessageConversionException("Failed to decode graph result", e);
+        }
+    }
+}
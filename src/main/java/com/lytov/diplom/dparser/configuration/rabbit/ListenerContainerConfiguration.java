@@ -0,0 +1,93 @@
+package com.lytov.diplom.dparser.configuration.rabbit;
+
+import com.lytov.diplom.dparser.configuration.rabbit.properties.RabbitListenerProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * Отдельные фабрики контейнеров для очередей d-sppr: у каждой свои concurrency и prefetch.
+ * Остальные настройки (retry, ack и т.д.) берутся из spring.rabbitmq.listener.simple.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ListenerContainerConfiguration {
+
+    public static final String CREATE_GRAPH_CONTAINER_FACTORY = "createGraphContainerFactory";
+    public static final String CREATE_GRAPH_BATCH_CONTAINER_FACTORY = "createGraphBatchContainerFactory";
+    public static final String MARKING_CONTAINER_FACTORY = "markingContainerFactory";
+
+    private final RabbitListenerProperties properties;
+
+    @Bean(CREATE_GRAPH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory createGraphContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory
+    ) {
+        return containerFactory(configurer, connectionFactory, properties.getCreateGraph(), "create-graph-");
+    }
+
+    /**
+     * Пачка собирается на стороне контейнера; prefetch поднимается до размера пачки,
+     * иначе брокер не отдаст столько неподтверждённых сообщений.
+     */
+    @Bean(CREATE_GRAPH_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory createGraphBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory
+    ) {
+        RabbitListenerProperties.Batch batch = properties.getCreateGraphBatch();
+        SimpleRabbitListenerContainerFactory factory =
+                containerFactory(configurer, connectionFactory, properties.getCreateGraph(), "create-graph-batch-");
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batch.getSize());
+        factory.setReceiveTimeout(batch.getReceiveTimeout().toMillis());
+        factory.setPrefetchCount(Math.max(properties.getCreateGraph().getPrefetch(), batch.getSize()));
+        return factory;
+    }
+
+    @Bean(MARKING_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory markingContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory
+    ) {
+        return containerFactory(configurer, connectionFactory, properties.getMarking(), "marking-");
+    }
+
+    private SimpleRabbitListenerContainerFactory containerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            RabbitListenerProperties.Container container,
+            String threadPrefix
+    ) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(container.getConcurrency());
+        factory.setMaxConcurrentConsumers(Math.max(container.getConcurrency(), container.getMaxConcurrency()));
+        factory.setPrefetchCount(container.getPrefetch());
+
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadPrefix);
+        if (properties.isVirtualThreads()) {
+            requireVirtualThreads(Runtime.version().feature());
+            executor.setVirtualThreads(true);
+        }
+        factory.setTaskExecutor(executor);
+        return factory;
+    }
+
+    /**
+     * Проект собирается под Java 17, а виртуальные потоки есть только с 21: без этой проверки контекст падал бы
+     * на первом старте потребителя с исключением Spring, в котором не видно, какая настройка виновата.
+     */
+    static void requireVirtualThreads(int javaVersion) {
+        if (javaVersion < 21) {
+            throw new IllegalStateException("d-parser.rabbit.listener.virtual-threads=true requires Java 21+, "
+                    + "but the application runs on Java " + javaVersion + "; disable the property or upgrade the runtime");
+        }
+    }
+}
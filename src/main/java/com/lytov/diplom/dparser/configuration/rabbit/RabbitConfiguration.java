@@ -4,6 +4,7 @@ package com.lytov.diplom.dparser.configuration.rabbit;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -18,8 +19,15 @@ public class RabbitConfiguration {
 
     private final ObjectMapper objectMapper;
 
+    /**
+     * Конвертер выбирается по content-type сообщения: бинарный граф для
+     * {@link GraphResultMessageConverter#CONTENT_TYPE}, всё остальное — JSON.
+     */
     @Bean
     public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter(objectMapper);
+        ContentTypeDelegatingMessageConverter converter =
+                new ContentTypeDelegatingMessageConverter(new Jackson2JsonMessageConverter(objectMapper));
+        converter.addDelegate(GraphResultMessageConverter.CONTENT_TYPE, new GraphResultMessageConverter());
+        return converter;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package com.lytov.diplom.dparser.configuration.rabbit;
+
+import com.lytov.diplom.dparser.configuration.rabbit.properties.RetryProperties;
+import com.lytov.diplom.dparser.service.retry.DelayedRetryRouter;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.amqp.RabbitTemplateConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Отложенные повторы без блокировки потребителя.
+ * <p>
+ * Для каждой рабочей очереди Q объявляются очереди задержки {@code Q.retry.N} с TTL N-й попытки:
+ * по истечении TTL брокер переотправляет сообщение через default exchange обратно в Q (dead-letter).
+ * После последней попытки сообщение кладётся в {@code Q.parking-lot} и ждёт ручного разбора.
+ * Сама очередь Q не меняется, поэтому повторное объявление у брокера не конфликтует с уже существующей.
+ */
+@Configuration
+public class RetryRMQConfig {
+
+    public static final List<String> RETRYABLE_QUEUES = List.of(
+            DCoreRMQConfig.FROM_SPPR_CREATE_GRAPH_QUEUE,
+            DCoreRMQConfig.FROM_SPPR_MARKING_QUEUE
+    );
+
+    public static String delayQueue(String queue, int attempt) {
+        return queue + ".retry." + attempt;
+    }
+
+    public static String parkingLotQueue(String queue) {
+        return queue + ".parking-lot";
+    }
+
+    @Bean
+    public Declarables retryDeclarables(RetryProperties properties) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (String queue : RETRYABLE_QUEUES) {
+            for (int attempt = 1; attempt <= properties.getDelays().size(); attempt++) {
+                Queue delayQueue = QueueBuilder.durable(delayQueue(queue, attempt))
+                        .ttl((int) properties.getDelays().get(attempt - 1).toMillis())
+                        .deadLetterExchange("")
+                        .deadLetterRoutingKey(queue)
+                        .build();
+                declarables.add(delayQueue);
+            }
+            declarables.add(QueueBuilder.durable(parkingLotQueue(queue)).build());
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Шаблон переотправки не объявляется бином: второй RabbitTemplate в контексте отключил бы
+     * автоконфигурируемый общий. mandatory включается только для него.
+     */
+    @Bean
+    public DelayedRetryRouter delayedRetryRouter(
+            RabbitTemplateConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            RetryProperties properties
+    ) {
+        RabbitTemplate rabbitTemplate = new RabbitTemplate();
+        configurer.configure(rabbitTemplate, connectionFactory);
+        rabbitTemplate.setMandatory(true);
+        return new DelayedRetryRouter(rabbitTemplate, properties);
+    }
+}
@@ -0,0 +1,34 @@
+package com.lytov.diplom.dparser.configuration.rabbit.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.rabbit.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * false — каждое сообщение обрабатывается заново, даже повторно доставленное.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Сколько обработанных сообщений помнить в памяти.
+     */
+    private long maxEntries = 100_000;
+
+    /**
+     * Сколько после обработки сообщение считается выполненным. Ключ — id или тело сообщения;
+     * повторная доставка create-graph в пределах этого времени узнаётся ещё и по fileId и processId.
+     */
+    private Duration retention = Duration.ofHours(1);
+
+    /**
+     * true — обработанные сообщения пишутся ещё и в Postgres и переживают перезапуск.
+     */
+    private boolean persistent = false;
+}
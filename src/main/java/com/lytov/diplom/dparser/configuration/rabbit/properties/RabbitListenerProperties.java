@@ -0,0 +1,51 @@
+package com.lytov.diplom.dparser.configuration.rabbit.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.rabbit.listener")
+public class RabbitListenerProperties {
+
+    /**
+     * Потребители на виртуальных потоках (нужна JDK 21+). Параллельность разбора всё равно
+     * ограничена d-parser.graph.max-parallel-parses.
+     */
+    private boolean virtualThreads = false;
+
+    private Container createGraph = new Container();
+
+    private Container marking = new Container();
+
+    /**
+     * Пакетный режим create-graph: вместо поштучного слушателя включается пакетный
+     * с настройками concurrency/prefetch из create-graph.
+     */
+    private Batch createGraphBatch = new Batch();
+
+    @Data
+    public static class Container {
+
+        private int concurrency = 1;
+
+        private int maxConcurrency = 1;
+
+        private int prefetch = 1;
+    }
+
+    @Data
+    public static class Batch {
+
+        private boolean enabled = false;
+
+        /** Максимум сообщений в пачке. */
+        private int size = 20;
+
+        /** Сколько ждать следующего сообщения, прежде чем отдать неполную пачку. */
+        private Duration receiveTimeout = Duration.ofMillis(200);
+    }
+}
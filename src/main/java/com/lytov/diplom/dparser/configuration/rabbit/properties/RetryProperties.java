@@ -0,0 +1,45 @@
+package com.lytov.diplom.dparser.configuration.rabbit.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.rabbit.retry")
+public class RetryProperties {
+
+    /**
+     * false — ошибка только логируется, сообщение подтверждается (прежнее поведение).
+     */
+    private boolean enabled = true;
+
+    /**
+     * Задержка перед каждой повторной попыткой; число элементов — число повторов,
+     * после последнего сообщение уходит в parking-lot.
+     */
+    private List<Duration> delays = new ArrayList<>(List.of(
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(30),
+            Duration.ofMinutes(5)
+    ));
+
+    /**
+     * Сколько ждать подтверждения брокера на переотправку в очередь задержки или parking-lot.
+     */
+    private Duration publishTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Попыток переотправки; если все неудачны, исходное сообщение возвращается в рабочую очередь.
+     */
+    private int publishAttempts = 3;
+
+    /**
+     * Пауза перед второй попыткой переотправки, дальше удваивается.
+     */
+    private Duration publishBackoff = Duration.ofSeconds(1);
+}
@@ -0,0 +1,27 @@
+package com.lytov.diplom.dparser.configuration.storage.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.storage.blob-store")
+public class BlobStoreProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Общий каталог копий скачанных файлов. Каждый экземпляр пишет в свой подкаталог,
+     * при старте удаляются только подкаталоги остановленных экземпляров.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "d-parser-blobs");
+
+    /**
+     * Предельный суммарный размер копий; сверх него вытесняются давно не читанные.
+     */
+    private DataSize maxSize = DataSize.ofGigabytes(1);
+}
@@ -0,0 +1,45 @@
+package com.lytov.diplom.dparser.configuration.storage.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.storage.http")
+public class ObjectStorageHttpProperties {
+
+    /**
+     * Соединений в пуле на все хосты.
+     */
+    private int maxConnections = 64;
+
+    /**
+     * Соединений на один хост (схема + хост + порт): сколько файлов одновременно качается из одного object storage.
+     */
+    private int maxConnectionsPerHost = 32;
+
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Тишина в сокете, после которой скачивание или загрузка обрывается; не ограничивает передачу целиком.
+     */
+    private Duration readTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Сколько ждать свободного соединения, когда пул хоста занят.
+     */
+    private Duration connectionRequestTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Простаивающие дольше соединения закрываются фоновым потоком.
+     */
+    private Duration idleTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Соединение, простоявшее дольше, проверяется перед повторным использованием.
+     */
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+}
@@ -0,0 +1,33 @@
+package com.lytov.diplom.dparser.configuration.storage.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "d-parser.storage.presign")
+public class PresignedUrlCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Ссылка выбрасывается из кэша за столько до истечения, зашитого в неё (X-Amz-Date + X-Amz-Expires или Expires):
+     * скачивание должно успеть начаться, пока она действительна.
+     */
+    private Duration refreshBefore = Duration.ofMinutes(1);
+
+    /**
+     * Предельный срок жизни записи, даже если ссылка действует дольше.
+     */
+    private Duration maxTtl = Duration.ofHours(1);
+
+    private long maxSize = 100_000;
+
+    /**
+     * Сколько id уходит в один пакетный запрос presign.
+     */
+    private int batchSize = 100;
+}
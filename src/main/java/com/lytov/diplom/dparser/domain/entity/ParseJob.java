@@ -0,0 +1,67 @@
+package com.lytov.diplom.dparser.domain.entity;
+
+import com.lytov.diplom.dparser.domain.enums.ParseJobStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Асинхронный разбор файла, запущенный через POST /api/v0/parsing-process/{id}/jobs.
+ * Результат — список компонентов в JSON, как его отдаёт синхронный эндпоинт.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "parse_job")
+public class ParseJob {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "file_id", nullable = false)
+    private UUID fileId;
+
+    /** Экземпляр, в пуле которого выполняется задача. */
+    @Column(name = "instance_id")
+    private String instanceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ParseJobStatus status;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    private String result;
+
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "started_at")
+    private Instant startedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    public static ParseJob queued(UUID fileId, String instanceId, Instant createdAt) {
+        ParseJob job = new ParseJob();
+        job.setId(UUID.randomUUID());
+        job.setFileId(fileId);
+        job.setInstanceId(instanceId);
+        job.setStatus(ParseJobStatus.QUEUED);
+        job.setCreatedAt(createdAt);
+        return job;
+    }
+}
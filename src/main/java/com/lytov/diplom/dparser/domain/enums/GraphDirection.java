@@ -0,0 +1,7 @@
+package com.lytov.diplom.dparser.domain.enums;
+
+public enum GraphDirection {
+    OUT,
+    IN,
+    BOTH
+}
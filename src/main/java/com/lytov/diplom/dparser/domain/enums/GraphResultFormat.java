@@ -0,0 +1,6 @@
+package com.lytov.diplom.dparser.domain.enums;
+
+public enum GraphResultFormat {
+    JSON,
+    BINARY
+}
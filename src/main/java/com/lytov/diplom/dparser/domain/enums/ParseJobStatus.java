@@ -0,0 +1,12 @@
+package com.lytov.diplom.dparser.domain.enums;
+
+public enum ParseJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,57 @@
+package com.lytov.diplom.dparser.domain.repository;
+
+import com.lytov.diplom.dparser.domain.entity.ParseJob;
+import com.lytov.diplom.dparser.domain.enums.ParseJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.UUID;
+
+public interface ParseJobRepository extends JpaRepository<ParseJob, UUID> {
+
+    /** Переводит в FAILED задачи экземпляра {@code instanceId} в статусах {@code statuses}, созданные до {@code createdBefore}. */
+    @Modifying
+    @Transactional
+    @Query("""
+            update ParseJob j
+               set j.status = com.lytov.diplom.dparser.domain.enums.ParseJobStatus.FAILED,
+                   j.error = :error,
+                   j.finishedAt = :finishedAt
+             where j.instanceId = :instanceId
+               and j.status in :statuses
+               and j.createdAt < :createdBefore
+            """)
+    int fail(@Param("instanceId") String instanceId,
+             @Param("statuses") Collection<ParseJobStatus> statuses,
+             @Param("createdBefore") Instant createdBefore,
+             @Param("error") String error,
+             @Param("finishedAt") Instant finishedAt);
+
+    /**
+     * Переводит в FAILED зависшие задачи любого экземпляра: RUNNING, начатые до {@code before},
+     * и QUEUED, созданные до {@code before}.
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+            update ParseJob j
+               set j.status = com.lytov.diplom.dparser.domain.enums.ParseJobStatus.FAILED,
+                   j.error = :error,
+                   j.finishedAt = :finishedAt
+             where (j.status = com.lytov.diplom.dparser.domain.enums.ParseJobStatus.RUNNING and j.startedAt < :before)
+                or (j.status = com.lytov.diplom.dparser.domain.enums.ParseJobStatus.QUEUED and j.createdAt < :before)
+            """)
+    int failStale(@Param("before") Instant before,
+                  @Param("error") String error,
+                  @Param("finishedAt") Instant finishedAt);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ParseJob j where j.createdAt < :createdBefore")
+    int deleteCreatedBefore(@Param("createdBefore") Instant createdBefore);
+}
@@ -0,0 +1,204 @@
+package com.lytov.diplom.dparser.domain.repository;
+
+import com.lytov.diplom.dparser.configuration.cache.properties.ParseResultStoreProperties;
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.domain.enums.OperationType;
+import com.lytov.diplom.dparser.domain.enums.ParseResultKind;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.Component;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+/**
+ * Результаты разбора в Postgres по fileId и версии содержимого (ETag или sha-256, как в {@code ParsedBpmnKey}).
+ * <p>
+ * Узлы, рёбра и компоненты пишутся JDBC-батчами по {@link ParseResultStoreProperties#getBatchSize()} строк
+ * в таблицы с первичным ключом (result_id, ord), читаются одним запросом на таблицу в исходном порядке.
+ * Результат каждого вида хранится только для последней записанной версии файла: старые удаляются каскадом.
+ */
+@Repository
+public class ParseResultRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public ParseResultRepository(JdbcTemplate jdbcTemplate, ParseResultStoreProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = properties.isEnabled();
+        this.batchSize = properties.getBatchSize();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Результаты последней записанной версии файла; пусто, если по файлу ничего не сохранено.
+     * Старые версии удаляются при записи, поэтому версия берётся из самой свежей строки файла.
+     */
+    @Transactional(readOnly = true)
+    public Optional<StoredParseResult> findLatest(UUID fileId) {
+        List<String> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM parse_result WHERE file_id = ? ORDER BY created_at DESC, id DESC LIMIT 1",
+                String.class, fileId);
+        return versions.isEmpty() ? Optional.empty() : Optional.of(find(fileId, versions.get(0)));
+    }
+
+    /**
+     * Сохранённые результаты версии файла; отсутствующий вид — {@code null} в соответствующем поле.
+     */
+    @Transactional(readOnly = true)
+    public StoredParseResult find(UUID fileId, String version) {
+        Map<ParseResultKind, Long> ids = new EnumMap<>(ParseResultKind.class);
+        jdbcTemplate.query("SELECT id, kind FROM parse_result WHERE file_id = ? AND version = ?",
+                rs -> {
+                    ids.put(ParseResultKind.valueOf(rs.getString("kind")), rs.getLong("id"));
+                },
+                fileId, version);
+
+        Long graphId = ids.get(ParseResultKind.GRAPH);
+        Long componentsId = ids.get(ParseResultKind.COMPONENTS);
+        return new StoredParseResult(version,
+                graphId != null ? readGraph(graphId) : null,
+                componentsId != null ? readComponents(componentsId) : null);
+    }
+
+    @Transactional
+    public void saveGraph(UUID fileId, String version, CompactBpmnGraph graph) {
+        Long resultId = insertResult(fileId, version, ParseResultKind.GRAPH);
+        if (resultId == null) return;
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO parse_result_node (result_id, ord, node_id, name, type) VALUES (?, ?, ?, ?, ?)",
+                ordinals(graph.nodeCount()), batchSize,
+                (ps, v) -> {
+                    ps.setLong(1, resultId);
+                    ps.setInt(2, v);
+                    ps.setString(3, graph.nodeId(v));
+                    ps.setString(4, graph.nodeName(v));
+                    ps.setString(5, graph.nodeType(v).name());
+                });
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO parse_result_edge (result_id, ord, edge_id, type, source_id, target_id) VALUES (?, ?, ?, ?, ?, ?)",
+                ordinals(graph.edgeCount()), batchSize,
+                (ps, e) -> {
+                    int source = graph.edgeSource(e);
+                    int target = graph.edgeTarget(e);
+                    ps.setLong(1, resultId);
+                    ps.setInt(2, e);
+                    ps.setString(3, graph.edgeId(e));
+                    ps.setString(4, graph.edgeType(e).name());
+                    ps.setString(5, source < 0 ? null : graph.nodeId(source));
+                    ps.setString(6, target < 0 ? null : graph.nodeId(target));
+                });
+    }
+
+    @Transactional
+    public void saveComponents(UUID fileId, String version, List<Component> components) {
+        Long resultId = insertResult(fileId, version, ParseResultKind.COMPONENTS);
+        if (resultId == null) return;
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO parse_result_component (result_id, ord, component_id, name, bpmn_task_type, role, "
+                        + "department, operation_type, related_data) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                ordinals(components.size()), batchSize,
+                (ps, i) -> {
+                    Component component = components.get(i);
+                    ps.setLong(1, resultId);
+                    ps.setInt(2, i);
+                    ps.setString(3, component.getId());
+                    ps.setString(4, component.getName());
+                    ps.setString(5, component.getBpmnTaskType());
+                    ps.setString(6, component.getRole());
+                    ps.setString(7, component.getDepartment());
+                    ps.setString(8, component.getOperationType() != null ? component.getOperationType().name() : null);
+                    if (component.getRelatedData() != null) {
+                        ps.setArray(9, ps.getConnection().createArrayOf("text", component.getRelatedData().toArray()));
+                    } else {
+                        ps.setNull(9, Types.ARRAY);
+                    }
+                });
+    }
+
+    /**
+     * Заголовок результата; {@code null}, если эту версию уже записал другой поток или экземпляр.
+     */
+    private Long insertResult(UUID fileId, String version, ParseResultKind kind) {
+        jdbcTemplate.update("DELETE FROM parse_result WHERE file_id = ? AND kind = ? AND version <> ?",
+                fileId, kind.name(), version);
+        List<Long> ids = jdbcTemplate.query(
+                "INSERT INTO parse_result (file_id, version, kind, created_at) VALUES (?, ?, ?, now()) "
+                        + "ON CONFLICT (file_id, version, kind) DO NOTHING RETURNING id",
+                (rs, row) -> rs.getLong(1),
+                fileId, version, kind.name());
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    /** Порядок узлов и рёбер сохраняется, поэтому номера вершин у восстановленного графа те же. */
+    private CompactBpmnGraph readGraph(long resultId) {
+        BpmnGraph graph = new BpmnGraph();
+        jdbcTemplate.query("SELECT node_id, name, type FROM parse_result_node WHERE result_id = ? ORDER BY ord",
+                rs -> {
+                    graph.addNode(new BpmnGraph.BpmnNode(
+                            rs.getString("node_id"), rs.getString("name"), NodeType.valueOf(rs.getString("type"))));
+                },
+                resultId);
+        jdbcTemplate.query("SELECT edge_id, type, source_id, target_id FROM parse_result_edge WHERE result_id = ? ORDER BY ord",
+                rs -> {
+                    graph.addEdge(new BpmnGraph.BpmnEdge(rs.getString("edge_id"), EdgeType.valueOf(rs.getString("type")),
+                            rs.getString("source_id"), rs.getString("target_id")));
+                },
+                resultId);
+        return CompactBpmnGraph.of(graph);
+    }
+
+    private List<Component> readComponents(long resultId) {
+        return jdbcTemplate.query(
+                "SELECT component_id, name, bpmn_task_type, role, department, operation_type, related_data "
+                        + "FROM parse_result_component WHERE result_id = ? ORDER BY ord",
+                (rs, row) -> {
+                    String operationType = rs.getString("operation_type");
+                    Array relatedData = rs.getArray("related_data");
+                    return Component.builder()
+                            .id(rs.getString("component_id"))
+                            .name(rs.getString("name"))
+                            .bpmnTaskType(rs.getString("bpmn_task_type"))
+                            .role(rs.getString("role"))
+                            .department(rs.getString("department"))
+                            .operationType(operationType != null ? OperationType.valueOf(operationType) : null)
+                            .relatedData(relatedData != null
+                                    ? new ArrayList<>(Arrays.asList((String[]) relatedData.getArray()))
+                                    : null)
+                            .build();
+                },
+                resultId);
+    }
+
+    private static List<Integer> ordinals(int count) {
+        return IntStream.range(0, count).boxed().toList();
+    }
+
+    /**
+     * @param version    версия файла, к которой относятся результаты
+     * @param graph      граф версии или {@code null}, если его не сохраняли
+     * @param components компоненты версии или {@code null}
+     */
+    public record StoredParseResult(String version, CompactBpmnGraph graph, List<Component> components) {
+    }
+}
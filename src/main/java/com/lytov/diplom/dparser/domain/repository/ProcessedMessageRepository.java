@@ -0,0 +1,64 @@
+package com.lytov.diplom.dparser.domain.repository;
+
+import com.lytov.diplom.dparser.domain.enums.ProcessedMessageKind;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Обработанные сообщения из очередей для дедупликации повторных доставок (см. {@code ProcessedMessages}).
+ * Результат хранится ссылкой (id размеченного файла), а не телом опубликованного сообщения.
+ */
+@Repository
+public class ProcessedMessageRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProcessedMessageRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<ProcessedMessage> find(String key, Instant completedAfter) {
+        List<ProcessedMessage> found = jdbcTemplate.query(
+                "SELECT message_key, kind, file_id, process_id, result_id, completed_at FROM processed_message"
+                        + " WHERE message_key = ? AND completed_at > ?",
+                (rs, row) -> new ProcessedMessage(
+                        rs.getString("message_key"),
+                        ProcessedMessageKind.valueOf(rs.getString("kind")),
+                        rs.getObject("file_id", UUID.class),
+                        rs.getObject("process_id", UUID.class),
+                        rs.getObject("result_id", UUID.class),
+                        rs.getTimestamp("completed_at").toInstant()),
+                key, Timestamp.from(completedAfter));
+        return found.stream().findFirst();
+    }
+
+    /** Повторное завершение того же ключа (replay) обновляет результат и время. */
+    public void save(ProcessedMessage message) {
+        jdbcTemplate.update(
+                "INSERT INTO processed_message (message_key, kind, file_id, process_id, result_id, completed_at)"
+                        + " VALUES (?, ?, ?, ?, ?, ?)"
+                        + " ON CONFLICT (message_key) DO UPDATE"
+                        + " SET result_id = EXCLUDED.result_id, completed_at = EXCLUDED.completed_at",
+                message.key(), message.kind().name(), message.fileId(), message.processId(), message.resultId(),
+                Timestamp.from(message.completedAt()));
+    }
+
+    /** @return число удалённых записей */
+    public int deleteCompletedBefore(Instant completedBefore) {
+        return jdbcTemplate.update("DELETE FROM processed_message WHERE completed_at < ?", Timestamp.from(completedBefore));
+    }
+
+    /**
+     * @param resultId id результата, который можно опубликовать повторно; {@code null}, если результат
+     *                 восстанавливается из кэшей (create-graph)
+     */
+    public record ProcessedMessage(String key, ProcessedMessageKind kind, UUID fileId, UUID processId,
+                                   UUID resultId, Instant completedAt) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.lytov.diplom.dparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BulkParseTooLarge extends RuntimeException {
+    public BulkParseTooLarge(int files, int maxFiles) {
+        super("Bulk parse accepts at most " + maxFiles + " files, got " + files);
+    }
+}
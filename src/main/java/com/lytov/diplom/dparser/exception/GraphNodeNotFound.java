@@ -0,0 +1,13 @@
+package com.lytov.diplom.dparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class GraphNodeNotFound extends RuntimeException {
+    public GraphNodeNotFound(UUID fileId, String nodeId) {
+        super("Node " + nodeId + " not found in graph of file id=" + fileId);
+    }
+}
@@ -0,0 +1,13 @@
+package com.lytov.diplom.dparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class GraphNotBuilt extends RuntimeException {
+    public GraphNotBuilt(UUID fileId) {
+        super("Graph of file id=" + fileId + " is not built yet");
+    }
+}
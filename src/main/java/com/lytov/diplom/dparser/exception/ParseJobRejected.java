@@ -0,0 +1,13 @@
+package com.lytov.diplom.dparser.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ParseJobRejected extends RuntimeException {
+    public ParseJobRejected(UUID fileId) {
+        super("Parse job queue is full, file id=" + fileId);
+    }
+}
@@ -3,7 +3,10 @@ package com.lytov.diplom.dparser.external.sppr_bd;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @FeignClient(value = "sppr-bd", url = "${external.sppr.bd}")
@@ -11,4 +14,13 @@ public interface SpprBdConnector {
 
     @PostMapping("/api/v0/minio/presign/get/{id}")
     String getDownloadUrl(@PathVariable("id") UUID id);
+
+    /**
+     * Ссылки на скачивание пачки файлов одним запросом: fileId → presigned URL; id без файла в ответе отсутствуют.
+     */
+    @PostMapping("/api/v0/minio/presign/get")
+    Map<UUID, String> getDownloadUrls(@RequestBody List<UUID> ids);
+
+    @PostMapping("/api/v0/minio/presign/put/{id}")
+    String getUploadUrl(@PathVariable("id") UUID id);
 }
@@ -0,0 +1,415 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import com.lytov.diplom.dparser.configuration.storage.properties.BlobStoreProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Локальные копии скачанных файлов для условных запросов в object storage.
+ * <p>
+ * Копия лежит в файле с именем sha-256 содержимого, поэтому одинаковые файлы под разными fileId хранятся один раз.
+ * По fileId помнятся хэш и заголовки ответа (ETag, Last-Modified, Content-Disposition, Content-Type):
+ * по ним строится If-None-Match/If-Modified-Since, а при 304 обработчик получает их вместо заголовков ответа.
+ * Вытеснение — по давности последнего чтения, пока суммарный размер больше {@link BlobStoreProperties#getMaxSize()}.
+ * <p>
+ * Индекс живёт в памяти, поэтому каждый экземпляр пишет в свой подкаталог {@code instance-*} общего каталога
+ * и держит на нём файловую блокировку, пока жив процесс. При старте удаляются только подкаталоги,
+ * блокировку которых удалось взять, — их экземпляры уже остановлены.
+ */
+@Slf4j
+@Component
+public class BlobStore {
+
+    private static final String METRIC_PREFIX = "d-parser.storage.blob-store";
+    private static final String BLOB_SUFFIX = ".blob";
+    private static final String INSTANCE_PREFIX = "instance-";
+    private static final String LOCK_FILE = ".lock";
+    private static final List<String> KEPT_HEADERS = List.of(
+            HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CONTENT_DISPOSITION, HttpHeaders.CONTENT_TYPE);
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private Path directory;
+    /** Блокировка своего подкаталога; снимается вместе с процессом. */
+    private FileChannel lock;
+
+    private final Map<UUID, StoredBlob> byFile = new HashMap<>();
+    /** Хэш → размер в порядке последнего чтения: первым идёт кандидат на вытеснение. */
+    private final LinkedHashMap<String, Long> blobs = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter stored;
+    private final Counter evictions;
+
+    public BlobStore(BlobStoreProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.maxBytes = properties.getMaxSize().toBytes();
+
+        this.hits = Counter.builder(METRIC_PREFIX + ".not-modified").register(meterRegistry);
+        this.stored = Counter.builder(METRIC_PREFIX + ".stored").register(meterRegistry);
+        this.evictions = Counter.builder(METRIC_PREFIX + ".evictions").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".size", this, BlobStore::totalBytes).baseUnit("bytes").register(meterRegistry);
+
+        if (enabled) {
+            prepareDirectory(properties.getDirectory());
+        }
+    }
+
+    /** Свой подкаталог удаляется при штатной остановке; после сбоя его уберёт следующий старт. */
+    @PreDestroy
+    public synchronized void close() {
+        if (lock == null) return;
+        byFile.clear();
+        blobs.clear();
+        totalBytes = 0;
+        removeInstance(directory, lock);
+        lock = null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized Optional<StoredBlob> lookup(UUID fileId) {
+        return enabled ? Optional.ofNullable(byFile.get(fileId)) : Optional.empty();
+    }
+
+    /**
+     * Тело копии, отображённое в память. Пусто, если копию успели вытеснить после {@link #lookup}.
+     */
+    public Optional<InputStream> open(StoredBlob blob) throws IOException {
+        synchronized (this) {
+            // get поднимает копию в конец очереди вытеснения
+            if (blobs.get(blob.hash()) == null) {
+                return Optional.empty();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path(blob.hash()), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return Optional.of(Files.newInputStream(path(blob.hash())));
+            }
+            // отображение остаётся действительным после закрытия канала и удаления файла
+            hits.increment();
+            return Optional.of(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Поток, который по ходу чтения пишет тело во временный файл. Копия сохраняется в {@link Recording#finish},
+     * если обработчик отработал без ошибки. {@code null} — ответ без ETag и Last-Modified, сверять его не с чем.
+     */
+    public Recording record(UUID fileId, HttpHeaders headers, InputStream body) throws IOException {
+        if (!enabled || (headers.getETag() == null && headers.getLastModified() < 0)) {
+            return null;
+        }
+        HttpHeaders kept = new HttpHeaders();
+        for (String name : KEPT_HEADERS) {
+            List<String> values = headers.get(name);
+            if (values != null) kept.put(name, List.copyOf(values));
+        }
+        return new Recording(fileId, HttpHeaders.readOnlyHttpHeaders(kept), body,
+                Files.createTempFile(directory, "download-", ".tmp"));
+    }
+
+    private synchronized void commit(UUID fileId, HttpHeaders headers, Path temp, String hash, long size) throws IOException {
+        if (blobs.containsKey(hash)) {
+            Files.deleteIfExists(temp);
+            blobs.get(hash);
+        } else {
+            Files.move(temp, path(hash), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            blobs.put(hash, size);
+            totalBytes += size;
+        }
+        byFile.put(fileId, new StoredBlob(hash, size, headers));
+        stored.increment();
+        evict();
+    }
+
+    private void evict() throws IOException {
+        var eldest = blobs.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> blob = eldest.next();
+            eldest.remove();
+            totalBytes -= blob.getValue();
+            byFile.values().removeIf(stored -> stored.hash().equals(blob.getKey()));
+            Files.deleteIfExists(path(blob.getKey()));
+            evictions.increment();
+        }
+    }
+
+    private synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private Path path(String hash) {
+        return directory.resolve(hash + BLOB_SUFFIX);
+    }
+
+    private void prepareDirectory(Path root) {
+        try {
+            Files.createDirectories(root);
+            try (DirectoryStream<Path> instances = Files.newDirectoryStream(root, INSTANCE_PREFIX + "*")) {
+                for (Path instance : instances) {
+                    removeIfAbandoned(instance);
+                }
+            }
+            directory = Files.createTempDirectory(root, INSTANCE_PREFIX);
+            lock = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            lock.lock();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare blob store directory " + root, e);
+        }
+    }
+
+    /** Подкаталог без блокировки остался от остановленного экземпляра; без файла блокировки — ещё создаётся. */
+    private static void removeIfAbandoned(Path instance) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(instance.resolve(LOCK_FILE), StandardOpenOption.WRITE);
+            if (channel.tryLock() != null) {
+                log.info("Removing blob store directory {} of a stopped instance", instance);
+                removeInstance(instance, channel);
+                channel = null;
+            }
+        } catch (NoSuchFileException | OverlappingFileLockException e) {
+            // каталог живого экземпляра: создаётся прямо сейчас или принадлежит этой же JVM
+        } catch (IOException e) {
+            log.warn("Failed to check blob store directory {}: {}", instance, e.getMessage());
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    /** Удаляет копии, затем снимает блокировку и удаляет сам подкаталог. */
+    private static void removeInstance(Path instance, FileChannel lock) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(instance, "*.{blob,tmp}")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean blob store directory {}: {}", instance, e.getMessage());
+        } finally {
+            closeQuietly(lock);
+        }
+        try {
+            Files.deleteIfExists(instance.resolve(LOCK_FILE));
+            Files.deleteIfExists(instance);
+        } catch (IOException e) {
+            log.debug("Failed to delete {}", instance, e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close {}", channel, e);
+        }
+    }
+
+    /**
+     * Сохранённая копия файла: хэш содержимого, размер и заголовки ответа, с которым она пришла.
+     */
+    public record StoredBlob(String hash, long size, HttpHeaders headers) {
+    }
+
+    /**
+     * Тело ответа, которое параллельно пишется в копию. Ошибка записи не ломает чтение — копия просто не сохранится.
+     */
+    public final class Recording extends FilterInputStream {
+
+        private final UUID fileId;
+        private final HttpHeaders headers;
+        private final Path temp;
+        private final MessageDigest digest;
+        private OutputStream out;
+        private long size;
+        private boolean eof;
+
+        private Recording(UUID fileId, HttpHeaders headers, InputStream body, Path temp) throws IOException {
+            super(body);
+            this.fileId = fileId;
+            this.headers = headers;
+            this.temp = temp;
+            this.digest = sha256();
+            this.out = new DigestOutputStream(Files.newOutputStream(temp), digest);
+        }
+
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                eof = true;
+            } else {
+                copy(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                eof = true;
+            } else {
+                copy(b, off, n);
+            }
+            return n;
+        }
+
+        /** Пропущенные байты тоже нужны копии, поэтому skip читает их. */
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) break;
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        /**
+         * Обработчику не обязательно дочитывать тело: при успехе недочитанный остаток дописывается в копию,
+         * иначе условный запрос по её ETag вернул бы 304 для копии без хвоста.
+         *
+         * @param success обработчик отработал без ошибки
+         */
+        public void finish(boolean success) {
+            try {
+                if (success) {
+                    drain();
+                }
+                if (out != null) {
+                    out.close();
+                }
+                if (success && eof && out != null) {
+                    commit(fileId, headers, temp, HexFormat.of().formatHex(digest.digest()), size);
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to store downloaded file {}", fileId, e);
+            }
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                log.debug("Failed to delete {}", temp, e);
+            }
+        }
+
+        /** Тело ответа закрывает RestTemplate, а дочитать его нужно и после того, как обработчик закрыл поток. */
+        @Override
+        public void close() {
+        }
+
+        private void drain() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (!eof && out != null) {
+                read(buffer, 0, buffer.length);
+            }
+        }
+
+        private void copy(byte[] b, int off, int len) {
+            if (out == null) return;
+            try {
+                out.write(b, off, len);
+                size += len;
+                if (size > maxBytes) {
+                    throw new IOException("File is larger than the whole blob store");
+                }
+            } catch (IOException e) {
+                log.debug("Stopped storing file {}", fileId, e);
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                    // файл всё равно удаляется в finish
+                }
+                out = null;
+            }
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** Чтение из отображённого в память файла без копирования в кучу целиком. */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
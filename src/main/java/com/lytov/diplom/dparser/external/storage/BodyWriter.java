@@ -0,0 +1,11 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Пишет тело загружаемого файла; поток принадлежит вызывающему и закрывается им. */
+@FunctionalInterface
+public interface BodyWriter {
+
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,37 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.UUID;
+
+/**
+ * Скачиваемый из object storage файл: заголовки ответа и ещё не прочитанное тело.
+ * Тело живёт только внутри {@link FetchedFileHandler}, после выхода из него соединение закрывается.
+ */
+public record FetchedFile(UUID fileId, HttpHeaders headers, InputStream body) {
+
+    public String contentDisposition() {
+        return headers.getFirst(HttpHeaders.CONTENT_DISPOSITION);
+    }
+
+    public String etag() {
+        return headers.getETag();
+    }
+
+    /**
+     * Тот же файл, но с проверкой, что тело не пустое. Content-Length у chunked-ответа равен -1,
+     * поэтому читаем первый байт и возвращаем его обратно в поток.
+     */
+    public FetchedFile requireNonEmpty() throws IOException {
+        PushbackInputStream in = new PushbackInputStream(body);
+        int first = in.read();
+        if (first < 0) {
+            throw new IllegalStateException("Downloaded file is empty for fileId=" + fileId);
+        }
+        in.unread(first);
+        return new FetchedFile(fileId, headers, in);
+    }
+}
@@ -0,0 +1,9 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface FetchedFileHandler<T> {
+
+    T handle(FetchedFile file) throws IOException;
+}
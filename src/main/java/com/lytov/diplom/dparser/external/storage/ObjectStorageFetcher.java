@@ -0,0 +1,184 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Stage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Единая точка скачивания файлов из object storage по presigned-ссылке из sppr-bd ({@link PresignedUrlCache}).
+ * Тело ответа отдаётся обработчику потоком: без byte[] на весь файл и без временных файлов.
+ * <p>
+ * Этапы presign, download (до заголовков) и transfer (чтение тела) пишутся в {@link PipelineMetrics};
+ * размер файла — только если тело читали, при попадании в кэш оно не читается.
+ * <p>
+ * Если в {@link BlobStore} есть копия файла, запрос идёт с If-None-Match/If-Modified-Since,
+ * и на 304 обработчик читает копию с диска с заголовками, сохранёнными вместе с ней.
+ * <p>
+ * Вызывающий, который уже разобрал известную ему версию файла, передаёт её валидаторы сам:
+ * тогда на 304 тело не нужно вовсе, и копия с диска не открывается.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ObjectStorageFetcher {
+
+    private final PresignedUrlCache presignedUrlCache;
+    private final RestTemplate restTemplate;
+    private final PipelineMetrics pipelineMetrics;
+    private final BlobStore blobStore;
+
+    public <T> T fetch(UUID fileId, FetchedFileHandler<T> handler) {
+        return fetch(fileId, null, null, handler);
+    }
+
+    /**
+     * Запрос с валидаторами версии, которую вызывающий уже обработал.
+     *
+     * @param known     ETag или Last-Modified известной версии
+     * @param unchanged результат на 304: тело не читается
+     * @param handler   обработчик изменившегося файла
+     */
+    public <T> T fetch(UUID fileId, HttpHeaders known, Supplier<T> unchanged, FetchedFileHandler<T> handler) {
+        try {
+            return fetchConditional(fileId, known, unchanged, handler);
+        } catch (HttpClientErrorException.Forbidden e) {
+            // закэшированную ссылку могли отозвать раньше срока; 403 приходит до чтения тела, повтор безопасен
+            log.debug("Presigned url for fileId={} rejected, requesting a new one", fileId);
+            presignedUrlCache.invalidate(fileId);
+            return fetchConditional(fileId, known, unchanged, handler);
+        }
+    }
+
+    private <T> T fetchConditional(UUID fileId, HttpHeaders known, Supplier<T> unchanged, FetchedFileHandler<T> handler) {
+        if (known != null) {
+            return fetchOnce(fileId, handler, known, unchanged, null);
+        }
+        try {
+            return fetchOnce(fileId, handler, null, null, blobStore.lookup(fileId).orElse(null));
+        } catch (BlobEvicted e) {
+            // 304 пришёл, а копию уже вытеснили: тело нужно целиком
+            log.debug("Stored copy of fileId={} evicted during request, downloading again", fileId);
+            return fetchOnce(fileId, handler, null, null, null);
+        }
+    }
+
+    private <T> T fetchOnce(UUID fileId, FetchedFileHandler<T> handler,
+                            HttpHeaders known, Supplier<T> unchanged, BlobStore.StoredBlob stored) {
+        HttpHeaders validators = known != null ? known : stored != null ? stored.headers() : null;
+        String downloadUrl = pipelineMetrics.stage(Stage.PRESIGN, () -> presignedUrlCache.downloadUrl(fileId));
+
+        URI uri = UriComponentsBuilder
+                .fromUriString(downloadUrl)
+                .build(true)             // <- ВАЖНО: true = не кодировать заново
+                .toUri();
+
+        long started = System.nanoTime();
+        boolean[] responded = new boolean[1];
+        try {
+            return restTemplate.execute(
+                    uri,
+                    HttpMethod.GET,
+                    validators == null ? null : request -> conditionalHeaders(request.getHeaders(), validators),
+                    response -> {
+                        responded[0] = true;
+                        pipelineMetrics.recordStage(Stage.DOWNLOAD, System.nanoTime() - started, true);
+                        if (validators != null && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                            if (known != null) {
+                                return unchanged.get();
+                            }
+                            Optional<InputStream> copy = blobStore.open(stored);
+                            if (copy.isEmpty()) {
+                                throw new BlobEvicted();
+                            }
+                            try (InputStream body = copy.get()) {
+                                return handler.handle(new FetchedFile(fileId, stored.headers(), body));
+                            }
+                        }
+
+                        TimedInputStream body = new TimedInputStream(response.getBody());
+                        BlobStore.Recording recording = blobStore.record(fileId, response.getHeaders(), body);
+                        boolean success = false;
+                        try {
+                            T result = handler.handle(new FetchedFile(fileId, response.getHeaders(),
+                                    recording != null ? recording : body));
+                            success = true;
+                            return result;
+                        } finally {
+                            if (recording != null) {
+                                recording.finish(success);
+                            }
+                            pipelineMetrics.recordStage(Stage.TRANSFER, body.nanos, success);
+                            if (body.bytes > 0) {
+                                pipelineMetrics.recordFileSize(body.bytes);
+                            }
+                        }
+                    }
+            );
+        } finally {
+            if (!responded[0]) {
+                pipelineMetrics.recordStage(Stage.DOWNLOAD, System.nanoTime() - started, false);
+            }
+        }
+    }
+
+    private static void conditionalHeaders(HttpHeaders request, HttpHeaders stored) {
+        if (stored.getETag() != null) {
+            request.setIfNoneMatch(stored.getETag());
+        } else if (stored.getLastModified() >= 0) {
+            request.setIfModifiedSince(stored.getLastModified());
+        }
+    }
+
+    /** Копия файла вытеснена между lookup и ответом 304. */
+    private static final class BlobEvicted extends RuntimeException {
+
+        private BlobEvicted() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Считает байты тела и время, проведённое в чтении из сети. */
+    private static final class TimedInputStream extends FilterInputStream {
+
+        private long nanos;
+        private long bytes;
+
+        private TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long started = System.nanoTime();
+            int b = super.read();
+            nanos += System.nanoTime() - started;
+            if (b >= 0) bytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long started = System.nanoTime();
+            int n = super.read(b, off, len);
+            nanos += System.nanoTime() - started;
+            if (n > 0) bytes += n;
+            return n;
+        }
+    }
+}
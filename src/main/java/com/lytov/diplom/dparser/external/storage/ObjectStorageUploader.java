@@ -0,0 +1,55 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import com.lytov.diplom.dparser.external.sppr_bd.SpprBdConnector;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Stage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Единая точка загрузки файлов в object storage по presigned PUT-ссылке из sppr-bd.
+ * Тело пишется прямо в соединение: длина заранее неизвестна, поэтому запрос уходит chunked,
+ * без byte[] на весь файл и без временных файлов.
+ * <p>
+ * Этапы presign и upload пишутся в {@link PipelineMetrics}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ObjectStorageUploader {
+
+    private final SpprBdConnector spprBdConnector;
+    private final RestTemplate restTemplate;
+    private final PipelineMetrics pipelineMetrics;
+
+    public void upload(UUID objectId, MediaType contentType, BodyWriter body) {
+        String uploadUrl = pipelineMetrics.stage(Stage.PRESIGN, () -> spprBdConnector.getUploadUrl(objectId));
+
+        URI uri = UriComponentsBuilder
+                .fromUriString(uploadUrl)
+                .build(true)             // подпись ссылки нельзя кодировать заново
+                .toUri();
+
+        pipelineMetrics.stage(Stage.UPLOAD, () -> restTemplate.execute(
+                uri,
+                HttpMethod.PUT,
+                request -> {
+                    request.getHeaders().setContentType(contentType);
+                    if (request instanceof StreamingHttpOutputMessage streaming) {
+                        // getBody() у потоковых запросов копит тело в памяти до отправки
+                        streaming.setBody(body::writeTo);
+                    } else {
+                        body.writeTo(request.getBody());
+                    }
+                },
+                response -> null
+        ));
+    }
+}
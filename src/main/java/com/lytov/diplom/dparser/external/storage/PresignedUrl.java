@@ -0,0 +1,40 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Presigned-ссылка и момент, когда она перестаёт действовать; {@code expiresAt == null} — срок не удалось прочитать.
+ */
+public record PresignedUrl(String url, Instant expiresAt) {
+
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    /**
+     * Срок берётся из query: SigV4 — X-Amz-Date + X-Amz-Expires, SigV2 — Expires (epoch seconds).
+     */
+    public static PresignedUrl parse(String url) {
+        MultiValueMap<String, String> query = UriComponentsBuilder.fromUriString(url).build(true).getQueryParams();
+        try {
+            String date = query.getFirst("X-Amz-Date");
+            String expires = query.getFirst("X-Amz-Expires");
+            if (date != null && expires != null) {
+                Instant signedAt = LocalDateTime.parse(date, AMZ_DATE).toInstant(ZoneOffset.UTC);
+                return new PresignedUrl(url, signedAt.plusSeconds(Long.parseLong(expires)));
+            }
+            String epoch = query.getFirst("Expires");
+            if (epoch != null) {
+                return new PresignedUrl(url, Instant.ofEpochSecond(Long.parseLong(epoch)));
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            // ссылка всё равно рабочая, просто не кэшируется
+        }
+        return new PresignedUrl(url, null);
+    }
+}
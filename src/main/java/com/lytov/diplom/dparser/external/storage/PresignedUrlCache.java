@@ -0,0 +1,166 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.lytov.diplom.dparser.configuration.storage.properties.PresignedUrlCacheProperties;
+import com.lytov.diplom.dparser.external.sppr_bd.SpprBdConnector;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Presigned-ссылки на скачивание по fileId. Ссылка живёт в кэше до истечения, зашитого в неё,
+ * минус {@link PresignedUrlCacheProperties#getRefreshBefore()}; ссылки без читаемого срока не кэшируются.
+ * <p>
+ * Одновременные запросы одного id ждут один вызов sppr-bd: в кэш кладётся незавершённый future, а сам вызов
+ * делает поток, который его положил, — вне блокировок кэша. {@link #prefetch} так же резервирует пачку id
+ * и заполняет её пакетным запросом.
+ */
+@Slf4j
+@Component
+public class PresignedUrlCache {
+
+    private static final String CACHE_NAME = "presigned-url";
+
+    private final SpprBdConnector spprBdConnector;
+    private final PresignedUrlCacheProperties properties;
+    private final Clock clock;
+    private final AsyncCache<UUID, PresignedUrl> cache;
+
+    @Autowired
+    public PresignedUrlCache(SpprBdConnector spprBdConnector,
+                             PresignedUrlCacheProperties properties,
+                             MeterRegistry meterRegistry) {
+        this(spprBdConnector, properties, meterRegistry, Clock.systemUTC(), Ticker.systemTicker());
+    }
+
+    PresignedUrlCache(SpprBdConnector spprBdConnector,
+                      PresignedUrlCacheProperties properties,
+                      MeterRegistry meterRegistry,
+                      Clock clock,
+                      Ticker ticker) {
+        this.spprBdConnector = spprBdConnector;
+        this.properties = properties;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfter(new Expiry<UUID, PresignedUrl>() {
+                    @Override
+                    public long expireAfterCreate(UUID id, PresignedUrl url, long currentTime) {
+                        return ttl(url).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID id, PresignedUrl url, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID id, PresignedUrl url, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public String downloadUrl(UUID fileId) {
+        if (!properties.isEnabled()) {
+            return spprBdConnector.getDownloadUrl(fileId);
+        }
+        // чужая загрузка (например, пакетная) могла упасть — тогда один раз пробуем сами
+        for (int attempt = 0; ; attempt++) {
+            CompletableFuture<PresignedUrl> created = new CompletableFuture<>();
+            CompletableFuture<PresignedUrl> future = cache.get(fileId, (id, executor) -> created);
+            if (future == created) {
+                try {
+                    created.complete(PresignedUrl.parse(spprBdConnector.getDownloadUrl(fileId)));
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                }
+            }
+            try {
+                return future.join().url();
+            } catch (CompletionException e) {
+                if (future == created || attempt > 0) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+                // кэш снимает упавший future сам, но может не успеть до повтора
+                cache.asMap().remove(fileId, future);
+            }
+        }
+    }
+
+    /** Ссылка отвергнута хранилищем (например, отозвана раньше срока) — следующий запрос возьмёт новую. */
+    public void invalidate(UUID fileId) {
+        cache.synchronous().invalidate(fileId);
+    }
+
+    /**
+     * Получает ссылки на ещё не закэшированные файлы пакетными запросами по {@link PresignedUrlCacheProperties#getBatchSize()}.
+     * Id, которых нет в ответе, и id из упавшего пакета при обращении запросятся по одному.
+     */
+    public void prefetch(Collection<UUID> fileIds) {
+        if (!properties.isEnabled()) return;
+
+        Map<UUID, CompletableFuture<PresignedUrl>> reserved = new LinkedHashMap<>();
+        for (UUID fileId : fileIds) {
+            CompletableFuture<PresignedUrl> created = new CompletableFuture<>();
+            if (cache.asMap().putIfAbsent(fileId, created) == null) {
+                reserved.put(fileId, created);
+            }
+        }
+
+        List<UUID> ids = new ArrayList<>(reserved.keySet());
+        try {
+            for (int from = 0; from < ids.size(); from += properties.getBatchSize()) {
+                List<UUID> batch = ids.subList(from, Math.min(ids.size(), from + properties.getBatchSize()));
+                Map<UUID, String> urls;
+                try {
+                    urls = spprBdConnector.getDownloadUrls(batch);
+                } catch (RuntimeException e) {
+                    log.warn("Batch presign of {} files failed, falling back to single requests", batch.size(), e);
+                    urls = Map.of();
+                }
+                for (UUID fileId : batch) {
+                    String url = urls == null ? null : urls.get(fileId);
+                    if (url != null) {
+                        reserved.get(fileId).complete(PresignedUrl.parse(url));
+                    }
+                }
+            }
+        } finally {
+            // незаполненные резервы снимаются, иначе ждущие их потоки повисли бы
+            IllegalStateException missing = new IllegalStateException("No presigned url in batch response");
+            reserved.values().forEach(future -> future.completeExceptionally(missing));
+        }
+    }
+
+    private Duration ttl(PresignedUrl url) {
+        if (url.expiresAt() == null) {
+            return Duration.ZERO;
+        }
+        Duration left = Duration.between(clock.instant(), url.expiresAt()).minus(properties.getRefreshBefore());
+        if (left.isNegative()) {
+            return Duration.ZERO;
+        }
+        return left.compareTo(properties.getMaxTtl()) < 0 ? left : properties.getMaxTtl();
+    }
+}
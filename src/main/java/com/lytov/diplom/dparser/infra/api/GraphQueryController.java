@@ -0,0 +1,55 @@
+package com.lytov.diplom.dparser.infra.api;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.GraphDirection;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphNeighbourDto;
+import com.lytov.diplom.dparser.service.dto.GraphPathsDto;
+import com.lytov.diplom.dparser.service.dto.GraphReachabilityDto;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запросы к графу файла, который сервис уже строил; граф целиком не передаётся.
+ * Достижимость и пути — по sequence flow.
+ */
+@Tag(name = "Запросы к графу")
+@RequestMapping("/api/v0/graphs/{fileId}")
+public interface GraphQueryController {
+
+    @GetMapping("/nodes")
+    ResponseEntity<List<BpmnGraph.BpmnNode>> nodes(@PathVariable("fileId") UUID fileId,
+                                                   @RequestParam("type") NodeType type);
+
+    @GetMapping("/nodes/{nodeId}/neighbours")
+    ResponseEntity<List<GraphNeighbourDto>> neighbours(@PathVariable("fileId") UUID fileId,
+                                                       @PathVariable("nodeId") String nodeId,
+                                                       @RequestParam(value = "direction", defaultValue = "BOTH") GraphDirection direction,
+                                                       @RequestParam(value = "edgeType", required = false) EdgeType edgeType);
+
+    @GetMapping("/reachability")
+    ResponseEntity<GraphReachabilityDto> reachability(@PathVariable("fileId") UUID fileId,
+                                                      @RequestParam("from") String from,
+                                                      @RequestParam("to") String to);
+
+    /**
+     * Простые пути; {@code limit} не больше d-parser.graph.query.max-paths, truncated — путей больше.
+     */
+    @GetMapping("/paths")
+    ResponseEntity<GraphPathsDto> paths(@PathVariable("fileId") UUID fileId,
+                                        @RequestParam("from") String from,
+                                        @RequestParam("to") String to,
+                                        @RequestParam(value = "limit", required = false) Integer limit);
+
+    @GetMapping("/data-stores/{dataStoreId}/nodes")
+    ResponseEntity<List<BpmnGraph.BpmnNode>> dataStoreNodes(@PathVariable("fileId") UUID fileId,
+                                                            @PathVariable("dataStoreId") String dataStoreId);
+}
@@ -0,0 +1,49 @@
+package com.lytov.diplom.dparser.infra.api;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.GraphDirection;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.api.GraphQueryService;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphNeighbourDto;
+import com.lytov.diplom.dparser.service.dto.GraphPathsDto;
+import com.lytov.diplom.dparser.service.dto.GraphReachabilityDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequiredArgsConstructor
+public class GraphQueryControllerImpl implements GraphQueryController {
+
+    private final GraphQueryService service;
+
+    @Override
+    public ResponseEntity<List<BpmnGraph.BpmnNode>> nodes(UUID fileId, NodeType type) {
+        return ResponseEntity.ok(service.nodes(fileId, type));
+    }
+
+    @Override
+    public ResponseEntity<List<GraphNeighbourDto>> neighbours(UUID fileId, String nodeId,
+                                                              GraphDirection direction, EdgeType edgeType) {
+        return ResponseEntity.ok(service.neighbours(fileId, nodeId, direction, edgeType));
+    }
+
+    @Override
+    public ResponseEntity<GraphReachabilityDto> reachability(UUID fileId, String from, String to) {
+        return ResponseEntity.ok(service.reachability(fileId, from, to));
+    }
+
+    @Override
+    public ResponseEntity<GraphPathsDto> paths(UUID fileId, String from, String to, Integer limit) {
+        return ResponseEntity.ok(service.paths(fileId, from, to, limit));
+    }
+
+    @Override
+    public ResponseEntity<List<BpmnGraph.BpmnNode>> dataStoreNodes(UUID fileId, String dataStoreId) {
+        return ResponseEntity.ok(service.dataStoreNodes(fileId, dataStoreId));
+    }
+}
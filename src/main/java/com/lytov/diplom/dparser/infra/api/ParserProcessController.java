@@ -1,11 +1,17 @@
 package com.lytov.diplom.dparser.infra.api;
 
 import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.dto.ParseJobDto;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.UUID;
@@ -16,4 +22,26 @@ public interface ParserProcessController {
 
     @PostMapping("/{id}")
     ResponseEntity<List<Component>> parse(@PathVariable("id") UUID id);
+
+    /**
+     * Разбор пачки файлов; ответ — NDJSON, по строке на файл по мере готовности.
+     * Ошибка файла приходит в его строке (поле error), остальные файлы продолжают разбираться.
+     */
+    @PostMapping(value = "/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<ResponseBodyEmitter> parseBulk(@RequestBody List<UUID> ids);
+
+    /**
+     * Разбор без ожидания: 202 с задачей и Location на неё; 503, если очередь заполнена.
+     */
+    @PostMapping("/{id}/jobs")
+    ResponseEntity<ParseJobDto> submitParse(@PathVariable("id") UUID id);
+
+    @GetMapping("/jobs/{jobId}")
+    ResponseEntity<ParseJobDto> getJob(@PathVariable("jobId") UUID jobId);
+
+    /**
+     * Изменения задачи событиями parse-job; поток закрывается после SUCCEEDED/FAILED.
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<SseEmitter> jobEvents(@PathVariable("jobId") UUID jobId);
 }
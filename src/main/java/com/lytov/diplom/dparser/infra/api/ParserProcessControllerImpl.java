@@ -1,12 +1,20 @@
 package com.lytov.diplom.dparser.infra.api;
 
+import com.lytov.diplom.dparser.service.api.BulkParserProcessService;
+import com.lytov.diplom.dparser.service.api.ParseJobService;
 import com.lytov.diplom.dparser.service.api.ParserProcessService;
 import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.dto.ParseJobDto;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
 import java.util.List;
 import java.util.UUID;
 
@@ -15,8 +23,37 @@ import java.util.UUID;
 public class ParserProcessControllerImpl implements ParserProcessController {
 
     private final ParserProcessService service;
+    private final ParseJobService parseJobService;
+    private final BulkParserProcessService bulkService;
     @Override
     public ResponseEntity<List<Component>> parse(UUID fileId) {
         return ResponseEntity.ok(service.parserProcess(fileId));
     }
+
+    @Override
+    public ResponseEntity<ResponseBodyEmitter> parseBulk(List<UUID> fileIds) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(bulkService.parse(fileIds));
+    }
+
+    @Override
+    public ResponseEntity<ParseJobDto> submitParse(UUID fileId) {
+        ParseJobDto job = parseJobService.submit(fileId);
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v0/parsing-process/jobs/{jobId}")
+                .buildAndExpand(job.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    @Override
+    public ResponseEntity<ParseJobDto> getJob(UUID jobId) {
+        return ResponseEntity.of(parseJobService.find(jobId));
+    }
+
+    @Override
+    public ResponseEntity<SseEmitter> jobEvents(UUID jobId) {
+        return ResponseEntity.of(parseJobService.subscribe(jobId));
+    }
 }
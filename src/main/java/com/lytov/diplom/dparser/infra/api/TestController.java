@@ -10,7 +10,6 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.FileNotFoundException;
 import java.util.UUID;
 
 @RestController
@@ -19,7 +18,7 @@ public class TestController {
     private final BpmnToGraphParserImpl bpmnToGraphParserImpl;
 
     @PostMapping("/test")
-    public void test(@RequestBody Test test) throws FileNotFoundException, JsonProcessingException {
+    public void test(@RequestBody Test test) throws JsonProcessingException {
         bpmnToGraphParserImpl.createGraph(test.getFileId(), test.getProcessId());
     }
 
@@ -0,0 +1,15 @@
+package com.lytov.diplom.dparser.service.api;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface BulkParserProcessService {
+
+    /**
+     * Разбирает файлы параллельно и отдаёт NDJSON: по строке {@code BulkParseResultDto} на файл
+     * в порядке готовности. Ошибка одного файла попадает в его строку и не прерывает остальные.
+     */
+    ResponseBodyEmitter parse(List<UUID> fileIds);
+}
@@ -4,11 +4,14 @@ import com.lytov.diplom.dparser.domain.enums.ModelType;
 import com.lytov.diplom.dparser.service.dto.Component;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.List;
 
 public interface ComponentParser {
 
     List<Component> parserComponents(File file);
 
+    List<Component> parserComponents(InputStream bpmnStream);
+
     ModelType getModelType();
 }
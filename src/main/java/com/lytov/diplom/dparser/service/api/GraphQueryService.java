@@ -0,0 +1,35 @@
+package com.lytov.diplom.dparser.service.api;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.GraphDirection;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphNeighbourDto;
+import com.lytov.diplom.dparser.service.dto.GraphPathsDto;
+import com.lytov.diplom.dparser.service.dto.GraphReachabilityDto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Точечные запросы к графу файла без передачи графа целиком.
+ * Неизвестный id вершины — {@link com.lytov.diplom.dparser.exception.GraphNodeNotFound}; файл, граф которого
+ * ещё не строили, — {@link com.lytov.diplom.dparser.exception.GraphNotBuilt}.
+ */
+public interface GraphQueryService {
+
+    /** Узлы типа {@code type} в порядке графа. */
+    List<BpmnGraph.BpmnNode> nodes(UUID fileId, NodeType type);
+
+    /** Соседи вершины; {@code edgeType == null} — по рёбрам любого типа. */
+    List<GraphNeighbourDto> neighbours(UUID fileId, String nodeId, GraphDirection direction, EdgeType edgeType);
+
+    /** Достижимость по sequence flow. */
+    GraphReachabilityDto reachability(UUID fileId, String from, String to);
+
+    /** Простые пути по sequence flow; {@code limit == null} — сколько позволяет конфигурация. */
+    GraphPathsDto paths(UUID fileId, String from, String to, Integer limit);
+
+    /** Узлы, связанные с хранилищем данных data association в любую сторону. */
+    List<BpmnGraph.BpmnNode> dataStoreNodes(UUID fileId, String dataStoreId);
+}
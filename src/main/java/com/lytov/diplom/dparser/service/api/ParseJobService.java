@@ -0,0 +1,21 @@
+package com.lytov.diplom.dparser.service.api;
+
+import com.lytov.diplom.dparser.service.dto.ParseJobDto;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ParseJobService {
+
+    /**
+     * Ставит разбор файла в очередь и сразу возвращает задачу в статусе QUEUED.
+     * Если очередь заполнена — {@link com.lytov.diplom.dparser.exception.ParseJobRejected}.
+     */
+    ParseJobDto submit(UUID fileId);
+
+    Optional<ParseJobDto> find(UUID jobId);
+
+    /** SSE-поток изменений задачи; пусто, если задачи нет. */
+    Optional<SseEmitter> subscribe(UUID jobId);
+}
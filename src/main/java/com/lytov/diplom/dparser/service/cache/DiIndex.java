@@ -0,0 +1,25 @@
+package com.lytov.diplom.dparser.service.cache;
+
+import java.util.Map;
+
+/**
+ * Индекс BPMNDI исходной модели: id BPMN-элемента -> границы его shape.
+ * Хранит только значения, поэтому разделяется между запросами разметки, работающими с копиями модели.
+ */
+public record DiIndex(Map<String, ShapeBounds> shapes) {
+
+    public DiIndex {
+        shapes = Map.copyOf(shapes);
+    }
+
+    public record ShapeBounds(double x, double y, double width, double height) {
+
+        public double centerX() {
+            return x + width / 2.0;
+        }
+
+        public double centerY() {
+            return y + height / 2.0;
+        }
+    }
+}
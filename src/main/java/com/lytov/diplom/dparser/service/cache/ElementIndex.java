@@ -0,0 +1,33 @@
+package com.lytov.diplom.dparser.service.cache;
+
+import java.util.Map;
+
+/**
+ * Индекс BPMN-элементов исходной модели для разметки: для каждого id — тип, ближайший контейнер
+ * (process/subProcess, включая сам элемент), ближайшая activity и концы ребра.
+ * Как и {@link DiIndex}, хранит только строки и разделяется между запросами, работающими с копиями модели.
+ */
+public record ElementIndex(Map<String, ElementInfo> elements) {
+
+    public ElementIndex {
+        elements = Map.copyOf(elements);
+    }
+
+    public ElementInfo get(String id) {
+        return id == null ? null : elements.get(id);
+    }
+
+    /**
+     * @param container id ближайшего process/subProcess вверх от элемента, считая его самого
+     * @param activity  id ближайшей activity вверх от элемента, считая его самого
+     * @param sourceRef sourceRef ребра (sequenceFlow, association), иначе {@code null}
+     * @param targetRef targetRef ребра, иначе {@code null}
+     */
+    public record ElementInfo(String id, String type, String container, String activity,
+                              String sourceRef, String targetRef) {
+
+        public boolean isActivity() {
+            return id.equals(activity);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.lytov.diplom.dparser.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lytov.diplom.dparser.configuration.cache.properties.GraphIndexCacheProperties;
+import com.lytov.diplom.dparser.exception.GraphNotBuilt;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.graph.GraphIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Индексы графов для запросов API по fileId.
+ * <p>
+ * Граф берётся только у {@link ParsedBpmnCache#peek}: из памяти или базы, без object storage и без разбора
+ * на потоке запроса. Файл, граф которого ещё не строили, — {@link GraphNotBuilt}. Индекс привязан к экземпляру
+ * графа и перестраивается, как только create-graph разберёт в этом процессе новую версию; живёт
+ * {@link GraphIndexCacheProperties#getExpireAfterAccess()} без запросов. Вытеснение — по суммарному числу
+ * вершин и рёбер.
+ */
+@Service
+public class GraphIndexCache {
+
+    private static final String METRIC_PREFIX = "d-parser.cache.graph-index";
+
+    private final ParsedBpmnCache parsedBpmnCache;
+    private final int maxMemoizedReachability;
+    private final Cache<UUID, GraphIndex> cache;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public GraphIndexCache(ParsedBpmnCache parsedBpmnCache,
+                           GraphIndexCacheProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.parsedBpmnCache = parsedBpmnCache;
+        this.maxMemoizedReachability = properties.getMaxMemoizedReachability();
+
+        this.hits = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "miss").register(meterRegistry);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxWeight())
+                .weigher((UUID key, GraphIndex value) -> value.weight())
+                .expireAfterAccess(properties.getExpireAfterAccess())
+                .build();
+
+        Gauge.builder(METRIC_PREFIX + ".size", cache, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    /**
+     * Индекс последнего построенного графа. Готовый индекс сверяется только с графом в памяти
+     * {@link ParsedBpmnCache}; база читается, когда индекса нет.
+     */
+    public GraphIndex get(UUID fileId) {
+        CompactBpmnGraph graph = parsedBpmnCache.peekInMemory(fileId, ParsedBpmn::getGraph);
+        GraphIndex index = cache.getIfPresent(fileId);
+        if (index != null && (graph == null || index.graph() == graph)) {
+            hits.increment();
+            return index;
+        }
+        misses.increment();
+        if (graph == null) {
+            graph = parsedBpmnCache.peek(fileId, ParsedBpmn::getGraph);
+            if (graph == null) {
+                throw new GraphNotBuilt(fileId);
+            }
+        }
+        CompactBpmnGraph built = graph;
+        return cache.asMap().compute(fileId, (id, current) -> current != null && current.graph() == built
+                ? current
+                : GraphIndex.of(built, maxMemoizedReachability));
+    }
+}
@@ -0,0 +1,173 @@
+package com.lytov.diplom.dparser.service.cache;
+
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.Component;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Результаты разбора одной версии BPMN-файла. Слоты заполняются независимо тем путём,
+ * который первым разобрал файл: граф, компоненты, исходная модель Camunda и индексы её DI и элементов.
+ * <p>
+ * Модель хранится нетронутой: разметка получает её копию через {@link #copyModel()}.
+ * DOM не гарантирует потокобезопасного чтения, поэтому все обращения к модели идут под монитором записи.
+ */
+public final class ParsedBpmn {
+
+    /** DOM Camunda занимает примерно на порядок больше исходного XML. */
+    private static final int MODEL_WEIGHT_FACTOR = 10;
+    /** Оценка байт исходного XML на вершину, ребро или компонент, когда запись восстановлена из базы. */
+    private static final int RESTORED_BYTES_PER_ELEMENT = 200;
+
+    private final ParsedBpmnKey key;
+    private final long lastModified;
+
+    private volatile long sourceBytes;
+    private volatile CompactBpmnGraph graph;
+    private volatile List<Component> components;
+    private volatile boolean graphStored;
+    private volatile boolean componentsStored;
+    private BpmnModelInstance model;
+    private DiIndex diIndex;
+    private ElementIndex elementIndex;
+
+    public ParsedBpmn(ParsedBpmnKey key) {
+        this(key, -1);
+    }
+
+    /**
+     * @param lastModified Last-Modified ответа, из которого разобрана версия; {@code -1} — не пришёл
+     */
+    public ParsedBpmn(ParsedBpmnKey key, long lastModified) {
+        this.key = key;
+        this.lastModified = lastModified;
+    }
+
+    public ParsedBpmnKey getKey() {
+        return key;
+    }
+
+    /**
+     * Заголовки для условного запроса этой версии: ETag, а для версии по хэшу — Last-Modified.
+     * Пусто, если сверить версию без тела нельзя.
+     */
+    public HttpHeaders validators() {
+        HttpHeaders headers = new HttpHeaders();
+        if (key.version() != null && !key.isContentHash()) {
+            headers.setETag("\"" + key.version() + "\"");
+        } else if (lastModified >= 0) {
+            headers.setLastModified(lastModified);
+        }
+        return headers;
+    }
+
+    public CompactBpmnGraph getGraph() {
+        return graph;
+    }
+
+    public void setGraph(CompactBpmnGraph graph) {
+        this.graph = graph;
+    }
+
+    public List<Component> getComponents() {
+        return components;
+    }
+
+    public void setComponents(List<Component> components) {
+        this.components = List.copyOf(components);
+    }
+
+    public synchronized boolean hasModel() {
+        return model != null;
+    }
+
+    public synchronized void setModel(BpmnModelInstance model) {
+        this.model = model;
+        this.diIndex = null;
+        this.elementIndex = null;
+    }
+
+    /** Вычисление над исходной моделью; модель менять нельзя. */
+    public synchronized <T> T withModel(Function<BpmnModelInstance, T> function) {
+        if (model == null) {
+            throw new IllegalStateException("Model is not loaded for " + key);
+        }
+        return function.apply(model);
+    }
+
+    public synchronized BpmnModelInstance copyModel() {
+        return withModel(BpmnModelInstance::clone);
+    }
+
+    public synchronized DiIndex diIndex(Function<BpmnModelInstance, DiIndex> indexer) {
+        if (diIndex == null) {
+            diIndex = withModel(indexer);
+        }
+        return diIndex;
+    }
+
+    public synchronized ElementIndex elementIndex(Function<BpmnModelInstance, ElementIndex> indexer) {
+        if (elementIndex == null) {
+            elementIndex = withModel(indexer);
+        }
+        return elementIndex;
+    }
+
+    /** Заполняет пустые слоты результатами той же версии: разобранными во временную запись или из базы. */
+    void fillFrom(ParsedBpmn parsed) {
+        if (graph == null) {
+            graph = parsed.graph;
+            graphStored = parsed.graphStored;
+        }
+        if (components == null) {
+            components = parsed.components;
+            componentsStored = parsed.componentsStored;
+        }
+        BpmnModelInstance parsedModel;
+        synchronized (parsed) {
+            parsedModel = parsed.model;
+        }
+        synchronized (this) {
+            if (model == null && parsedModel != null) {
+                setModel(parsedModel);
+            }
+        }
+        addSourceBytes(parsed.sourceBytes);
+    }
+
+    boolean isGraphStored() {
+        return graphStored;
+    }
+
+    void markGraphStored() {
+        graphStored = true;
+    }
+
+    boolean isComponentsStored() {
+        return componentsStored;
+    }
+
+    void markComponentsStored() {
+        componentsStored = true;
+    }
+
+    /** Исходного XML у восстановленной записи нет, вес оценивается по размеру слотов. */
+    long restoredBytes() {
+        long elements = 0;
+        if (graph != null) elements += graph.vertexCount() + graph.edgeCount();
+        if (components != null) elements += components.size();
+        return elements * RESTORED_BYTES_PER_ELEMENT;
+    }
+
+    void addSourceBytes(long bytes) {
+        sourceBytes = Math.max(sourceBytes, bytes);
+    }
+
+    int weight() {
+        long weight = hasModel() ? sourceBytes * MODEL_WEIGHT_FACTOR : sourceBytes;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, weight));
+    }
+}
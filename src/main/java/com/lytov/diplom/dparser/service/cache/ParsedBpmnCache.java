@@ -0,0 +1,501 @@
+package com.lytov.diplom.dparser.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.lytov.diplom.dparser.configuration.cache.ParseResultStoreExecutorConfiguration;
+import com.lytov.diplom.dparser.configuration.cache.properties.ParsedBpmnCacheProperties;
+import com.lytov.diplom.dparser.domain.repository.ParseResultRepository;
+import com.lytov.diplom.dparser.domain.repository.ParseResultRepository.StoredParseResult;
+import com.lytov.diplom.dparser.external.storage.FetchedFile;
+import com.lytov.diplom.dparser.external.storage.ObjectStorageFetcher;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.concurrency.ParseLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Кэш разобранных BPMN-файлов, общий для построения графа, разбора компонентов и разметки.
+ * <p>
+ * Запись ищется по fileId и хранит последнюю разобранную версию (ETag из object storage). Попадание
+ * подтверждается условным запросом с её ETag: на 304 тело не передаётся вовсе, на 200 разбирается новая версия
+ * из того же ответа. Одновременные промахи по одной версии ждут один разбор. Если ETag нет, версией становится
+ * sha-256 тела, который считается по ходу чтения без буферизации; такую запись без Last-Modified подтверждает
+ * только совпадение хэша. Вытеснение — по суммарному весу записей (см. {@link ParsedBpmn}).
+ * <p>
+ * Вторым уровнем служит {@link ParseResultRepository}. Если в памяти нужного слота нет, до запроса файла
+ * в Postgres ищется последняя сохранённая версия: её ETag подтверждается тем же условным запросом, и на 304
+ * результат берётся из базы без тела. Граф и компоненты, разобранные заново, записываются в базу в пуле
+ * {@link ParseResultStoreExecutorConfiguration#PARSE_RESULT_STORE_EXECUTOR} уже после ответа.
+ * Ошибка базы не мешает разбору — файл просто разбирается и не сохраняется.
+ */
+@Slf4j
+@Service
+public class ParsedBpmnCache {
+
+    private static final String METRIC_PREFIX = "d-parser.cache.parsed-bpmn";
+
+    private final ObjectStorageFetcher objectStorageFetcher;
+    private final ParseLimiter parseLimiter;
+    private final ParseResultRepository parseResultRepository;
+    private final TaskExecutor storeExecutor;
+    private final boolean enabled;
+    /** Последняя разобранная версия по fileId: попадание проверяется условным запросом без тела. */
+    private final Cache<UUID, ParsedBpmn> cache;
+    private final ConcurrentMap<ParsedBpmnKey, CompletableFuture<Void>> loading = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stored;
+    private final Counter evictions;
+
+    public ParsedBpmnCache(ObjectStorageFetcher objectStorageFetcher,
+                           ParseLimiter parseLimiter,
+                           ParseResultRepository parseResultRepository,
+                           @Qualifier(ParseResultStoreExecutorConfiguration.PARSE_RESULT_STORE_EXECUTOR)
+                           TaskExecutor storeExecutor,
+                           ParsedBpmnCacheProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.objectStorageFetcher = objectStorageFetcher;
+        this.parseLimiter = parseLimiter;
+        this.parseResultRepository = parseResultRepository;
+        this.storeExecutor = storeExecutor;
+        this.enabled = properties.isEnabled();
+
+        this.hits = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "miss").register(meterRegistry);
+        this.stored = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "stored").register(meterRegistry);
+        this.evictions = Counter.builder(METRIC_PREFIX + ".evictions").register(meterRegistry);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxWeight().toBytes())
+                .weigher((UUID fileId, ParsedBpmn value) -> value.weight())
+                .expireAfterAccess(properties.getExpireAfterAccess())
+                .removalListener((UUID fileId, ParsedBpmn value, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+
+        Gauge.builder(METRIC_PREFIX + ".size", cache, Cache::estimatedSize).register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".weight", cache,
+                        c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает результат из кэша, если {@code cached} нашёл его в записи текущей версии файла,
+     * иначе разбирает тело через {@code loader}, который сам кладёт результат в запись.
+     *
+     * @param cached читает нужный слот записи; {@code null} — слот пуст
+     * @param loader разбирает тело файла и заполняет слоты записи
+     */
+    public <T> T get(UUID fileId, Function<ParsedBpmn, T> cached, SourceLoader<T> loader) {
+        return get(fileId, cached, loader, SourcePreparer.NONE);
+    }
+
+    /** Результат последней разобранной версии, если он есть в памяти; ни сети, ни базы. */
+    public <T> T peekInMemory(UUID fileId, Function<ParsedBpmn, T> cached) {
+        ParsedBpmn entry = cache.getIfPresent(fileId);
+        return entry != null ? cached.apply(entry) : null;
+    }
+
+    /**
+     * Результат последней разобранной версии без обращения к object storage и без разбора:
+     * из памяти, иначе из базы. Версия не сверяется с файлом — это то, что сервис разобрал последним.
+     *
+     * @return {@code null}, если файл ещё не разбирали или нужный слот пуст
+     */
+    public <T> T peek(UUID fileId, Function<ParsedBpmn, T> cached) {
+        ParsedBpmn entry = cache.getIfPresent(fileId);
+        T value = entry != null ? cached.apply(entry) : null;
+        if (value != null) {
+            return hit(value);
+        }
+        ParsedBpmn restored = lookupStored(fileId).entry();
+        value = restored != null ? cached.apply(restored) : null;
+        if (value == null || entry != null && !entry.getKey().equals(restored.getKey())) {
+            // в памяти другая версия: её слот ещё не заполнен, а сохранённый относится к другому содержимому
+            return null;
+        }
+        if (enabled) {
+            // запись из базы без Last-Modified: следующий get всё равно сверит её ETag
+            if (entry != null) {
+                entry.fillFrom(restored);
+                cache.put(fileId, entry);
+            } else {
+                cache.asMap().putIfAbsent(fileId, restored);
+            }
+        }
+        stored.increment();
+        return value;
+    }
+
+    /**
+     * То же, но при промахе тело сначала проходит через {@code preparer} и только потом
+     * разбирается под разрешением {@link ParseLimiter}: так пакетный разбор дочитывает тело из сети,
+     * не занимая слот CPU-разбора.
+     */
+    public <T> T get(UUID fileId, Function<ParsedBpmn, T> cached, SourceLoader<T> loader, SourcePreparer preparer) {
+        if (!enabled) {
+            return objectStorageFetcher.fetch(fileId, file -> {
+                FetchedFile prepared = preparer.prepare(file);
+                return parseLimiter.call(() -> loader.load(prepared, new ParsedBpmn(new ParsedBpmnKey(fileId, null))));
+            });
+        }
+
+        ParsedBpmn entry = cache.getIfPresent(fileId);
+        T value = entry != null ? cached.apply(entry) : null;
+        StoreLookup lookup = StoreLookup.NONE;
+        if (value == null) {
+            lookup = lookupStored(fileId);
+            if (lookup.entry() != null && (value = cached.apply(lookup.entry())) != null) {
+                entry = lookup.entry();
+            }
+        }
+        StoreLookup stored = lookup;
+        if (value != null) {
+            ParsedBpmn known = entry;
+            T knownValue = value;
+            HttpHeaders validators = known.validators();
+            if (!validators.isEmpty()) {
+                return objectStorageFetcher.fetch(fileId, validators, () -> confirmed(known, knownValue),
+                        file -> load(file, cached, loader, preparer, null, stored));
+            }
+            try {
+                return objectStorageFetcher.fetch(fileId, file -> load(file, cached, loader, preparer, known, stored));
+            } catch (ContentChanged e) {
+                log.debug("Content of fileId={} changed, parsing it again", fileId);
+            }
+        }
+        return objectStorageFetcher.fetch(fileId, file -> load(file, cached, loader, preparer, null, stored));
+    }
+
+    /**
+     * Тело изменившегося или ещё не разобранного файла. С ETag ключ известен до чтения тела,
+     * и одновременные промахи по нему ждут один разбор; без ETag версия — sha-256, который считается по ходу чтения.
+     *
+     * @param unversioned запись без валидаторов, которую нужно сверить по хэшу тела, или {@code null}
+     * @param lookup      что нашлось в базе до запроса файла
+     */
+    private <T> T load(FetchedFile file, Function<ParsedBpmn, T> cached, SourceLoader<T> loader,
+                       SourcePreparer preparer, ParsedBpmn unversioned, StoreLookup lookup) throws IOException {
+        String version = normalizeEtag(file.etag());
+        if (version == null) {
+            return loadUnversioned(file, cached, loader, preparer, unversioned, lookup);
+        }
+
+        ParsedBpmnKey key = new ParsedBpmnKey(file.fileId(), version);
+        for (;;) {
+            ParsedBpmn entry = entryFor(key);
+            if (entry != null) {
+                T value = cached.apply(entry);
+                if (value != null) {
+                    return hit(value);
+                }
+            } else {
+                entry = storedEntry(key, lookup, file.headers().getLastModified());
+                T value = cached.apply(entry);
+                if (value != null) {
+                    return confirmed(entry, value);
+                }
+            }
+
+            CompletableFuture<Void> loaded = new CompletableFuture<>();
+            CompletableFuture<Void> running = loading.putIfAbsent(key, loaded);
+            if (running != null) {
+                // тот же ключ уже разбирается: ждём его и смотрим слот ещё раз, тело пока не читается
+                running.exceptionally(e -> null).join();
+                continue;
+            }
+            try {
+                misses.increment();
+                T value = parse(file, entry, loader, preparer);
+                // повторный put пересчитывает вес записи после заполнения слотов
+                cache.put(key.fileId(), entry);
+                persist(entry);
+                return value;
+            } finally {
+                loading.remove(key, loaded);
+                loaded.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Без ETag тело читается один раз через sha-256: запись без валидаторов сверяется по хэшу без разбора,
+     * новое содержимое разбирается во временную запись, которая затем сливается с записью своей версии.
+     */
+    private <T> T loadUnversioned(FetchedFile file, Function<ParsedBpmn, T> cached, SourceLoader<T> loader,
+                                  SourcePreparer preparer, ParsedBpmn unversioned, StoreLookup lookup)
+            throws IOException {
+        MessageDigest digest = sha256();
+        DigestInputStream body = new DigestInputStream(file.body(), digest);
+        if (unversioned != null) {
+            body.transferTo(OutputStream.nullOutputStream());
+            if (!contentHash(digest).equals(unversioned.getKey().version())) {
+                throw new ContentChanged();
+            }
+            return confirmed(unversioned, cached.apply(unversioned));
+        }
+
+        misses.increment();
+        ParsedBpmn parsed = new ParsedBpmn(new ParsedBpmnKey(file.fileId(), null), file.headers().getLastModified());
+        T value = parse(new FetchedFile(file.fileId(), file.headers(), body), parsed, loader, preparer);
+        // хэш должен покрыть всё тело, а парсер мог остановиться раньше
+        body.transferTo(OutputStream.nullOutputStream());
+
+        ParsedBpmnKey key = new ParsedBpmnKey(file.fileId(), contentHash(digest));
+        ParsedBpmn entry = entryFor(key);
+        if (entry == null) {
+            entry = storedEntry(key, lookup, file.headers().getLastModified());
+        }
+        entry.fillFrom(parsed);
+        cache.put(key.fileId(), entry);
+        persist(entry);
+        return value;
+    }
+
+    private <T> T parse(FetchedFile file, ParsedBpmn entry, SourceLoader<T> loader, SourcePreparer preparer)
+            throws IOException {
+        FetchedFile prepared = preparer.prepare(file);
+        CountingInputStream body = new CountingInputStream(prepared.body());
+        FetchedFile counted = new FetchedFile(prepared.fileId(), prepared.headers(), body);
+        T value = parseLimiter.call(() -> loader.load(counted, entry));
+        entry.addSourceBytes(body.count);
+        return value;
+    }
+
+    /** Запись кэша, если она той же версии. */
+    private ParsedBpmn entryFor(ParsedBpmnKey key) {
+        ParsedBpmn entry = cache.getIfPresent(key.fileId());
+        return entry != null && entry.getKey().equals(key) ? entry : null;
+    }
+
+    private <T> T hit(T value) {
+        hits.increment();
+        return value;
+    }
+
+    /**
+     * Версия записи подтверждена без разбора. Запись из базы с этого момента живёт в памяти:
+     * слоты переносятся в запись той же версии, если она там есть.
+     */
+    private <T> T confirmed(ParsedBpmn entry, T value) {
+        UUID fileId = entry.getKey().fileId();
+        ParsedBpmn current = cache.getIfPresent(fileId);
+        if (current == entry) {
+            return hit(value);
+        }
+        if (current != null && current.getKey().equals(entry.getKey())) {
+            current.fillFrom(entry);
+        } else {
+            current = entry;
+        }
+        cache.put(fileId, current);
+        stored.increment();
+        return value;
+    }
+
+    /** Последняя сохранённая версия файла, пока не подтверждённая object storage. */
+    private StoreLookup lookupStored(UUID fileId) {
+        if (!parseResultRepository.isEnabled()) return StoreLookup.NONE;
+        try {
+            return parseResultRepository.findLatest(fileId)
+                    .map(result -> {
+                        ParsedBpmn entry = new ParsedBpmn(new ParsedBpmnKey(fileId, result.version()));
+                        fill(entry, result);
+                        return new StoreLookup(entry, true);
+                    })
+                    .orElse(StoreLookup.EMPTY);
+        } catch (RuntimeException e) {
+            log.warn("Failed to read stored parse result for fileId={}", fileId, e);
+            return StoreLookup.NONE;
+        }
+    }
+
+    /**
+     * Запись версии {@code key}, которой нет в памяти: найденная до запроса, если версия та же,
+     * иначе новая. База опрашивается по версии, только если до запроса её не спрашивали.
+     */
+    private ParsedBpmn storedEntry(ParsedBpmnKey key, StoreLookup lookup, long lastModified) {
+        if (lookup.entry() != null && lookup.entry().getKey().equals(key)) {
+            return lookup.entry();
+        }
+        ParsedBpmn entry = new ParsedBpmn(key, lastModified);
+        if (!lookup.checked()) {
+            restore(entry);
+        }
+        return entry;
+    }
+
+    /** Заполняет слоты записи из базы по её версии. */
+    private void restore(ParsedBpmn entry) {
+        if (!parseResultRepository.isEnabled()) return;
+        ParsedBpmnKey key = entry.getKey();
+        try {
+            fill(entry, parseResultRepository.find(key.fileId(), key.version()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to read stored parse result for {}", key, e);
+        }
+    }
+
+    private static void fill(ParsedBpmn entry, StoredParseResult result) {
+        if (result.graph() != null) {
+            entry.setGraph(result.graph());
+            entry.markGraphStored();
+        }
+        if (result.components() != null) {
+            entry.setComponents(result.components());
+            entry.markComponentsStored();
+        }
+        entry.addSourceBytes(entry.restoredBytes());
+    }
+
+    /**
+     * Отдаёт в пул записи слоты, которые разобраны в этом процессе и ещё не сохранены. Ответ их не ждёт:
+     * до окончания записи другой экземпляр разберёт файл сам, а при переполненной очереди запись пропускается.
+     */
+    private void persist(ParsedBpmn entry) {
+        if (!parseResultRepository.isEnabled()) return;
+        if ((entry.getGraph() == null || entry.isGraphStored())
+                && (entry.getComponents() == null || entry.isComponentsStored())) {
+            return;
+        }
+        try {
+            storeExecutor.execute(() -> store(entry));
+        } catch (TaskRejectedException e) {
+            log.warn("Parse result store queue is full, {} is not stored", entry.getKey());
+        }
+    }
+
+    private void store(ParsedBpmn entry) {
+        ParsedBpmnKey key = entry.getKey();
+        try {
+            CompactBpmnGraph graph = entry.getGraph();
+            if (graph != null && !entry.isGraphStored()) {
+                parseResultRepository.saveGraph(key.fileId(), key.version(), graph);
+                entry.markGraphStored();
+            }
+            List<Component> components = entry.getComponents();
+            if (components != null && !entry.isComponentsStored()) {
+                parseResultRepository.saveComponents(key.fileId(), key.version(), components);
+                entry.markComponentsStored();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to store parse result for {}", key, e);
+        }
+    }
+
+    /**
+     * Поиск в базе до запроса файла.
+     *
+     * @param entry   запись последней сохранённой версии или {@code null}
+     * @param checked база ответила; без этого версия нового ответа ищется в базе отдельно
+     */
+    private record StoreLookup(ParsedBpmn entry, boolean checked) {
+
+        private static final StoreLookup NONE = new StoreLookup(null, false);
+        private static final StoreLookup EMPTY = new StoreLookup(null, true);
+    }
+
+    @FunctionalInterface
+    public interface SourceLoader<T> {
+
+        T load(FetchedFile file, ParsedBpmn entry) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface SourcePreparer {
+
+        SourcePreparer NONE = file -> file;
+
+        FetchedFile prepare(FetchedFile file) throws IOException;
+    }
+
+    /** W/"abc" и "abc" — одна и та же версия объекта. */
+    static String normalizeEtag(String etag) {
+        if (etag == null || etag.isBlank()) return null;
+        String value = etag.trim();
+        if (value.startsWith("W/")) value = value.substring(2);
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String contentHash(MessageDigest digest) {
+        return ParsedBpmnKey.CONTENT_HASH_PREFIX + HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Тело без ETag разошлось с записью в памяти; уже прочитано, поэтому файл запрашивается заново. */
+    private static final class ContentChanged extends RuntimeException {
+
+        private ContentChanged() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
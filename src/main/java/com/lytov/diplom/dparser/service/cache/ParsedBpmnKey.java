@@ -0,0 +1,16 @@
+package com.lytov.diplom.dparser.service.cache;
+
+import java.util.UUID;
+
+/**
+ * Версия файла в object storage: fileId + ETag, а если ETag не пришёл — sha-256 содержимого.
+ */
+public record ParsedBpmnKey(UUID fileId, String version) {
+
+    public static final String CONTENT_HASH_PREFIX = "sha256:";
+
+    /** Версия — хэш содержимого: сверить её с object storage без скачивания тела нельзя. */
+    public boolean isContentHash() {
+        return version != null && version.startsWith(CONTENT_HASH_PREFIX);
+    }
+}
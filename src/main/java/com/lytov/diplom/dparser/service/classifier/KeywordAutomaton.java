@@ -0,0 +1,127 @@
+package com.lytov.diplom.dparser.service.classifier;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Автомат Ахо — Корасик над словарём ключевых слов без учёта регистра. Каждое слово помечено меткой 0..63;
+ * {@link #match(CharSequence)} за один проход по тексту возвращает маску меток всех найденных слов.
+ * <p>
+ * Переходы хранятся в плоских массивах, отсортированных по символу внутри состояния, поэтому
+ * поиск не создаёт объектов, а время линейно от длины текста.
+ */
+final class KeywordAutomaton {
+
+    static final int MAX_LABELS = Long.SIZE;
+
+    /** Переходы состояния s — edgeChar/edgeTarget[edgeStart[s] .. edgeStart[s + 1]). */
+    private final int[] edgeStart;
+    private final char[] edgeChar;
+    private final int[] edgeTarget;
+    private final int[] fail;
+    /** Метки слов, оканчивающихся в состоянии или в любом состоянии его цепочки fail. */
+    private final long[] output;
+
+    private KeywordAutomaton(int[] edgeStart, char[] edgeChar, int[] edgeTarget, int[] fail, long[] output) {
+        this.edgeStart = edgeStart;
+        this.edgeChar = edgeChar;
+        this.edgeTarget = edgeTarget;
+        this.fail = fail;
+        this.output = output;
+    }
+
+    /**
+     * @param keywords слова по меткам; пустые и пробельные слова пропускаются
+     */
+    static KeywordAutomaton compile(Map<Integer, ? extends Iterable<String>> keywords) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Long> labels = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        labels.add(0L);
+
+        keywords.forEach((label, words) -> {
+            if (label < 0 || label >= MAX_LABELS) {
+                throw new IllegalArgumentException("Keyword label must be in [0, " + MAX_LABELS + "): " + label);
+            }
+            for (String word : words) {
+                if (word == null || word.isBlank()) continue;
+                int state = 0;
+                for (char c : word.trim().toCharArray()) {
+                    char lower = Character.toLowerCase(c);
+                    Integer next = trie.get(state).get(lower);
+                    if (next == null) {
+                        next = trie.size();
+                        trie.add(new TreeMap<>());
+                        labels.add(0L);
+                        trie.get(state).put(lower, next);
+                    }
+                    state = next;
+                }
+                labels.set(state, labels.get(state) | 1L << label);
+            }
+        });
+
+        int states = trie.size();
+        int[] edgeStart = new int[states + 1];
+        for (int s = 0; s < states; s++) {
+            edgeStart[s + 1] = edgeStart[s] + trie.get(s).size();
+        }
+        char[] edgeChar = new char[edgeStart[states]];
+        int[] edgeTarget = new int[edgeStart[states]];
+        for (int s = 0; s < states; s++) {
+            int i = edgeStart[s];
+            for (Map.Entry<Character, Integer> edge : trie.get(s).entrySet()) {
+                edgeChar[i] = edge.getKey();
+                edgeTarget[i++] = edge.getValue();
+            }
+        }
+
+        long[] output = new long[states];
+        for (int s = 0; s < states; s++) {
+            output[s] = labels.get(s);
+        }
+
+        // BFS: fail-ссылка ребёнка — переход по тому же символу из fail-состояния родителя
+        int[] fail = new int[states];
+        KeywordAutomaton automaton = new KeywordAutomaton(edgeStart, edgeChar, edgeTarget, fail, output);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = edgeStart[0]; i < edgeStart[1]; i++) {
+            queue.add(edgeTarget[i]);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            output[state] |= output[fail[state]];
+            for (int i = edgeStart[state]; i < edgeStart[state + 1]; i++) {
+                int child = edgeTarget[i];
+                fail[child] = automaton.next(fail[state], edgeChar[i]);
+                queue.add(child);
+            }
+        }
+        return automaton;
+    }
+
+    long match(CharSequence text) {
+        if (text == null) return 0L;
+        long found = 0L;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, Character.toLowerCase(text.charAt(i)));
+            found |= output[state];
+        }
+        return found;
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int edge = Arrays.binarySearch(edgeChar, edgeStart[state], edgeStart[state + 1], c);
+            if (edge >= 0) return edgeTarget[edge];
+            if (state == 0) return 0;
+            state = fail[state];
+        }
+    }
+}
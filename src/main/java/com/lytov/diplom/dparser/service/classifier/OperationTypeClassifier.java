@@ -0,0 +1,110 @@
+package com.lytov.diplom.dparser.service.classifier;
+
+import com.lytov.diplom.dparser.configuration.parser.properties.OperationClassifierProperties;
+import com.lytov.diplom.dparser.domain.enums.OperationType;
+import org.camunda.bpm.model.bpmn.instance.ExtensionElements;
+import org.camunda.bpm.model.bpmn.instance.ScriptTask;
+import org.camunda.bpm.model.bpmn.instance.ServiceTask;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.bpmn.instance.camunda.CamundaConnector;
+import org.camunda.bpm.model.bpmn.instance.camunda.CamundaConnectorId;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Тип операции задачи. Словари из {@link OperationClassifierProperties} компилируются один раз в
+ * {@link KeywordAutomaton}, поэтому классификация — один проход по имени задачи и по нескольким
+ * camunda-атрибутам service task, без приведения строк к нижнему регистру и без чтения текста поддерева.
+ * <p>
+ * Атрибуты service task — идентификаторы, поэтому в них слово совпадает только целиком: идентификатор и слова
+ * словаря переписываются в {@code |слово|слово|} по camelCase, цифрам и разделителям, и {@code rest} находится
+ * в {@code RestClientDelegate}, но не в {@code InterestCalculatorDelegate} или {@code RestoreDelegate}.
+ */
+@Component
+public class OperationTypeClassifier {
+
+    private static final OperationType[] TYPES = OperationType.values();
+    private static final char WORD_SEPARATOR = '|';
+
+    private final KeywordAutomaton userTaskKeywords;
+    private final KeywordAutomaton externalCallKeywords;
+
+    public OperationTypeClassifier(OperationClassifierProperties properties) {
+        Map<Integer, List<String>> byOrdinal = new HashMap<>();
+        properties.getUserTaskKeywords().forEach((type, words) -> byOrdinal.put(type.ordinal(), words));
+        this.userTaskKeywords = KeywordAutomaton.compile(byOrdinal);
+        this.externalCallKeywords = KeywordAutomaton.compile(Map.of(0, properties.getExternalCallKeywords().stream()
+                .filter(word -> word != null && !word.isBlank())
+                .map(OperationTypeClassifier::words)
+                .toList()));
+    }
+
+    public OperationType classify(Task task) {
+        if (task instanceof UserTask) {
+            long found = userTaskKeywords.match(task.getName());
+            // младший бит — тип, объявленный раньше
+            return found != 0 ? TYPES[Long.numberOfTrailingZeros(found)] : OperationType.DATA_PROCESSING;
+        }
+        if (task instanceof ServiceTask serviceTask) {
+            return isExternalServiceCall(serviceTask) ? OperationType.EXTERNAL_CALL : OperationType.DATA_PROCESSING;
+        }
+        if (task instanceof ScriptTask) {
+            return OperationType.DATA_PROCESSING;
+        }
+        return OperationType.OTHER;
+    }
+
+    private boolean isExternalServiceCall(ServiceTask serviceTask) {
+        long found = matchWords(serviceTask.getCamundaClass())
+                | matchWords(serviceTask.getCamundaExpression())
+                | matchWords(serviceTask.getCamundaDelegateExpression())
+                | matchWords(serviceTask.getCamundaType())
+                | matchWords(serviceTask.getCamundaTopic());
+        if (found != 0) return true;
+
+        ExtensionElements extensions = serviceTask.getExtensionElements();
+        if (extensions == null) return false;
+        for (CamundaConnector connector : extensions.getChildElementsByType(CamundaConnector.class)) {
+            CamundaConnectorId connectorId = connector.getCamundaConnectorId();
+            if (connectorId != null && matchWords(connectorId.getTextContent()) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long matchWords(String identifier) {
+        return identifier == null ? 0 : externalCallKeywords.match(words(identifier));
+    }
+
+    /** {@code "${restClient.call()}"} → {@code "|rest|Client|call|"}; регистр сохраняется, автомат его не различает. */
+    static String words(String identifier) {
+        StringBuilder words = new StringBuilder(identifier.length() + 8).append(WORD_SEPARATOR);
+        for (int i = 0; i < identifier.length(); i++) {
+            char c = identifier.charAt(i);
+            boolean separated = words.charAt(words.length() - 1) == WORD_SEPARATOR;
+            if (!Character.isLetterOrDigit(c)) {
+                if (!separated) words.append(WORD_SEPARATOR);
+                continue;
+            }
+            if (!separated && startsWord(identifier, i)) words.append(WORD_SEPARATOR);
+            words.append(c);
+        }
+        if (words.charAt(words.length() - 1) != WORD_SEPARATOR) words.append(WORD_SEPARATOR);
+        return words.toString();
+    }
+
+    /** Граница camelCase (restClient), конец аббревиатуры (RESTClient) или переход между буквами и цифрами. */
+    private static boolean startsWord(String identifier, int i) {
+        char previous = identifier.charAt(i - 1);
+        char c = identifier.charAt(i);
+        if (Character.isDigit(previous) != Character.isDigit(c)) return true;
+        if (Character.isLowerCase(previous) && Character.isUpperCase(c)) return true;
+        return Character.isUpperCase(previous) && Character.isUpperCase(c)
+                && i + 1 < identifier.length() && Character.isLowerCase(identifier.charAt(i + 1));
+    }
+}
@@ -0,0 +1,35 @@
+package com.lytov.diplom.dparser.service.concurrency;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ограничение суммарного размера тел, которые держатся в памяти между скачиванием и разбором.
+ * Учёт идёт в килобайтах; файл больше всего бюджета занимает его целиком и ждёт, пока остальные освободят место.
+ */
+public class MemoryBudget {
+
+    private static final int UNIT = 1024;
+
+    private final Semaphore permits;
+    private final int capacity;
+
+    public MemoryBudget(long bytes) {
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(1, bytes / UNIT));
+        this.permits = new Semaphore(capacity, true);
+    }
+
+    /**
+     * @return занятые единицы — их нужно вернуть в {@link #release(int)}
+     */
+    public int acquire(long bytes) {
+        int units = (int) Math.min(capacity, Math.max(1, (bytes + UNIT - 1) / UNIT));
+        permits.acquireUninterruptibly(units);
+        return units;
+    }
+
+    public void release(int units) {
+        if (units > 0) {
+            permits.release(units);
+        }
+    }
+}
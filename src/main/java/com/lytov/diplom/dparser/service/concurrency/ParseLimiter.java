@@ -0,0 +1,45 @@
+package com.lytov.diplom.dparser.service.concurrency;
+
+import com.lytov.diplom.dparser.configuration.parser.properties.GraphParserProperties;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Stage;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ограничение числа одновременных разборов BPMN. Потребителей может быть сколько угодно
+ * (в том числе на виртуальных потоках), а CPU-работа разбора не превышает число ядер.
+ * Время ожидания разрешения пишется этапом {@link Stage#PARSE_PERMIT}.
+ */
+@Component
+public class ParseLimiter {
+
+    private final Semaphore permits;
+    private final PipelineMetrics pipelineMetrics;
+
+    public ParseLimiter(GraphParserProperties properties, PipelineMetrics pipelineMetrics) {
+        this.pipelineMetrics = pipelineMetrics;
+        int limit = properties.getMaxParallelParses() > 0
+                ? properties.getMaxParallelParses()
+                : Runtime.getRuntime().availableProcessors();
+        this.permits = new Semaphore(limit, true);
+    }
+
+    public <T, E extends Exception> T call(Task<T, E> task) throws E {
+        long started = System.nanoTime();
+        permits.acquireUninterruptibly();
+        pipelineMetrics.recordStage(Stage.PARSE_PERMIT, System.nanoTime() - started, true);
+        try {
+            return task.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task<T, E extends Exception> {
+
+        T run() throws E;
+    }
+}
@@ -6,12 +6,25 @@ import com.lytov.diplom.dparser.domain.enums.NodeType;
 import java.util.*;
 
 public class BpmnGraph {
-    public final Map<String, BpmnNode> nodes = new LinkedHashMap<>();
-    public final List<BpmnEdge> edges = new ArrayList<>();
+    public final Map<String, BpmnNode> nodes;
+    public final List<BpmnEdge> edges;
 
     // adjacency для быстрых правил
-    public final Map<String, List<BpmnEdge>> out = new HashMap<>();
-    public final Map<String, List<BpmnEdge>> in = new HashMap<>();
+    public final Map<String, List<BpmnEdge>> out;
+    public final Map<String, List<BpmnEdge>> in;
+
+    public BpmnGraph() {
+        this(new LinkedHashMap<>(), new ArrayList<>(), new HashMap<>(), new HashMap<>());
+    }
+
+    /** Для представлений поверх другого хранения, см. {@link CompactBpmnGraph#view()}. */
+    BpmnGraph(Map<String, BpmnNode> nodes, List<BpmnEdge> edges,
+              Map<String, List<BpmnEdge>> out, Map<String, List<BpmnEdge>> in) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.out = out;
+        this.in = in;
+    }
 
     public void addNode(BpmnNode n) {
         nodes.putIfAbsent(n.id(), n);
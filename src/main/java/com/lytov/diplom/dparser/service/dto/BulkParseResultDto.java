@@ -0,0 +1,28 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Строка ответа пакетного разбора: либо компоненты файла, либо причина ошибки.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkParseResultDto {
+    private UUID fileId;
+    private List<Component> components;
+    private String error;
+
+    public static BulkParseResultDto parsed(UUID fileId, List<Component> components) {
+        return new BulkParseResultDto(fileId, components, null);
+    }
+
+    public static BulkParseResultDto failed(UUID fileId, String error) {
+        return new BulkParseResultDto(fileId, null, error);
+    }
+}
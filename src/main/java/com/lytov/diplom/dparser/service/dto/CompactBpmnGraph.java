@@ -0,0 +1,555 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Неизменяемое компактное представление {@link BpmnGraph}.
+ * <p>
+ * Вершины пронумерованы int, строки дедуплицированы, типы хранятся байтовыми ordinal,
+ * а смежность — в CSR: {@code outOffsets[v]..outOffsets[v + 1]} задаёт отрезок {@code outEdges}
+ * с номерами исходящих рёбер вершины {@code v} (для входящих — то же с {@code in*}).
+ * Каждое ребро хранится один раз, поиск вершины по id идёт по открытой адресации без boxing,
+ * а обход по номерам ничего не аллоцирует.
+ * <p>
+ * Вершины {@code [0, nodeCount)} — узлы графа в порядке {@code BpmnGraph.nodes}. Если ребро ссылается
+ * на id, которого нет среди узлов, такой id получает номер после узлов: он есть в смежности, но не в nodes.
+ * Концы рёбер с id {@code null} хранятся как {@code -1} и в смежность не попадают.
+ * <p>
+ * Для существующего кода есть {@link #view()}: {@link BpmnGraph} с прежними nodes/edges/out/in только для чтения.
+ */
+public final class CompactBpmnGraph {
+
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+    private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+
+    private final int nodeCount;
+    /** id всех вершин: сначала узлы, затем id, встреченные только в рёбрах. */
+    private final String[] vertexIds;
+    private final String[] nodeNames;
+    private final byte[] nodeTypes;
+    /** Открытая адресация: номер вершины + 1, 0 — пустая ячейка. */
+    private final int[] idTable;
+
+    private final String[] edgeIds;
+    private final byte[] edgeTypes;
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+
+    private final int[] outOffsets;
+    private final int[] outEdges;
+    private final int[] inOffsets;
+    private final int[] inEdges;
+
+    private CompactBpmnGraph(int nodeCount, String[] vertexIds, String[] nodeNames, byte[] nodeTypes,
+                             String[] edgeIds, byte[] edgeTypes, int[] edgeSources, int[] edgeTargets) {
+        this.nodeCount = nodeCount;
+        this.vertexIds = vertexIds;
+        this.nodeNames = nodeNames;
+        this.nodeTypes = nodeTypes;
+        this.idTable = buildIdTable(vertexIds);
+        this.edgeIds = edgeIds;
+        this.edgeTypes = edgeTypes;
+        this.edgeSources = edgeSources;
+        this.edgeTargets = edgeTargets;
+
+        this.outOffsets = new int[vertexIds.length + 1];
+        this.outEdges = buildAdjacency(edgeSources, outOffsets);
+        this.inOffsets = new int[vertexIds.length + 1];
+        this.inEdges = buildAdjacency(edgeTargets, inOffsets);
+    }
+
+    /** Для представления, полученного из {@link #view()}, возвращает исходный компактный граф без копирования. */
+    public static CompactBpmnGraph of(BpmnGraph graph) {
+        if (graph instanceof View view) {
+            return view.compact();
+        }
+        Map<String, String> strings = new HashMap<>();
+        Map<String, Integer> vertexById = new HashMap<>();
+
+        int nodeCount = graph.nodes.size();
+        String[] nodeNames = new String[nodeCount];
+        byte[] nodeTypes = new byte[nodeCount];
+        String[] vertexIds = new String[nodeCount + 2 * graph.edges.size()];
+
+        int n = 0;
+        for (BpmnGraph.BpmnNode node : graph.nodes.values()) {
+            vertexIds[n] = intern(strings, node.id());
+            nodeNames[n] = intern(strings, node.name());
+            nodeTypes[n] = (byte) node.type().ordinal();
+            vertexById.put(node.id(), n);
+            n++;
+        }
+
+        int edgeCount = graph.edges.size();
+        String[] edgeIds = new String[edgeCount];
+        byte[] edgeTypes = new byte[edgeCount];
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+
+        int vertexCount = nodeCount;
+        for (int e = 0; e < edgeCount; e++) {
+            BpmnGraph.BpmnEdge edge = graph.edges.get(e);
+            edgeIds[e] = intern(strings, edge.id());
+            edgeTypes[e] = (byte) edge.type().ordinal();
+            for (int end = 0; end < 2; end++) {
+                String id = end == 0 ? edge.sourceId() : edge.targetId();
+                int vertex = -1;
+                if (id != null) {
+                    Integer known = vertexById.get(id);
+                    if (known == null) {
+                        known = vertexCount;
+                        vertexIds[vertexCount++] = intern(strings, id);
+                        vertexById.put(id, known);
+                    }
+                    vertex = known;
+                }
+                if (end == 0) {
+                    edgeSources[e] = vertex;
+                } else {
+                    edgeTargets[e] = vertex;
+                }
+            }
+        }
+
+        return new CompactBpmnGraph(nodeCount, Arrays.copyOf(vertexIds, vertexCount), nodeNames, nodeTypes,
+                edgeIds, edgeTypes, edgeSources, edgeTargets);
+    }
+
+    // -------------------- NODES --------------------
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /** Узлы плюс id, встреченные только в рёбрах. */
+    public int vertexCount() {
+        return vertexIds.length;
+    }
+
+    /** Номер вершины по id или -1. */
+    public int indexOf(String id) {
+        if (id == null) return -1;
+        int mask = idTable.length - 1;
+        for (int slot = mix(id.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int v = idTable[slot] - 1;
+            if (v < 0) return -1;
+            if (vertexIds[v].equals(id)) return v;
+        }
+    }
+
+    public boolean isNode(int vertex) {
+        return vertex >= 0 && vertex < nodeCount;
+    }
+
+    public String nodeId(int vertex) {
+        return vertexIds[vertex];
+    }
+
+    public String nodeName(int node) {
+        return nodeNames[node];
+    }
+
+    public NodeType nodeType(int node) {
+        return NODE_TYPES[nodeTypes[node]];
+    }
+
+    public BpmnGraph.BpmnNode node(int node) {
+        return new BpmnGraph.BpmnNode(vertexIds[node], nodeNames[node], nodeType(node));
+    }
+
+    // -------------------- EDGES --------------------
+
+    public int edgeCount() {
+        return edgeIds.length;
+    }
+
+    public String edgeId(int edge) {
+        return edgeIds[edge];
+    }
+
+    public EdgeType edgeType(int edge) {
+        return EDGE_TYPES[edgeTypes[edge]];
+    }
+
+    /** Номер вершины-источника или -1, если sourceId был null. */
+    public int edgeSource(int edge) {
+        return edgeSources[edge];
+    }
+
+    /** Номер вершины-цели или -1, если targetId был null. */
+    public int edgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    public BpmnGraph.BpmnEdge edge(int edge) {
+        int source = edgeSources[edge];
+        int target = edgeTargets[edge];
+        return new BpmnGraph.BpmnEdge(edgeIds[edge], edgeType(edge),
+                source < 0 ? null : vertexIds[source],
+                target < 0 ? null : vertexIds[target]);
+    }
+
+    // -------------------- ADJACENCY --------------------
+
+    public int outDegree(int vertex) {
+        return outOffsets[vertex + 1] - outOffsets[vertex];
+    }
+
+    /** Номер {@code k}-го исходящего ребра вершины. */
+    public int outEdge(int vertex, int k) {
+        return outEdges[outOffsets[vertex] + k];
+    }
+
+    public int inDegree(int vertex) {
+        return inOffsets[vertex + 1] - inOffsets[vertex];
+    }
+
+    /** Номер {@code k}-го входящего ребра вершины. */
+    public int inEdge(int vertex, int k) {
+        return inEdges[inOffsets[vertex] + k];
+    }
+
+    // -------------------- VIEW --------------------
+
+    /**
+     * {@link BpmnGraph} поверх компактных массивов: nodes/edges/out/in только для чтения,
+     * записи создаются при обращении. Порядок nodes и edges совпадает с исходным графом.
+     */
+    public BpmnGraph view() {
+        return new View();
+    }
+
+    private final class View extends BpmnGraph {
+
+        private View() {
+            super(new NodesView(), new EdgesView(), new AdjacencyView(outOffsets, outEdges),
+                    new AdjacencyView(inOffsets, inEdges));
+        }
+
+        private CompactBpmnGraph compact() {
+            return CompactBpmnGraph.this;
+        }
+    }
+
+    private final class NodesView extends AbstractMap<String, BpmnGraph.BpmnNode> {
+
+        @Override
+        public int size() {
+            return nodeCount;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String id && isNode(indexOf(id));
+        }
+
+        @Override
+        public BpmnGraph.BpmnNode get(Object key) {
+            if (!(key instanceof String id)) return null;
+            int v = indexOf(id);
+            return isNode(v) ? node(v) : null;
+        }
+
+        @Override
+        public Set<Entry<String, BpmnGraph.BpmnNode>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return nodeCount;
+                }
+
+                @Override
+                public Iterator<Entry<String, BpmnGraph.BpmnNode>> iterator() {
+                    return new IndexIterator<>(nodeCount, v -> new SimpleImmutableEntry<>(vertexIds[v], node(v)));
+                }
+            };
+        }
+    }
+
+    private final class EdgesView extends AbstractList<BpmnGraph.BpmnEdge> {
+
+        @Override
+        public BpmnGraph.BpmnEdge get(int index) {
+            return edge(index);
+        }
+
+        @Override
+        public int size() {
+            return edgeIds.length;
+        }
+    }
+
+    /** Ключи — только вершины с рёбрами, как у computeIfAbsent в {@link BpmnGraph#addEdge}. */
+    private final class AdjacencyView extends AbstractMap<String, List<BpmnGraph.BpmnEdge>> {
+
+        private final int[] offsets;
+        private final int[] edges;
+        private final int[] vertices;
+
+        private AdjacencyView(int[] offsets, int[] edges) {
+            this.offsets = offsets;
+            this.edges = edges;
+            int count = 0;
+            for (int v = 0; v < vertexIds.length; v++) {
+                if (offsets[v + 1] > offsets[v]) count++;
+            }
+            this.vertices = new int[count];
+            count = 0;
+            for (int v = 0; v < vertexIds.length; v++) {
+                if (offsets[v + 1] > offsets[v]) vertices[count++] = v;
+            }
+        }
+
+        @Override
+        public int size() {
+            return vertices.length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public List<BpmnGraph.BpmnEdge> get(Object key) {
+            if (!(key instanceof String id)) return null;
+            int v = indexOf(id);
+            return v >= 0 && offsets[v + 1] > offsets[v] ? edgesOf(v) : null;
+        }
+
+        @Override
+        public Set<Entry<String, List<BpmnGraph.BpmnEdge>>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return vertices.length;
+                }
+
+                @Override
+                public Iterator<Entry<String, List<BpmnGraph.BpmnEdge>>> iterator() {
+                    return new IndexIterator<>(vertices.length,
+                            i -> new SimpleImmutableEntry<>(vertexIds[vertices[i]], edgesOf(vertices[i])));
+                }
+            };
+        }
+
+        private List<BpmnGraph.BpmnEdge> edgesOf(int v) {
+            int from = offsets[v];
+            int size = offsets[v + 1] - from;
+            return new AbstractList<>() {
+                @Override
+                public BpmnGraph.BpmnEdge get(int index) {
+                    if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+                    return edge(edges[from + index]);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+
+    private static final class IndexIterator<T> implements Iterator<T> {
+
+        private final int size;
+        private final IntFunction<T> element;
+        private int next;
+
+        private IndexIterator(int size, IntFunction<T> element) {
+            this.size = size;
+            this.element = element;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (next >= size) throw new NoSuchElementException();
+            return element.apply(next++);
+        }
+    }
+
+    // -------------------- BINARY FORM --------------------
+
+    /**
+     * Бинарная форма без смежности: таблица строк, затем вершины, узлы и рёбра,
+     * ссылки на строки и вершины — varint. Смежность восстанавливается при чтении.
+     * Номер строки 0 означает {@code null}, номер вершины 0 — конец ребра без id.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        Map<String, Integer> table = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (String id : vertexIds) register(table, strings, id);
+        for (String name : nodeNames) register(table, strings, name);
+        for (String id : edgeIds) register(table, strings, id);
+
+        writeVarint(out, strings.size());
+        for (String value : strings) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarint(out, vertexIds.length);
+        writeVarint(out, nodeCount);
+        for (String id : vertexIds) writeVarint(out, stringRef(table, id));
+        for (int v = 0; v < nodeCount; v++) {
+            writeVarint(out, stringRef(table, nodeNames[v]));
+            out.writeByte(nodeTypes[v]);
+        }
+
+        writeVarint(out, edgeIds.length);
+        for (int e = 0; e < edgeIds.length; e++) {
+            writeVarint(out, stringRef(table, edgeIds[e]));
+            out.writeByte(edgeTypes[e]);
+            writeVarint(out, edgeSources[e] + 1);
+            writeVarint(out, edgeTargets[e] + 1);
+        }
+    }
+
+    public static CompactBpmnGraph readFrom(DataInput in) throws IOException {
+        String[] strings = new String[readVarint(in) + 1];
+        for (int i = 1; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarint(in)];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String[] vertexIds = new String[readVarint(in)];
+        int nodeCount = readVarint(in);
+        if (nodeCount > vertexIds.length) {
+            throw new IOException("Node count " + nodeCount + " exceeds vertex count " + vertexIds.length);
+        }
+        for (int v = 0; v < vertexIds.length; v++) vertexIds[v] = strings[readVarint(in)];
+        String[] nodeNames = new String[nodeCount];
+        byte[] nodeTypes = new byte[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            nodeNames[v] = strings[readVarint(in)];
+            nodeTypes[v] = checkOrdinal(in.readByte(), NODE_TYPES.length);
+        }
+
+        int edgeCount = readVarint(in);
+        String[] edgeIds = new String[edgeCount];
+        byte[] edgeTypes = new byte[edgeCount];
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            edgeIds[e] = strings[readVarint(in)];
+            edgeTypes[e] = checkOrdinal(in.readByte(), EDGE_TYPES.length);
+            edgeSources[e] = checkVertex(readVarint(in) - 1, vertexIds.length);
+            edgeTargets[e] = checkVertex(readVarint(in) - 1, vertexIds.length);
+        }
+
+        return new CompactBpmnGraph(nodeCount, vertexIds, nodeNames, nodeTypes,
+                edgeIds, edgeTypes, edgeSources, edgeTargets);
+    }
+
+    private static void register(Map<String, Integer> table, List<String> strings, String value) {
+        if (value != null && table.putIfAbsent(value, strings.size() + 1) == null) {
+            strings.add(value);
+        }
+    }
+
+    private static int stringRef(Map<String, Integer> table, String value) {
+        return value == null ? 0 : table.get(value);
+    }
+
+    static void writeVarint(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static byte checkOrdinal(byte ordinal, int size) throws IOException {
+        if (ordinal < 0 || ordinal >= size) throw new IOException("Unknown type ordinal " + ordinal);
+        return ordinal;
+    }
+
+    private static int checkVertex(int vertex, int vertexCount) throws IOException {
+        if (vertex < -1 || vertex >= vertexCount) throw new IOException("Vertex " + vertex + " is out of range");
+        return vertex;
+    }
+
+    // -------------------- BUILD HELPERS --------------------
+
+    private static String intern(Map<String, String> strings, String value) {
+        if (value == null) return null;
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    private static int[] buildIdTable(String[] ids) {
+        int capacity = Integer.highestOneBit(Math.max(2, ids.length * 2 - 1)) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int v = 0; v < ids.length; v++) {
+            if (ids[v] == null) continue;
+            int slot = mix(ids[v].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = v + 1;
+        }
+        return table;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /** Стабильная раскладка по CSR: внутри вершины рёбра идут в исходном порядке, как в списках BpmnGraph. */
+    private static int[] buildAdjacency(int[] endpoints, int[] offsets) {
+        int count = 0;
+        for (int v : endpoints) {
+            if (v >= 0) {
+                offsets[v + 1]++;
+                count++;
+            }
+        }
+        for (int v = 1; v < offsets.length; v++) {
+            offsets[v] += offsets[v - 1];
+        }
+        int[] edges = new int[count];
+        int[] cursor = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int e = 0; e < endpoints.length; e++) {
+            int v = endpoints[e];
+            if (v >= 0) edges[cursor[v]++] = e;
+        }
+        return edges;
+    }
+}
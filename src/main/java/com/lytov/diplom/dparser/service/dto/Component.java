@@ -6,6 +6,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -18,4 +21,7 @@ public class Component {
     private String role;
     private String department;
     private OperationType operationType;
+    /** id data object/store, которые задача читает (dataInputAssociation) или пишет (dataOutputAssociation). */
+    @Builder.Default
+    private List<String> relatedData = new ArrayList<>();
 }
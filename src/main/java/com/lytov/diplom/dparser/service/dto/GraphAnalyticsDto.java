@@ -0,0 +1,94 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Структурные характеристики графа по sequence flow, посчитанные один раз при его построении.
+ * <p>
+ * Компоненты сильной связности пронумерованы в топологическом порядке конденсации: ребро из компоненты
+ * {@code a} в другую компоненту {@code b} всегда даёт {@code a < b}. Входы — startEvent и boundaryEvent,
+ * выходы — endEvent; доминаторы считаются от входов, постдоминаторы — от выходов.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GraphAnalyticsDto {
+
+    private static final int PRESENT = 1;
+    private static final int LOOP = 1 << 1;
+    private static final int REACHABLE = 1 << 2;
+    private static final int REACHES_END = 1 << 3;
+
+    private int componentCount;
+    /** По id каждой вершины графа, включая id, встреченные только в рёбрах. */
+    private Map<String, NodeAnalytics> nodes;
+
+    /**
+     * @param component      номер компоненты сильной связности в топологическом порядке
+     * @param loop           вершина лежит на цикле: компонента больше одной вершины или петля
+     * @param reachable      достижима из какого-либо входа
+     * @param reachesEnd     из неё достижим какой-либо выход
+     * @param dominator      непосредственный доминатор; {@code null} у входов, у недостижимых вершин
+     *                       и у вершин, которые достигаются из нескольких входов без общего доминатора
+     * @param postDominator  непосредственный постдоминатор; {@code null} по тем же правилам для выходов
+     * @param inDegree       входящие sequence flow
+     * @param outDegree      исходящие sequence flow
+     */
+    public record NodeAnalytics(int component, boolean loop, boolean reachable, boolean reachesEnd,
+                                String dominator, String postDominator, int inDegree, int outDegree) {}
+
+    /**
+     * Бинарная форма по номерам вершин {@code graph}: флаги, компонента, доминаторы (номер + 1, 0 — нет)
+     * и степени — varint, без строк.
+     */
+    public void writeTo(DataOutput out, CompactBpmnGraph graph) throws IOException {
+        CompactBpmnGraph.writeVarint(out, componentCount);
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            NodeAnalytics node = nodes.get(graph.nodeId(v));
+            if (node == null) {
+                out.writeByte(0);
+                continue;
+            }
+            out.writeByte(PRESENT
+                    | (node.loop() ? LOOP : 0)
+                    | (node.reachable() ? REACHABLE : 0)
+                    | (node.reachesEnd() ? REACHES_END : 0));
+            CompactBpmnGraph.writeVarint(out, node.component());
+            CompactBpmnGraph.writeVarint(out, graph.indexOf(node.dominator()) + 1);
+            CompactBpmnGraph.writeVarint(out, graph.indexOf(node.postDominator()) + 1);
+            CompactBpmnGraph.writeVarint(out, node.inDegree());
+            CompactBpmnGraph.writeVarint(out, node.outDegree());
+        }
+    }
+
+    public static GraphAnalyticsDto readFrom(DataInput in, CompactBpmnGraph graph) throws IOException {
+        int componentCount = CompactBpmnGraph.readVarint(in);
+        Map<String, NodeAnalytics> nodes = new HashMap<>();
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            int flags = in.readUnsignedByte();
+            if ((flags & PRESENT) == 0) continue;
+            int component = CompactBpmnGraph.readVarint(in);
+            String dominator = vertexId(graph, CompactBpmnGraph.readVarint(in) - 1);
+            String postDominator = vertexId(graph, CompactBpmnGraph.readVarint(in) - 1);
+            nodes.put(graph.nodeId(v), new NodeAnalytics(component, (flags & LOOP) != 0,
+                    (flags & REACHABLE) != 0, (flags & REACHES_END) != 0, dominator, postDominator,
+                    CompactBpmnGraph.readVarint(in), CompactBpmnGraph.readVarint(in)));
+        }
+        return new GraphAnalyticsDto(componentCount, nodes);
+    }
+
+    private static String vertexId(CompactBpmnGraph graph, int vertex) throws IOException {
+        if (vertex < -1 || vertex >= graph.vertexCount()) {
+            throw new IOException("Vertex " + vertex + " is out of range");
+        }
+        return vertex < 0 ? null : graph.nodeId(vertex);
+    }
+}
@@ -0,0 +1,19 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import com.lytov.diplom.dparser.domain.enums.GraphDirection;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Соседняя вершина и ребро к ней.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GraphNeighbourDto {
+    private BpmnGraph.BpmnEdge edge;
+    /** OUT — ребро исходит из запрошенной вершины, IN — входит в неё. */
+    private GraphDirection direction;
+    private BpmnGraph.BpmnNode node;
+}
@@ -0,0 +1,21 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Простые пути по sequence flow между двумя вершинами, каждый — список id вершин.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GraphPathsDto {
+    private String from;
+    private String to;
+    private List<List<String>> paths;
+    /** Путей больше, чем вернули. */
+    private boolean truncated;
+}
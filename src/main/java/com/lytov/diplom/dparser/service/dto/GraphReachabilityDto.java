@@ -0,0 +1,14 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GraphReachabilityDto {
+    private String from;
+    private String to;
+    private boolean reachable;
+}
@@ -0,0 +1,17 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarkingResultDto {
+    private UUID processId;
+    private UUID fileId;
+    /** id размеченного файла в object storage. */
+    private UUID markedFileId;
+}
@@ -0,0 +1,28 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import com.lytov.diplom.dparser.domain.enums.ParseJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParseJobDto {
+    private UUID id;
+    private UUID fileId;
+    private ParseJobStatus status;
+    /** Компоненты файла; заполнено только в SUCCEEDED. */
+    private List<Component> components;
+    /** Причина ошибки; заполнено только в FAILED. */
+    private String error;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
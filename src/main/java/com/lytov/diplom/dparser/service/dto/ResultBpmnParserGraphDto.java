@@ -1,5 +1,6 @@
 package com.lytov.diplom.dparser.service.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,4 +13,11 @@ import java.util.UUID;
 public class ResultBpmnParserGraphDto {
     private UUID processId;
     private BpmnGraph graph;
+    /** Только при {@code d-parser.graph.analytics-enabled}; без него JSON остаётся прежним. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private GraphAnalyticsDto analytics;
+
+    public ResultBpmnParserGraphDto(UUID processId, BpmnGraph graph) {
+        this(processId, graph, null);
+    }
 }
@@ -0,0 +1,297 @@
+package com.lytov.diplom.dparser.service.graph;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphAnalyticsDto;
+import com.lytov.diplom.dparser.service.dto.GraphAnalyticsDto.NodeAnalytics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Структурный анализ {@link CompactBpmnGraph} по sequence flow, чтобы d-core не пересчитывал его на каждом графе.
+ * <p>
+ * Всё считается по номерам вершин на int-массивах без рекурсии: компоненты сильной связности — Тарьяном,
+ * достижимость — обходами от входов и выходов, доминаторы и постдоминаторы — Ленгауэром–Тарьяном
+ * со сжатием путей. Несколько входов (выходов) сводятся к одному виртуальному корню.
+ */
+public final class GraphAnalyzer {
+
+    private GraphAnalyzer() {
+    }
+
+    public static GraphAnalyticsDto analyze(CompactBpmnGraph graph) {
+        int n = graph.vertexCount();
+
+        int flows = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (isFlow(graph, e)) flows++;
+        }
+        int[] sources = new int[flows];
+        int[] targets = new int[flows];
+        int[] inDegree = new int[n];
+        int[] outDegree = new int[n];
+        flows = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (!isFlow(graph, e)) continue;
+            sources[flows] = graph.edgeSource(e);
+            targets[flows] = graph.edgeTarget(e);
+            outDegree[sources[flows]]++;
+            inDegree[targets[flows]]++;
+            flows++;
+        }
+
+        int[] entries = verticesOfType(graph, NodeType.START_EVENT, NodeType.BOUNDARY_EVENT);
+        int[] exits = verticesOfType(graph, NodeType.END_EVENT);
+
+        // вершина n — виртуальный корень: в прямом графе ведёт во все входы, в обратном — во все выходы
+        int[] entryFrom = concat(sources, fill(entries.length, n));
+        int[] entryTo = concat(targets, entries);
+        int[] exitFrom = concat(targets, fill(exits.length, n));
+        int[] exitTo = concat(sources, exits);
+        Csr forward = Csr.of(n + 1, entryFrom, entryTo);
+
+        int[] component = new int[n];
+        boolean[] loop = new boolean[n];
+        int componentCount = components(forward, n, component, loop);
+        for (int f = 0; f < sources.length; f++) {
+            if (sources[f] == targets[f]) loop[sources[f]] = true;
+        }
+
+        int[] dominator = dominators(forward, Csr.of(n + 1, entryTo, entryFrom), n);
+        int[] postDominator = dominators(Csr.of(n + 1, exitFrom, exitTo), Csr.of(n + 1, exitTo, exitFrom), n);
+
+        Map<String, NodeAnalytics> nodes = new HashMap<>(Math.max(16, n * 4 / 3 + 1));
+        for (int v = 0; v < n; v++) {
+            nodes.put(graph.nodeId(v), new NodeAnalytics(component[v], loop[v],
+                    dominator[v] != -1, postDominator[v] != -1,
+                    idOf(graph, dominator[v], n), idOf(graph, postDominator[v], n),
+                    inDegree[v], outDegree[v]));
+        }
+        return new GraphAnalyticsDto(componentCount, nodes);
+    }
+
+    private static boolean isFlow(CompactBpmnGraph graph, int edge) {
+        return graph.edgeType(edge) == EdgeType.SEQUENCE_FLOW && graph.edgeSource(edge) >= 0 && graph.edgeTarget(edge) >= 0;
+    }
+
+    private static int[] verticesOfType(CompactBpmnGraph graph, NodeType... types) {
+        int[] vertices = new int[graph.nodeCount()];
+        int count = 0;
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            NodeType type = graph.nodeType(v);
+            for (NodeType wanted : types) {
+                if (type == wanted) {
+                    vertices[count++] = v;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(vertices, count);
+    }
+
+    /** Виртуальный корень и «нет доминатора» снаружи выглядят одинаково — {@code null}. */
+    private static String idOf(CompactBpmnGraph graph, int vertex, int root) {
+        return vertex < 0 || vertex == root ? null : graph.nodeId(vertex);
+    }
+
+    // -------------------- SCC --------------------
+
+    /**
+     * Итеративный Тарьян по вершинам {@code [0, n)} (рёбра виртуального корня не затрагиваются: в него ничего не входит).
+     * Тарьян выдаёт компоненты в обратном топологическом порядке, поэтому номера разворачиваются в конце.
+     *
+     * @return число компонент
+     */
+    static int components(Csr graph, int n, int[] component, boolean[] loop) {
+        int[] index = new int[n];
+        int[] low = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[n];
+        int[] callStack = new int[n];
+        int[] nextEdge = new int[n];
+        int stackSize = 0;
+        int counter = 0;
+        int found = 0;
+
+        for (int start = 0; start < n; start++) {
+            if (index[start] != -1) continue;
+            int depth = 0;
+            callStack[depth++] = start;
+            index[start] = low[start] = counter++;
+            nextEdge[start] = graph.offsets[start];
+            stack[stackSize++] = start;
+            onStack[start] = true;
+
+            while (depth > 0) {
+                int v = callStack[depth - 1];
+                if (nextEdge[v] < graph.offsets[v + 1]) {
+                    int w = graph.targets[nextEdge[v]++];
+                    if (index[w] == -1) {
+                        index[w] = low[w] = counter++;
+                        nextEdge[w] = graph.offsets[w];
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] == index[v]) {
+                    int size = 0;
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = found;
+                        size++;
+                    } while (w != v);
+                    if (size > 1) {
+                        for (int i = stackSize; i < stackSize + size; i++) loop[stack[i]] = true;
+                    }
+                    found++;
+                }
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            component[v] = found - 1 - component[v];
+        }
+        return found;
+    }
+
+    // -------------------- DOMINATORS --------------------
+
+    /**
+     * Непосредственные доминаторы от корня {@code root} (Ленгауэр–Тарьян, простой вариант со сжатием путей, O(m log n)).
+     *
+     * @return idom по вершинам {@code [0, root)}; {@code root} — доминирует только виртуальный корень,
+     * {@code -1} — вершина из корня недостижима
+     */
+    static int[] dominators(Csr successors, Csr predecessors, int root) {
+        int size = root + 1;
+        int[] number = new int[size];
+        Arrays.fill(number, -1);
+        int[] vertex = new int[size];
+        int[] parent = new int[size];
+        int[] semi = new int[size];
+        int[] ancestor = new int[size];
+        int[] label = new int[size];
+        int[] idom = new int[size];
+        int[] bucketHead = new int[size];
+        int[] bucketNext = new int[size];
+        Arrays.fill(idom, -1);
+        Arrays.fill(bucketHead, -1);
+
+        // DFS-нумерация
+        int count = 0;
+        int[] callStack = new int[size];
+        int[] nextEdge = new int[size];
+        int depth = 0;
+        number[root] = count;
+        vertex[count++] = root;
+        parent[root] = -1;
+        nextEdge[root] = successors.offsets[root];
+        callStack[depth++] = root;
+        while (depth > 0) {
+            int v = callStack[depth - 1];
+            if (nextEdge[v] == successors.offsets[v + 1]) {
+                depth--;
+                continue;
+            }
+            int w = successors.targets[nextEdge[v]++];
+            if (number[w] != -1) continue;
+            number[w] = count;
+            vertex[count++] = w;
+            parent[w] = v;
+            nextEdge[w] = successors.offsets[w];
+            callStack[depth++] = w;
+        }
+
+        for (int i = 0; i < count; i++) {
+            int v = vertex[i];
+            semi[v] = i;
+            label[v] = v;
+            ancestor[v] = -1;
+        }
+
+        int[] path = new int[size];
+        for (int i = count - 1; i > 0; i--) {
+            int w = vertex[i];
+            for (int k = predecessors.offsets[w]; k < predecessors.offsets[w + 1]; k++) {
+                int v = predecessors.targets[k];
+                if (number[v] == -1) continue;
+                int u = eval(v, ancestor, label, semi, path);
+                if (semi[u] < semi[w]) semi[w] = semi[u];
+            }
+            int s = vertex[semi[w]];
+            bucketNext[w] = bucketHead[s];
+            bucketHead[s] = w;
+
+            int p = parent[w];
+            ancestor[w] = p;
+            for (int v = bucketHead[p]; v != -1; v = bucketNext[v]) {
+                int u = eval(v, ancestor, label, semi, path);
+                idom[v] = semi[u] < semi[v] ? u : p;
+            }
+            bucketHead[p] = -1;
+        }
+        for (int i = 1; i < count; i++) {
+            int w = vertex[i];
+            if (idom[w] != vertex[semi[w]]) idom[w] = idom[idom[w]];
+        }
+        return Arrays.copyOf(idom, root);
+    }
+
+    /** Вершина с минимальным semi на пути к корню леса; путь сжимается без рекурсии. */
+    private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] path) {
+        if (ancestor[v] == -1) return v;
+        int length = 0;
+        for (int x = v; ancestor[ancestor[x]] != -1; x = ancestor[x]) {
+            path[length++] = x;
+        }
+        while (length > 0) {
+            int x = path[--length];
+            int a = ancestor[x];
+            if (semi[label[a]] < semi[label[x]]) label[x] = label[a];
+            ancestor[x] = ancestor[a];
+        }
+        return label[v];
+    }
+
+    // -------------------- CSR --------------------
+
+    /** Смежность: {@code targets[offsets[v]..offsets[v + 1])} — соседи вершины {@code v}. */
+    record Csr(int[] offsets, int[] targets) {
+
+        static Csr of(int size, int[] from, int[] to) {
+            int[] offsets = new int[size + 1];
+            for (int v : from) offsets[v + 1]++;
+            for (int v = 1; v <= size; v++) offsets[v] += offsets[v - 1];
+            int[] targets = new int[from.length];
+            int[] cursor = Arrays.copyOf(offsets, size);
+            for (int i = 0; i < from.length; i++) targets[cursor[from[i]]++] = to[i];
+            return new Csr(offsets, targets);
+        }
+    }
+
+    private static int[] fill(int length, int value) {
+        int[] array = new int[length];
+        Arrays.fill(array, value);
+        return array;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
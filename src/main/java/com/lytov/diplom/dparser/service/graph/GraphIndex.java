@@ -0,0 +1,204 @@
+package com.lytov.diplom.dparser.service.graph;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индексы для точечных запросов к {@link CompactBpmnGraph}: узлы по типу, компоненты сильной связности
+ * по sequence flow и конденсация с запомненной достижимостью.
+ * <p>
+ * Достижимость считается по компонентам: обход конденсации от компоненты источника даёт {@link BitSet}
+ * по компонентам, который запоминается (не больше {@code maxMemoized} штук), и дальше любой запрос
+ * «достижим ли Y из X» из той же компоненты — одна проверка бита. Индекс неизменяем, кроме этой памяти,
+ * и безопасен для одновременных запросов.
+ */
+public final class GraphIndex {
+
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+
+    private final CompactBpmnGraph graph;
+    /** Номера узлов по ordinal типа, по возрастанию. */
+    private final int[][] nodesByType;
+
+    private final GraphAnalyzer.Csr flows;
+    private final GraphAnalyzer.Csr reverseFlows;
+    private final int[] component;
+    private final GraphAnalyzer.Csr condensation;
+
+    private final int maxMemoized;
+    private final Map<Integer, BitSet> reachableComponents = new ConcurrentHashMap<>();
+
+    private GraphIndex(CompactBpmnGraph graph, int maxMemoized) {
+        this.graph = graph;
+        this.maxMemoized = maxMemoized;
+        int n = graph.vertexCount();
+
+        int[] typeCounts = new int[NODE_TYPES.length];
+        for (int v = 0; v < graph.nodeCount(); v++) typeCounts[graph.nodeType(v).ordinal()]++;
+        this.nodesByType = new int[NODE_TYPES.length][];
+        for (int t = 0; t < NODE_TYPES.length; t++) nodesByType[t] = new int[typeCounts[t]];
+        Arrays.fill(typeCounts, 0);
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            int t = graph.nodeType(v).ordinal();
+            nodesByType[t][typeCounts[t]++] = v;
+        }
+
+        int count = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (isFlow(e)) count++;
+        }
+        int[] sources = new int[count];
+        int[] targets = new int[count];
+        count = 0;
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            if (!isFlow(e)) continue;
+            sources[count] = graph.edgeSource(e);
+            targets[count] = graph.edgeTarget(e);
+            count++;
+        }
+        this.flows = GraphAnalyzer.Csr.of(n, sources, targets);
+        this.reverseFlows = GraphAnalyzer.Csr.of(n, targets, sources);
+
+        this.component = new int[n];
+        int components = GraphAnalyzer.components(flows, n, component, new boolean[n]);
+        int[] componentSources = new int[count];
+        int[] componentTargets = new int[count];
+        for (int f = 0; f < count; f++) {
+            componentSources[f] = component[sources[f]];
+            componentTargets[f] = component[targets[f]];
+        }
+        this.condensation = GraphAnalyzer.Csr.of(components, componentSources, componentTargets);
+    }
+
+    public static GraphIndex of(CompactBpmnGraph graph, int maxMemoized) {
+        return new GraphIndex(graph, maxMemoized);
+    }
+
+    public CompactBpmnGraph graph() {
+        return graph;
+    }
+
+    /** Условный вес для ограничения хранилища: вершины плюс рёбра. */
+    public int weight() {
+        return graph.vertexCount() + graph.edgeCount();
+    }
+
+    public int[] nodesOfType(NodeType type) {
+        return nodesByType[type.ordinal()].clone();
+    }
+
+    /** Достижима ли {@code target} из {@code source} по sequence flow; вершина достижима из себя самой. */
+    public boolean reaches(int source, int target) {
+        return reachableFrom(component[source]).get(component[target]);
+    }
+
+    /**
+     * Простые пути из {@code source} в {@code target} по sequence flow, не длиннее {@code maxLength} вершин.
+     * Обход идёт только по вершинам, из которых {@code target} достижим за оставшуюся длину (расстояния до него
+     * считаются BFS по обратным рёбрам), поэтому тупиковые и слишком длинные ветви не перебираются.
+     *
+     * @param maxPaths сколько путей вернуть; если путей больше, в результат попадает {@code maxPaths + 1}-й,
+     *                 чтобы вызывающий понял, что список обрезан
+     */
+    public List<int[]> paths(int source, int target, int maxPaths, int maxLength) {
+        List<int[]> paths = new ArrayList<>();
+        if (maxLength < 1 || !reaches(source, target)) return paths;
+        if (source == target) {
+            paths.add(new int[]{source});
+            return paths;
+        }
+        int[] distance = distancesTo(target);
+        if (distance[source] >= maxLength) return paths;
+
+        int[] path = new int[Math.min(maxLength, graph.vertexCount())];
+        int[] nextEdge = new int[path.length];
+        BitSet onPath = new BitSet(graph.vertexCount());
+        int depth = 0;
+        path[depth] = source;
+        nextEdge[depth] = flows.offsets()[source];
+        onPath.set(source);
+        depth++;
+
+        while (depth > 0 && paths.size() <= maxPaths) {
+            int v = path[depth - 1];
+            if (nextEdge[depth - 1] == flows.offsets()[v + 1]) {
+                onPath.clear(v);
+                depth--;
+                continue;
+            }
+            int w = flows.targets()[nextEdge[depth - 1]++];
+            if (w == target && depth < maxLength) {
+                int[] found = Arrays.copyOf(path, depth + 1);
+                found[depth] = target;
+                paths.add(found);
+            } else if (depth < path.length - 1 && !onPath.get(w) && distance[w] < maxLength - depth) {
+                path[depth] = w;
+                nextEdge[depth] = flows.offsets()[w];
+                onPath.set(w);
+                depth++;
+            }
+        }
+        return paths;
+    }
+
+    private BitSet reachableFrom(int start) {
+        BitSet memoized = reachableComponents.get(start);
+        if (memoized != null) return memoized;
+
+        BitSet reached = new BitSet(condensation.offsets().length - 1);
+        int[] stack = new int[condensation.offsets().length - 1];
+        int size = 0;
+        stack[size++] = start;
+        reached.set(start);
+        while (size > 0) {
+            int c = stack[--size];
+            for (int k = condensation.offsets()[c]; k < condensation.offsets()[c + 1]; k++) {
+                int next = condensation.targets()[k];
+                if (!reached.get(next)) {
+                    reached.set(next);
+                    stack[size++] = next;
+                }
+            }
+        }
+        if (reachableComponents.size() < maxMemoized) {
+            reachableComponents.putIfAbsent(start, reached);
+        }
+        return reached;
+    }
+
+    /**
+     * Число рёбер от каждой вершины до {@code target}; {@link Integer#MAX_VALUE}, если он недостижим.
+     */
+    private int[] distancesTo(int target) {
+        int[] distance = new int[graph.vertexCount()];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        int[] queue = new int[graph.vertexCount()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = target;
+        distance[target] = 0;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = reverseFlows.offsets()[v]; k < reverseFlows.offsets()[v + 1]; k++) {
+                int next = reverseFlows.targets()[k];
+                if (distance[next] == Integer.MAX_VALUE) {
+                    distance[next] = distance[v] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distance;
+    }
+
+    private boolean isFlow(int edge) {
+        return graph.edgeType(edge) == EdgeType.SEQUENCE_FLOW && graph.edgeSource(edge) >= 0 && graph.edgeTarget(edge) >= 0;
+    }
+}
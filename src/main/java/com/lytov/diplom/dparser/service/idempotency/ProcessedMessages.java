@@ -0,0 +1,211 @@
+package com.lytov.diplom.dparser.service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.lytov.diplom.dparser.configuration.rabbit.properties.IdempotencyProperties;
+import com.lytov.diplom.dparser.domain.enums.ProcessedMessageKind;
+import com.lytov.diplom.dparser.domain.repository.ProcessedMessageRepository;
+import com.lytov.diplom.dparser.domain.repository.ProcessedMessageRepository.ProcessedMessage;
+import com.lytov.diplom.dparser.service.retry.DelayedRetryRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Обработанные сообщения create-graph и marking: повторная доставка после перезапуска или consumer timeout
+ * подтверждается сразу, без скачивания, разбора и публикации.
+ * <p>
+ * Первый уровень — ограниченный Caffeine-кэш в памяти, так что повтор стоит одного поиска по ключу.
+ * При {@link IdempotencyProperties#isPersistent()} запись дублируется в {@link ProcessedMessageRepository}
+ * и переживает перезапуск; промах в памяти тогда ищется в Postgres. Ошибка базы не мешает обработке:
+ * сообщение просто считается новым.
+ * <p>
+ * Ключ — само сообщение ({@link #messageKey}): новый запрос по тому же файлу обрабатывается заново,
+ * ведь содержимое под тем же fileId может измениться. Для create-graph повторная доставка
+ * (redelivered или из очереди задержки) ищется ещё и по fileId+processId.
+ * <p>
+ * Сообщение с заголовком {@value #REPLAY_HEADER}{@code = true} повторяет публикацию результата,
+ * даже если оно уже обработано; дубликатом оно не считается.
+ */
+@Slf4j
+@Service
+public class ProcessedMessages {
+
+    public static final String REPLAY_HEADER = "x-replay-result";
+
+    private final ProcessedMessageRepository repository;
+    private final IdempotencyProperties properties;
+    private final Clock clock;
+    private final Cache<String, ProcessedMessage> cache;
+    private final Map<ProcessedMessageKind, Counter> duplicates = new EnumMap<>(ProcessedMessageKind.class);
+    private final AtomicReference<Instant> nextPurge = new AtomicReference<>(Instant.MIN);
+
+    @Autowired
+    public ProcessedMessages(ProcessedMessageRepository repository,
+                             IdempotencyProperties properties,
+                             MeterRegistry meterRegistry) {
+        this(repository, properties, meterRegistry, Clock.systemUTC(), Ticker.systemTicker());
+    }
+
+    ProcessedMessages(ProcessedMessageRepository repository,
+                      IdempotencyProperties properties,
+                      MeterRegistry meterRegistry,
+                      Clock clock,
+                      Ticker ticker) {
+        this.repository = repository;
+        this.properties = properties;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .expireAfterWrite(properties.getRetention())
+                .ticker(ticker)
+                .build();
+        for (ProcessedMessageKind kind : ProcessedMessageKind.values()) {
+            duplicates.put(kind, Counter.builder("d-parser.rabbit.idempotency.duplicates")
+                    .description("Повторно доставленные сообщения, подтверждённые без обработки")
+                    .tag("kind", kind.name().toLowerCase().replace('_', '-'))
+                    .register(meterRegistry));
+        }
+    }
+
+    /** Запасной ключ create-graph для повторной доставки: тот же processId по тому же файлу даёт тот же граф. */
+    public static String createGraphKey(UUID fileId, UUID processId) {
+        return "create-graph:" + fileId + ":" + processId;
+    }
+
+    /**
+     * Ключ по message id; если отправитель его не задал — по sha-256 тела, которое при повторной доставке
+     * и при переотправке из очереди задержки не меняется.
+     */
+    public static String messageKey(ProcessedMessageKind kind, Message message) {
+        String prefix = kind.name().toLowerCase().replace('_', '-') + ":";
+        String messageId = message.getMessageProperties().getMessageId();
+        if (messageId != null && !messageId.isBlank()) {
+            return prefix + messageId;
+        }
+        try {
+            return prefix + "sha256:" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(message.getBody()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static boolean replayRequested(Message message) {
+        Object value = message.getMessageProperties().getHeader(REPLAY_HEADER);
+        return value instanceof Boolean flag ? flag : value != null && Boolean.parseBoolean(value.toString());
+    }
+
+    /** Брокер доставляет сообщение повторно или оно вернулось из очереди задержки. */
+    public static boolean redelivered(Message message) {
+        MessageProperties messageProperties = message.getMessageProperties();
+        return Boolean.TRUE.equals(messageProperties.getRedelivered())
+                || messageProperties.getHeader(DelayedRetryRouter.ATTEMPT_HEADER) != null;
+    }
+
+    /**
+     * Запись об обработке, если сообщение с этим ключом уже выполнено; найденная запись учитывается как дубликат.
+     */
+    public Optional<ProcessedMessage> find(String key) {
+        return find(key, false);
+    }
+
+    /** То же, но запрос повторной публикации ({@link #replayRequested}) дубликатом не считается. */
+    public Optional<ProcessedMessage> find(String key, Message message) {
+        return find(key, replayRequested(message));
+    }
+
+    /**
+     * Обработанный create-graph: по ключу сообщения, а повторная доставка — ещё и по fileId+processId.
+     */
+    public Optional<ProcessedMessage> findCreateGraph(Message message, UUID fileId, UUID processId) {
+        Optional<ProcessedMessage> found = find(messageKey(ProcessedMessageKind.CREATE_GRAPH, message), message);
+        if (found.isEmpty() && redelivered(message)) {
+            found = find(createGraphKey(fileId, processId), message);
+        }
+        return found;
+    }
+
+    /** Отмечает create-graph выполненным под ключом сообщения и запасным ключом повторной доставки. */
+    public void completeCreateGraph(Message message, UUID fileId, UUID processId) {
+        complete(messageKey(ProcessedMessageKind.CREATE_GRAPH, message), ProcessedMessageKind.CREATE_GRAPH,
+                fileId, processId, null);
+        complete(createGraphKey(fileId, processId), ProcessedMessageKind.CREATE_GRAPH, fileId, processId, null);
+    }
+
+    private Optional<ProcessedMessage> find(String key, boolean replay) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+        ProcessedMessage found = cache.getIfPresent(key);
+        if (found == null && properties.isPersistent()) {
+            found = findStored(key);
+            if (found != null) {
+                cache.put(key, found);
+            }
+        }
+        if (found == null) {
+            return Optional.empty();
+        }
+        if (!replay) {
+            duplicates.get(found.kind()).increment();
+        }
+        return Optional.of(found);
+    }
+
+    /**
+     * Отмечает сообщение выполненным после публикации результата. Падение между публикацией и этой отметкой
+     * даёт повторную публикацию при следующей доставке — как и без дедупликации.
+     *
+     * @param resultId id результата для повторной публикации или {@code null}
+     */
+    public void complete(String key, ProcessedMessageKind kind, UUID fileId, UUID processId, UUID resultId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        ProcessedMessage processed = new ProcessedMessage(key, kind, fileId, processId, resultId, clock.instant());
+        cache.put(key, processed);
+        if (properties.isPersistent()) {
+            store(processed);
+        }
+    }
+
+    private ProcessedMessage findStored(String key) {
+        try {
+            return repository.find(key, clock.instant().minus(properties.getRetention())).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Failed to look up processed message {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Просроченные записи удаляются попутно, не чаще раза за {@link IdempotencyProperties#getRetention()}. */
+    private void store(ProcessedMessage processed) {
+        try {
+            repository.save(processed);
+            Instant now = processed.completedAt();
+            Instant purgeAt = nextPurge.get();
+            if (!now.isBefore(purgeAt) && nextPurge.compareAndSet(purgeAt, now.plus(properties.getRetention()))) {
+                int deleted = repository.deleteCompletedBefore(now.minus(properties.getRetention()));
+                log.debug("Purged {} expired processed messages", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to store processed message {}: {}", processed.key(), e.getMessage());
+        }
+    }
+}
@@ -2,14 +2,25 @@ package com.lytov.diplom.dparser.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.configuration.parser.properties.GraphParserProperties;
 import com.lytov.diplom.dparser.configuration.rabbit.DCoreRMQConfig;
+import com.lytov.diplom.dparser.configuration.rabbit.GraphResultMessageConverter;
 import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.GraphParserMode;
+import com.lytov.diplom.dparser.domain.enums.GraphResultFormat;
 import com.lytov.diplom.dparser.domain.enums.NodeType;
-import com.lytov.diplom.dparser.external.sppr_bd.SpprBdConnector;
+import com.lytov.diplom.dparser.external.storage.FetchedFile;
 import com.lytov.diplom.dparser.service.api.BpmnToGraphParser;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmn;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnCache;
 import com.lytov.diplom.dparser.service.dto.BpmnGraph;
-import com.lytov.diplom.dparser.service.dto.RequestCreateGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphAnalyticsDto;
 import com.lytov.diplom.dparser.service.dto.ResultBpmnParserGraphDto;
+import com.lytov.diplom.dparser.service.graph.GraphAnalyzer;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Pipeline;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Stage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.camunda.bpm.model.bpmn.Bpmn;
@@ -19,21 +30,11 @@ import org.camunda.bpm.model.xml.instance.ModelElementInstance;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageBuilder;
 import org.springframework.amqp.core.MessageProperties;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
-
-import java.io.*;
-import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.UUID;
 
@@ -42,67 +43,120 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class BpmnToGraphParserImpl implements BpmnToGraphParser {
 
-    private final SpprBdConnector spprBdConnector;
-    private final RestTemplate restTemplate;
+    private final ParsedBpmnCache parsedBpmnCache;
     private final RabbitTemplate rabbitTemplate;
     private final ObjectMapper objectMapper;
+    private final MessageConverter messageConverter;
+    private final StaxBpmnToGraphParser staxBpmnToGraphParser;
+    private final GraphParserProperties graphParserProperties;
+    private final PipelineMetrics pipelineMetrics;
+
+    public void createGraph(UUID fileId, UUID processId) throws JsonProcessingException {
+        pipelineMetrics.pipeline(Pipeline.CREATE_GRAPH, () -> {
+            publishGraph(processId, graph(fileId));
+            return null;
+        });
+    }
 
-    @RabbitListener(queues = DCoreRMQConfig.FROM_SPPR_CREATE_GRAPH_QUEUE)
-    public void createGraphListener(@Payload RequestCreateGraph request) {
-        try {
-            createGraph(request.getFileId(), request.getProcessId());
-        } catch (Exception e) {
-            log.error(e.getMessage());
+    /**
+     * Повтор уже отправленного результата: публикуется граф, который сервис построил последним (память или база),
+     * без запроса к object storage. Если такого графа нет, файл разбирается как в {@link #createGraph}.
+     */
+    public void republishGraph(UUID fileId, UUID processId) throws JsonProcessingException {
+        CompactBpmnGraph graph = parsedBpmnCache.peek(fileId, this::cachedGraph);
+        if (graph == null) {
+            createGraph(fileId, processId);
+            return;
         }
+        pipelineMetrics.pipeline(Pipeline.CREATE_GRAPH, () -> {
+            publishGraph(processId, graph);
+            return null;
+        });
     }
 
-    public void createGraph(UUID fileId, UUID processId) throws FileNotFoundException, JsonProcessingException {
+    /** Граф файла: из кэша или после скачивания и разбора. */
+    public CompactBpmnGraph graph(UUID fileId) {
+        return parsedBpmnCache.get(fileId, this::cachedGraph, this::loadGraph);
+    }
 
-        String downloadUrl = spprBdConnector.getDownloadUrl(fileId);
+    public void publishGraph(UUID processId, CompactBpmnGraph bpmnGraph) throws JsonProcessingException {
+        pipelineMetrics.recordGraphSize(bpmnGraph.nodeCount(), bpmnGraph.edgeCount());
+        GraphAnalyticsDto analytics = graphParserProperties.isAnalyticsEnabled()
+                ? pipelineMetrics.stage(Stage.GRAPH_ANALYZE, () -> GraphAnalyzer.analyze(bpmnGraph))
+                : null;
+        ResultBpmnParserGraphDto request = new ResultBpmnParserGraphDto(processId, bpmnGraph.view(), analytics);
 
-        URI uri = UriComponentsBuilder
-                .fromUriString(downloadUrl)
-                .build(true)
-                .toUri();
+        Message message = pipelineMetrics.stage(Stage.SERIALIZE, () -> toMessage(request));
 
-        ResponseEntity<byte[]> file = restTemplate.exchange(
-                uri,
-                HttpMethod.GET,
-                null,
-                byte[].class
-        );
+        pipelineMetrics.stage(Stage.PUBLISH, () -> {
+            rabbitTemplate.convertAndSend(
+                    DCoreRMQConfig.FROM_CORE_SECOND_PARS_RESULT_EXCHANGE,
+                    "",
+                    message
 
-        String contentDisposition = file.getHeaders()
-                .getFirst(HttpHeaders.CONTENT_DISPOSITION);
+            );
+            return null;
+        });
+    }
 
-        File localFile = null;
-        try {
-            localFile = createFile(file.getBody());
-        } catch (Exception e) {
-            log.error(e.getMessage());
-            return;
+    /**
+     * JSON остаётся форматом по умолчанию; BINARY кодирует граф через конвертер из RabbitConfiguration
+     * и помечает сообщение content-type {@link GraphResultMessageConverter#CONTENT_TYPE}.
+     */
+    private Message toMessage(ResultBpmnParserGraphDto request) throws JsonProcessingException {
+        if (graphParserProperties.getResultFormat() == GraphResultFormat.BINARY) {
+            MessageProperties properties = new MessageProperties();
+            properties.setContentType(GraphResultMessageConverter.CONTENT_TYPE);
+            return messageConverter.toMessage(request, properties);
         }
-
-        BpmnGraph bpmnGraph = this.parse(new FileInputStream(localFile));
-
-        ResultBpmnParserGraphDto request = new ResultBpmnParserGraphDto(processId, bpmnGraph);
-
-        Message message = MessageBuilder
+        return MessageBuilder
                 .withBody(objectMapper.writeValueAsBytes(request))
                 .setContentType(MessageProperties.CONTENT_TYPE_JSON)
                 .build();
+    }
 
-        rabbitTemplate.convertAndSend(
-                DCoreRMQConfig.FROM_CORE_SECOND_PARS_RESULT_EXCHANGE,
-                "",
-                message
+    /**
+     * Граф из кэша; при DOM-разборе его можно достроить по модели, которую уже загрузила разметка.
+     */
+    private CompactBpmnGraph cachedGraph(ParsedBpmn entry) {
+        CompactBpmnGraph graph = entry.getGraph();
+        if (graph == null && !isStax() && entry.hasModel()) {
+            graph = CompactBpmnGraph.of(entry.withModel(this::buildGraph));
+            entry.setGraph(graph);
+        }
+        return graph;
+    }
 
-        );
+    /**
+     * DOM-разбор остаётся по умолчанию; STAX включается через d-parser.graph.parser.
+     * Модель DOM-разбора сохраняется в кэше: следом за графом обычно приходит разметка того же файла.
+     * В кэш кладётся компактная форма графа, изменяемый BpmnGraph живёт только на время разбора.
+     */
+    private CompactBpmnGraph loadGraph(FetchedFile file, ParsedBpmn entry) {
+        CompactBpmnGraph compact;
+        if (isStax()) {
+            // один проход StAX и есть построение графа, graph-build — только сжатие в CSR
+            BpmnGraph graph = pipelineMetrics.stage(Stage.PARSE, () -> staxBpmnToGraphParser.parse(file.body()));
+            compact = pipelineMetrics.stage(Stage.GRAPH_BUILD, () -> CompactBpmnGraph.of(graph));
+        } else {
+            BpmnModelInstance model = pipelineMetrics.stage(Stage.PARSE, () -> Bpmn.readModelFromStream(file.body()));
+            entry.setModel(model);
+            compact = pipelineMetrics.stage(Stage.GRAPH_BUILD, () -> CompactBpmnGraph.of(buildGraph(model)));
+        }
+        entry.setGraph(compact);
+        return compact;
+    }
+
+    private boolean isStax() {
+        return graphParserProperties.getParser() == GraphParserMode.STAX;
     }
 
     @Override
     public BpmnGraph parse(InputStream bpmnXml) {
-        BpmnModelInstance model = Bpmn.readModelFromStream(bpmnXml);
+        return buildGraph(Bpmn.readModelFromStream(bpmnXml));
+    }
+
+    private BpmnGraph buildGraph(BpmnModelInstance model) {
         BpmnGraph graph = new BpmnGraph();
 
         // 1) Nodes: FlowNode
@@ -204,10 +258,4 @@ public class BpmnToGraphParserImpl implements BpmnToGraphParser {
 
         return NodeType.UNKNOWN;
     }
-    private File createFile(byte[] data) throws IOException {
-        String tmpdir = System.getProperty("java.io.tmpdir");
-        Path filepath = Paths.get(tmpdir, UUID.randomUUID().toString());
-        Files.write(filepath, data);
-        return filepath.toFile();
-    }
 }
@@ -0,0 +1,194 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.configuration.parser.BulkParseExecutorConfiguration;
+import com.lytov.diplom.dparser.configuration.parser.properties.BulkParseProperties;
+import com.lytov.diplom.dparser.domain.enums.ModelType;
+import com.lytov.diplom.dparser.exception.BulkParseTooLarge;
+import com.lytov.diplom.dparser.external.storage.FetchedFile;
+import com.lytov.diplom.dparser.external.storage.PresignedUrlCache;
+import com.lytov.diplom.dparser.service.api.BulkParserProcessService;
+import com.lytov.diplom.dparser.service.api.ComponentParser;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmn;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnCache;
+import com.lytov.diplom.dparser.service.concurrency.MemoryBudget;
+import com.lytov.diplom.dparser.service.dto.BulkParseResultDto;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Pipeline;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Stage;
+import com.lytov.diplom.dparser.service.strategy.ModelParserStrategy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Пакетный вариант {@link ParserProcessServiceImpl}: каждый файл ведёт поток
+ * {@link BulkParseExecutorConfiguration#BULK_PARSE_EXECUTOR}. При промахе кэша тело сначала дочитывается
+ * в память в пределах {@link BulkParseProperties#getMaxBufferedSize()}, и только потом файл занимает
+ * разрешение {@code ParseLimiter} — пока одни файлы разбираются, другие качаются.
+ */
+@Slf4j
+@Service
+public class BulkParserProcessServiceImpl implements BulkParserProcessService {
+
+    private final ModelParserStrategy parserStrategy;
+    private final ParsedBpmnCache parsedBpmnCache;
+    private final PresignedUrlCache presignedUrlCache;
+    private final PipelineMetrics pipelineMetrics;
+    private final ObjectMapper objectMapper;
+    private final BulkParseProperties properties;
+    private final TaskExecutor executor;
+    private final MemoryBudget memoryBudget;
+
+    public BulkParserProcessServiceImpl(
+            ModelParserStrategy parserStrategy,
+            ParsedBpmnCache parsedBpmnCache,
+            PresignedUrlCache presignedUrlCache,
+            PipelineMetrics pipelineMetrics,
+            ObjectMapper objectMapper,
+            BulkParseProperties properties,
+            @Qualifier(BulkParseExecutorConfiguration.BULK_PARSE_EXECUTOR) TaskExecutor executor
+    ) {
+        this.parserStrategy = parserStrategy;
+        this.parsedBpmnCache = parsedBpmnCache;
+        this.presignedUrlCache = presignedUrlCache;
+        this.pipelineMetrics = pipelineMetrics;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.executor = executor;
+        this.memoryBudget = new MemoryBudget(properties.getMaxBufferedSize().toBytes());
+    }
+
+    @Override
+    public ResponseBodyEmitter parse(List<UUID> fileIds) {
+        Set<UUID> unique = new LinkedHashSet<>(fileIds);
+        if (unique.size() > properties.getMaxFiles()) {
+            throw new BulkParseTooLarge(unique.size(), properties.getMaxFiles());
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(properties.getTimeout().toMillis());
+        parseAll(unique, result -> send(emitter, result))
+                .whenComplete((ignored, e) -> emitter.complete());
+        return emitter;
+    }
+
+    /**
+     * Запускает разбор всех файлов; {@code onResult} вызывается из рабочих потоков по мере готовности.
+     * Когда он вернёт {@code false} (клиент ушёл), ещё не начатые файлы пропускаются.
+     */
+    CompletableFuture<Void> parseAll(Collection<UUID> fileIds, Predicate<BulkParseResultDto> onResult) {
+        prefetchUrls(fileIds);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        return CompletableFuture.allOf(fileIds.stream()
+                .map(fileId -> submit(fileId, cancelled, onResult))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Пакетный presign ставится в очередь первым: файлы, которые возьмут потоки раньше него, запросят ссылку
+     * сами, а остальные дождутся его результата.
+     */
+    private void prefetchUrls(Collection<UUID> fileIds) {
+        try {
+            executor.execute(() -> presignedUrlCache.prefetch(fileIds));
+        } catch (TaskRejectedException e) {
+            log.debug("Batch presign of {} files skipped, queue is full", fileIds.size());
+        }
+    }
+
+    private CompletableFuture<Void> submit(UUID fileId, AtomicBoolean cancelled, Predicate<BulkParseResultDto> onResult) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!cancelled.get()) {
+                        deliver(parseOne(fileId), cancelled, onResult);
+                    }
+                } finally {
+                    done.complete(null);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            deliver(BulkParseResultDto.failed(fileId, "Bulk parse queue is full"), cancelled, onResult);
+            done.complete(null);
+        }
+        return done;
+    }
+
+    private static void deliver(BulkParseResultDto result, AtomicBoolean cancelled, Predicate<BulkParseResultDto> onResult) {
+        if (!cancelled.get() && !onResult.test(result)) {
+            cancelled.set(true);
+        }
+    }
+
+    private BulkParseResultDto parseOne(UUID fileId) {
+        int[] reserved = new int[1];
+        try {
+            List<Component> components = pipelineMetrics.pipeline(Pipeline.PARSER_PROCESS,
+                    () -> parsedBpmnCache.get(fileId, ParsedBpmn::getComponents, this::loadComponents,
+                            file -> buffer(file, reserved)));
+            return BulkParseResultDto.parsed(fileId, components);
+        } catch (Exception e) {
+            log.warn("Bulk parse of file {} failed", fileId, e);
+            return BulkParseResultDto.failed(fileId, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+        } finally {
+            memoryBudget.release(reserved[0]);
+        }
+    }
+
+    /**
+     * Content-Length известен — место резервируется до чтения; у chunked-ответа — по факту прочитанного.
+     */
+    private FetchedFile buffer(FetchedFile file, int[] reserved) throws IOException {
+        return pipelineMetrics.stage(Stage.BUFFER, () -> {
+            long length = file.headers().getContentLength();
+            if (length >= 0) {
+                reserved[0] = memoryBudget.acquire(length);
+            }
+            byte[] body = file.body().readAllBytes();
+            if (length < 0) {
+                reserved[0] = memoryBudget.acquire(body.length);
+            }
+            return new FetchedFile(file.fileId(), file.headers(), new ByteArrayInputStream(body));
+        });
+    }
+
+    private List<Component> loadComponents(FetchedFile file, ParsedBpmn entry) {
+        String ext = FilenameUtils.getExtension(file.contentDisposition());
+        ComponentParser parser = parserStrategy.getComponentParser(ModelType.modalByExt(ext));
+        List<Component> components = pipelineMetrics.stage(Stage.PARSE, () -> parser.parserComponents(file.body()));
+        entry.setComponents(components);
+        return components;
+    }
+
+    private boolean send(ResponseBodyEmitter emitter, BulkParseResultDto result) {
+        try {
+            // одна отправка на строку: строки разных потоков не перемешиваются
+            emitter.send(objectMapper.writeValueAsString(result) + "\n", MediaType.APPLICATION_NDJSON);
+            return true;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize bulk parse result", e);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Bulk parse client is gone, file {} result dropped", result.getFileId(), e);
+            return false;
+        }
+    }
+}
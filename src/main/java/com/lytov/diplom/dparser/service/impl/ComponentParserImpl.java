@@ -1,57 +1,71 @@
 package com.lytov.diplom.dparser.service.impl;
 
 import com.lytov.diplom.dparser.domain.enums.ModelType;
-import com.lytov.diplom.dparser.domain.enums.OperationType;
 import com.lytov.diplom.dparser.service.api.ComponentParser;
+import com.lytov.diplom.dparser.service.classifier.OperationTypeClassifier;
 import com.lytov.diplom.dparser.service.dto.Component;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.camunda.bpm.model.bpmn.Bpmn;
 import org.camunda.bpm.model.bpmn.BpmnModelInstance;
 import org.camunda.bpm.model.bpmn.instance.*;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.xml.instance.DomElement;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.lang.Process;
+import java.io.InputStream;
 import java.util.*;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ComponentParserImpl implements ComponentParser {
+
+    private final OperationTypeClassifier operationTypeClassifier;
+
     @Override
     public List<Component> parserComponents(File bpmnFile) {
-        BpmnModelInstance modelInstance = Bpmn.readModelFromFile(bpmnFile);
+        return parserComponents(Bpmn.readModelFromFile(bpmnFile));
+    }
 
-        Map<FlowNode, Lane> nodeToLane = buildNodeLaneMap(modelInstance);
+    @Override
+    public List<Component> parserComponents(InputStream bpmnStream) {
+        return parserComponents(Bpmn.readModelFromStream(bpmnStream));
+    }
 
-        Map<FlowNode, String> nodeToPool = buildNodePoolMap(modelInstance);
+    /**
+     * Один проход definitions → participants → processes → laneSets → flow elements.
+     * Пул процесса берётся из participant/@processRef, роль — из flowNodeRef дорожек процесса;
+     * задачи внутри подпроцесса наследуют дорожку подпроцесса. Ссылки дорожек читаются как id, без разрешения в элементы.
+     */
+    private List<Component> parserComponents(BpmnModelInstance modelInstance) {
+        Collection<RootElement> rootElements = modelInstance.getDefinitions().getRootElements();
+
+        Map<String, String> poolByProcess = new HashMap<>();
+        for (RootElement root : rootElements) {
+            if (root instanceof Collaboration collaboration) {
+                for (Participant participant : collaboration.getParticipants()) {
+                    String processRef = participant.getAttributeValue("processRef");
+                    if (processRef != null) {
+                        poolByProcess.put(processRef.trim(), participant.getName());
+                    }
+                }
+            }
+        }
 
         List<Component> components = new ArrayList<>();
-
-        Collection<Task> tasks = modelInstance.getModelElementsByType(Task.class);
-        for (Task task : tasks) {
-            Component component = new Component();
-            component.setId(task.getId());
-            component.setName(task.getName());
-            component.setBpmnTaskType(task.getElementType().getTypeName());
-
-            Lane lane = nodeToLane.get(task);
-            if (lane != null) {
-                component.setRole(lane.getName());
+        for (RootElement root : rootElements) {
+            if (root instanceof Process process) {
+                Map<String, String> roleByNode = new HashMap<>();
+                for (LaneSet laneSet : process.getLaneSets()) {
+                    collectLanes(laneSet, roleByNode);
+                }
+                collectTasks(modelInstance, process.getDomElement(), poolByProcess.get(process.getId()), null,
+                        roleByNode, components);
             }
-
-            String poolName = nodeToPool.get(task);
-            component.setDepartment(poolName);
-
-            fillRelatedData(task, component);
-
-            OperationType opType = guessOperationType(task, component);
-            component.setOperationType(opType);
-
-            components.add(component);
         }
-
         return components;
     }
 
@@ -60,95 +74,71 @@ public class ComponentParserImpl implements ComponentParser {
         return ModelType.BPMN;
     }
 
-    private Map<FlowNode, Lane> buildNodeLaneMap(BpmnModelInstance modelInstance) {
-        Map<FlowNode, Lane> result = new HashMap<>();
-        Collection<Lane> lanes = modelInstance.getModelElementsByType(Lane.class);
-        for (Lane lane : lanes) {
-            for (FlowNode flowNode : lane.getFlowNodeRefs()) {
-                result.put(flowNode, lane);
-            }
-        }
-        return result;
-    }
-
-    private Map<FlowNode, String> buildNodePoolMap(BpmnModelInstance modelInstance) {
-        Map<FlowNode, String> result = new HashMap<>();
-
-        Collection<Participant> participants = modelInstance.getModelElementsByType(Participant.class);
-        for (Participant participant : participants) {
-            Process process = (Process) participant.getProcess();
-            if (process == null) continue;
-            String poolName = participant.getName();
-
-            /*Collection<FlowElement> flowElements = process.getFlowElements();
-            for (FlowElement element : flowElements) {
-                if (element instanceof FlowNode flowNode) {
-                    result.put(flowNode, poolName);
-                }
-            }*/
-        }
-        return result;
-    }
-
-    private void fillRelatedData(Task task, Component component) {
-        // DataInputAssociation / DataOutputAssociation
-        Collection<DataInputAssociation> inputs =
-                task.getChildElementsByType(DataInputAssociation.class);
-        for (DataInputAssociation in : inputs) {
-            for (ItemAwareElement src : in.getSources()) {
-                if (src.getId() != null) {
-                  //  component.getRelatedData().add(src.getId());
+    /** Вложенная дорожка обходится после родительской и перекрывает её. */
+    private void collectLanes(LaneSet laneSet, Map<String, String> roleByNode) {
+        for (Lane lane : laneSet.getLanes()) {
+            for (DomElement child : lane.getDomElement().getChildElements()) {
+                if ("flowNodeRef".equals(child.getLocalName())) {
+                    roleByNode.put(child.getTextContent().trim(), lane.getName());
                 }
             }
-        }
-
-        Collection<DataOutputAssociation> outputs =
-                task.getChildElementsByType(DataOutputAssociation.class);
-        for (DataOutputAssociation out : outputs) {
-            ItemAwareElement target = out.getTarget();
-            if (target != null && target.getId() != null) {
-                //component.getRelatedData().add(target.getId());
+            if (lane.getChildLaneSet() != null) {
+                collectLanes(lane.getChildLaneSet(), roleByNode);
             }
         }
     }
 
-    private OperationType guessOperationType(Task task, Component component) {
-        String name = task.getName() != null ? task.getName().toLowerCase() : "";
-
-        if (task instanceof UserTask) {
-            if (name.contains("утверд") || name.contains("approve")) {
-                return OperationType.APPROVAL;
-            }
-            if (name.contains("ввод") || name.contains("внести")
-                    || name.contains("input")) {
-                return OperationType.USER_INPUT;
-            }
-            return OperationType.DATA_PROCESSING;
-        }
-
-        if (task instanceof ServiceTask) {
-            boolean isExternal = isExternalServiceCall((ServiceTask) task);
-
-            if (isExternal) {
-                return OperationType.EXTERNAL_CALL;
+    /**
+     * Обход идёт по DOM-детям контейнера: типизированный getFlowElements() пропускает элементы, которых нет
+     * в модели Camunda (adHocSubProcess), вместе с задачами внутри. Такие элементы с id обходятся как подпроцессы.
+     */
+    private void collectTasks(BpmnModelInstance model, DomElement container, String pool, String inheritedRole,
+                              Map<String, String> roleByNode, List<Component> components) {
+        for (DomElement child : container.getChildElements()) {
+            if (!StaxBpmnToGraphParser.BPMN_NS.equals(child.getNamespaceURI())) continue;
+            String id = MarkingPlan.trimToNull(child.getAttribute("id"));
+            String role = id != null ? roleByNode.getOrDefault(id, inheritedRole) : inheritedRole;
+
+            if (id == null) continue;
+            ModelElementInstance element = model.getModelElementById(id);
+            if (element instanceof Task task) {
+                components.add(toComponent(task, pool, role));
+            } else if (element instanceof SubProcess || !(element instanceof BaseElement)) {
+                // неизвестный модели элемент Camunda оборачивает в общий экземпляр, не BaseElement
+                collectTasks(model, child, pool, role, roleByNode, components);
             }
-            return OperationType.DATA_PROCESSING;
-        }
-
-        if (task instanceof ScriptTask) {
-            return OperationType.DATA_PROCESSING;
         }
+    }
 
-        return OperationType.OTHER;
+    private Component toComponent(Task task, String pool, String role) {
+        Component component = new Component();
+        component.setId(task.getId());
+        component.setName(task.getName());
+        component.setBpmnTaskType(task.getElementType().getTypeName());
+        component.setRole(role);
+        component.setDepartment(pool);
+        fillRelatedData(task, component);
+        component.setOperationType(operationTypeClassifier.classify(task));
+        return component;
     }
 
-    private boolean isExternalServiceCall(ServiceTask serviceTask) {
-        if (serviceTask.getExtensionElements() == null) {
-            return false;
+    /** DataInputAssociation/sourceRef и DataOutputAssociation/targetRef за один просмотр дочерних элементов задачи. */
+    private void fillRelatedData(Task task, Component component) {
+        for (DomElement child : task.getDomElement().getChildElements()) {
+            String ref = switch (child.getLocalName()) {
+                case "dataInputAssociation" -> "sourceRef";
+                case "dataOutputAssociation" -> "targetRef";
+                default -> null;
+            };
+            if (ref == null) continue;
+            for (DomElement association : child.getChildElements()) {
+                if (ref.equals(association.getLocalName())) {
+                    String id = association.getTextContent().trim();
+                    if (!id.isEmpty()) {
+                        component.getRelatedData().add(id);
+                    }
+                }
+            }
         }
-        //TODO: разбирать camunda:connector / camunda:type и т.д.
-        String rawXml = serviceTask.getDomElement().getTextContent();
-        if (rawXml == null) return false;
-        return rawXml.contains("http") || rawXml.contains("rest");
     }
 }
@@ -0,0 +1,111 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.configuration.rabbit.DCoreRMQConfig;
+import com.lytov.diplom.dparser.configuration.rabbit.ListenerContainerConfiguration;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.RequestCreateGraph;
+import com.lytov.diplom.dparser.service.idempotency.ProcessedMessages;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Pipeline;
+import com.lytov.diplom.dparser.service.retry.DelayedRetryRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Пакетный режим create-graph: контейнер отдаёт до batch-size сообщений или то, что пришло за receive-timeout.
+ * Пачка группируется по fileId, каждый файл разбирается один раз, результат публикуется на каждый processId.
+ * <p>
+ * Ошибка по одному файлу не выходит из метода: иначе контейнер вернул бы в очередь всю пачку вместе
+ * с уже обработанными файлами. Сообщения упавшего файла уходят в отложенный повтор по одному,
+ * а пачка подтверждается целиком.
+ * <p>
+ * Пары fileId/processId, уже опубликованные раньше ({@link ProcessedMessages}), отбрасываются до группировки:
+ * файл, все запросы которого оказались повторами, не разбирается.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "d-parser.rabbit.listener.create-graph-batch.enabled", havingValue = "true")
+public class CreateGraphBatchHandler {
+
+    private final BpmnToGraphParserImpl bpmnToGraphParser;
+    private final DelayedRetryRouter retryRouter;
+    private final ObjectMapper objectMapper;
+    private final PipelineMetrics pipelineMetrics;
+    private final ProcessedMessages processedMessages;
+
+    @RabbitListener(
+            queues = DCoreRMQConfig.FROM_SPPR_CREATE_GRAPH_QUEUE,
+            containerFactory = ListenerContainerConfiguration.CREATE_GRAPH_BATCH_CONTAINER_FACTORY
+    )
+    public void createGraphListener(List<Message> messages) {
+        Map<UUID, FileGroup> byFile = new LinkedHashMap<>();
+        for (Message message : messages) {
+            RequestCreateGraph request;
+            try {
+                request = objectMapper.readValue(message.getBody(), RequestCreateGraph.class);
+            } catch (Exception e) {
+                retryRouter.retryOrPark(DCoreRMQConfig.FROM_SPPR_CREATE_GRAPH_QUEUE, message, e);
+                continue;
+            }
+            if (processedMessages.findCreateGraph(message, request.getFileId(), request.getProcessId()).isPresent()
+                    && !ProcessedMessages.replayRequested(message)) {
+                log.debug("Graph for fileId={}, processId={} already published, skipping redelivery",
+                        request.getFileId(), request.getProcessId());
+                continue;
+            }
+            byFile.computeIfAbsent(request.getFileId(), k -> new FileGroup()).add(request, message);
+        }
+
+        for (Map.Entry<UUID, FileGroup> file : byFile.entrySet()) {
+            FileGroup group = file.getValue();
+            try {
+                pipelineMetrics.pipeline(Pipeline.CREATE_GRAPH, () -> {
+                    CompactBpmnGraph graph = bpmnToGraphParser.graph(file.getKey());
+                    for (UUID processId : group.processIds) {
+                        bpmnToGraphParser.publishGraph(processId, graph);
+                    }
+                    for (int i = 0; i < group.messages.size(); i++) {
+                        processedMessages.completeCreateGraph(group.messages.get(i), file.getKey(),
+                                group.messageProcessIds.get(i));
+                    }
+                    return null;
+                });
+            } catch (Exception e) {
+                log.error("Error creating graph for fileId={}, processIds={}: {}",
+                        file.getKey(), group.processIds, e.getMessage());
+                for (Message message : group.messages) {
+                    retryRouter.retryOrPark(DCoreRMQConfig.FROM_SPPR_CREATE_GRAPH_QUEUE, message, e);
+                }
+            }
+        }
+    }
+
+    /** processId в порядке появления; повторный processId публикуется один раз. */
+    private static final class FileGroup {
+
+        private final Set<UUID> processIds = new LinkedHashSet<>();
+        private final List<Message> messages = new ArrayList<>();
+        /** processId каждого сообщения из {@link #messages}. */
+        private final List<UUID> messageProcessIds = new ArrayList<>();
+
+        private void add(RequestCreateGraph request, Message message) {
+            processIds.add(request.getProcessId());
+            messages.add(message);
+            messageProcessIds.add(request.getProcessId());
+        }
+    }
+}
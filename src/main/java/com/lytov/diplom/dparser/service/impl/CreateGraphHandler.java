@@ -0,0 +1,50 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.configuration.rabbit.DCoreRMQConfig;
+import com.lytov.diplom.dparser.configuration.rabbit.ListenerContainerConfiguration;
+import com.lytov.diplom.dparser.service.dto.RequestCreateGraph;
+import com.lytov.diplom.dparser.service.idempotency.ProcessedMessages;
+import com.lytov.diplom.dparser.service.retry.DelayedRetryRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "d-parser.rabbit.listener.create-graph-batch.enabled", havingValue = "false", matchIfMissing = true)
+public class CreateGraphHandler {
+
+    private final BpmnToGraphParserImpl bpmnToGraphParser;
+    private final DelayedRetryRouter retryRouter;
+    private final ProcessedMessages processedMessages;
+
+    @RabbitListener(
+            queues = DCoreRMQConfig.FROM_SPPR_CREATE_GRAPH_QUEUE,
+            containerFactory = ListenerContainerConfiguration.CREATE_GRAPH_CONTAINER_FACTORY
+    )
+    public void createGraphListener(@Payload RequestCreateGraph request, Message message) {
+        try {
+            boolean published = processedMessages
+                    .findCreateGraph(message, request.getFileId(), request.getProcessId()).isPresent();
+            if (published && !ProcessedMessages.replayRequested(message)) {
+                log.debug("Graph for fileId={}, processId={} already published, skipping redelivery",
+                        request.getFileId(), request.getProcessId());
+                return;
+            }
+            if (published) {
+                // повтор результата: публикуется последний построенный граф, файл скачивается, только если его нет
+                bpmnToGraphParser.republishGraph(request.getFileId(), request.getProcessId());
+            } else {
+                bpmnToGraphParser.createGraph(request.getFileId(), request.getProcessId());
+            }
+            processedMessages.completeCreateGraph(message, request.getFileId(), request.getProcessId());
+        } catch (Exception e) {
+            retryRouter.retryOrPark(DCoreRMQConfig.FROM_SPPR_CREATE_GRAPH_QUEUE, message, e);
+        }
+    }
+}
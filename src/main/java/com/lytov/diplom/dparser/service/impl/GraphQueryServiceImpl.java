@@ -0,0 +1,118 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.configuration.parser.properties.GraphQueryProperties;
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.GraphDirection;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.exception.GraphNodeNotFound;
+import com.lytov.diplom.dparser.service.api.GraphQueryService;
+import com.lytov.diplom.dparser.service.cache.GraphIndexCache;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphNeighbourDto;
+import com.lytov.diplom.dparser.service.dto.GraphPathsDto;
+import com.lytov.diplom.dparser.service.dto.GraphReachabilityDto;
+import com.lytov.diplom.dparser.service.graph.GraphIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class GraphQueryServiceImpl implements GraphQueryService {
+
+    private final GraphIndexCache graphIndexCache;
+    private final GraphQueryProperties graphQueryProperties;
+
+    @Override
+    public List<BpmnGraph.BpmnNode> nodes(UUID fileId, NodeType type) {
+        GraphIndex index = graphIndexCache.get(fileId);
+        List<BpmnGraph.BpmnNode> nodes = new ArrayList<>();
+        for (int v : index.nodesOfType(type)) {
+            nodes.add(index.graph().node(v));
+        }
+        return nodes;
+    }
+
+    @Override
+    public List<GraphNeighbourDto> neighbours(UUID fileId, String nodeId, GraphDirection direction, EdgeType edgeType) {
+        CompactBpmnGraph graph = graphIndexCache.get(fileId).graph();
+        int vertex = vertexOf(fileId, graph, nodeId);
+        List<GraphNeighbourDto> neighbours = new ArrayList<>();
+        if (direction != GraphDirection.IN) {
+            for (int k = 0; k < graph.outDegree(vertex); k++) {
+                int edge = graph.outEdge(vertex, k);
+                if (edgeType == null || graph.edgeType(edge) == edgeType) {
+                    neighbours.add(new GraphNeighbourDto(graph.edge(edge), GraphDirection.OUT,
+                            nodeOf(graph, graph.edgeTarget(edge))));
+                }
+            }
+        }
+        if (direction != GraphDirection.OUT) {
+            for (int k = 0; k < graph.inDegree(vertex); k++) {
+                int edge = graph.inEdge(vertex, k);
+                if (edgeType == null || graph.edgeType(edge) == edgeType) {
+                    neighbours.add(new GraphNeighbourDto(graph.edge(edge), GraphDirection.IN,
+                            nodeOf(graph, graph.edgeSource(edge))));
+                }
+            }
+        }
+        return neighbours;
+    }
+
+    @Override
+    public GraphReachabilityDto reachability(UUID fileId, String from, String to) {
+        GraphIndex index = graphIndexCache.get(fileId);
+        boolean reachable = index.reaches(vertexOf(fileId, index.graph(), from), vertexOf(fileId, index.graph(), to));
+        return new GraphReachabilityDto(from, to, reachable);
+    }
+
+    @Override
+    public GraphPathsDto paths(UUID fileId, String from, String to, Integer limit) {
+        GraphIndex index = graphIndexCache.get(fileId);
+        CompactBpmnGraph graph = index.graph();
+        int maxPaths = limit == null
+                ? graphQueryProperties.getMaxPaths()
+                : Math.max(1, Math.min(limit, graphQueryProperties.getMaxPaths()));
+
+        List<int[]> found = index.paths(vertexOf(fileId, graph, from), vertexOf(fileId, graph, to),
+                maxPaths, graphQueryProperties.getMaxPathLength());
+        boolean truncated = found.size() > maxPaths;
+        List<List<String>> paths = new ArrayList<>();
+        for (int[] path : found.subList(0, Math.min(found.size(), maxPaths))) {
+            List<String> ids = new ArrayList<>(path.length);
+            for (int v : path) ids.add(graph.nodeId(v));
+            paths.add(ids);
+        }
+        return new GraphPathsDto(from, to, paths, truncated);
+    }
+
+    @Override
+    public List<BpmnGraph.BpmnNode> dataStoreNodes(UUID fileId, String dataStoreId) {
+        Set<BpmnGraph.BpmnNode> nodes = new LinkedHashSet<>();
+        for (GraphNeighbourDto neighbour : neighbours(fileId, dataStoreId, GraphDirection.BOTH, EdgeType.DATA_ASSOCIATION)) {
+            nodes.add(neighbour.getNode());
+        }
+        return new ArrayList<>(nodes);
+    }
+
+    private static int vertexOf(UUID fileId, CompactBpmnGraph graph, String nodeId) {
+        int vertex = graph.indexOf(nodeId);
+        if (vertex < 0) {
+            throw new GraphNodeNotFound(fileId, nodeId);
+        }
+        return vertex;
+    }
+
+    /** id, встреченный только в рёбрах, отдаётся как узел UNKNOWN без имени. */
+    private static BpmnGraph.BpmnNode nodeOf(CompactBpmnGraph graph, int vertex) {
+        return graph.isNode(vertex)
+                ? graph.node(vertex)
+                : new BpmnGraph.BpmnNode(graph.nodeId(vertex), null, NodeType.UNKNOWN);
+    }
+}
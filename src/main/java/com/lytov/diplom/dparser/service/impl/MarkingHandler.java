@@ -1,26 +1,53 @@
 package com.lytov.diplom.dparser.service.impl;
 
 import com.lytov.diplom.dparser.configuration.rabbit.DCoreRMQConfig;
+import com.lytov.diplom.dparser.configuration.rabbit.ListenerContainerConfiguration;
+import com.lytov.diplom.dparser.domain.enums.ProcessedMessageKind;
+import com.lytov.diplom.dparser.domain.repository.ProcessedMessageRepository.ProcessedMessage;
 import com.lytov.diplom.dparser.service.dto.AnalyzeRequest;
+import com.lytov.diplom.dparser.service.idempotency.ProcessedMessages;
+import com.lytov.diplom.dparser.service.retry.DelayedRetryRouter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+import java.util.UUID;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MarkingHandler {
 
     private final MarkingService markingService;
+    private final DelayedRetryRouter retryRouter;
+    private final ProcessedMessages processedMessages;
 
-    @RabbitListener(queues = DCoreRMQConfig.FROM_SPPR_MARKING_QUEUE)
-    public void handlerMarking(@Payload AnalyzeRequest request) {
+    @RabbitListener(
+            queues = DCoreRMQConfig.FROM_SPPR_MARKING_QUEUE,
+            containerFactory = ListenerContainerConfiguration.MARKING_CONTAINER_FACTORY
+    )
+    public void handlerMarking(@Payload AnalyzeRequest request, Message message) {
         try {
-            markingService.marking(request);
+            String key = ProcessedMessages.messageKey(ProcessedMessageKind.MARKING, message);
+            Optional<ProcessedMessage> processed = processedMessages.find(key, message);
+            if (processed.isPresent()) {
+                // размеченный файл уже лежит в object storage: повтор публикует тот же id
+                if (ProcessedMessages.replayRequested(message)) {
+                    markingService.publishResult(request, processed.get().resultId());
+                }
+                log.debug("Marking for fileId={} already done as {}, skipping redelivery",
+                        request.getFileId(), processed.get().resultId());
+                return;
+            }
+            UUID markedFileId = markingService.marking(request);
+            processedMessages.complete(key, ProcessedMessageKind.MARKING,
+                    request.getFileId(), request.getProcessId(), markedFileId);
         } catch (Exception e) {
-            log.error("Error marking, {}", e.getMessage());
+            retryRouter.retryOrPark(DCoreRMQConfig.FROM_SPPR_MARKING_QUEUE, message, e);
         }
     }
 }
@@ -0,0 +1,228 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.service.cache.DiIndex.ShapeBounds;
+import com.lytov.diplom.dparser.service.cache.ElementIndex;
+import com.lytov.diplom.dparser.service.cache.ElementIndex.ElementInfo;
+import com.lytov.diplom.dparser.service.dto.AnalyzeRow;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * План разметки, общий для DOM- и потокового режимов: какие элементы помечаются, чем и с какими рисками.
+ * Здесь же правила индексации элементов, чтобы оба режима строили одинаковый {@link ElementIndex}.
+ */
+final class MarkingPlan {
+
+    /**
+     * Счётчик для генерации уникальных id.
+     * Ранее по ошибке использовался org.yaml.snakeyaml.nodes.Tag.SEQ,
+     * из-за чего id получались некорректными (и могли ломать сериализацию).
+     */
+    private static final AtomicLong SEQ = new AtomicLong(0);
+
+    static final Set<String> CONTAINER_TYPES = Set.of("process", "subProcess", "transaction");
+
+    static final Set<String> ACTIVITY_TYPES = Set.of(
+            "task", "userTask", "serviceTask", "scriptTask", "sendTask", "receiveTask", "manualTask",
+            "businessRuleTask", "subProcess", "transaction", "callActivity");
+
+    /** Рёбра, к концам которых крепится пометка; у остальных sourceRef/targetRef не читаются. */
+    static final Set<String> EDGE_TYPES = Set.of("sequenceFlow", "association");
+
+    private MarkingPlan() {
+    }
+
+    static long nextSeq() {
+        return SEQ.incrementAndGet();
+    }
+
+    /**
+     * Запись индекса для BPMN-элемента {@code type} с непустым {@code id}, лежащего внутри {@code container}/{@code activity}.
+     * {@code attributes} отдаёт значение атрибута по имени или {@code null}.
+     */
+    static ElementInfo elementInfo(String id, String type, String container, String activity,
+                                   Function<String, String> attributes) {
+        String childContainer = CONTAINER_TYPES.contains(type) ? id : container;
+        String childActivity = ACTIVITY_TYPES.contains(type) ? id : activity;
+        boolean edge = EDGE_TYPES.contains(type);
+        return new ElementInfo(id, type, childContainer, childActivity,
+                edge ? trimToNull(attributes.apply("sourceRef")) : null,
+                edge ? trimToNull(attributes.apply("targetRef")) : null);
+    }
+
+    static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * Группирует строки по элементу, к которому крепится пометка: на activity из NODE-строк — один boundary,
+     * на остальные элементы — одна аннотация со всеми рисками. Одинаковые refId рёбер разрешаются один раз.
+     * Порядок пометок — порядок первых строк, попавших на элемент.
+     */
+    static Collection<Mark> plan(ElementIndex index, List<AnalyzeRow> rows) {
+        Map<String, ElementInfo> edgeAttachPoints = new HashMap<>();
+        Map<String, Mark> marks = new LinkedHashMap<>();
+
+        for (AnalyzeRow row : rows) {
+            String refId = row.getRefId();
+            if ("NODE".equalsIgnoreCase(row.getBpmnType())) {
+                ElementInfo node = index.get(refId);
+                if (node == null) continue;
+                // Для Event/Gateway/etc. — аннотация
+                markOf(marks, node, node.isActivity()).risks.add(row.getRiskId());
+            } else if ("EDGE".equalsIgnoreCase(row.getBpmnType())) {
+                ElementInfo attachTo;
+                if (edgeAttachPoints.containsKey(refId)) {
+                    attachTo = edgeAttachPoints.get(refId);
+                } else {
+                    attachTo = resolveEdgeAttachPoint(index, refId);
+                    edgeAttachPoints.put(refId, attachTo);
+                }
+                if (attachTo == null) continue;
+                markOf(marks, attachTo, false).risks.add(row.getRiskId() + " (edge)");
+            }
+        }
+        return marks.values();
+    }
+
+    private static Mark markOf(Map<String, Mark> marks, ElementInfo target, boolean boundary) {
+        return marks.computeIfAbsent((boundary ? "B:" : "A:") + target.id(), k -> new Mark(target, boundary));
+    }
+
+    /**
+     * refId иногда приходит составным: "EdgeId:Source->Target".
+     * 1) элемент по id до двоеточия: у sequenceFlow/association — его target, затем source,
+     *    у DataInputAssociation/DataOutputAssociation — activity, внутри которой он лежит;
+     * 2) target после "->";
+     * 3) source между ":" и "->".
+     */
+    private static ElementInfo resolveEdgeAttachPoint(ElementIndex index, String refId) {
+        ElementInfo edge = index.get(normalizeElementId(refId));
+        if (edge != null) {
+            ElementInfo attachTo = firstNonNull(
+                    index.get(edge.targetRef()), index.get(edge.sourceRef()), index.get(edge.activity()));
+            if (attachTo != null) return attachTo;
+        }
+
+        ElementInfo target = index.get(parseTargetId(refId));
+        if (target != null) return target;
+
+        return index.get(parseSourceId(refId));
+    }
+
+    private static ElementInfo firstNonNull(ElementInfo... candidates) {
+        for (ElementInfo candidate : candidates) {
+            if (candidate != null) return candidate;
+        }
+        return null;
+    }
+
+    /**
+     * refId иногда приходит в "расширенном" виде:
+     *   "ElementId:Source->Target"
+     * Для поиска по индексу нужен именно ElementId.
+     */
+    private static String normalizeElementId(String refId) {
+        if (refId == null) return null;
+        int colon = refId.indexOf(':');
+        String id = (colon >= 0) ? refId.substring(0, colon) : refId;
+        return id.trim();
+    }
+
+    /** refId вида "DataInputAssociation_X:Source->Target" */
+    private static String parseTargetId(String compositeId) {
+        if (compositeId == null) return null;
+        int idx = compositeId.lastIndexOf("->");
+        if (idx < 0) return null;
+        return compositeId.substring(idx + 2).trim();
+    }
+
+    /** refId вида "DataInputAssociation_X:Source->Target" */
+    private static String parseSourceId(String compositeId) {
+        if (compositeId == null) return null;
+        int colon = compositeId.indexOf(':');
+        int arrow = compositeId.lastIndexOf("->");
+        if (arrow < 0) return null;
+
+        int start = (colon >= 0) ? colon + 1 : 0;
+        String mid = compositeId.substring(start, arrow).trim();
+
+        // mid может содержать "DataObjectReference_..", но иногда там ещё что-то — возвращаем как есть
+        return mid.isEmpty() ? null : mid;
+    }
+
+    // -------------------- DI PLACEMENT --------------------
+
+    /** Элемент без shape в DI размечается в этой точке. */
+    static ShapeBounds boundsOrFallback(ShapeBounds bounds) {
+        return bounds != null ? bounds : new ShapeBounds(100, 100, 140, 90);
+    }
+
+    /** Boundary в правом верхнем углу activity. */
+    static ShapeBounds boundaryBounds(ShapeBounds host) {
+        return new ShapeBounds(host.x() + host.width() - 10, host.y() - 10, 36, 36);
+    }
+
+    /** Аннотация справа от элемента. */
+    static ShapeBounds noteBounds(ShapeBounds target) {
+        return new ShapeBounds(target.x() + target.width() + 30, target.y(), 240, 70);
+    }
+
+    static String shortId(String uuid) {
+        if (uuid == null) return "NA";
+        return uuid.length() <= 8 ? uuid : uuid.substring(0, 8);
+    }
+
+    /** Пометка одного элемента: риски всех строк, попавших на него, без повторов. */
+    static final class Mark {
+
+        final ElementInfo target;
+        final boolean boundary;
+        final Set<String> risks = new LinkedHashSet<>();
+
+        private Mark(ElementInfo target, boolean boundary) {
+            this.target = target;
+            this.boundary = boundary;
+        }
+
+        String firstRisk() {
+            return risks.iterator().next();
+        }
+
+        String newBoundaryId() {
+            return "RiskBoundary_" + target.id() + "_" + shortId(firstRisk()) + "_" + nextSeq();
+        }
+
+        String newAnnotationId() {
+            return "RiskNote_" + target.id() + "_" + nextSeq();
+        }
+
+        String newAssociationId() {
+            return "RiskAssoc_" + target.id() + "_" + nextSeq();
+        }
+
+        String boundaryName() {
+            return risks.size() == 1 ? "Риск " + shortId(firstRisk()) : "Риски (" + risks.size() + ")";
+        }
+
+        String annotationText() {
+            return risks.size() == 1 ? "Риск: " + firstRisk() : "Риски: " + String.join("; ", risks);
+        }
+
+        /** Ближайший process/subProcess, куда добавляются boundary, аннотация и ассоциация. */
+        String container() {
+            if (target.container() == null) {
+                throw new IllegalStateException("No Process/SubProcess found for element id=" + target.id());
+            }
+            return target.container();
+        }
+    }
+}
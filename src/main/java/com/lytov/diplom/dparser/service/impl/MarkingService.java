@@ -1,8 +1,28 @@
 package com.lytov.diplom.dparser.service.impl;
 
-import com.lytov.diplom.dparser.external.sppr_bd.SpprBdConnector;
+import com.lytov.diplom.dparser.configuration.marking.properties.MarkingProperties;
+import com.lytov.diplom.dparser.configuration.rabbit.DCoreRMQConfig;
+import com.lytov.diplom.dparser.domain.enums.MarkingMode;
+import com.lytov.diplom.dparser.external.storage.FetchedFile;
+import com.lytov.diplom.dparser.external.storage.ObjectStorageFetcher;
+import com.lytov.diplom.dparser.external.storage.ObjectStorageUploader;
+import com.lytov.diplom.dparser.service.cache.DiIndex;
+import com.lytov.diplom.dparser.service.cache.DiIndex.ShapeBounds;
+import com.lytov.diplom.dparser.service.cache.ElementIndex;
+import com.lytov.diplom.dparser.service.cache.ElementIndex.ElementInfo;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmn;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnCache;
+import com.lytov.diplom.dparser.service.concurrency.ParseLimiter;
 import com.lytov.diplom.dparser.service.dto.AnalyzeRequest;
 import com.lytov.diplom.dparser.service.dto.AnalyzeRow;
+import com.lytov.diplom.dparser.service.dto.MarkingResultDto;
+import com.lytov.diplom.dparser.service.impl.MarkingPlan.Mark;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Pipeline;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Stage;
+import com.lytov.diplom.dparser.service.sink.InMemoryBpmnSink;
+import com.lytov.diplom.dparser.service.sink.MarkedBpmnSink;
+import com.lytov.diplom.dparser.service.sink.ObjectStorageBpmnSink;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.camunda.bpm.model.bpmn.Bpmn;
@@ -14,315 +34,238 @@ import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnPlane;
 import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
 import org.camunda.bpm.model.bpmn.instance.dc.Bounds;
 import org.camunda.bpm.model.bpmn.instance.di.Waypoint;
+import org.camunda.bpm.model.xml.instance.DomElement;
 import org.camunda.bpm.model.xml.instance.ModelElementInstance;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.File;
 import java.io.IOException;
 import org.camunda.bpm.model.bpmn.instance.Process;
 
-import java.io.OutputStream;
-import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import java.util.concurrent.atomic.AtomicLong;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MarkingService {
 
-    /**
-     * Счётчик для генерации уникальных id.
-     * Ранее по ошибке использовался org.yaml.snakeyaml.nodes.Tag.SEQ,
-     * из-за чего id получались некорректными (и могли ломать сериализацию).
-     */
-    private static final AtomicLong SEQ = new AtomicLong(0);
+    private final ParsedBpmnCache parsedBpmnCache;
 
-    private final SpprBdConnector spprBdConnector;
-    private final RestTemplate restTemplate;
+    private final PipelineMetrics pipelineMetrics;
 
-    /**
-     * Старый метод оставлен для совместимости.
-     * Он создаёт размеченный BPMN во временном файле и пишет путь в лог.
-     */
-    public void marking(AnalyzeRequest request) {
-        Path saved = markingToTempFile(request);
-        log.info("Marked BPMN saved to: {} ({} bytes)", saved, safeSize(saved));
-    }
+    private final MarkingProperties markingProperties;
 
-    /**
-     * Основной метод разметки: возвращает путь к созданному временному .bpmn файлу.
-     * Это устраняет типовую причину "0 KB" (когда вызывающий код создаёт файл сам,
-     * но MarkingService в него ничего не записывает).
-     */
-    public Path markingToTempFile(AnalyzeRequest request) {
-        String downloadUrl = spprBdConnector.getDownloadUrl(request.getFileId());
-
-        URI uri = UriComponentsBuilder
-                .fromUriString(downloadUrl)
-                .build(true)             // <- ВАЖНО: true = не кодировать заново
-                .toUri();
-
-        ResponseEntity<byte[]> file = restTemplate.exchange(
-                uri,
-                HttpMethod.GET,
-                null,
-                byte[].class
-        );
+    private final StreamingBpmnMarker streamingBpmnMarker;
 
-        byte[] sourceBytes = file.getBody();
-        if (sourceBytes == null || sourceBytes.length == 0) {
-            throw new IllegalStateException("Downloaded BPMN is empty for fileId=" + request.getFileId());
-        }
+    private final ObjectStorageFetcher objectStorageFetcher;
 
-        File localFile;
-        try {
-            localFile = createFile(sourceBytes);
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to create local temp BPMN file", e);
-        }
+    private final ParseLimiter parseLimiter;
 
-        BpmnModelInstance model = Bpmn.readModelFromFile(localFile);
+    private final ObjectStorageUploader objectStorageUploader;
 
-        BpmnPlane plane = ensurePlane(model);
-        Map<String, BpmnShape> shapeByElementId = indexShapes(plane);
-        Map<String, BpmnEdge> edgeByElementId = indexEdges(plane);
-
-        for (AnalyzeRow row : request.getRows()) {
-            if ("NODE".equalsIgnoreCase(row.getBpmnType())) {
-                markNode(model, plane, shapeByElementId, edgeByElementId, row.getRefId(), row.getRiskId());
-            } else if ("EDGE".equalsIgnoreCase(row.getBpmnType())) {
-                markEdge(model, plane, shapeByElementId, edgeByElementId, row.getRefId(), row.getRiskId());
-            }
-        }
+    private final RabbitTemplate rabbitTemplate;
 
-        try {
-            Path savePath = Paths.get("/Users/mihaillytov/Desktop/Диплом/реализация/backend/d-sppr-parent",
-                    UUID.randomUUID() + ".bpmn");
-            try (OutputStream out = Files.newOutputStream(savePath)) {
-                Bpmn.writeModelToStream(out, model);
-            }
-            return savePath;
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to write marked BPMN", e);
-        }
+    /**
+     * Точка входа из очереди: размеченный BPMN потоком загружается в object storage под новым id,
+     * id уходит в {@value DCoreRMQConfig#TO_SPPR_MARKING_RESULT_EXCHANGE}. Локальный диск не используется.
+     *
+     * @return id размеченного файла
+     */
+    public UUID marking(AnalyzeRequest request) {
+        return pipelineMetrics.pipeline(Pipeline.MARKING, () -> {
+            UUID markedFileId = markTo(request, new ObjectStorageBpmnSink(objectStorageUploader, UUID.randomUUID()));
+            publishResult(request, markedFileId);
+            log.info("Marked BPMN for fileId={} stored as {}", request.getFileId(), markedFileId);
+            return markedFileId;
+        });
+    }
+
+    /** Публикует результат уже размеченного файла; для повторной доставки файл заново не размечается. */
+    public void publishResult(AnalyzeRequest request, UUID markedFileId) {
+        MarkingResultDto result = new MarkingResultDto(request.getProcessId(), request.getFileId(), markedFileId);
+        pipelineMetrics.stage(Stage.PUBLISH, () -> {
+            rabbitTemplate.convertAndSend(DCoreRMQConfig.TO_SPPR_MARKING_RESULT_EXCHANGE, "", result);
+            return null;
+        });
     }
 
     /** Удобный вариант, если нужно вернуть файл в HTTP-ответе как байты. */
     public byte[] markingToBytes(AnalyzeRequest request) {
-        Path p = markingToTempFile(request);
+        return markTo(request, new InMemoryBpmnSink());
+    }
+
+    /**
+     * Размечает файл запроса и отдаёт результат в {@code sink}.
+     * <p>
+     * Режим задаёт {@code d-parser.marking.mode}: DOM размечает копию модели из кэша,
+     * STREAM переписывает XML потоком через {@link StreamingBpmnMarker}, не строя модель.
+     */
+    public <R> R markTo(AnalyzeRequest request, MarkedBpmnSink<R> sink) {
         try {
-            return Files.readAllBytes(p);
+            return pipelineMetrics.pipeline(Pipeline.MARKING, () ->
+                    markingProperties.getMode() == MarkingMode.STREAM
+                            ? streamMarking(request, sink)
+                            : domMarking(request, sink));
         } catch (IOException e) {
-            throw new IllegalStateException("Failed to read marked BPMN bytes", e);
+            throw new IllegalStateException("Failed to write marked BPMN", e);
         }
     }
 
-    private static void markNode(
-            BpmnModelInstance model,
-            BpmnPlane plane,
-            Map<String, BpmnShape> shapeByElementId,
-            Map<String, BpmnEdge> edgeByElementId,
-            String elementId,
-            String riskId
-    ) {
-        ModelElementInstance el = model.getModelElementById(elementId);
-        if (el == null) return;
+    private <R> R domMarking(AnalyzeRequest request, MarkedBpmnSink<R> sink) throws IOException {
+        ParsedBpmn source = parsedBpmnCache.get(request.getFileId(),
+                entry -> entry.hasModel() ? entry : null,
+                this::loadModel);
 
-        if (el instanceof Activity act) {
-            BoundaryEvent boundary = addBoundaryMarker(model, act, riskId);
+        BpmnModelInstance model = pipelineMetrics.stage(Stage.MARK, () -> mark(source, request.getRows()));
 
-            // DI: boundary рядом с activity
-            BpmnShape hostShape = shapeByElementId.get(act.getId());
-            Bounds hostBounds = boundsOrFallback(model, hostShape, 100, 100, 140, 90);
+        return pipelineMetrics.stage(Stage.OUTPUT_WRITE, () -> sink.write(out -> Bpmn.writeModelToStream(out, model)));
+    }
 
-            Bounds boundaryBounds = createBounds(model,
-                    hostBounds.getX() + hostBounds.getWidth() - 10,
-                    hostBounds.getY() - 10,
-                    36, 36
-            );
+    /** Скачивание, разметка и запись в sink идут одним потоком; модели и кэша нет. */
+    private <R> R streamMarking(AnalyzeRequest request, MarkedBpmnSink<R> sink) {
+        return objectStorageFetcher.fetch(request.getFileId(), file -> {
+            FetchedFile nonEmpty = file.requireNonEmpty();
+            return parseLimiter.call(() -> sink.write(
+                    out -> streamingBpmnMarker.mark(nonEmpty.body(), out, request.getRows())));
+        });
+    }
 
-            BpmnShape boundaryShape = createShape(model, plane, boundary, boundaryBounds);
-            shapeByElementId.put(boundary.getId(), boundaryShape);
+    /**
+     * Разметка без скачивания и записи: возвращает размеченную копию модели из {@code source}.
+     * Исходная модель в кэше общая, поэтому размечается копия; индексы DI и элементов строятся по исходной один раз.
+     * <p>
+     * Сначала строки сводятся в план (см. {@link MarkingPlan#plan}), затем пометки применяются к копии за один проход.
+     */
+    public static BpmnModelInstance mark(ParsedBpmn source, List<AnalyzeRow> rows) {
+        DiIndex diIndex = source.diIndex(MarkingService::indexDi);
+        ElementIndex elementIndex = source.elementIndex(MarkingService::indexElements);
+        Collection<Mark> marks = MarkingPlan.plan(elementIndex, rows);
 
-        } else if (el instanceof BaseElement be) {
-            // Для Event/Gateway/etc. — аннотация
-            addAnnotationNearElement(model, plane, shapeByElementId, edgeByElementId, be, riskId);
+        BpmnModelInstance model = source.copyModel();
+        BpmnPlane plane = ensurePlane(model);
+        for (Mark mark : marks) {
+            if (mark.boundary) {
+                addBoundaryMarker(model, plane, diIndex, mark);
+            } else {
+                addAnnotationNearElement(model, plane, diIndex, mark);
+            }
         }
+        return model;
     }
 
-    private static BoundaryEvent addBoundaryMarker(BpmnModelInstance model, Activity host, String riskId) {
-        ModelElementInstance container = findOwningProcessOrSubProcess(host);
-
-        BoundaryEvent be = model.newInstance(BoundaryEvent.class);
-        be.setId("RiskBoundary_" + host.getId() + "_" + shortId(riskId) + "_" + SEQ.incrementAndGet());
-        be.setName("Риск " + shortId(riskId));
-        be.setAttachedTo(host);
-        be.setCancelActivity(false);
-
-        // Просто сохраняем riskId в documentation (универсально)
-        Documentation doc = model.newInstance(Documentation.class);
-        doc.setTextContent("RISK_ID=" + riskId);
-        be.getDocumentations().add(doc);
-
-        container.addChildElement(be);
-        return be;
+    private ParsedBpmn loadModel(FetchedFile file, ParsedBpmn entry) throws IOException {
+        FetchedFile nonEmpty = file.requireNonEmpty();
+        entry.setModel(pipelineMetrics.stage(Stage.PARSE, () -> Bpmn.readModelFromStream(nonEmpty.body())));
+        return entry;
     }
 
-    // -------------------- MARK EDGE --------------------
+    // -------------------- ELEMENT INDEX --------------------
 
-    private static void markEdge(
-            BpmnModelInstance model,
-            BpmnPlane plane,
-            Map<String, BpmnShape> shapeByElementId,
-            Map<String, BpmnEdge> edgeByElementId,
-            String refId,
-            String riskId
-    ) {
-        // refId иногда приходит составным: "EdgeId:Source->Target".
-        // Для поиска элемента в модели нам нужен реальный id (обычно до двоеточия).
-        String elementId = normalizeElementId(refId);
-
-        // 1) пробуем найти по нормализованному id
-        ModelElementInstance el = model.getModelElementById(elementId);
-
-        BaseElement attachTo = null;
-
-        if (el instanceof BaseElement be) {
-            attachTo = pickAttachPointForEdge(be);
-        }
+    /**
+     * Один обход DOM исходной модели вместо поиска по id и подъёма по родителям на каждую строку.
+     * DI и расширения лежат в других namespace и не индексируются, как и раньше не находились как BaseElement.
+     */
+    private static ElementIndex indexElements(BpmnModelInstance model) {
+        Map<String, ElementInfo> elements = new HashMap<>();
+        indexChildren(model.getDocument().getRootElement(), null, null, elements);
+        return new ElementIndex(elements);
+    }
 
-        // 2) если refId составной: "...->Target" — пробуем прикрепить к target
-        if (attachTo == null) {
-            String targetId = parseTargetId(refId);
-            if (targetId != null) {
-                ModelElementInstance t = model.getModelElementById(targetId);
-                if (t instanceof BaseElement tbe) attachTo = tbe;
+    private static void indexChildren(DomElement parent, String container, String activity,
+                                      Map<String, ElementInfo> elements) {
+        for (DomElement child : parent.getChildElements()) {
+            if (!StaxBpmnToGraphParser.BPMN_NS.equals(child.getNamespaceURI())) continue;
+
+            String id = MarkingPlan.trimToNull(child.getAttribute("id"));
+            String childContainer = container;
+            String childActivity = activity;
+            if (id != null) {
+                ElementInfo info = MarkingPlan.elementInfo(id, child.getLocalName(), container, activity, child::getAttribute);
+                elements.put(id, info);
+                childContainer = info.container();
+                childActivity = info.activity();
             }
+            indexChildren(child, childContainer, childActivity, elements);
         }
+    }
 
-        // 3) fallback: если есть source до "->" — пробуем прикрепить к source
-        if (attachTo == null) {
-            String sourceId = parseSourceId(refId);
-            if (sourceId != null) {
-                ModelElementInstance s = model.getModelElementById(sourceId);
-                if (s instanceof BaseElement sbe) attachTo = sbe;
-            }
-        }
+    // -------------------- BOUNDARY --------------------
 
-        if (attachTo != null) {
-            addAnnotationNearElement(model, plane, shapeByElementId, edgeByElementId, attachTo, riskId + " (edge)");
-        }
-    }
+    private static void addBoundaryMarker(BpmnModelInstance model, BpmnPlane plane, DiIndex diIndex, Mark mark) {
+        if (!(model.getModelElementById(mark.target.id()) instanceof Activity host)) return;
+        ModelElementInstance container = containerOf(model, mark);
 
-    private static BaseElement pickAttachPointForEdge(BaseElement edgeElement) {
-        if (edgeElement instanceof SequenceFlow sf) {
-            FlowNode target = sf.getTarget();
-            if (target != null) return target;
-            FlowNode source = sf.getSource();
-            if (source != null) return source;
-        }
-        if (edgeElement instanceof org.camunda.bpm.model.bpmn.instance.Association a) {
-            BaseElement tgt = (BaseElement) a.getTarget();
-            if (tgt != null) return tgt;
-            BaseElement src = (BaseElement) a.getSource();
-            if (src != null) return src;
-        }
+        BoundaryEvent be = model.newInstance(BoundaryEvent.class, mark.newBoundaryId());
+        be.setName(mark.boundaryName());
+        be.setAttachedTo(host);
+        be.setCancelActivity(false);
 
-        // DataInputAssociation/DataOutputAssociation (DataAssociation) часто "внутри" Activity:
-        // крепим к ближайшему Activity вверх по parent цепочке
-        ModelElementInstance cur = edgeElement;
-        while (cur != null) {
-            if (cur instanceof Activity act) return act;
-            cur = cur.getParentElement();
+        // Просто сохраняем riskId в documentation (универсально), по одной записи на риск
+        for (String riskId : mark.risks) {
+            Documentation doc = model.newInstance(Documentation.class);
+            doc.setTextContent("RISK_ID=" + riskId);
+            be.getDocumentations().add(doc);
         }
 
-        return null;
+        container.addChildElement(be);
+
+        // DI: boundary рядом с activity
+        ShapeBounds hostBounds = MarkingPlan.boundsOrFallback(diIndex.shapes().get(host.getId()));
+
+        createShape(model, plane, be, MarkingPlan.boundaryBounds(hostBounds));
     }
 
     // -------------------- ANNOTATION + ASSOCIATION + DI --------------------
 
-    private static void addAnnotationNearElement(
-            BpmnModelInstance model,
-            BpmnPlane plane,
-            Map<String, BpmnShape> shapeByElementId,
-            Map<String, BpmnEdge> edgeByElementId,
-            BaseElement target,
-            String riskText
-    ) {
-        ModelElementInstance container = findOwningProcessOrSubProcess(target);
+    private static void addAnnotationNearElement(BpmnModelInstance model, BpmnPlane plane, DiIndex diIndex, Mark mark) {
+        if (!(model.getModelElementById(mark.target.id()) instanceof BaseElement target)) return;
+        ModelElementInstance container = containerOf(model, mark);
 
         // 1) TextAnnotation
-        TextAnnotation ta = model.newInstance(TextAnnotation.class);
-        ta.setId("RiskNote_" + target.getId() + "_" + SEQ.incrementAndGet());
+        TextAnnotation ta = model.newInstance(TextAnnotation.class, mark.newAnnotationId());
 
         Text txt = model.newInstance(Text.class);
-        txt.setTextContent("Риск: " + riskText);
+        txt.setTextContent(mark.annotationText());
         ta.setText(txt);
 
         container.addChildElement(ta);
 
         // 2) Association (target -> annotation)
         org.camunda.bpm.model.bpmn.instance.Association assoc =
-                model.newInstance(org.camunda.bpm.model.bpmn.instance.Association.class);
-        assoc.setId("RiskAssoc_" + target.getId() + "_" + SEQ.incrementAndGet());
+                model.newInstance(org.camunda.bpm.model.bpmn.instance.Association.class, mark.newAssociationId());
         assoc.setSource(target);
         assoc.setTarget(ta);
 
         container.addChildElement(assoc);
 
         // 3) DI placement
-        BpmnShape targetShape = shapeByElementId.get(target.getId());
-        Bounds targetBounds = boundsOrFallback(model, targetShape, 100, 100, 140, 90);
+        ShapeBounds targetBounds = MarkingPlan.boundsOrFallback(diIndex.shapes().get(target.getId()));
+        ShapeBounds noteBounds = MarkingPlan.noteBounds(targetBounds);
 
-        Bounds noteBounds = createBounds(model,
-                targetBounds.getX() + targetBounds.getWidth() + 30,
-                targetBounds.getY(),
-                240, 70
-        );
-
-        BpmnShape noteShape = createShape(model, plane, ta, noteBounds);
-        shapeByElementId.put(ta.getId(), noteShape);
+        createShape(model, plane, ta, noteBounds);
 
-        BpmnEdge assocEdge = createEdge(model, plane, assoc,
-                centerX(targetBounds), centerY(targetBounds),
-                centerX(noteBounds), centerY(noteBounds)
+        createEdge(model, plane, assoc,
+                targetBounds.centerX(), targetBounds.centerY(),
+                noteBounds.centerX(), noteBounds.centerY()
         );
-        edgeByElementId.put(assoc.getId(), assocEdge);
     }
 
     // -------------------- CONTAINER (NO FlowElementsContainer) --------------------
 
     /**
-     * Находит ближайший Process или SubProcess — это корректный контейнер для добавления FlowElements
+     * Ближайший Process или SubProcess из индекса — это корректный контейнер для добавления FlowElements
      * (BoundaryEvent/TextAnnotation/Association).
      */
-    private static ModelElementInstance findOwningProcessOrSubProcess(ModelElementInstance element) {
-        ModelElementInstance cur = element;
-        while (cur != null) {
-            if (cur instanceof SubProcess) return cur;
-            if (cur instanceof Process) return cur;
-            cur = cur.getParentElement();
+    private static ModelElementInstance containerOf(BpmnModelInstance model, Mark mark) {
+        ModelElementInstance container = model.getModelElementById(mark.container());
+        if (container == null) {
+            throw new IllegalStateException("No Process/SubProcess found for element id=" + mark.target.id());
         }
-        throw new IllegalStateException("No Process/SubProcess found for element id=" + safeId(element));
-    }
-
-    private static String safeId(ModelElementInstance e) {
-        if (e == null) return "null";
-        if (e instanceof BaseElement be) return be.getId();
-        return e.getElementType().getTypeName();
+        return container;
     }
 
     // -------------------- DI HELPERS --------------------
@@ -332,8 +275,7 @@ public class MarkingService {
         BpmnDiagram diagram;
 
         if (diagrams.isEmpty()) {
-            diagram = model.newInstance(BpmnDiagram.class);
-            diagram.setId("BpmnDiagram_" + SEQ.incrementAndGet());
+            diagram = model.newInstance(BpmnDiagram.class, "BpmnDiagram_" + MarkingPlan.nextSeq());
             model.getDefinitions().addChildElement(diagram);
         } else {
             diagram = diagrams.iterator().next();
@@ -341,8 +283,7 @@ public class MarkingService {
 
         BpmnPlane plane = diagram.getBpmnPlane();
         if (plane == null) {
-            plane = model.newInstance(BpmnPlane.class);
-            plane.setId("BpmnPlane_" + SEQ.incrementAndGet());
+            plane = model.newInstance(BpmnPlane.class, "BpmnPlane_" + MarkingPlan.nextSeq());
 
             Process p = firstProcess(model);
             if (p != null) plane.setBpmnElement(p);
@@ -358,29 +299,32 @@ public class MarkingService {
         return processes.isEmpty() ? null : processes.iterator().next();
     }
 
-    private static Map<String, BpmnShape> indexShapes(BpmnPlane plane) {
-        Map<String, BpmnShape> map = new HashMap<>();
-        for (BpmnShape s : plane.getChildElementsByType(BpmnShape.class)) {
-            BaseElement be = s.getBpmnElement();
-            if (be != null && be.getId() != null) map.put(be.getId(), s);
+    /** Индекс по исходной модели: если DI-плоскости нет, ensurePlane создаст её у копии пустой. */
+    private static DiIndex indexDi(BpmnModelInstance model) {
+        Map<String, ShapeBounds> shapes = new HashMap<>();
+        // ensurePlane берёт первую диаграмму, индексируем её же
+        Collection<BpmnDiagram> diagrams = model.getModelElementsByType(BpmnDiagram.class);
+        BpmnPlane plane = diagrams.isEmpty() ? null : diagrams.iterator().next().getBpmnPlane();
+        if (plane != null) {
+            indexShapes(plane, shapes);
         }
-        return map;
+        return new DiIndex(shapes);
     }
 
-    private static Map<String, BpmnEdge> indexEdges(BpmnPlane plane) {
-        Map<String, BpmnEdge> map = new HashMap<>();
-        for (BpmnEdge e : plane.getChildElementsByType(BpmnEdge.class)) {
-            BaseElement be = e.getBpmnElement();
-            if (be != null && be.getId() != null) map.put(be.getId(), e);
+    private static void indexShapes(BpmnPlane plane, Map<String, ShapeBounds> map) {
+        for (BpmnShape s : plane.getChildElementsByType(BpmnShape.class)) {
+            BaseElement be = s.getBpmnElement();
+            Bounds b = s.getBounds();
+            if (be != null && be.getId() != null && b != null) {
+                map.put(be.getId(), new ShapeBounds(b.getX(), b.getY(), b.getWidth(), b.getHeight()));
+            }
         }
-        return map;
     }
 
-    private static BpmnShape createShape(BpmnModelInstance model, BpmnPlane plane, BaseElement element, Bounds bounds) {
-        BpmnShape shape = model.newInstance(BpmnShape.class);
-        shape.setId("DI_Shape_" + element.getId() + "_" + SEQ.incrementAndGet());
+    private static BpmnShape createShape(BpmnModelInstance model, BpmnPlane plane, BaseElement element, ShapeBounds bounds) {
+        BpmnShape shape = model.newInstance(BpmnShape.class, "DI_Shape_" + element.getId() + "_" + MarkingPlan.nextSeq());
         shape.setBpmnElement(element);
-        shape.setBounds(bounds);
+        shape.setBounds(createBounds(model, bounds.x(), bounds.y(), bounds.width(), bounds.height()));
         plane.addChildElement(shape);
         return shape;
     }
@@ -389,8 +333,7 @@ public class MarkingService {
             BpmnModelInstance model, BpmnPlane plane, BaseElement element,
             double x1, double y1, double x2, double y2
     ) {
-        BpmnEdge edge = model.newInstance(BpmnEdge.class);
-        edge.setId("DI_Edge_" + element.getId() + "_" + SEQ.incrementAndGet());
+        BpmnEdge edge = model.newInstance(BpmnEdge.class, "DI_Edge_" + element.getId() + "_" + MarkingPlan.nextSeq());
         edge.setBpmnElement(element);
 
         Waypoint w1 = model.newInstance(Waypoint.class);
@@ -416,67 +359,4 @@ public class MarkingService {
         b.setHeight(h);
         return b;
     }
-
-    private static Bounds boundsOrFallback(BpmnModelInstance model, BpmnShape shape, double fx, double fy, double fw, double fh) {
-        if (shape != null && shape.getBounds() != null) return shape.getBounds();
-        return createBounds(model, fx, fy, fw, fh);
-    }
-
-    private static double centerX(Bounds b) { return b.getX() + b.getWidth() / 2.0; }
-    private static double centerY(Bounds b) { return b.getY() + b.getHeight() / 2.0; }
-
-    // -------------------- PARSING HELPERS --------------------
-
-    /**
-     * refId иногда приходит в "расширенном" виде:
-     *   "ElementId:Source->Target"
-     * Для поиска по model.getModelElementById нужен именно ElementId.
-     */
-    private static String normalizeElementId(String refId) {
-        if (refId == null) return null;
-        int colon = refId.indexOf(':');
-        String id = (colon >= 0) ? refId.substring(0, colon) : refId;
-        return id.trim();
-    }
-
-    /** refId вида "DataInputAssociation_X:Source->Target" */
-    private static String parseTargetId(String compositeId) {
-        if (compositeId == null) return null;
-        int idx = compositeId.lastIndexOf("->");
-        if (idx < 0) return null;
-        return compositeId.substring(idx + 2).trim();
-    }
-
-    /** refId вида "DataInputAssociation_X:Source->Target" */
-    private static String parseSourceId(String compositeId) {
-        if (compositeId == null) return null;
-        int colon = compositeId.indexOf(':');
-        int arrow = compositeId.lastIndexOf("->");
-        if (arrow < 0) return null;
-
-        int start = (colon >= 0) ? colon + 1 : 0;
-        String mid = compositeId.substring(start, arrow).trim();
-
-        // mid может содержать "DataObjectReference_..", но иногда там ещё что-то — возвращаем как есть
-        return mid.isEmpty() ? null : mid;
-    }
-
-    private static String shortId(String uuid) {
-        if (uuid == null) return "NA";
-        return uuid.length() <= 8 ? uuid : uuid.substring(0, 8);
-    }
-
-    private static long safeSize(Path path) {
-        try {
-            return Files.size(path);
-        } catch (Exception e) {
-            return -1L;
-        }
-    }
-    private File createFile(byte[] data) throws IOException {
-        String tmpdir = System.getProperty("java.io.tmpdir");
-        Path filepath = Paths.get(tmpdir, UUID.randomUUID().toString());
-        Files.write(filepath, data);
-        return filepath.toFile();
-    }
 }
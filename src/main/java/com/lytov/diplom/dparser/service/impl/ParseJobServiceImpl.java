@@ -0,0 +1,189 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.configuration.jobs.ParseJobExecutorConfiguration;
+import com.lytov.diplom.dparser.configuration.jobs.properties.ParseJobProperties;
+import com.lytov.diplom.dparser.domain.entity.ParseJob;
+import com.lytov.diplom.dparser.domain.enums.ParseJobStatus;
+import com.lytov.diplom.dparser.domain.repository.ParseJobRepository;
+import com.lytov.diplom.dparser.exception.ParseJobRejected;
+import com.lytov.diplom.dparser.service.api.ParseJobService;
+import com.lytov.diplom.dparser.service.api.ParserProcessService;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.dto.ParseJobDto;
+import com.lytov.diplom.dparser.service.jobs.ParseJobMapper;
+import com.lytov.diplom.dparser.service.jobs.ParseJobSubscriptions;
+import com.lytov.diplom.dparser.service.jobs.ParseJobSweeper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронный вариант {@link ParserProcessService#parserProcess}: поток запроса только сохраняет задачу,
+ * а скачивание и разбор идут в ограниченном пуле {@link ParseJobExecutorConfiguration#PARSE_JOB_EXECUTOR}.
+ * Состояние задачи хранится в parse_job, поэтому опрашивать её можно через любой экземпляр.
+ * <p>
+ * Задача выполняется только в пуле создавшего её экземпляра. Если он остановился, не доделав её, задача
+ * помечается FAILED при его следующем старте, а если он не вернулся с тем же именем — через
+ * {@link ParseJobProperties#getJobTimeout()} ({@link ParseJobSweeper}). Строки старше
+ * {@link ParseJobProperties#getRetention()} удаляются попутно с новыми задачами.
+ */
+@Slf4j
+@Service
+public class ParseJobServiceImpl implements ParseJobService {
+
+    private static final long PURGE_INTERVAL_HOURS = 1;
+
+    private final ParserProcessService parserProcessService;
+    private final ParseJobRepository repository;
+    private final ParseJobMapper mapper;
+    private final ParseJobSubscriptions subscriptions;
+    private final TaskExecutor executor;
+    private final ParseJobProperties properties;
+    private final Clock clock;
+    /** Задачи этого экземпляра, созданные раньше, достались ему от прошлого запуска. */
+    private final Instant startedAt;
+    private final AtomicReference<Instant> nextPurge = new AtomicReference<>(Instant.MIN);
+
+    @Autowired
+    public ParseJobServiceImpl(
+            ParserProcessService parserProcessService,
+            ParseJobRepository repository,
+            ParseJobMapper mapper,
+            ParseJobSubscriptions subscriptions,
+            @Qualifier(ParseJobExecutorConfiguration.PARSE_JOB_EXECUTOR) TaskExecutor executor,
+            ParseJobProperties properties
+    ) {
+        this(parserProcessService, repository, mapper, subscriptions, executor, properties, Clock.systemUTC());
+    }
+
+    ParseJobServiceImpl(
+            ParserProcessService parserProcessService,
+            ParseJobRepository repository,
+            ParseJobMapper mapper,
+            ParseJobSubscriptions subscriptions,
+            TaskExecutor executor,
+            ParseJobProperties properties,
+            Clock clock
+    ) {
+        this.parserProcessService = parserProcessService;
+        this.repository = repository;
+        this.mapper = mapper;
+        this.subscriptions = subscriptions;
+        this.executor = executor;
+        this.properties = properties;
+        this.clock = clock;
+        this.startedAt = clock.instant();
+    }
+
+    /** Незавершённые задачи прошлого запуска этого экземпляра уже никто не выполнит. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterrupted() {
+        int failed = repository.fail(properties.getInstanceId(),
+                EnumSet.of(ParseJobStatus.QUEUED, ParseJobStatus.RUNNING), startedAt,
+                "Interrupted by restart of instance " + properties.getInstanceId(), clock.instant());
+        if (failed > 0) {
+            log.warn("Marked {} parse jobs of instance {} interrupted by restart as FAILED", failed, properties.getInstanceId());
+        }
+        purgeExpired();
+    }
+
+    @Override
+    public ParseJobDto submit(UUID fileId) {
+        purgeExpired();
+        ParseJob job = repository.save(ParseJob.queued(fileId, properties.getInstanceId(), clock.instant()));
+        try {
+            executor.execute(() -> run(job.getId(), fileId));
+        } catch (TaskRejectedException e) {
+            // клиент получает 503 без id задачи — строка ему не нужна
+            repository.delete(job);
+            throw new ParseJobRejected(fileId);
+        }
+        return mapper.toDto(job);
+    }
+
+    @Override
+    public Optional<ParseJobDto> find(UUID jobId) {
+        return repository.findById(jobId).map(mapper::toDto);
+    }
+
+    @Override
+    public Optional<SseEmitter> subscribe(UUID jobId) {
+        if (!repository.existsById(jobId)) {
+            return Optional.empty();
+        }
+        return Optional.of(subscriptions.subscribe(jobId));
+    }
+
+    private void run(UUID jobId, UUID fileId) {
+        boolean started = update(jobId, job -> {
+            job.setStatus(ParseJobStatus.RUNNING);
+            job.setStartedAt(clock.instant());
+        });
+        if (!started) {
+            return;
+        }
+        try {
+            List<Component> components = parserProcessService.parserProcess(fileId);
+            String result = mapper.writeComponents(components);
+            update(jobId, job -> {
+                job.setStatus(ParseJobStatus.SUCCEEDED);
+                job.setResult(result);
+                job.setFinishedAt(clock.instant());
+            });
+        } catch (Exception e) {
+            log.warn("Parse job {} for file {} failed", jobId, fileId, e);
+            update(jobId, job -> {
+                job.setStatus(ParseJobStatus.FAILED);
+                job.setError(e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+                job.setFinishedAt(clock.instant());
+            });
+        }
+    }
+
+    /**
+     * @return false, если задача уже завершена: её успел пометить FAILED {@link ParseJobSweeper},
+     * и финальный статус, о котором узнали подписчики, не переписывается
+     */
+    private boolean update(UUID jobId, Consumer<ParseJob> change) {
+        ParseJob job = repository.findById(jobId)
+                .orElseThrow(() -> new IllegalStateException("Parse job not found id=" + jobId));
+        if (job.getStatus().isTerminal()) {
+            log.warn("Parse job {} is already {}, leaving it as is", jobId, job.getStatus());
+            return false;
+        }
+        change.accept(job);
+        subscriptions.publish(mapper.toDto(repository.save(job)));
+        return true;
+    }
+
+    /** Старые задачи удаляются попутно, не чаще раза в {@value #PURGE_INTERVAL_HOURS} ч. */
+    private void purgeExpired() {
+        Instant now = clock.instant();
+        Instant purgeAt = nextPurge.get();
+        if (now.isBefore(purgeAt) || !nextPurge.compareAndSet(purgeAt, now.plus(Duration.ofHours(PURGE_INTERVAL_HOURS)))) {
+            return;
+        }
+        try {
+            int deleted = repository.deleteCreatedBefore(now.minus(properties.getRetention()));
+            log.debug("Purged {} expired parse jobs", deleted);
+        } catch (RuntimeException e) {
+            log.warn("Failed to purge expired parse jobs: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.api.BpmnToGraphParser;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковая реализация {@link BpmnToGraphParser}: один проход StAX по XML без построения DOM.
+ * <p>
+ * Узлы добавляются по мере чтения, рёбра откладываются и разрешаются в конце документа,
+ * потому что sourceRef/targetRef могут ссылаться на элементы, объявленные ниже по файлу.
+ * Набор узлов и рёбер совпадает с {@link BpmnToGraphParserImpl#parse}; порядок узлов — документный.
+ * В отличие от Camunda, XML не валидируется по XSD, висячие ссылки не приводят к ошибке.
+ */
+@Slf4j
+@Service
+public class StaxBpmnToGraphParser implements BpmnToGraphParser {
+
+    static final String BPMN_NS = "http://www.omg.org/spec/BPMN/20100524/MODEL";
+
+    /**
+     * localName -> тип, повторяет {@code mapFlowNodeType} для всех наследников FlowNode в Camunda.
+     * adHocSubProcess в модели Camunda нет: DOM-путь не создаёт для него узла (вложенные элементы читаются),
+     * поэтому и здесь он не узел.
+     */
+    private static final Map<String, NodeType> FLOW_NODE_TYPES = Map.ofEntries(
+            Map.entry("task", NodeType.TASK),
+            Map.entry("sendTask", NodeType.TASK),
+            Map.entry("receiveTask", NodeType.TASK),
+            Map.entry("manualTask", NodeType.TASK),
+            Map.entry("businessRuleTask", NodeType.TASK),
+            Map.entry("userTask", NodeType.USER_TASK),
+            Map.entry("serviceTask", NodeType.SERVICE_TASK),
+            Map.entry("scriptTask", NodeType.SCRIPT_TASK),
+            Map.entry("startEvent", NodeType.START_EVENT),
+            Map.entry("endEvent", NodeType.END_EVENT),
+            Map.entry("intermediateCatchEvent", NodeType.INTERMEDIATE_CATCH_EVENT),
+            Map.entry("intermediateThrowEvent", NodeType.INTERMEDIATE_THROW_EVENT),
+            Map.entry("boundaryEvent", NodeType.BOUNDARY_EVENT),
+            Map.entry("exclusiveGateway", NodeType.EXCLUSIVE_GATEWAY),
+            Map.entry("parallelGateway", NodeType.PARALLEL_GATEWAY),
+            Map.entry("inclusiveGateway", NodeType.INCLUSIVE_GATEWAY),
+            Map.entry("eventBasedGateway", NodeType.EVENT_BASED_GATEWAY),
+            Map.entry("complexGateway", NodeType.UNKNOWN),
+            Map.entry("subProcess", NodeType.SUB_PROCESS),
+            Map.entry("transaction", NodeType.SUB_PROCESS),
+            Map.entry("callActivity", NodeType.CALL_ACTIVITY)
+    );
+
+    private final XMLInputFactory inputFactory = createInputFactory();
+
+    @Override
+    public BpmnGraph parse(InputStream bpmnXml) {
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(bpmnXml);
+            return new Pass(reader).run();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Failed to parse BPMN stream", e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // BPMN не использует DTD; заодно закрываем XXE
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            log.debug("Failed to close XML reader: {}", e.getMessage());
+        }
+    }
+
+    /** Состояние одного прохода по документу. */
+    private static final class Pass {
+
+        private final XMLStreamReader reader;
+        private final BpmnGraph graph = new BpmnGraph();
+
+        /** id -> name для всех BPMN-элементов с id (нужно для узлов UNKNOWN, как в ensureNodeExists). */
+        private final Map<String, String> namesById = new HashMap<>();
+
+        private final List<String[]> sequenceFlows = new ArrayList<>();
+        private final List<PendingDataAssociation> dataAssociations = new ArrayList<>();
+        private final List<String[]> messageFlows = new ArrayList<>();
+
+        /** id открытых элементов (null, если у элемента нет id). */
+        private String[] idStack = new String[32];
+        private int depth;
+
+        private PendingDataAssociation currentAssociation;
+        private int currentAssociationDepth;
+
+        private Pass(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        private BpmnGraph run() throws XMLStreamException {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    onStart();
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    onEnd();
+                }
+            }
+            resolveEdges();
+            return graph;
+        }
+
+        private void onStart() throws XMLStreamException {
+            if (!BPMN_NS.equals(reader.getNamespaceURI())) {
+                push(null);
+                return;
+            }
+            String localName = reader.getLocalName();
+
+            if (currentAssociation != null && depth == currentAssociationDepth + 1) {
+                // <sourceRef>/<targetRef> читаем целиком: getElementText доходит до END_ELEMENT
+                if ("sourceRef".equals(localName)) {
+                    currentAssociation.sources.add(reader.getElementText().trim());
+                    return;
+                }
+                if ("targetRef".equals(localName)) {
+                    currentAssociation.target = reader.getElementText().trim();
+                    return;
+                }
+            }
+
+            String id = reader.getAttributeValue(null, "id");
+            String name = reader.getAttributeValue(null, "name");
+            if (id != null) {
+                namesById.putIfAbsent(id, name != null ? name : "");
+            }
+
+            NodeType flowNodeType = FLOW_NODE_TYPES.get(localName);
+            if (flowNodeType != null && id != null) {
+                graph.addNode(new BpmnGraph.BpmnNode(id, name, flowNodeType));
+            } else if ("dataObjectReference".equals(localName) && id != null) {
+                graph.addNode(new BpmnGraph.BpmnNode(id, name, NodeType.DATA_OBJECT_REF));
+            } else if ("dataStoreReference".equals(localName) && id != null) {
+                graph.addNode(new BpmnGraph.BpmnNode(id, name, NodeType.DATA_STORE_REF));
+            } else if ("sequenceFlow".equals(localName)) {
+                sequenceFlows.add(new String[]{id, attr("sourceRef"), attr("targetRef")});
+            } else if ("messageFlow".equals(localName)) {
+                messageFlows.add(new String[]{id, attr("sourceRef"), attr("targetRef")});
+            } else if ("dataInputAssociation".equals(localName) || "dataOutputAssociation".equals(localName)) {
+                // в DOM-версии target ребра — родитель ассоциации (activity/event)
+                currentAssociation = new PendingDataAssociation(id, depth > 0 ? idStack[depth - 1] : null);
+                currentAssociationDepth = depth;
+            }
+
+            push(id);
+        }
+
+        private void onEnd() {
+            depth--;
+            if (currentAssociation != null && depth == currentAssociationDepth) {
+                dataAssociations.add(currentAssociation);
+                currentAssociation = null;
+            }
+        }
+
+        private void push(String id) {
+            if (depth == idStack.length) {
+                idStack = Arrays.copyOf(idStack, depth * 2);
+            }
+            idStack[depth++] = id;
+        }
+
+        private String attr(String name) {
+            String value = reader.getAttributeValue(null, name);
+            return value != null ? value.trim() : null;
+        }
+
+        private void resolveEdges() {
+            for (String[] sf : sequenceFlows) {
+                ensureNodeExists(sf[1]);
+                ensureNodeExists(sf[2]);
+                graph.addEdge(new BpmnGraph.BpmnEdge(sf[0], EdgeType.SEQUENCE_FLOW, sf[1], sf[2]));
+            }
+
+            for (PendingDataAssociation da : dataAssociations) {
+                if (da.target == null || !namesById.containsKey(da.target)) continue;
+                ensureNodeExists(da.target);
+
+                for (String sourceId : da.sources) {
+                    if (!namesById.containsKey(sourceId)) continue;
+                    ensureNodeExists(sourceId);
+
+                    String edgeId = da.id + ":" + sourceId + "->" + da.parentId;
+                    graph.addEdge(new BpmnGraph.BpmnEdge(edgeId, EdgeType.DATA_ASSOCIATION, sourceId, da.parentId));
+                }
+            }
+
+            for (String[] mf : messageFlows) {
+                if (mf[1] == null || mf[2] == null) continue;
+                ensureNodeExists(mf[1]);
+                ensureNodeExists(mf[2]);
+                graph.addEdge(new BpmnGraph.BpmnEdge(mf[0], EdgeType.MESSAGE_FLOW, mf[1], mf[2]));
+            }
+        }
+
+        private void ensureNodeExists(String id) {
+            if (id == null) return;
+            String name = namesById.get(id);
+            if (name == null) return;
+            graph.nodes.putIfAbsent(id, new BpmnGraph.BpmnNode(id, name, NodeType.UNKNOWN));
+        }
+    }
+
+    private static final class PendingDataAssociation {
+        private final String id;
+        private final String parentId;
+        private final List<String> sources = new ArrayList<>(1);
+        private String target;
+
+        private PendingDataAssociation(String id, String parentId) {
+            this.id = id;
+            this.parentId = parentId;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.configuration.marking.properties.MarkingProperties;
+import com.lytov.diplom.dparser.service.cache.DiIndex.ShapeBounds;
+import com.lytov.diplom.dparser.service.cache.ElementIndex;
+import com.lytov.diplom.dparser.service.cache.ElementIndex.ElementInfo;
+import com.lytov.diplom.dparser.service.dto.AnalyzeRow;
+import com.lytov.diplom.dparser.service.impl.MarkingPlan.Mark;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Stage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Потоковая разметка: XML переписывается событиями StAX без модели Camunda, результат совпадает с
+ * {@link MarkingService#mark} с точностью до форматирования.
+ * <p>
+ * Тело нужно дважды. Файл в пределах {@code d-parser.marking.stream-buffer-limit} держится в памяти, больший
+ * дописывается во временный файл, и оба прохода читают его с диска. Первый проход строит {@link ElementIndex}
+ * (только строки), по индексу строится тот же {@link MarkingPlan}. Второй проход копирует события и
+ * вставляет boundaryEvent, textAnnotation и association в свой контейнер, а BPMNShape/BPMNEdge — в конец
+ * первой BPMNPlane; границы размеченных элементов берутся из этой же плоскости по ходу копирования.
+ * Кроме индекса, плана и не больше лимита исходных байт в памяти ничего не остаётся, DOM не строится.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingBpmnMarker {
+
+    static final String BPMNDI_NS = "http://www.omg.org/spec/BPMN/20100524/DI";
+    static final String DC_NS = "http://www.omg.org/spec/DD/20100524/DC";
+    static final String DI_NS = "http://www.omg.org/spec/DD/20100524/DI";
+
+    /** Дочерние элементы контейнера, перед которыми по XSD должны закончиться flowElement. */
+    private static final Set<String> ARTIFACT_TYPES = Set.of("textAnnotation", "association", "group");
+
+    /**
+     * Дочерние элементы process, которые по XSD идут после artifact. В subProcess те же resourceRole
+     * и performer стоят до flowElement, поэтому там вставка по ним не делается.
+     */
+    private static final Set<String> AFTER_ARTIFACT_TYPES = Set.of(
+            "resourceRole", "performer", "humanPerformer", "potentialOwner", "correlationSubscription", "supports");
+
+    private static final QName ID = new QName("id");
+    private static final QName BPMN_ELEMENT = new QName("bpmnElement");
+    private static final QName X = new QName("x");
+    private static final QName Y = new QName("y");
+    private static final QName WIDTH = new QName("width");
+    private static final QName HEIGHT = new QName("height");
+
+    private final PipelineMetrics pipelineMetrics;
+
+    private final MarkingProperties markingProperties;
+
+    private final XMLInputFactory inputFactory = StaxBpmnToGraphParser.createInputFactory();
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+
+    /**
+     * Размечает {@code bpmn} и пишет результат в {@code out}. Оба потока остаются открытыми.
+     */
+    public void mark(InputStream bpmn, OutputStream out, List<AnalyzeRow> rows) throws IOException {
+        long limit = markingProperties.getStreamBufferLimit().toBytes();
+        byte[] head = bpmn.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, limit + 1));
+        if (head.length <= limit) {
+            mark(() -> new ByteArrayInputStream(head), out, rows);
+            return;
+        }
+
+        Path spool = Files.createTempFile("d-parser-marking-", ".bpmn");
+        try {
+            try (OutputStream copy = Files.newOutputStream(spool)) {
+                copy.write(head);
+                bpmn.transferTo(copy);
+            }
+            mark(() -> new BufferedInputStream(Files.newInputStream(spool)), out, rows);
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    private void mark(Source source, OutputStream out, List<AnalyzeRow> rows) throws IOException {
+        ElementIndex index = pipelineMetrics.stage(Stage.PARSE, () -> {
+            try (InputStream in = source.open()) {
+                return index(in);
+            }
+        });
+
+        Collection<Mark> marks = MarkingPlan.plan(index, rows);
+
+        pipelineMetrics.stage(Stage.MARK, () -> {
+            try (InputStream in = source.open()) {
+                rewrite(in, out, marks);
+            }
+            return null;
+        });
+    }
+
+    /** Исходное тело, которое можно прочитать ещё раз. */
+    @FunctionalInterface
+    private interface Source {
+        InputStream open() throws IOException;
+    }
+
+    // -------------------- FIRST PASS --------------------
+
+    /** Тот же индекс, что строит {@code MarkingService} по DOM: BPMN-элементы вне чужих namespace. */
+    ElementIndex index(InputStream bpmn) {
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(bpmn);
+            return index(reader);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Failed to index BPMN stream", e);
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private static ElementIndex index(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, ElementInfo> elements = new HashMap<>();
+        // контейнер и activity для детей каждого открытого BPMN-элемента; сам корень не индексируется
+        Deque<Scope> scopes = new ArrayDeque<>();
+        int foreignDepth = 0;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (scopes.isEmpty()) {
+                    scopes.push(new Scope(null, null));
+                    continue;
+                }
+                if (foreignDepth > 0 || !StaxBpmnToGraphParser.BPMN_NS.equals(reader.getNamespaceURI())) {
+                    foreignDepth++;
+                    continue;
+                }
+                Scope parent = scopes.peek();
+                String id = MarkingPlan.trimToNull(reader.getAttributeValue(null, "id"));
+                if (id == null) {
+                    scopes.push(parent);
+                    continue;
+                }
+                ElementInfo info = MarkingPlan.elementInfo(id, reader.getLocalName(), parent.container, parent.activity,
+                        name -> reader.getAttributeValue(null, name));
+                elements.put(id, info);
+                scopes.push(new Scope(info.container(), info.activity()));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (foreignDepth > 0) {
+                    foreignDepth--;
+                } else {
+                    scopes.pop();
+                }
+            }
+        }
+        return new ElementIndex(elements);
+    }
+
+    private record Scope(String container, String activity) {
+    }
+
+    // -------------------- SECOND PASS --------------------
+
+    private void rewrite(InputStream in, OutputStream out, Collection<Mark> marks) {
+        XMLEventReader reader = null;
+        XMLEventWriter writer = null;
+        try {
+            reader = inputFactory.createXMLEventReader(in);
+            writer = outputFactory.createXMLEventWriter(out, "UTF-8");
+            new Rewrite(reader, writer, marks).run();
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Failed to write marked BPMN stream", e);
+        } finally {
+            closeQuietly(reader);
+            closeQuietly(writer);
+        }
+    }
+
+    /** Пометка с уже выданными id: они нужны и в семантике, и в DI. */
+    private record Placed(Mark mark, String elementId, String associationId) {
+    }
+
+    /** Контейнер с пометками, открытый во втором проходе. */
+    private static final class OpenContainer {
+
+        private final String id;
+        private final String prefix;
+        private final int depth;
+        private final boolean process;
+        private boolean boundariesWritten;
+        private boolean annotationsWritten;
+
+        private OpenContainer(String id, String prefix, int depth, boolean process) {
+            this.id = id;
+            this.prefix = prefix;
+            this.depth = depth;
+            this.process = process;
+        }
+    }
+
+    /** Префикс, под которым namespace доступен в точке вставки; {@code declare} — объявить его на самом элементе. */
+    private record Ns(String uri, String prefix, boolean declare) {
+
+        private static Ns lookup(StartElement scope, String uri, String fallbackPrefix) {
+            String prefix = scope.getNamespaceContext().getPrefix(uri);
+            return prefix != null ? new Ns(uri, prefix, false) : new Ns(uri, fallbackPrefix, true);
+        }
+
+        /** Тот же namespace внутри элемента, где он уже объявлен. */
+        private Ns bound() {
+            return new Ns(uri, prefix, false);
+        }
+    }
+
+    /** Состояние второго прохода. */
+    private static final class Rewrite {
+
+        private final XMLEventReader reader;
+        private final XMLEventWriter writer;
+        private final XMLEventFactory events = XMLEventFactory.newFactory();
+
+        private final List<Placed> placed = new ArrayList<>();
+        private final Map<String, List<Placed>> boundaries = new HashMap<>();
+        private final Map<String, List<Placed>> annotations = new HashMap<>();
+        private final Set<String> targets = new HashSet<>();
+        private final Map<String, ShapeBounds> bounds = new HashMap<>();
+
+        private final Deque<OpenContainer> containers = new ArrayDeque<>();
+        private int depth;
+        private String firstProcessId;
+
+        private Ns rootDi;
+        private Ns rootDc;
+        private Ns rootBpmnDi;
+
+        private boolean planeSeen;
+        private int planeDepth = -1;
+        private Ns planeBpmnDi;
+        private Ns planeDc;
+        private Ns planeDi;
+        private String shapeTarget;
+
+        private Rewrite(XMLEventReader reader, XMLEventWriter writer, Collection<Mark> marks) {
+            this.reader = reader;
+            this.writer = writer;
+            for (Mark mark : marks) {
+                Placed p = mark.boundary
+                        ? new Placed(mark, mark.newBoundaryId(), null)
+                        : new Placed(mark, mark.newAnnotationId(), mark.newAssociationId());
+                placed.add(p);
+                (mark.boundary ? boundaries : annotations).computeIfAbsent(mark.container(), k -> new ArrayList<>()).add(p);
+                targets.add(mark.target.id());
+            }
+        }
+
+        private void run() throws XMLStreamException {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                switch (event.getEventType()) {
+                    // тело переписывается в UTF-8, исходное объявление кодировки больше не верно
+                    case XMLStreamConstants.START_DOCUMENT -> writer.add(events.createStartDocument("UTF-8", "1.0"));
+                    case XMLStreamConstants.START_ELEMENT -> onStart(event.asStartElement());
+                    case XMLStreamConstants.END_ELEMENT -> onEnd(event);
+                    default -> writer.add(event);
+                }
+            }
+        }
+
+        private void onStart(StartElement element) throws XMLStreamException {
+            depth++;
+            String ns = element.getName().getNamespaceURI();
+            String local = element.getName().getLocalPart();
+
+            OpenContainer container = containers.peek();
+            if (container != null && depth == container.depth + 1 && StaxBpmnToGraphParser.BPMN_NS.equals(ns)) {
+                if (ARTIFACT_TYPES.contains(local)) {
+                    writeBoundaries(container);
+                } else if (container.process && AFTER_ARTIFACT_TYPES.contains(local)) {
+                    writeBoundaries(container);
+                    writeAnnotations(container);
+                }
+            }
+            writer.add(element);
+
+            if (depth == 1) {
+                rootBpmnDi = Ns.lookup(element, BPMNDI_NS, "bpmndi");
+                rootDc = Ns.lookup(element, DC_NS, "dc");
+                rootDi = Ns.lookup(element, DI_NS, "di");
+            } else if (StaxBpmnToGraphParser.BPMN_NS.equals(ns)) {
+                String id = attribute(element, ID);
+                if (firstProcessId == null && "process".equals(local)) firstProcessId = id;
+                if (id != null && (boundaries.containsKey(id) || annotations.containsKey(id))) {
+                    containers.push(new OpenContainer(id, element.getName().getPrefix(), depth, "process".equals(local)));
+                }
+            } else if (BPMNDI_NS.equals(ns)) {
+                if ("BPMNPlane".equals(local) && !planeSeen) {
+                    planeSeen = true;
+                    planeDepth = depth;
+                    planeBpmnDi = Ns.lookup(element, BPMNDI_NS, "bpmndi");
+                    planeDc = Ns.lookup(element, DC_NS, "dc");
+                    planeDi = Ns.lookup(element, DI_NS, "di");
+                } else if ("BPMNShape".equals(local) && planeDepth > 0 && depth == planeDepth + 1) {
+                    String bpmnElement = attribute(element, BPMN_ELEMENT);
+                    shapeTarget = targets.contains(bpmnElement) ? bpmnElement : null;
+                }
+            } else if (DC_NS.equals(ns) && "Bounds".equals(local) && shapeTarget != null && depth == planeDepth + 2) {
+                ShapeBounds shape = parseBounds(element);
+                if (shape != null) bounds.put(shapeTarget, shape);
+            }
+        }
+
+        private void onEnd(XMLEvent end) throws XMLStreamException {
+            OpenContainer container = containers.peek();
+            if (container != null && depth == container.depth) {
+                writeBoundaries(container);
+                writeAnnotations(container);
+                containers.pop();
+            }
+            if (depth == planeDepth + 1) {
+                shapeTarget = null;
+            }
+            if (depth == planeDepth) {
+                writeDi(planeBpmnDi, planeDc, planeDi);
+                planeDepth = -1;
+            }
+            if (depth == 1 && !planeSeen) {
+                writeDiagram();
+            }
+            writer.add(end);
+            depth--;
+        }
+
+        // -------------------- SEMANTIC --------------------
+
+        private void writeBoundaries(OpenContainer container) throws XMLStreamException {
+            if (container.boundariesWritten) return;
+            container.boundariesWritten = true;
+            Ns bpmn = new Ns(StaxBpmnToGraphParser.BPMN_NS, container.prefix, false);
+
+            for (Placed p : boundaries.getOrDefault(container.id, List.of())) {
+                start(bpmn, "boundaryEvent",
+                        events.createAttribute("id", p.elementId()),
+                        events.createAttribute("name", p.mark().boundaryName()),
+                        events.createAttribute("cancelActivity", "false"),
+                        events.createAttribute("attachedToRef", p.mark().target.id()));
+                // Просто сохраняем riskId в documentation (универсально), по одной записи на риск
+                for (String riskId : p.mark().risks) {
+                    start(bpmn, "documentation");
+                    writer.add(events.createCharacters("RISK_ID=" + riskId));
+                    end(bpmn, "documentation");
+                }
+                end(bpmn, "boundaryEvent");
+            }
+        }
+
+        private void writeAnnotations(OpenContainer container) throws XMLStreamException {
+            if (container.annotationsWritten) return;
+            container.annotationsWritten = true;
+            Ns bpmn = new Ns(StaxBpmnToGraphParser.BPMN_NS, container.prefix, false);
+
+            for (Placed p : annotations.getOrDefault(container.id, List.of())) {
+                start(bpmn, "textAnnotation", events.createAttribute("id", p.elementId()));
+                start(bpmn, "text");
+                writer.add(events.createCharacters(p.mark().annotationText()));
+                end(bpmn, "text");
+                end(bpmn, "textAnnotation");
+
+                start(bpmn, "association",
+                        events.createAttribute("id", p.associationId()),
+                        events.createAttribute("sourceRef", p.mark().target.id()),
+                        events.createAttribute("targetRef", p.elementId()));
+                end(bpmn, "association");
+            }
+        }
+
+        // -------------------- DI --------------------
+
+        /** Файл без диаграммы: как и ensurePlane в DOM-режиме, создаём её с плоскостью на первый process. */
+        private void writeDiagram() throws XMLStreamException {
+            // недостающие namespace объявляются один раз на BPMNDiagram
+            List<Namespace> declarations = new ArrayList<>();
+            for (Ns ns : List.of(rootBpmnDi, rootDc, rootDi)) {
+                if (ns.declare()) declarations.add(events.createNamespace(ns.prefix(), ns.uri()));
+            }
+            writer.add(events.createStartElement(rootBpmnDi.prefix(), rootBpmnDi.uri(), "BPMNDiagram",
+                    List.of(events.createAttribute("id", "BpmnDiagram_" + MarkingPlan.nextSeq())).iterator(),
+                    declarations.iterator()));
+
+            Ns bpmnDi = rootBpmnDi.bound();
+            List<Attribute> planeAttributes = new ArrayList<>();
+            planeAttributes.add(events.createAttribute("id", "BpmnPlane_" + MarkingPlan.nextSeq()));
+            if (firstProcessId != null) planeAttributes.add(events.createAttribute("bpmnElement", firstProcessId));
+            start(bpmnDi, "BPMNPlane", planeAttributes.toArray(Attribute[]::new));
+            writeDi(bpmnDi, rootDc.bound(), rootDi.bound());
+            end(bpmnDi, "BPMNPlane");
+            end(bpmnDi, "BPMNDiagram");
+        }
+
+        private void writeDi(Ns bpmnDi, Ns dc, Ns di) throws XMLStreamException {
+            for (Placed p : placed) {
+                ShapeBounds targetBounds = MarkingPlan.boundsOrFallback(bounds.get(p.mark().target.id()));
+                if (p.mark().boundary) {
+                    writeShape(bpmnDi, dc, p.elementId(), MarkingPlan.boundaryBounds(targetBounds));
+                    continue;
+                }
+                ShapeBounds noteBounds = MarkingPlan.noteBounds(targetBounds);
+                writeShape(bpmnDi, dc, p.elementId(), noteBounds);
+
+                start(bpmnDi, "BPMNEdge",
+                        events.createAttribute("id", "DI_Edge_" + p.associationId() + "_" + MarkingPlan.nextSeq()),
+                        events.createAttribute("bpmnElement", p.associationId()));
+                writeWaypoint(di, targetBounds.centerX(), targetBounds.centerY());
+                writeWaypoint(di, noteBounds.centerX(), noteBounds.centerY());
+                end(bpmnDi, "BPMNEdge");
+            }
+        }
+
+        private void writeShape(Ns bpmnDi, Ns dc, String elementId, ShapeBounds shape) throws XMLStreamException {
+            start(bpmnDi, "BPMNShape",
+                    events.createAttribute("id", "DI_Shape_" + elementId + "_" + MarkingPlan.nextSeq()),
+                    events.createAttribute("bpmnElement", elementId));
+            start(dc, "Bounds",
+                    events.createAttribute("x", Double.toString(shape.x())),
+                    events.createAttribute("y", Double.toString(shape.y())),
+                    events.createAttribute("width", Double.toString(shape.width())),
+                    events.createAttribute("height", Double.toString(shape.height())));
+            end(dc, "Bounds");
+            end(bpmnDi, "BPMNShape");
+        }
+
+        private void writeWaypoint(Ns di, double x, double y) throws XMLStreamException {
+            start(di, "waypoint",
+                    events.createAttribute("x", Double.toString(x)),
+                    events.createAttribute("y", Double.toString(y)));
+            end(di, "waypoint");
+        }
+
+        private void start(Ns ns, String local, Attribute... attributes) throws XMLStreamException {
+            List<Namespace> declarations = ns.declare() ? List.of(events.createNamespace(ns.prefix(), ns.uri())) : List.of();
+            writer.add(events.createStartElement(ns.prefix(), ns.uri(), local,
+                    List.of(attributes).iterator(), declarations.iterator()));
+        }
+
+        private void end(Ns ns, String local) throws XMLStreamException {
+            writer.add(events.createEndElement(ns.prefix(), ns.uri(), local));
+        }
+
+        private static ShapeBounds parseBounds(StartElement element) {
+            String x = attribute(element, X);
+            String y = attribute(element, Y);
+            String width = attribute(element, WIDTH);
+            String height = attribute(element, HEIGHT);
+            if (x == null || y == null || width == null || height == null) return null;
+            try {
+                return new ShapeBounds(Double.parseDouble(x), Double.parseDouble(y),
+                        Double.parseDouble(width), Double.parseDouble(height));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String attribute(StartElement element, QName name) {
+            Attribute attribute = element.getAttributeByName(name);
+            return attribute == null ? null : MarkingPlan.trimToNull(attribute.getValue());
+        }
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            log.debug("Failed to close XML reader: {}", e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(XMLEventReader reader) {
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            log.debug("Failed to close XML reader: {}", e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(XMLEventWriter writer) {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (XMLStreamException e) {
+            log.debug("Failed to close XML writer: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.lytov.diplom.dparser.service.jobs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.domain.entity.ParseJob;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.dto.ParseJobDto;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Результат задачи хранится в jsonb тем же JSON, что отдаёт синхронный эндпоинт.
+ */
+@org.springframework.stereotype.Component
+@RequiredArgsConstructor
+public class ParseJobMapper {
+
+    private static final TypeReference<List<Component>> COMPONENTS = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+
+    public String writeComponents(List<Component> components) {
+        try {
+            return objectMapper.writeValueAsString(components);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize parse job result", e);
+        }
+    }
+
+    public ParseJobDto toDto(ParseJob job) {
+        return ParseJobDto.builder()
+                .id(job.getId())
+                .fileId(job.getFileId())
+                .status(job.getStatus())
+                .components(job.getResult() == null ? null : readComponents(job.getResult()))
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+
+    private List<Component> readComponents(String json) {
+        try {
+            return objectMapper.readValue(json, COMPONENTS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read parse job result", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.lytov.diplom.dparser.service.jobs;
+
+import com.lytov.diplom.dparser.configuration.jobs.properties.ParseJobProperties;
+import com.lytov.diplom.dparser.domain.repository.ParseJobRepository;
+import com.lytov.diplom.dparser.service.dto.ParseJobDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE-подписки на задачи разбора. Переходы задач этого экземпляра рассылаются сразу из {@link #publish};
+ * задачи, которые выполняет другой экземпляр, досматриваются опросом базы, пока на них есть подписчики.
+ * На каждое изменение уходит событие {@value #EVENT} с {@link ParseJobDto}; после финального статуса поток закрывается.
+ */
+@Slf4j
+@Component
+public class ParseJobSubscriptions {
+
+    static final String EVENT = "parse-job";
+
+    private final Map<UUID, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private final ParseJobRepository repository;
+    private final ParseJobMapper mapper;
+    private final ParseJobProperties properties;
+    private final ScheduledExecutorService poller;
+
+    public ParseJobSubscriptions(ParseJobRepository repository, ParseJobMapper mapper, ParseJobProperties properties) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.properties = properties;
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "parse-job-sse-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getSsePollInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Подписчик регистрируется до чтения состояния: переход, случившийся между чтением и регистрацией,
+     * иначе потерялся бы. Повтор финального события безвреден — поток после него закрыт.
+     */
+    public SseEmitter subscribe(UUID jobId) {
+        SseEmitter emitter = new SseEmitter(properties.getSseTimeout().toMillis());
+        emitters.computeIfAbsent(jobId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+        Runnable unsubscribe = () -> remove(jobId, emitter);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+
+        repository.findById(jobId).map(mapper::toDto).ifPresent(job -> send(emitter, job));
+        return emitter;
+    }
+
+    public void publish(ParseJobDto job) {
+        List<SseEmitter> subscribers = job.getStatus().isTerminal()
+                ? emitters.remove(job.getId())
+                : emitters.get(job.getId());
+        if (subscribers == null) return;
+        subscribers.forEach(emitter -> send(emitter, job));
+    }
+
+    /** Чужие задачи: сюда доходят только те, у которых есть подписчики на этом экземпляре. */
+    void poll() {
+        Set<UUID> ids = Set.copyOf(emitters.keySet());
+        if (ids.isEmpty()) return;
+        try {
+            repository.findAllById(ids).stream()
+                    .filter(job -> job.getStatus().isTerminal())
+                    .map(mapper::toDto)
+                    .forEach(this::publish);
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll parse jobs {}", ids, e);
+        }
+    }
+
+    private void send(SseEmitter emitter, ParseJobDto job) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT).data(job, MediaType.APPLICATION_JSON));
+            if (job.getStatus().isTerminal()) {
+                remove(job.getId(), emitter);
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // клиент ушёл или поток уже закрыт
+            log.debug("Failed to send parse job {} event", job.getId(), e);
+            remove(job.getId(), emitter);
+        }
+    }
+
+    private void remove(UUID jobId, SseEmitter emitter) {
+        emitters.computeIfPresent(jobId, (id, list) -> {
+            list.remove(emitter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+    }
+}
@@ -0,0 +1,66 @@
+package com.lytov.diplom.dparser.service.jobs;
+
+import com.lytov.diplom.dparser.configuration.jobs.properties.ParseJobProperties;
+import com.lytov.diplom.dparser.domain.repository.ParseJobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Помечает FAILED задачи, брошенные упавшим экземпляром, который не вернулся с тем же instanceId
+ * (например, под с новым именем): RUNNING дольше {@link ParseJobProperties#getJobTimeout()} от started_at
+ * и QUEUED дольше того же от created_at, независимо от экземпляра. Подписчики узнают о статусе
+ * опросом в {@link ParseJobSubscriptions}.
+ */
+@Slf4j
+@Component
+public class ParseJobSweeper {
+
+    private final ParseJobRepository repository;
+    private final ParseJobProperties properties;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ParseJobSweeper(ParseJobRepository repository, ParseJobProperties properties) {
+        this(repository, properties, Clock.systemUTC());
+    }
+
+    ParseJobSweeper(ParseJobRepository repository, ParseJobProperties properties, Clock clock) {
+        this.repository = repository;
+        this.properties = properties;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "parse-job-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getSweepInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    void sweep() {
+        Instant now = clock.instant();
+        try {
+            int failed = repository.failStale(now.minus(properties.getJobTimeout()),
+                    "Timed out after " + properties.getJobTimeout(), now);
+            if (failed > 0) {
+                log.warn("Marked {} parse jobs older than {} as FAILED", failed, properties.getJobTimeout());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to sweep stale parse jobs: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
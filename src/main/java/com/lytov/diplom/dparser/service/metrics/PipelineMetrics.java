@@ -0,0 +1,154 @@
+package com.lytov.diplom.dparser.service.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Длительности этапов обработки файла и размеры моделей для поиска выбросов по p99.
+ * <p>
+ * Конвейер ({@link Pipeline}) задаётся точкой входа и живёт в потоке, пока она выполняется:
+ * общие этапы (presign, скачивание, ожидание разрешения на разбор) помечаются конвейером, который их вызвал.
+ * Все метрики с тегами pipeline и, у таймеров, outcome; гистограммы включаются в management.metrics.distribution.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String PIPELINE_TIMER = "d-parser.pipeline.duration";
+    public static final String STAGE_TIMER = "d-parser.pipeline.stage";
+    public static final String FILE_SIZE = "d-parser.pipeline.file.size";
+    public static final String GRAPH_NODES = "d-parser.pipeline.graph.nodes";
+    public static final String GRAPH_EDGES = "d-parser.pipeline.graph.edges";
+
+    private static final ThreadLocal<Pipeline> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** Выполняет точку входа конвейера; вложенный вызов того же конвейера не записывается повторно. */
+    public <T, E extends Exception> T pipeline(Pipeline pipeline, Task<T, E> task) throws E {
+        Pipeline outer = CURRENT.get();
+        if (outer == pipeline) {
+            return task.run();
+        }
+        CURRENT.set(pipeline);
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = task.run();
+            success = true;
+            return result;
+        } finally {
+            timer(PIPELINE_TIMER, pipeline, null, success).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            if (outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    public <T, E extends Exception> T stage(Stage stage, Task<T, E> task) throws E {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = task.run();
+            success = true;
+            return result;
+        } finally {
+            recordStage(stage, System.nanoTime() - started, success);
+        }
+    }
+
+    /** Для этапов, которые нельзя обернуть одним вызовом (чтение тела размазано по разбору). */
+    public void recordStage(Stage stage, long nanos, boolean success) {
+        timer(STAGE_TIMER, current(), stage, success).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFileSize(long bytes) {
+        summary(FILE_SIZE, "bytes").record(bytes);
+    }
+
+    public void recordGraphSize(int nodes, int edges) {
+        summary(GRAPH_NODES, "nodes").record(nodes);
+        summary(GRAPH_EDGES, "edges").record(edges);
+    }
+
+    private Timer timer(String name, Pipeline pipeline, Stage stage, boolean success) {
+        Timer.Builder builder = Timer.builder(name)
+                .tag("pipeline", pipeline.tag)
+                .tag("outcome", success ? "success" : "error");
+        if (stage != null) {
+            builder.tag("stage", stage.tag);
+        }
+        return builder.register(meterRegistry);
+    }
+
+    private DistributionSummary summary(String name, String unit) {
+        return DistributionSummary.builder(name)
+                .baseUnit(unit)
+                .tag("pipeline", current().tag)
+                .register(meterRegistry);
+    }
+
+    private static Pipeline current() {
+        Pipeline pipeline = CURRENT.get();
+        return pipeline != null ? pipeline : Pipeline.NONE;
+    }
+
+    public enum Pipeline {
+        CREATE_GRAPH("create-graph"),
+        PARSER_PROCESS("parser-process"),
+        MARKING("marking"),
+        /** Этап вызван вне точки входа. */
+        NONE("none");
+
+        private final String tag;
+
+        Pipeline(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Stage {
+        /** Presigned-ссылка из sppr-bd. */
+        PRESIGN("presign"),
+        /** От запроса в object storage до заголовков ответа. */
+        DOWNLOAD("download"),
+        /** Время, проведённое в чтении тела; тело читается потоком во время разбора, поэтому входит и в PARSE. */
+        TRANSFER("transfer"),
+        /** Пакетный разбор: ожидание памяти под тело и его чтение целиком до разрешения на разбор. */
+        BUFFER("buffer"),
+        /** Ожидание разрешения {@code ParseLimiter}. */
+        PARSE_PERMIT("parse-permit"),
+        PARSE("parse"),
+        GRAPH_BUILD("graph-build"),
+        /** Структурный анализ графа перед публикацией, если он включён. */
+        GRAPH_ANALYZE("graph-analyze"),
+        SERIALIZE("serialize"),
+        PUBLISH("publish"),
+        MARK("mark"),
+        /** Запись размеченной модели в sink; при загрузке в object storage включает и UPLOAD. */
+        OUTPUT_WRITE("output-write"),
+        /** PUT тела в object storage; в потоковой разметке идёт одновременно с MARK. */
+        UPLOAD("upload");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task<T, E extends Exception> {
+
+        T run() throws E;
+    }
+}
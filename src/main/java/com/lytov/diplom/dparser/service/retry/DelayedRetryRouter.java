@@ -0,0 +1,136 @@
+package com.lytov.diplom.dparser.service.retry;
+
+import com.lytov.diplom.dparser.configuration.rabbit.RetryRMQConfig;
+import com.lytov.diplom.dparser.configuration.rabbit.properties.RetryProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Уводит упавшее сообщение из потребителя: в очередь задержки следующей попытки или в parking-lot.
+ * Исходное сообщение после этого подтверждается обычным образом, поток сразу берёт следующее.
+ * <p>
+ * Переотправка считается состоявшейся только после подтверждения брокера (publisher confirm)
+ * и без возврата как немаршрутизируемой (mandatory). Если переотправить не удалось и после
+ * нескольких попыток с паузой, выбрасывается {@link ImmediateRequeueAmqpException}: исходное
+ * сообщение возвращается в рабочую очередь, а не подтверждается и не теряется.
+ * Шаблон создаётся в {@link RetryRMQConfig} отдельно от общего, флаг mandatory действует только здесь.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DelayedRetryRouter {
+
+    public static final String ATTEMPT_HEADER = "x-retry-attempt";
+    public static final String REASON_HEADER = "x-retry-reason";
+    public static final String ORIGINAL_QUEUE_HEADER = "x-original-queue";
+
+    private static final int MAX_REASON_LENGTH = 512;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final RetryProperties properties;
+
+    public void retryOrPark(String queue, Message message, Throwable cause) {
+        if (!properties.isEnabled()) {
+            log.error("Error processing message from {}: {}", queue, cause.getMessage());
+            return;
+        }
+
+        MessageProperties messageProperties = message.getMessageProperties();
+        int attempt = attemptOf(messageProperties) + 1;
+        messageProperties.setHeader(ATTEMPT_HEADER, attempt);
+        messageProperties.setHeader(REASON_HEADER, reasonOf(cause));
+        messageProperties.setHeader(ORIGINAL_QUEUE_HEADER, queue);
+
+        String target;
+        if (attempt <= properties.getDelays().size()) {
+            target = RetryRMQConfig.delayQueue(queue, attempt);
+            log.warn("Attempt {} failed for message from {}, retry in {}: {}",
+                    attempt, queue, properties.getDelays().get(attempt - 1), cause.getMessage());
+        } else {
+            target = RetryRMQConfig.parkingLotQueue(queue);
+            log.error("Attempt {} failed for message from {}, parked: {}", attempt, queue, cause.getMessage());
+        }
+
+        publish(target, message);
+    }
+
+    private void publish(String target, Message message) {
+        Duration backoff = properties.getPublishBackoff();
+        String failure = null;
+        for (int attempt = 1; attempt <= properties.getPublishAttempts(); attempt++) {
+            if (attempt > 1) {
+                sleep(backoff, target);
+                backoff = backoff.multipliedBy(2);
+            }
+            failure = tryPublish(target, message);
+            if (failure == null) return;
+            log.warn("Publish to {} failed (attempt {} of {}): {}",
+                    target, attempt, properties.getPublishAttempts(), failure);
+        }
+        throw new ImmediateRequeueAmqpException("Could not publish to " + target + ": " + failure);
+    }
+
+    /**
+     * @return null, если брокер подтвердил и смаршрутизировал сообщение, иначе причина отказа
+     */
+    private String tryPublish(String target, Message message) {
+        CorrelationData correlation = new CorrelationData();
+        try {
+            // default exchange: routing key = имя очереди
+            rabbitTemplate.send("", target, message, correlation);
+            CorrelationData.Confirm confirm = correlation.getFuture()
+                    .get(properties.getPublishTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            if (!confirm.isAck()) return "nack: " + confirm.getReason();
+            // возврат приходит от брокера раньше подтверждения
+            ReturnedMessage returned = correlation.getReturned();
+            if (returned != null) return "returned: " + returned.getReplyCode() + " " + returned.getReplyText();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImmediateRequeueAmqpException("Interrupted while publishing to " + target, e);
+        } catch (TimeoutException e) {
+            return "no confirm within " + properties.getPublishTimeout();
+        } catch (ExecutionException e) {
+            return String.valueOf(e.getCause());
+        } catch (RuntimeException e) {
+            return e.toString();
+        }
+    }
+
+    private static void sleep(Duration backoff, String target) {
+        try {
+            Thread.sleep(backoff.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImmediateRequeueAmqpException("Interrupted while publishing to " + target, e);
+        }
+    }
+
+    static int attemptOf(MessageProperties messageProperties) {
+        Object value = messageProperties.getHeader(ATTEMPT_HEADER);
+        if (value instanceof Number number) return number.intValue();
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.toString());
+            } catch (NumberFormatException ignored) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static String reasonOf(Throwable cause) {
+        String reason = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        return reason.length() <= MAX_REASON_LENGTH ? reason : reason.substring(0, MAX_REASON_LENGTH);
+    }
+}
@@ -0,0 +1,17 @@
+package com.lytov.diplom.dparser.service.sink;
+
+import com.lytov.diplom.dparser.external.storage.BodyWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/** Результат целиком в памяти — для ответа на HTTP-запрос, без записи на диск. */
+public final class InMemoryBpmnSink implements MarkedBpmnSink<byte[]> {
+
+    @Override
+    public byte[] write(BodyWriter body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,17 @@
+package com.lytov.diplom.dparser.service.sink;
+
+import com.lytov.diplom.dparser.external.storage.BodyWriter;
+
+import java.io.IOException;
+
+/**
+ * Куда уходит размеченный BPMN. Разметка не держит результат целиком: она отдаёт {@link BodyWriter},
+ * а sink сам выбирает поток, в который его записать.
+ *
+ * @param <R> что остаётся после записи: id объекта в хранилище, байты для HTTP-ответа
+ */
+@FunctionalInterface
+public interface MarkedBpmnSink<R> {
+
+    R write(BodyWriter body) throws IOException;
+}
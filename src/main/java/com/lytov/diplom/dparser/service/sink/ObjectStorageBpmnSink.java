@@ -0,0 +1,17 @@
+package com.lytov.diplom.dparser.service.sink;
+
+import com.lytov.diplom.dparser.external.storage.BodyWriter;
+import com.lytov.diplom.dparser.external.storage.ObjectStorageUploader;
+import org.springframework.http.MediaType;
+
+import java.util.UUID;
+
+/** Потоковая загрузка в object storage под {@code objectId}; результат — id сохранённого объекта. */
+public record ObjectStorageBpmnSink(ObjectStorageUploader uploader, UUID objectId) implements MarkedBpmnSink<UUID> {
+
+    @Override
+    public UUID write(BodyWriter body) {
+        uploader.upload(objectId, MediaType.APPLICATION_XML, body);
+        return objectId;
+    }
+}
@@ -0,0 +1,72 @@
+package com.lytov.diplom.dparser.configuration;
+
+import com.lytov.diplom.dparser.configuration.storage.properties.ObjectStorageHttpProperties;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RestTemplateConfigTest {
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+
+    @BeforeEach
+    void startStorage() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bucket", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "<definitions/>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.stop(0);
+        if (httpClient != null) httpClient.close();
+    }
+
+    @Test
+    void reusesConnectionsAndPublishesPoolMetrics() {
+        ObjectStorageHttpProperties properties = new ObjectStorageHttpProperties();
+        properties.setMaxConnectionsPerHost(4);
+        RestTemplateConfig config = new RestTemplateConfig();
+        httpClient = config.objectStorageHttpClient(properties, meterRegistry);
+        RestTemplate restTemplate = config.restTemplate(httpClient);
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/bucket/file.bpmn");
+
+        for (int i = 0; i < 5; i++) {
+            String body = restTemplate.execute(uri, HttpMethod.GET, null,
+                    response -> new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+            assertThat(body).isEqualTo("<definitions/>");
+        }
+
+        assertThat(clientPorts).hasSize(1);
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.route.max.default")
+                .tag("httpclient", RestTemplateConfig.POOL_NAME).gauge().value()).isEqualTo(4);
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+                .tag("state", "available").gauge().value()).isEqualTo(1);
+    }
+}
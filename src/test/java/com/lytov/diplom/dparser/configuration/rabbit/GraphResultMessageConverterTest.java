@@ -0,0 +1,73 @@
+package com.lytov.diplom.dparser.configuration.rabbit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.ResultBpmnParserGraphDto;
+import com.lytov.diplom.dparser.service.graph.GraphAnalyzer;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphResultMessageConverterTest {
+
+    private final MessageConverter converter = new RabbitConfiguration(new ObjectMapper()).jsonMessageConverter();
+
+    @Test
+    void binaryContentTypeRoundTrips() {
+        BpmnGraph graph = new BpmnGraph();
+        graph.addNode(new BpmnGraph.BpmnNode("start", "Старт", NodeType.START_EVENT));
+        graph.addNode(new BpmnGraph.BpmnNode("task", null, NodeType.USER_TASK));
+        graph.addEdge(new BpmnGraph.BpmnEdge("f1", EdgeType.SEQUENCE_FLOW, "start", "task"));
+        graph.addEdge(new BpmnGraph.BpmnEdge("d1:store->task", EdgeType.DATA_ASSOCIATION, "store", "task"));
+        ResultBpmnParserGraphDto result = new ResultBpmnParserGraphDto(UUID.randomUUID(), graph);
+
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(GraphResultMessageConverter.CONTENT_TYPE);
+        Message message = converter.toMessage(result, properties);
+        ResultBpmnParserGraphDto decoded = (ResultBpmnParserGraphDto) converter.fromMessage(message);
+
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(GraphResultMessageConverter.CONTENT_TYPE);
+        assertThat(decoded.getProcessId()).isEqualTo(result.getProcessId());
+        assertThat(decoded.getGraph().nodes).containsExactlyEntriesOf(graph.nodes);
+        assertThat(decoded.getGraph().edges).containsExactlyElementsOf(graph.edges);
+        assertThat(decoded.getGraph().out).isEqualTo(graph.out);
+        assertThat(decoded.getGraph().in).isEqualTo(graph.in);
+    }
+
+    @Test
+    void binaryCarriesAnalytics() {
+        BpmnGraph graph = new BpmnGraph();
+        graph.addNode(new BpmnGraph.BpmnNode("start", "Старт", NodeType.START_EVENT));
+        graph.addNode(new BpmnGraph.BpmnNode("task", null, NodeType.USER_TASK));
+        graph.addNode(new BpmnGraph.BpmnNode("end", null, NodeType.END_EVENT));
+        graph.addEdge(new BpmnGraph.BpmnEdge("f1", EdgeType.SEQUENCE_FLOW, "start", "task"));
+        graph.addEdge(new BpmnGraph.BpmnEdge("f2", EdgeType.SEQUENCE_FLOW, "task", "end"));
+        graph.addEdge(new BpmnGraph.BpmnEdge("f3", EdgeType.SEQUENCE_FLOW, "task", "task"));
+        ResultBpmnParserGraphDto result = new ResultBpmnParserGraphDto(UUID.randomUUID(), graph,
+                GraphAnalyzer.analyze(CompactBpmnGraph.of(graph)));
+
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(GraphResultMessageConverter.CONTENT_TYPE);
+        ResultBpmnParserGraphDto decoded = (ResultBpmnParserGraphDto) converter.fromMessage(
+                converter.toMessage(result, properties));
+
+        assertThat(decoded.getAnalytics()).isEqualTo(result.getAnalytics());
+        assertThat(decoded.getAnalytics().getNodes().get("task").loop()).isTrue();
+    }
+
+    @Test
+    void jsonStaysTheDefault() {
+        Message message = converter.toMessage(new ResultBpmnParserGraphDto(UUID.randomUUID(), new BpmnGraph()),
+                new MessageProperties());
+
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+    }
+}
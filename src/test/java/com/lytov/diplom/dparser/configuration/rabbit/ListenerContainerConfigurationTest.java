@@ -0,0 +1,18 @@
+package com.lytov.diplom.dparser.configuration.rabbit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ListenerContainerConfigurationTest {
+
+    @Test
+    void virtualThreadsNeedJava21() {
+        assertThatThrownBy(() -> ListenerContainerConfiguration.requireVirtualThreads(17))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("d-parser.rabbit.listener.virtual-threads")
+                .hasMessageContaining("Java 17");
+        assertThatCode(() -> ListenerContainerConfiguration.requireVirtualThreads(21)).doesNotThrowAnyException();
+    }
+}
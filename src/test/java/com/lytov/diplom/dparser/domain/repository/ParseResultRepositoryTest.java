@@ -0,0 +1,105 @@
+package com.lytov.diplom.dparser.domain.repository;
+
+import com.lytov.diplom.dparser.TestcontainersConfiguration;
+import com.lytov.diplom.dparser.configuration.cache.properties.ParseResultStoreProperties;
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.domain.enums.OperationType;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.impl.BpmnToGraphParserImpl;
+import com.lytov.diplom.dparser.support.bpmn.BpmnSpec;
+import com.lytov.diplom.dparser.support.bpmn.SyntheticBpmnGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TestcontainersConfiguration.class, ParseResultRepository.class, ParseResultStoreProperties.class})
+class ParseResultRepositoryTest {
+
+    @Autowired
+    private ParseResultRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void graphRoundTripsInOrder() {
+        UUID fileId = UUID.randomUUID();
+        BpmnGraph source = new BpmnToGraphParserImpl(null, null, null, null, null, null, null)
+                .parse(new ByteArrayInputStream(SyntheticBpmnGenerator.generate(BpmnSpec.of(3_000))));
+        source.addEdge(new BpmnGraph.BpmnEdge("dangling", EdgeType.MESSAGE_FLOW, "Missing_1", null));
+        CompactBpmnGraph graph = CompactBpmnGraph.of(source);
+
+        repository.saveGraph(fileId, "v1", graph);
+        CompactBpmnGraph restored = repository.find(fileId, "v1").graph();
+
+        assertThat(restored.view().nodes).containsExactlyEntriesOf(graph.view().nodes);
+        assertThat(restored.view().edges).containsExactlyElementsOf(graph.view().edges);
+        assertThat(restored.vertexCount()).isEqualTo(graph.vertexCount());
+        assertThat(repository.find(fileId, "v1").components()).isNull();
+        assertThat(repository.find(fileId, "v2").graph()).isNull();
+    }
+
+    @Test
+    void componentsRoundTrip() {
+        UUID fileId = UUID.randomUUID();
+        List<Component> components = List.of(
+                Component.builder().id("Task_1").name("Согласовать").bpmnTaskType("userTask").role("Менеджер")
+                        .department("Продажи").operationType(OperationType.APPROVAL)
+                        .relatedData(new ArrayList<>(List.of("DataStore_1", "DataObject_2"))).build(),
+                Component.builder().id("Task_2").bpmnTaskType("serviceTask").relatedData(null).build());
+
+        repository.saveComponents(fileId, "sha256:abc", components);
+
+        assertThat(repository.find(fileId, "sha256:abc").components()).isEqualTo(components);
+    }
+
+    @Test
+    void newVersionReplacesOldAndRepeatedSaveIsIgnored() {
+        UUID fileId = UUID.randomUUID();
+        List<Component> first = List.of(Component.builder().id("Task_1").build());
+        List<Component> second = List.of(Component.builder().id("Task_2").build());
+
+        repository.saveComponents(fileId, "v1", first);
+        repository.saveComponents(fileId, "v1", second);
+        assertThat(repository.find(fileId, "v1").components()).isEqualTo(first);
+
+        repository.saveComponents(fileId, "v2", second);
+        assertThat(repository.find(fileId, "v1").components()).isNull();
+        assertThat(repository.find(fileId, "v2").components()).isEqualTo(second);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM parse_result_component c JOIN parse_result r ON r.id = c.result_id WHERE r.file_id = ?",
+                Integer.class, fileId)).isEqualTo(1);
+    }
+
+    @Test
+    void latestVersionIsFoundByFileId() {
+        UUID fileId = UUID.randomUUID();
+        List<Component> components = List.of(Component.builder().id("Task_1").build());
+
+        assertThat(repository.findLatest(fileId)).isEmpty();
+
+        repository.saveComponents(fileId, "v1", List.of(Component.builder().id("Task_0").build()));
+        repository.saveComponents(fileId, "v2", components);
+
+        assertThat(repository.findLatest(fileId)).hasValueSatisfying(result -> {
+            assertThat(result.version()).isEqualTo("v2");
+            assertThat(result.components()).isEqualTo(components);
+            assertThat(result.graph()).isNull();
+        });
+    }
+}
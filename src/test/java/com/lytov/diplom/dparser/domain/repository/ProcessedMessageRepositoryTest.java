@@ -0,0 +1,60 @@
+package com.lytov.diplom.dparser.domain.repository;
+
+import com.lytov.diplom.dparser.TestcontainersConfiguration;
+import com.lytov.diplom.dparser.domain.enums.ProcessedMessageKind;
+import com.lytov.diplom.dparser.domain.repository.ProcessedMessageRepository.ProcessedMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TestcontainersConfiguration.class, ProcessedMessageRepository.class})
+class ProcessedMessageRepositoryTest {
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Autowired
+    private ProcessedMessageRepository repository;
+
+    @Test
+    void savedMessageIsFoundWithinRetentionAndReplacedOnRepeat() {
+        UUID fileId = UUID.randomUUID();
+        UUID processId = UUID.randomUUID();
+        repository.save(new ProcessedMessage("marking:m-1", ProcessedMessageKind.MARKING,
+                fileId, processId, UUID.randomUUID(), NOW.minusSeconds(60)));
+        UUID replayed = UUID.randomUUID();
+        repository.save(new ProcessedMessage("marking:m-1", ProcessedMessageKind.MARKING,
+                fileId, processId, replayed, NOW));
+
+        assertThat(repository.find("marking:m-1", NOW.minusSeconds(30))).hasValueSatisfying(message -> {
+            assertThat(message.kind()).isEqualTo(ProcessedMessageKind.MARKING);
+            assertThat(message.fileId()).isEqualTo(fileId);
+            assertThat(message.processId()).isEqualTo(processId);
+            assertThat(message.resultId()).isEqualTo(replayed);
+            assertThat(message.completedAt()).isEqualTo(NOW);
+        });
+        assertThat(repository.find("marking:m-1", NOW)).isEmpty();
+        assertThat(repository.find("marking:m-2", NOW.minusSeconds(30))).isEmpty();
+    }
+
+    @Test
+    void expiredMessagesArePurged() {
+        repository.save(new ProcessedMessage("create-graph:old", ProcessedMessageKind.CREATE_GRAPH,
+                UUID.randomUUID(), UUID.randomUUID(), null, NOW.minusSeconds(3600)));
+        repository.save(new ProcessedMessage("create-graph:new", ProcessedMessageKind.CREATE_GRAPH,
+                UUID.randomUUID(), UUID.randomUUID(), null, NOW));
+
+        assertThat(repository.deleteCompletedBefore(NOW.minusSeconds(60))).isEqualTo(1);
+        assertThat(repository.find("create-graph:new", NOW.minusSeconds(60))).isPresent();
+        assertThat(repository.find("create-graph:old", NOW.minusSeconds(7200))).isEmpty();
+    }
+}
@@ -0,0 +1,33 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FetchedFileTest {
+
+    @Test
+    void rejectsEmptyBodyWithoutContentLength() {
+        // chunked-ответ: Content-Length не задан
+        FetchedFile file = new FetchedFile(UUID.randomUUID(), new HttpHeaders(), new ByteArrayInputStream(new byte[0]));
+
+        assertThatThrownBy(file::requireNonEmpty)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("empty");
+    }
+
+    @Test
+    void keepsFirstByteOfNonEmptyBody() throws Exception {
+        FetchedFile file = new FetchedFile(UUID.randomUUID(), new HttpHeaders(),
+                new ByteArrayInputStream("<definitions/>".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(new String(file.requireNonEmpty().body().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("<definitions/>");
+    }
+}
@@ -0,0 +1,210 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import com.lytov.diplom.dparser.configuration.storage.properties.BlobStoreProperties;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ObjectStorageFetcherTest {
+
+    private final Map<String, String> bodies = new ConcurrentHashMap<>();
+    private final List<String> ifNoneMatch = new ArrayList<>();
+    private final List<Integer> statuses = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+
+    @BeforeEach
+    void startStorage() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bucket/", exchange -> {
+            String key = exchange.getRequestURI().getPath().substring("/bucket/".length());
+            byte[] body = bodies.get(key).getBytes(StandardCharsets.UTF_8);
+            String etag = "\"" + Integer.toHexString(bodies.get(key).hashCode()) + "\"";
+            String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+            synchronized (statuses) {
+                ifNoneMatch.add(condition);
+                statuses.add(etag.equals(condition) ? 304 : 200);
+            }
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.getResponseHeaders().add("Content-Disposition", "attachment; filename=\"" + key + ".bpmn\"");
+            if (etag.equals(condition)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStorage() {
+        server.stop(0);
+    }
+
+    @Test
+    void servesNotModifiedFromStoredCopy() throws IOException {
+        UUID fileId = UUID.randomUUID();
+        bodies.put(fileId.toString(), "<definitions id=\"v1\"/>");
+        ObjectStorageFetcher fetcher = fetcher(blobStore(DataSize.ofMegabytes(1)));
+
+        assertThat(read(fetcher, fileId)).isEqualTo("<definitions id=\"v1\"/>");
+        FetchedFile cached = fetcher.fetch(fileId, file -> {
+            file.body().readAllBytes();
+            return file;
+        });
+        assertThat(cached.contentDisposition()).contains(fileId + ".bpmn");
+        assertThat(cached.etag()).isNotNull();
+        assertThat(statuses).containsExactly(200, 304);
+
+        bodies.put(fileId.toString(), "<definitions id=\"v2\"/>");
+        assertThat(read(fetcher, fileId)).isEqualTo("<definitions id=\"v2\"/>");
+        assertThat(statuses).containsExactly(200, 304, 200);
+        assertThat(ifNoneMatch.get(0)).isNull();
+        assertThat(ifNoneMatch.get(2)).isNotNull();
+    }
+
+    @Test
+    void storesIdenticalContentOnce() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        bodies.put(first.toString(), "<definitions/>");
+        bodies.put(second.toString(), "<definitions/>");
+        BlobStore blobStore = blobStore(DataSize.ofMegabytes(1));
+        ObjectStorageFetcher fetcher = fetcher(blobStore);
+
+        read(fetcher, first);
+        read(fetcher, second);
+
+        assertThat(blobStore.lookup(first).orElseThrow().hash())
+                .isEqualTo(blobStore.lookup(second).orElseThrow().hash());
+        assertThat(files(".blob")).hasSize(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyReadAndDownloadsItAgain() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        bodies.put(first.toString(), "a".repeat(600));
+        bodies.put(second.toString(), "b".repeat(600));
+        BlobStore blobStore = blobStore(DataSize.ofBytes(1000));
+        ObjectStorageFetcher fetcher = fetcher(blobStore);
+
+        read(fetcher, first);
+        read(fetcher, second);
+
+        assertThat(blobStore.lookup(first)).isEmpty();
+        assertThat(blobStore.lookup(second)).isPresent();
+        assertThat(read(fetcher, first)).isEqualTo("a".repeat(600));
+        assertThat(statuses).containsExactly(200, 200, 200);
+    }
+
+    @Test
+    void storesRemainderOfPartiallyReadBody() throws IOException {
+        UUID fileId = UUID.randomUUID();
+        bodies.put(fileId.toString(), "<definitions/>");
+        ObjectStorageFetcher fetcher = fetcher(blobStore(DataSize.ofMegabytes(1)));
+
+        fetcher.fetch(fileId, file -> {
+            try (InputStream body = file.body()) {
+                return body.read();
+            }
+        });
+
+        assertThat(read(fetcher, fileId)).isEqualTo("<definitions/>");
+        assertThat(statuses).containsExactly(200, 304);
+    }
+
+    @Test
+    void keepsNoCopyWhenHandlerFails() throws IOException {
+        UUID fileId = UUID.randomUUID();
+        bodies.put(fileId.toString(), "<definitions/>");
+        BlobStore blobStore = blobStore(DataSize.ofMegabytes(1));
+        ObjectStorageFetcher fetcher = fetcher(blobStore);
+
+        assertThatThrownBy(() -> fetcher.fetch(fileId, file -> {
+            file.body().read();
+            throw new IllegalStateException("parse failed");
+        })).hasMessage("parse failed");
+
+        assertThat(blobStore.lookup(fileId)).isEmpty();
+        assertThat(files(".blob")).isEmpty();
+        assertThat(files(".tmp")).isEmpty();
+    }
+
+    @Test
+    void removesOnlyDirectoriesOfStoppedInstances() throws IOException {
+        UUID fileId = UUID.randomUUID();
+        bodies.put(fileId.toString(), "<definitions/>");
+        BlobStore running = blobStore(DataSize.ofMegabytes(1));
+        read(fetcher(running), fileId);
+        Path stopped = Files.createDirectory(directory.resolve("instance-stopped"));
+        Files.createFile(stopped.resolve(".lock"));
+        Files.writeString(stopped.resolve("abc.blob"), "<definitions/>");
+
+        BlobStore started = blobStore(DataSize.ofMegabytes(1));
+
+        assertThat(stopped).doesNotExist();
+        assertThat(running.lookup(fileId)).isPresent();
+        assertThat(files(".blob")).hasSize(1);
+
+        started.close();
+        running.close();
+        try (var instances = Files.list(directory)) {
+            assertThat(instances).isEmpty();
+        }
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (var files = Files.walk(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).toList();
+        }
+    }
+
+    private static String read(ObjectStorageFetcher fetcher, UUID fileId) {
+        return fetcher.fetch(fileId, file -> new String(file.body().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private BlobStore blobStore(DataSize maxSize) {
+        BlobStoreProperties properties = new BlobStoreProperties();
+        properties.setDirectory(directory);
+        properties.setMaxSize(maxSize);
+        return new BlobStore(properties, new SimpleMeterRegistry());
+    }
+
+    private ObjectStorageFetcher fetcher(BlobStore blobStore) {
+        PresignedUrlCache urls = mock(PresignedUrlCache.class);
+        when(urls.downloadUrl(any())).thenAnswer(invocation -> "http://127.0.0.1:" + server.getAddress().getPort()
+                + "/bucket/" + invocation.getArgument(0));
+        return new ObjectStorageFetcher(urls, new RestTemplate(), new PipelineMetrics(new SimpleMeterRegistry()),
+                blobStore);
+    }
+}
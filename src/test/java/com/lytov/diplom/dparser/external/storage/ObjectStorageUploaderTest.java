@@ -0,0 +1,71 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import com.lytov.diplom.dparser.external.sppr_bd.SpprBdConnector;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ObjectStorageUploaderTest {
+
+    private final AtomicReference<String> method = new AtomicReference<>();
+    private final AtomicReference<String> query = new AtomicReference<>();
+    private final AtomicReference<String> transferEncoding = new AtomicReference<>();
+    private final AtomicReference<String> contentType = new AtomicReference<>();
+    private final AtomicReference<String> body = new AtomicReference<>();
+
+    private HttpServer server;
+
+    @BeforeEach
+    void startStorage() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bucket", exchange -> {
+            method.set(exchange.getRequestMethod());
+            query.set(exchange.getRequestURI().getRawQuery());
+            transferEncoding.set(exchange.getRequestHeaders().getFirst("Transfer-Encoding"));
+            contentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+            body.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStorage() {
+        server.stop(0);
+    }
+
+    @Test
+    void streamsBodyChunkedToPresignedUrl() {
+        UUID objectId = UUID.randomUUID();
+        SpprBdConnector connector = mock(SpprBdConnector.class);
+        when(connector.getUploadUrl(objectId)).thenReturn("http://127.0.0.1:" + server.getAddress().getPort()
+                + "/bucket/" + objectId + "?X-Amz-Signature=a%2Fb");
+        ObjectStorageUploader uploader = new ObjectStorageUploader(
+                connector, new RestTemplate(), new PipelineMetrics(new SimpleMeterRegistry()));
+
+        uploader.upload(objectId, MediaType.APPLICATION_XML,
+                out -> out.write("<definitions/>".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(method.get()).isEqualTo("PUT");
+        assertThat(query.get()).isEqualTo("X-Amz-Signature=a%2Fb");
+        assertThat(transferEncoding.get()).isEqualToIgnoringCase("chunked");
+        assertThat(contentType.get()).isEqualTo(MediaType.APPLICATION_XML_VALUE);
+        assertThat(body.get()).isEqualTo("<definitions/>");
+    }
+}
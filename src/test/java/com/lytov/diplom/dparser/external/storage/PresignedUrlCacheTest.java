@@ -0,0 +1,192 @@
+package com.lytov.diplom.dparser.external.storage;
+
+import com.lytov.diplom.dparser.configuration.storage.properties.PresignedUrlCacheProperties;
+import com.lytov.diplom.dparser.external.sppr_bd.SpprBdConnector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PresignedUrlCacheTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final PresignedUrlCacheProperties properties = new PresignedUrlCacheProperties();
+
+    @Test
+    void readsExpiryFromSigV4AndSigV2() {
+        assertThat(PresignedUrl.parse(sigV4("a", 600)).expiresAt()).isEqualTo(NOW.plusSeconds(600));
+        assertThat(PresignedUrl.parse("http://minio/bucket/a?Expires=1767272400&Signature=x%2F").expiresAt())
+                .isEqualTo(Instant.ofEpochSecond(1767272400));
+        assertThat(PresignedUrl.parse("http://minio/bucket/a").expiresAt()).isNull();
+    }
+
+    @Test
+    void cachesUntilShortlyBeforeExpiry() {
+        StubSpprBd sppr = new StubSpprBd(id -> sigV4(id.toString(), 600));
+        PresignedUrlCache cache = cache(sppr);
+        UUID fileId = UUID.randomUUID();
+
+        cache.downloadUrl(fileId);
+        advance(Duration.ofSeconds(539));
+        cache.downloadUrl(fileId);
+        assertThat(sppr.single).hasValue(1);
+
+        // 600 с жизни минус refresh-before 1 мин
+        advance(Duration.ofSeconds(2));
+        cache.downloadUrl(fileId);
+        assertThat(sppr.single).hasValue(2);
+    }
+
+    @Test
+    void doesNotCacheUrlWithoutExpiry() {
+        StubSpprBd sppr = new StubSpprBd(id -> "http://minio/bucket/" + id);
+        PresignedUrlCache cache = cache(sppr);
+        UUID fileId = UUID.randomUUID();
+
+        cache.downloadUrl(fileId);
+        cache.downloadUrl(fileId);
+
+        assertThat(sppr.single).hasValue(2);
+    }
+
+    @Test
+    void coalescesConcurrentLookups() throws Exception {
+        StubSpprBd sppr = new StubSpprBd(id -> sigV4(id.toString(), 600));
+        sppr.gate = new CountDownLatch(1);
+        PresignedUrlCache cache = cache(sppr);
+        UUID fileId = UUID.randomUUID();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<String>> lookups = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(pool.submit(() -> cache.downloadUrl(fileId)));
+            }
+            Thread.sleep(200);
+            sppr.gate.countDown();
+
+            Set<String> urls = lookups.stream().map(PresignedUrlCacheTest::get).collect(Collectors.toSet());
+            assertThat(urls).hasSize(1);
+            assertThat(sppr.single).hasValue(1);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void prefetchesInBatchesAndFallsBackToSingleRequests() {
+        UUID missing = UUID.randomUUID();
+        StubSpprBd sppr = new StubSpprBd(id -> sigV4(id.toString(), 600));
+        sppr.omitted = missing;
+        properties.setBatchSize(2);
+        PresignedUrlCache cache = cache(sppr);
+        List<UUID> fileIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), missing);
+
+        cache.prefetch(fileIds);
+        fileIds.forEach(cache::downloadUrl);
+
+        assertThat(sppr.batches).hasValue(2);
+        assertThat(sppr.single).hasValue(1);
+    }
+
+    @Test
+    void failedBatchFallsBackToSingleRequests() {
+        StubSpprBd sppr = new StubSpprBd(id -> sigV4(id.toString(), 600));
+        sppr.batchFails = true;
+        PresignedUrlCache cache = cache(sppr);
+        UUID fileId = UUID.randomUUID();
+
+        cache.prefetch(List.of(fileId));
+
+        assertThat(cache.downloadUrl(fileId)).isEqualTo(sigV4(fileId.toString(), 600));
+        assertThat(sppr.single).hasValue(1);
+    }
+
+    private PresignedUrlCache cache(SpprBdConnector sppr) {
+        return new PresignedUrlCache(sppr, properties, new SimpleMeterRegistry(),
+                Clock.fixed(NOW, ZoneOffset.UTC), nanos::get);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private static String sigV4(String key, long expiresSeconds) {
+        return "http://minio/bucket/" + key + "?X-Amz-Algorithm=AWS4-HMAC-SHA256&X-Amz-Credential=k%2F20260101%2Fus-east-1"
+                + "&X-Amz-Date=" + AMZ_DATE.format(NOW) + "&X-Amz-Expires=" + expiresSeconds + "&X-Amz-Signature=abc";
+    }
+
+    private static String get(Future<String> future) {
+        try {
+            return future.get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Локальная заглушка sppr-bd. */
+    private static final class StubSpprBd implements SpprBdConnector {
+
+        private final Function<UUID, String> urls;
+        private final AtomicInteger single = new AtomicInteger();
+        private final AtomicInteger batches = new AtomicInteger();
+        private volatile CountDownLatch gate;
+        private volatile boolean batchFails;
+        private volatile UUID omitted;
+
+        private StubSpprBd(Function<UUID, String> urls) {
+            this.urls = urls;
+        }
+
+        @Override
+        public String getDownloadUrl(UUID id) {
+            single.incrementAndGet();
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return urls.apply(id);
+        }
+
+        @Override
+        public Map<UUID, String> getDownloadUrls(List<UUID> ids) {
+            batches.incrementAndGet();
+            if (batchFails) {
+                throw new IllegalStateException("404 Not Found");
+            }
+            return ids.stream().filter(id -> !id.equals(omitted)).collect(Collectors.toMap(id -> id, urls));
+        }
+
+        @Override
+        public String getUploadUrl(UUID id) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
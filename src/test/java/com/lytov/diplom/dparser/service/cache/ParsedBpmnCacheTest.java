@@ -0,0 +1,235 @@
+package com.lytov.diplom.dparser.service.cache;
+
+import com.lytov.diplom.dparser.configuration.cache.properties.ParsedBpmnCacheProperties;
+import com.lytov.diplom.dparser.configuration.parser.properties.GraphParserProperties;
+import com.lytov.diplom.dparser.domain.repository.ParseResultRepository;
+import com.lytov.diplom.dparser.domain.repository.ParseResultRepository.StoredParseResult;
+import com.lytov.diplom.dparser.external.storage.FetchedFile;
+import com.lytov.diplom.dparser.external.storage.FetchedFileHandler;
+import com.lytov.diplom.dparser.external.storage.ObjectStorageFetcher;
+import com.lytov.diplom.dparser.service.concurrency.ParseLimiter;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ParsedBpmnCacheTest {
+
+    private static final UUID FILE_ID = UUID.randomUUID();
+
+    private final ObjectStorageFetcher fetcher = mock(ObjectStorageFetcher.class);
+    private final ParseResultRepository repository = mock(ParseResultRepository.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ParsedBpmnCache cache = new ParsedBpmnCache(fetcher,
+            new ParseLimiter(new GraphParserProperties(), new PipelineMetrics(registry)),
+            repository, new SyncTaskExecutor(), new ParsedBpmnCacheProperties(), registry);
+
+    private final AtomicReference<String> etag = new AtomicReference<>();
+    private final AtomicReference<String> content = new AtomicReference<>("<definitions/>");
+    private final AtomicInteger parses = new AtomicInteger();
+    private final AtomicInteger bodies = new AtomicInteger();
+
+    ParsedBpmnCacheTest() {
+        when(fetcher.fetch(eq(FILE_ID), any())).thenAnswer(invocation -> respond(invocation.getArgument(1)));
+        when(fetcher.fetch(eq(FILE_ID), any(), any(), any())).thenAnswer(invocation -> {
+            HttpHeaders known = invocation.getArgument(1);
+            if (etag.get() != null && etag.get().equals(known.getETag())) {
+                Supplier<?> unchanged = invocation.getArgument(2);
+                return unchanged.get();
+            }
+            return respond(invocation.getArgument(3));
+        });
+    }
+
+    private Object respond(FetchedFileHandler<?> handler) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        if (etag.get() != null) headers.setETag(etag.get());
+        bodies.incrementAndGet();
+        return handler.handle(new FetchedFile(FILE_ID, headers,
+                new ByteArrayInputStream(content.get().getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void sameEtagIsParsedOnce() {
+        etag.set("\"v1\"");
+
+        assertThat(components()).hasSize(1);
+        assertThat(components()).hasSize(1);
+
+        assertThat(parses).hasValue(1);
+        assertThat(bodies).hasValue(1);
+        verify(fetcher).fetch(eq(FILE_ID), eq(new ParsedBpmn(new ParsedBpmnKey(FILE_ID, "v1")).validators()), any(), any());
+        assertThat(registry.get("d-parser.cache.parsed-bpmn.requests").tag("result", "hit").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void concurrentMissesOfOneVersionShareOneParse() throws Exception {
+        etag.set("\"v1\"");
+        CountDownLatch bothFetched = new CountDownLatch(2);
+        when(fetcher.fetch(eq(FILE_ID), any())).thenAnswer(invocation -> {
+            bothFetched.countDown();
+            bothFetched.await(5, TimeUnit.SECONDS);
+            return respond(invocation.getArgument(1));
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Component>> first = executor.submit(this::components);
+            Future<List<Component>> second = executor.submit(this::components);
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(parses).hasValue(1);
+    }
+
+    @Test
+    void changedEtagIsParsedAgain() {
+        etag.set("\"v1\"");
+        components();
+        etag.set("\"v2\"");
+        components();
+
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    void withoutEtagContentHashIsTheVersion() {
+        components();
+        components();
+        content.set("<definitions id=\"changed\"/>");
+        components();
+
+        assertThat(parses).hasValue(2);
+        // совпавший хэш подтверждает запись без разбора, изменившийся — запрашивает файл ещё раз
+        assertThat(bodies).hasValue(4);
+    }
+
+    @Test
+    void storedResultSkipsParsing() {
+        etag.set("\"v1\"");
+        List<Component> stored = List.of(Component.builder().id("Task_1").build());
+        when(repository.isEnabled()).thenReturn(true);
+        when(repository.findLatest(FILE_ID)).thenReturn(Optional.of(new StoredParseResult("v1", null, stored)));
+
+        assertThat(components()).isEqualTo(stored);
+        assertThat(components()).isEqualTo(stored);
+
+        // сохранённая версия подтверждается условным запросом: тело не читается
+        assertThat(parses).hasValue(0);
+        assertThat(bodies).hasValue(0);
+        verify(repository, times(1)).findLatest(FILE_ID);
+        verify(repository, never()).find(any(), any());
+        verify(repository, never()).saveComponents(any(), any(), any());
+        assertThat(registry.get("d-parser.cache.parsed-bpmn.requests").tag("result", "stored").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void staleStoredVersionIsParsedAgain() {
+        etag.set("\"v2\"");
+        when(repository.isEnabled()).thenReturn(true);
+        when(repository.findLatest(FILE_ID)).thenReturn(Optional.of(
+                new StoredParseResult("v1", null, List.of(Component.builder().id("Task_1").build()))));
+
+        List<Component> parsed = components();
+
+        assertThat(parses).hasValue(1);
+        verify(repository, never()).find(any(), any());
+        verify(repository).saveComponents(FILE_ID, "v2", parsed);
+    }
+
+    @Test
+    void parsedResultIsStoredOnce() {
+        etag.set("\"v1\"");
+        when(repository.isEnabled()).thenReturn(true);
+        when(repository.findLatest(FILE_ID)).thenReturn(Optional.empty());
+
+        List<Component> parsed = components();
+        components();
+
+        assertThat(parses).hasValue(1);
+        verify(repository, times(1)).saveComponents(FILE_ID, "v1", parsed);
+    }
+
+    @Test
+    void storeFailureFallsBackToParsing() {
+        etag.set("\"v1\"");
+        when(repository.isEnabled()).thenReturn(true);
+        when(repository.findLatest(FILE_ID)).thenThrow(new IllegalStateException("connection refused"));
+        when(repository.find(FILE_ID, "v1")).thenThrow(new IllegalStateException("connection refused"));
+
+        assertThat(components()).hasSize(1);
+        assertThat(parses).hasValue(1);
+    }
+
+    @Test
+    void peekReadsStoreWithoutFetching() {
+        List<Component> stored = List.of(Component.builder().id("Task_1").build());
+        when(repository.isEnabled()).thenReturn(true);
+
+        assertThat(cache.peek(FILE_ID, ParsedBpmn::getComponents)).isNull();
+
+        when(repository.findLatest(FILE_ID)).thenReturn(Optional.of(new StoredParseResult("v1", null, stored)));
+        assertThat(cache.peek(FILE_ID, ParsedBpmn::getComponents)).isEqualTo(stored);
+        assertThat(cache.peekInMemory(FILE_ID, ParsedBpmn::getComponents)).isEqualTo(stored);
+
+        verify(fetcher, never()).fetch(any(), any());
+        verify(fetcher, never()).fetch(any(), any(), any(), any());
+    }
+
+    @Test
+    void fullStoreQueueDoesNotFailRequest() {
+        etag.set("\"v1\"");
+        when(repository.isEnabled()).thenReturn(true);
+        ParsedBpmnCache rejecting = new ParsedBpmnCache(fetcher,
+                new ParseLimiter(new GraphParserProperties(), new PipelineMetrics(registry)),
+                repository, task -> {
+                    throw new TaskRejectedException("queue is full");
+                }, new ParsedBpmnCacheProperties(), registry);
+
+        assertThat(rejecting.get(FILE_ID, ParsedBpmn::getComponents, (file, entry) -> {
+            file.body().readAllBytes();
+            entry.setComponents(List.of(new Component()));
+            return entry.getComponents();
+        })).hasSize(1);
+        verify(repository, never()).saveComponents(any(), any(), any());
+    }
+
+    private List<Component> components() {
+        return cache.get(FILE_ID, ParsedBpmn::getComponents, (file, entry) -> {
+            parses.incrementAndGet();
+            file.body().readAllBytes();
+            entry.setComponents(List.of(new Component()));
+            return entry.getComponents();
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.lytov.diplom.dparser.service.classifier;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordAutomatonTest {
+
+    @Test
+    void findsOverlappingKeywordsIgnoringCase() {
+        KeywordAutomaton automaton = KeywordAutomaton.compile(Map.of(
+                0, List.of("he", "she"),
+                1, List.of("his", "hers"),
+                2, List.of("утверд", " ")));
+
+        assertThat(automaton.match("uShErs")).isEqualTo(0b011);
+        assertThat(automaton.match("Утвердить договор")).isEqualTo(0b100);
+        assertThat(automaton.match("xyz")).isZero();
+        assertThat(automaton.match(null)).isZero();
+    }
+
+    @Test
+    void matchesSameAsContains() {
+        Random random = new Random(42);
+        for (int round = 0; round < 5_000; round++) {
+            Map<Integer, List<String>> keywords = new HashMap<>();
+            for (int i = 0; i < 5; i++) {
+                keywords.computeIfAbsent(i % 3, label -> new ArrayList<>()).add(randomWord(random, 1 + random.nextInt(4)));
+            }
+            String text = randomWord(random, random.nextInt(20));
+
+            long expected = 0;
+            for (Map.Entry<Integer, List<String>> entry : keywords.entrySet()) {
+                for (String word : entry.getValue()) {
+                    if (text.contains(word)) expected |= 1L << entry.getKey();
+                }
+            }
+
+            assertThat(KeywordAutomaton.compile(keywords).match(text)).as("%s in %s", keywords, text).isEqualTo(expected);
+        }
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append("abc".charAt(random.nextInt(3)));
+        }
+        return word.toString();
+    }
+}
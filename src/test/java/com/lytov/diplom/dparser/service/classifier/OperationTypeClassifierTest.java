@@ -0,0 +1,87 @@
+package com.lytov.diplom.dparser.service.classifier;
+
+import com.lytov.diplom.dparser.configuration.parser.properties.OperationClassifierProperties;
+import com.lytov.diplom.dparser.domain.enums.OperationType;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OperationTypeClassifierTest {
+
+    private static final BpmnModelInstance MODEL = Bpmn.readModelFromStream(new ByteArrayInputStream("""
+            <definitions xmlns="http://www.omg.org/spec/BPMN/20100524/MODEL"
+                         xmlns:camunda="http://camunda.org/schema/1.0/bpmn" id="D" targetNamespace="t">
+              <process id="P">
+                <userTask id="Approve" name="УТВЕРДИТЬ ввод заявки"/>
+                <userTask id="Input" name="Внести данные"/>
+                <userTask id="Review" name="Проверка"/>
+                <serviceTask id="Class" camunda:class="com.example.RestClientDelegate"/>
+                <serviceTask id="Connector">
+                  <extensionElements>
+                    <camunda:connector><camunda:connectorId>http-connector</camunda:connectorId></camunda:connector>
+                  </extensionElements>
+                </serviceTask>
+                <serviceTask id="Local" camunda:expression="${calculator.sum(a, b)}"/>
+                <serviceTask id="Interest" camunda:class="com.example.InterestCalculatorDelegate"/>
+                <serviceTask id="Restore" camunda:class="com.example.RestoreDelegate"/>
+                <serviceTask id="Restart" camunda:delegateExpression="${restartService}"/>
+                <serviceTask id="Acronym" camunda:class="com.example.RESTClient"/>
+                <serviceTask id="HttpExpression" camunda:expression="${http_client.post(url)}"/>
+                <scriptTask id="Script"/>
+                <manualTask id="Manual"/>
+              </process>
+            </definitions>
+            """.getBytes(StandardCharsets.UTF_8)));
+
+    @Test
+    void classifiesByDefaultDictionaries() {
+        OperationTypeClassifier classifier = new OperationTypeClassifier(new OperationClassifierProperties());
+
+        // утверждение объявлено в OperationType раньше ввода
+        assertThat(classifier.classify(task("Approve"))).isEqualTo(OperationType.APPROVAL);
+        assertThat(classifier.classify(task("Input"))).isEqualTo(OperationType.USER_INPUT);
+        assertThat(classifier.classify(task("Review"))).isEqualTo(OperationType.DATA_PROCESSING);
+        assertThat(classifier.classify(task("Class"))).isEqualTo(OperationType.EXTERNAL_CALL);
+        assertThat(classifier.classify(task("Connector"))).isEqualTo(OperationType.EXTERNAL_CALL);
+        assertThat(classifier.classify(task("Local"))).isEqualTo(OperationType.DATA_PROCESSING);
+        assertThat(classifier.classify(task("Script"))).isEqualTo(OperationType.DATA_PROCESSING);
+        assertThat(classifier.classify(task("Manual"))).isEqualTo(OperationType.OTHER);
+    }
+
+    @Test
+    void matchesServiceTaskIdentifiersByWholeWords() {
+        OperationTypeClassifier classifier = new OperationTypeClassifier(new OperationClassifierProperties());
+
+        assertThat(classifier.classify(task("Interest"))).isEqualTo(OperationType.DATA_PROCESSING);
+        assertThat(classifier.classify(task("Restore"))).isEqualTo(OperationType.DATA_PROCESSING);
+        assertThat(classifier.classify(task("Restart"))).isEqualTo(OperationType.DATA_PROCESSING);
+        assertThat(classifier.classify(task("Acronym"))).isEqualTo(OperationType.EXTERNAL_CALL);
+        assertThat(classifier.classify(task("HttpExpression"))).isEqualTo(OperationType.EXTERNAL_CALL);
+        assertThat(OperationTypeClassifier.words("${restClient.call2()}")).isEqualTo("|rest|Client|call|2|");
+    }
+
+    @Test
+    void usesConfiguredDictionaries() {
+        OperationClassifierProperties properties = new OperationClassifierProperties();
+        properties.setUserTaskKeywords(Map.of(OperationType.APPROVAL, List.of("провер")));
+        properties.setExternalCallKeywords(List.of("calculator"));
+        OperationTypeClassifier classifier = new OperationTypeClassifier(properties);
+
+        assertThat(classifier.classify(task("Review"))).isEqualTo(OperationType.APPROVAL);
+        assertThat(classifier.classify(task("Input"))).isEqualTo(OperationType.DATA_PROCESSING);
+        assertThat(classifier.classify(task("Local"))).isEqualTo(OperationType.EXTERNAL_CALL);
+        assertThat(classifier.classify(task("Class"))).isEqualTo(OperationType.DATA_PROCESSING);
+    }
+
+    private static Task task(String id) {
+        return MODEL.getModelElementById(id);
+    }
+}
@@ -0,0 +1,58 @@
+package com.lytov.diplom.dparser.service.dto;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactBpmnGraphTest {
+
+    @Test
+    void viewMatchesSourceGraph() {
+        BpmnGraph graph = sample();
+
+        BpmnGraph view = CompactBpmnGraph.of(graph).view();
+
+        assertThat(view.nodes).containsExactlyEntriesOf(graph.nodes);
+        assertThat(view.edges).containsExactlyElementsOf(graph.edges);
+        assertThat(view.out).isEqualTo(graph.out);
+        assertThat(view.in).isEqualTo(graph.in);
+        // id, который встречается только в ребре, есть в смежности, но не в nodes
+        assertThat(view.nodes).doesNotContainKey("ghost");
+        assertThat(view.in).containsKey("ghost");
+    }
+
+    @Test
+    void traversesByIndex() {
+        CompactBpmnGraph compact = CompactBpmnGraph.of(sample());
+
+        int gateway = compact.indexOf("gw");
+        List<String> targets = new ArrayList<>();
+        for (int k = 0; k < compact.outDegree(gateway); k++) {
+            targets.add(compact.nodeId(compact.edgeTarget(compact.outEdge(gateway, k))));
+        }
+
+        assertThat(compact.nodeType(gateway)).isEqualTo(NodeType.EXCLUSIVE_GATEWAY);
+        assertThat(targets).containsExactly("a", "b", "ghost");
+        assertThat(compact.inDegree(compact.indexOf("start"))).isZero();
+        assertThat(compact.indexOf("missing")).isEqualTo(-1);
+    }
+
+    private static BpmnGraph sample() {
+        BpmnGraph graph = new BpmnGraph();
+        graph.addNode(new BpmnGraph.BpmnNode("start", "Start", NodeType.START_EVENT));
+        graph.addNode(new BpmnGraph.BpmnNode("gw", null, NodeType.EXCLUSIVE_GATEWAY));
+        graph.addNode(new BpmnGraph.BpmnNode("a", "A", NodeType.USER_TASK));
+        graph.addNode(new BpmnGraph.BpmnNode("b", "B", NodeType.SERVICE_TASK));
+        graph.addEdge(new BpmnGraph.BpmnEdge("f1", EdgeType.SEQUENCE_FLOW, "start", "gw"));
+        graph.addEdge(new BpmnGraph.BpmnEdge("f2", EdgeType.SEQUENCE_FLOW, "gw", "a"));
+        graph.addEdge(new BpmnGraph.BpmnEdge("f3", EdgeType.SEQUENCE_FLOW, "gw", "b"));
+        graph.addEdge(new BpmnGraph.BpmnEdge("f4", EdgeType.SEQUENCE_FLOW, "gw", "ghost"));
+        graph.addEdge(new BpmnGraph.BpmnEdge("m1", EdgeType.MESSAGE_FLOW, "a", "b"));
+        return graph;
+    }
+}
@@ -0,0 +1,116 @@
+package com.lytov.diplom.dparser.service.graph;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphAnalyticsDto;
+import com.lytov.diplom.dparser.service.dto.GraphAnalyticsDto.NodeAnalytics;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphAnalyzerTest {
+
+    /**
+     * start → split → (a | b) → join → check → end, check → a — цикл a → join → check → a;
+     * orphan ни с чем не связан, data-ассоциации не учитываются.
+     */
+    @Test
+    void analyzesLoopsReachabilityAndDominators() {
+        BpmnGraph graph = new BpmnGraph();
+        node(graph, "start", NodeType.START_EVENT);
+        node(graph, "split", NodeType.EXCLUSIVE_GATEWAY);
+        node(graph, "a", NodeType.USER_TASK);
+        node(graph, "b", NodeType.SERVICE_TASK);
+        node(graph, "join", NodeType.EXCLUSIVE_GATEWAY);
+        node(graph, "check", NodeType.EXCLUSIVE_GATEWAY);
+        node(graph, "end", NodeType.END_EVENT);
+        node(graph, "orphan", NodeType.TASK);
+        flow(graph, "start", "split");
+        flow(graph, "split", "a");
+        flow(graph, "split", "b");
+        flow(graph, "a", "join");
+        flow(graph, "b", "join");
+        flow(graph, "join", "check");
+        flow(graph, "check", "end");
+        flow(graph, "check", "a");
+        graph.addEdge(new BpmnGraph.BpmnEdge("d1", EdgeType.DATA_ASSOCIATION, "orphan", "a"));
+
+        GraphAnalyticsDto analytics = GraphAnalyzer.analyze(CompactBpmnGraph.of(graph));
+        Map<String, NodeAnalytics> nodes = analytics.getNodes();
+
+        assertThat(nodes.get("a").loop()).isTrue();
+        assertThat(nodes.get("a").component()).isEqualTo(nodes.get("check").component());
+        assertThat(nodes.get("b").loop()).isFalse();
+        assertThat(analytics.getComponentCount()).isEqualTo(6);
+        assertThat(nodes.get("start").component()).isLessThan(nodes.get("split").component());
+        assertThat(nodes.get("split").component()).isLessThan(nodes.get("b").component());
+        assertThat(nodes.get("b").component()).isLessThan(nodes.get("join").component());
+        assertThat(nodes.get("check").component()).isLessThan(nodes.get("end").component());
+
+        assertThat(nodes.get("orphan").reachable()).isFalse();
+        assertThat(nodes.get("orphan").reachesEnd()).isFalse();
+        assertThat(nodes.get("a").reachable()).isTrue();
+        assertThat(nodes.get("a").reachesEnd()).isTrue();
+
+        assertThat(nodes.get("start").dominator()).isNull();
+        assertThat(nodes.get("a").dominator()).isEqualTo("split");
+        assertThat(nodes.get("join").dominator()).isEqualTo("split");
+        assertThat(nodes.get("end").dominator()).isEqualTo("check");
+        assertThat(nodes.get("orphan").dominator()).isNull();
+
+        assertThat(nodes.get("split").postDominator()).isEqualTo("join");
+        assertThat(nodes.get("a").postDominator()).isEqualTo("join");
+        assertThat(nodes.get("end").postDominator()).isNull();
+
+        assertThat(nodes.get("split").outDegree()).isEqualTo(2);
+        assertThat(nodes.get("a").inDegree()).isEqualTo(2);
+    }
+
+    @Test
+    void joinsSeveralEntriesUnderVirtualRoot() {
+        BpmnGraph graph = new BpmnGraph();
+        node(graph, "s1", NodeType.START_EVENT);
+        node(graph, "s2", NodeType.START_EVENT);
+        node(graph, "task", NodeType.TASK);
+        node(graph, "end", NodeType.END_EVENT);
+        flow(graph, "s1", "task");
+        flow(graph, "s2", "task");
+        flow(graph, "task", "end");
+
+        Map<String, NodeAnalytics> nodes = GraphAnalyzer.analyze(CompactBpmnGraph.of(graph)).getNodes();
+
+        assertThat(nodes.get("task").dominator()).isNull();
+        assertThat(nodes.get("task").reachable()).isTrue();
+        assertThat(nodes.get("end").dominator()).isEqualTo("task");
+        assertThat(nodes.get("s1").postDominator()).isEqualTo("task");
+    }
+
+    @Test
+    void handlesLongChainsWithoutRecursion() {
+        BpmnGraph graph = new BpmnGraph();
+        int length = 200_000;
+        for (int i = 0; i < length; i++) {
+            node(graph, "n" + i, i == 0 ? NodeType.START_EVENT : i == length - 1 ? NodeType.END_EVENT : NodeType.TASK);
+            if (i > 0) flow(graph, "n" + (i - 1), "n" + i);
+        }
+        flow(graph, "n" + (length - 2), "n1");
+
+        GraphAnalyticsDto analytics = GraphAnalyzer.analyze(CompactBpmnGraph.of(graph));
+
+        assertThat(analytics.getComponentCount()).isEqualTo(3);
+        assertThat(analytics.getNodes().get("n" + (length - 1)).dominator()).isEqualTo("n" + (length - 2));
+        assertThat(analytics.getNodes().get("n1").postDominator()).isEqualTo("n2");
+    }
+
+    private static void node(BpmnGraph graph, String id, NodeType type) {
+        graph.addNode(new BpmnGraph.BpmnNode(id, id, type));
+    }
+
+    private static void flow(BpmnGraph graph, String source, String target) {
+        graph.addEdge(new BpmnGraph.BpmnEdge(source + "->" + target, EdgeType.SEQUENCE_FLOW, source, target));
+    }
+}
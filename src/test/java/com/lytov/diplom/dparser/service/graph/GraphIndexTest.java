@@ -0,0 +1,76 @@
+package com.lytov.diplom.dparser.service.graph;
+
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GraphIndexTest {
+
+    private static final int DIAMONDS = 40;
+    private static final int MAX_LENGTH = 64;
+
+    /**
+     * start → лестница из {@value #DIAMONDS} ромбов split_i → (a_i | b_i) → split_{i+1} → end и прямое start → end.
+     * Путь по лестнице длиннее {@value #MAX_LENGTH} вершин, а частичных путей по ней — 2^40.
+     */
+    @Test
+    @Timeout(value = 5, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void doesNotEnterBranchesLongerThanMaxLength() {
+        GraphIndex index = GraphIndex.of(CompactBpmnGraph.of(ladder(true)), 16);
+        CompactBpmnGraph graph = index.graph();
+
+        List<int[]> paths = index.paths(graph.indexOf("start"), graph.indexOf("end"), 10, MAX_LENGTH);
+
+        assertThat(paths).singleElement()
+                .satisfies(path -> assertThat(path).containsExactly(graph.indexOf("start"), graph.indexOf("end")));
+    }
+
+    @Test
+    @Timeout(value = 5, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void reachableTargetFartherThanMaxLengthHasNoPaths() {
+        GraphIndex index = GraphIndex.of(CompactBpmnGraph.of(ladder(false)), 16);
+        CompactBpmnGraph graph = index.graph();
+
+        assertThat(index.reaches(graph.indexOf("start"), graph.indexOf("end"))).isTrue();
+        assertThat(index.paths(graph.indexOf("start"), graph.indexOf("end"), 10, MAX_LENGTH)).isEmpty();
+        assertThat(index.paths(graph.indexOf("split_0"), graph.indexOf("split_2"), 10, 5)).hasSize(4);
+    }
+
+    private static BpmnGraph ladder(boolean shortcut) {
+        BpmnGraph graph = new BpmnGraph();
+        node(graph, "start", NodeType.START_EVENT);
+        node(graph, "end", NodeType.END_EVENT);
+        for (int i = 0; i <= DIAMONDS; i++) {
+            node(graph, "split_" + i, NodeType.PARALLEL_GATEWAY);
+        }
+        flow(graph, "start", "split_0");
+        for (int i = 0; i < DIAMONDS; i++) {
+            node(graph, "a_" + i, NodeType.TASK);
+            node(graph, "b_" + i, NodeType.TASK);
+            flow(graph, "split_" + i, "a_" + i);
+            flow(graph, "split_" + i, "b_" + i);
+            flow(graph, "a_" + i, "split_" + (i + 1));
+            flow(graph, "b_" + i, "split_" + (i + 1));
+        }
+        flow(graph, "split_" + DIAMONDS, "end");
+        if (shortcut) {
+            flow(graph, "start", "end");
+        }
+        return graph;
+    }
+
+    private static void node(BpmnGraph graph, String id, NodeType type) {
+        graph.addNode(new BpmnGraph.BpmnNode(id, id, type));
+    }
+
+    private static void flow(BpmnGraph graph, String source, String target) {
+        graph.addEdge(new BpmnGraph.BpmnEdge(source + "->" + target, EdgeType.SEQUENCE_FLOW, source, target));
+    }
+}
@@ -0,0 +1,160 @@
+package com.lytov.diplom.dparser.service.idempotency;
+
+import com.lytov.diplom.dparser.configuration.rabbit.properties.IdempotencyProperties;
+import com.lytov.diplom.dparser.domain.enums.ProcessedMessageKind;
+import com.lytov.diplom.dparser.domain.repository.ProcessedMessageRepository;
+import com.lytov.diplom.dparser.domain.repository.ProcessedMessageRepository.ProcessedMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProcessedMessagesTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final ProcessedMessageRepository repository = mock(ProcessedMessageRepository.class);
+    private final IdempotencyProperties properties = new IdempotencyProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void replayIsNotCountedAsDuplicate() {
+        ProcessedMessages processed = processed();
+        UUID fileId = UUID.randomUUID();
+        UUID processId = UUID.randomUUID();
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setMessageId("m-1");
+        Message message = new Message(new byte[0], messageProperties);
+        processed.completeCreateGraph(message, fileId, processId);
+
+        messageProperties.setHeader(ProcessedMessages.REPLAY_HEADER, true);
+        assertThat(processed.findCreateGraph(message, fileId, processId)).isPresent();
+
+        assertThat(meterRegistry.get("d-parser.rabbit.idempotency.duplicates").tag("kind", "create-graph")
+                .counter().count()).isZero();
+    }
+
+    @Test
+    void completedMessageIsFoundInMemoryUntilRetentionExpires() {
+        ProcessedMessages processed = processed();
+        UUID fileId = UUID.randomUUID();
+        UUID processId = UUID.randomUUID();
+        String key = ProcessedMessages.createGraphKey(fileId, processId);
+
+        assertThat(processed.find(key)).isEmpty();
+        processed.complete(key, ProcessedMessageKind.CREATE_GRAPH, fileId, processId, null);
+
+        assertThat(processed.find(key)).hasValueSatisfying(message -> {
+            assertThat(message.fileId()).isEqualTo(fileId);
+            assertThat(message.completedAt()).isEqualTo(NOW);
+        });
+        assertThat(meterRegistry.get("d-parser.rabbit.idempotency.duplicates").tag("kind", "create-graph")
+                .counter().count()).isEqualTo(1);
+
+        nanos.addAndGet(properties.getRetention().plusSeconds(1).toNanos());
+        assertThat(processed.find(key)).isEmpty();
+        verify(repository, never()).find(any(), any());
+    }
+
+    @Test
+    void persistentMissFallsBackToPostgresOnce() {
+        properties.setPersistent(true);
+        ProcessedMessages processed = processed();
+        UUID markedFileId = UUID.randomUUID();
+        ProcessedMessage stored = new ProcessedMessage("marking:m-1", ProcessedMessageKind.MARKING,
+                UUID.randomUUID(), UUID.randomUUID(), markedFileId, NOW.minusSeconds(60));
+        when(repository.find("marking:m-1", NOW.minus(properties.getRetention()))).thenReturn(Optional.of(stored));
+
+        assertThat(processed.find("marking:m-1")).hasValueSatisfying(
+                message -> assertThat(message.resultId()).isEqualTo(markedFileId));
+        assertThat(processed.find("marking:m-1")).isPresent();
+
+        verify(repository, times(1)).find(eq("marking:m-1"), any());
+    }
+
+    @Test
+    void databaseFailuresDoNotBreakProcessing() {
+        properties.setPersistent(true);
+        ProcessedMessages processed = processed();
+        when(repository.find(any(), any())).thenThrow(new DataAccessResourceFailureException("down"));
+        doThrow(new DataAccessResourceFailureException("down")).when(repository).save(any());
+
+        assertThat(processed.find("marking:m-2")).isEmpty();
+        processed.complete("marking:m-2", ProcessedMessageKind.MARKING, null, null, UUID.randomUUID());
+
+        assertThat(processed.find("marking:m-2")).isPresent();
+    }
+
+    @Test
+    void expiredRecordsArePurgedAtMostOncePerRetention() {
+        properties.setPersistent(true);
+        ProcessedMessages processed = processed();
+
+        processed.complete("k1", ProcessedMessageKind.MARKING, null, null, null);
+        processed.complete("k2", ProcessedMessageKind.MARKING, null, null, null);
+
+        verify(repository, times(2)).save(any());
+        verify(repository, times(1)).deleteCompletedBefore(NOW.minus(properties.getRetention()));
+    }
+
+    @Test
+    void disabledStoreRemembersNothing() {
+        properties.setEnabled(false);
+        ProcessedMessages processed = processed();
+
+        processed.complete("k", ProcessedMessageKind.MARKING, null, null, null);
+
+        assertThat(processed.find("k")).isEmpty();
+    }
+
+    @Test
+    void messageKeyPrefersMessageIdAndFallsBackToBodyHash() {
+        MessageProperties withId = new MessageProperties();
+        withId.setMessageId("m-42");
+        byte[] body = "{\"fileId\":\"f\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(ProcessedMessages.messageKey(ProcessedMessageKind.MARKING, new Message(body, withId)))
+                .isEqualTo("marking:m-42");
+        String byBody = ProcessedMessages.messageKey(ProcessedMessageKind.MARKING, new Message(body, new MessageProperties()));
+        assertThat(byBody).startsWith("marking:sha256:")
+                .isEqualTo(ProcessedMessages.messageKey(ProcessedMessageKind.MARKING, new Message(body.clone(), new MessageProperties())));
+    }
+
+    @Test
+    void replayHeaderAcceptsBooleanAndString() {
+        MessageProperties flag = new MessageProperties();
+        flag.setHeader(ProcessedMessages.REPLAY_HEADER, true);
+        MessageProperties text = new MessageProperties();
+        text.setHeader(ProcessedMessages.REPLAY_HEADER, "true");
+
+        assertThat(ProcessedMessages.replayRequested(new Message(new byte[0], flag))).isTrue();
+        assertThat(ProcessedMessages.replayRequested(new Message(new byte[0], text))).isTrue();
+        assertThat(ProcessedMessages.replayRequested(new Message(new byte[0], new MessageProperties()))).isFalse();
+    }
+
+    private ProcessedMessages processed() {
+        properties.setRetention(Duration.ofMinutes(10));
+        return new ProcessedMessages(repository, properties, meterRegistry, Clock.fixed(NOW, ZoneOffset.UTC), nanos::get);
+    }
+}
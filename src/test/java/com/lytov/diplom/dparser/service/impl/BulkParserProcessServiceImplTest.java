@@ -0,0 +1,113 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.configuration.parser.properties.BulkParseProperties;
+import com.lytov.diplom.dparser.exception.BulkParseTooLarge;
+import com.lytov.diplom.dparser.external.storage.FetchedFile;
+import com.lytov.diplom.dparser.external.storage.PresignedUrlCache;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnCache;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnCache.SourcePreparer;
+import com.lytov.diplom.dparser.service.dto.BulkParseResultDto;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.strategy.ModelParserStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BulkParserProcessServiceImplTest {
+
+    private final ParsedBpmnCache cache = mock(ParsedBpmnCache.class);
+    private final BulkParseProperties properties = new BulkParseProperties();
+
+    @Test
+    void failedFileDoesNotFailBatch() throws Exception {
+        UUID good = UUID.randomUUID();
+        UUID broken = UUID.randomUUID();
+        Component component = Component.builder().id("T1").build();
+        when(cache.get(eq(good), any(), any(), any())).thenReturn(List.of(component));
+        when(cache.get(eq(broken), any(), any(), any())).thenThrow(new IllegalStateException("Downloaded file is empty"));
+        List<BulkParseResultDto> results = new ArrayList<>();
+
+        service(new SyncTaskExecutor()).parseAll(List.of(good, broken), results::add).get(5, TimeUnit.SECONDS);
+
+        assertThat(results).containsExactlyInAnyOrder(
+                BulkParseResultDto.parsed(good, List.of(component)),
+                BulkParseResultDto.failed(broken, "Downloaded file is empty"));
+    }
+
+    @Test
+    void buffersBodyWithinMemoryBudget() throws Exception {
+        // бюджет на один файл: второй ждёт, пока первый разберётся и освободит память
+        properties.setMaxBufferedSize(DataSize.ofKilobytes(1));
+        when(cache.get(any(), any(), any(), any())).thenAnswer(inv -> {
+            SourcePreparer preparer = inv.getArgument(3);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentLength(1024);
+            FetchedFile file = preparer.prepare(new FetchedFile(inv.getArgument(0), headers,
+                    new ByteArrayInputStream(new byte[1024])));
+            assertThat(file.body()).isInstanceOf(ByteArrayInputStream.class);
+            return List.of();
+        });
+        List<UUID> fileIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        List<BulkParseResultDto> results = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            service(pool::execute).parseAll(fileIds, result -> {
+                synchronized (results) {
+                    return results.add(result);
+                }
+            }).get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(results).extracting(BulkParseResultDto::getError).containsOnlyNulls().hasSize(4);
+    }
+
+    @Test
+    void stopsAfterClientIsGone() throws Exception {
+        when(cache.get(any(), any(), any(), any())).thenReturn(List.of());
+        List<BulkParseResultDto> results = new ArrayList<>();
+
+        service(new SyncTaskExecutor()).parseAll(List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()),
+                result -> {
+                    results.add(result);
+                    return false;
+                }).get(5, TimeUnit.SECONDS);
+
+        assertThat(results).hasSize(1);
+    }
+
+    @Test
+    void rejectsTooManyFiles() {
+        properties.setMaxFiles(1);
+
+        assertThatThrownBy(() -> service(new SyncTaskExecutor()).parse(List.of(UUID.randomUUID(), UUID.randomUUID())))
+                .isInstanceOf(BulkParseTooLarge.class);
+    }
+
+    private BulkParserProcessServiceImpl service(TaskExecutor executor) {
+        return new BulkParserProcessServiceImpl(mock(ModelParserStrategy.class), cache, mock(PresignedUrlCache.class),
+                new PipelineMetrics(new SimpleMeterRegistry()), new ObjectMapper(), properties, executor);
+    }
+}
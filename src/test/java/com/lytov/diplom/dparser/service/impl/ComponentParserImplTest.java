@@ -0,0 +1,125 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.configuration.parser.properties.OperationClassifierProperties;
+import com.lytov.diplom.dparser.service.classifier.OperationTypeClassifier;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.support.bpmn.BpmnSpec;
+import com.lytov.diplom.dparser.support.bpmn.SyntheticBpmnGenerator;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.instance.Task;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ComponentParserImplTest {
+
+    private final ComponentParserImpl parser = new ComponentParserImpl(new OperationTypeClassifier(new OperationClassifierProperties()));
+
+    @Test
+    void fillsPoolAndLaneForEveryTask() {
+        byte[] xml = SyntheticBpmnGenerator.generate(BpmnSpec.of(2_000));
+
+        List<Component> components = parser.parserComponents(new ByteArrayInputStream(xml));
+
+        assertThat(components).hasSameSizeAs(
+                Bpmn.readModelFromStream(new ByteArrayInputStream(xml)).getModelElementsByType(Task.class));
+        assertThat(components).allSatisfy(component -> {
+            assertThat(component.getDepartment()).isNotNull();
+            assertThat(component.getRole()).isNotNull();
+        });
+    }
+
+    @Test
+    void resolvesNestedLanesSubProcessesAndData() {
+        String bpmn = """
+                <definitions xmlns="http://www.omg.org/spec/BPMN/20100524/MODEL" id="D" targetNamespace="t">
+                  <collaboration id="C">
+                    <participant id="Pool" name="Бухгалтерия" processRef="P"/>
+                  </collaboration>
+                  <process id="P">
+                    <laneSet id="LS">
+                      <lane id="L" name="Отдел">
+                        <flowNodeRef>T1</flowNodeRef>
+                        <flowNodeRef>T2</flowNodeRef>
+                        <flowNodeRef>Sub</flowNodeRef>
+                        <childLaneSet id="CLS">
+                          <lane id="L2" name="Бухгалтер">
+                            <flowNodeRef>T2</flowNodeRef>
+                          </lane>
+                        </childLaneSet>
+                      </lane>
+                    </laneSet>
+                    <dataObject id="DO"/>
+                    <dataObjectReference id="Doc" dataObjectRef="DO"/>
+                    <userTask id="T1" name="Ввод счёта">
+                      <dataOutputAssociation id="Out"><targetRef>Doc</targetRef></dataOutputAssociation>
+                    </userTask>
+                    <serviceTask id="T2" name="Проводка">
+                      <ioSpecification id="Io">
+                        <dataInput id="Input"/>
+                        <inputSet id="InputSet"><dataInputRefs>Input</dataInputRefs></inputSet>
+                        <outputSet id="OutputSet"/>
+                      </ioSpecification>
+                      <dataInputAssociation id="In">
+                        <sourceRef>Doc</sourceRef>
+                        <targetRef>Input</targetRef>
+                      </dataInputAssociation>
+                    </serviceTask>
+                    <subProcess id="Sub">
+                      <task id="T3" name="Архив"/>
+                    </subProcess>
+                  </process>
+                  <process id="Orphan">
+                    <task id="T4"/>
+                  </process>
+                </definitions>
+                """;
+
+        Map<String, Component> components = parser.parserComponents(
+                        new ByteArrayInputStream(bpmn.getBytes(StandardCharsets.UTF_8))).stream()
+                .collect(Collectors.toMap(Component::getId, Function.identity()));
+
+        assertThat(components).containsOnlyKeys("T1", "T2", "T3", "T4");
+        assertThat(components.get("T1").getRole()).isEqualTo("Отдел");
+        assertThat(components.get("T1").getRelatedData()).containsExactly("Doc");
+        assertThat(components.get("T2").getRole()).isEqualTo("Бухгалтер");
+        assertThat(components.get("T2").getRelatedData()).containsExactly("Doc");
+        assertThat(components.get("T3").getRole()).isEqualTo("Отдел");
+        assertThat(components.get("T3").getDepartment()).isEqualTo("Бухгалтерия");
+        assertThat(components.get("T4").getDepartment()).isNull();
+        assertThat(components.get("T4").getRole()).isNull();
+    }
+
+    @Test
+    void collectsTasksOfAdHocSubProcess() {
+        String bpmn = """
+                <definitions xmlns="http://www.omg.org/spec/BPMN/20100524/MODEL" id="D" targetNamespace="t">
+                  <process id="P">
+                    <laneSet id="LS">
+                      <lane id="L" name="Отдел">
+                        <flowNodeRef>AdHoc</flowNodeRef>
+                      </lane>
+                    </laneSet>
+                    <adHocSubProcess id="AdHoc">
+                      <userTask id="T1" name="Проверка"/>
+                      <subProcess id="Sub">
+                        <task id="T2"/>
+                      </subProcess>
+                    </adHocSubProcess>
+                  </process>
+                </definitions>
+                """;
+
+        List<Component> components = parser.parserComponents(new ByteArrayInputStream(bpmn.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(components).extracting(Component::getId).containsExactly("T1", "T2");
+        assertThat(components).extracting(Component::getRole).containsOnly("Отдел");
+    }
+}
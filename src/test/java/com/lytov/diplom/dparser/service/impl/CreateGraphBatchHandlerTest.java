@@ -0,0 +1,102 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.configuration.rabbit.DCoreRMQConfig;
+import com.lytov.diplom.dparser.configuration.rabbit.properties.IdempotencyProperties;
+import com.lytov.diplom.dparser.domain.repository.ProcessedMessageRepository;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.RequestCreateGraph;
+import com.lytov.diplom.dparser.service.idempotency.ProcessedMessages;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.service.retry.DelayedRetryRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CreateGraphBatchHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BpmnToGraphParserImpl parser = mock(BpmnToGraphParserImpl.class);
+    private final DelayedRetryRouter retryRouter = mock(DelayedRetryRouter.class);
+    private final CreateGraphBatchHandler handler = new CreateGraphBatchHandler(parser, retryRouter, objectMapper,
+            new PipelineMetrics(new SimpleMeterRegistry()),
+            new ProcessedMessages(mock(ProcessedMessageRepository.class), new IdempotencyProperties(), new SimpleMeterRegistry()));
+
+    @Test
+    void parsesEachFileOnceAndPublishesPerProcess() throws Exception {
+        UUID fileA = UUID.randomUUID();
+        UUID fileB = UUID.randomUUID();
+        UUID p1 = UUID.randomUUID();
+        UUID p2 = UUID.randomUUID();
+        UUID p3 = UUID.randomUUID();
+        CompactBpmnGraph graph = CompactBpmnGraph.of(new BpmnGraph());
+        when(parser.graph(any())).thenReturn(graph);
+
+        handler.createGraphListener(List.of(
+                message(fileA, p1),
+                message(fileB, p2),
+                message(fileA, p3),
+                message(fileA, p1)));
+
+        verify(parser, times(1)).graph(fileA);
+        verify(parser, times(1)).graph(fileB);
+        verify(parser).publishGraph(p1, graph);
+        verify(parser).publishGraph(p2, graph);
+        verify(parser).publishGraph(p3, graph);
+        verify(retryRouter, never()).retryOrPark(any(), any(), any());
+    }
+
+    @Test
+    void failedFileIsRetriedWithoutStoppingTheBatch() throws Exception {
+        UUID broken = UUID.randomUUID();
+        UUID healthy = UUID.randomUUID();
+        UUID process = UUID.randomUUID();
+        CompactBpmnGraph graph = CompactBpmnGraph.of(new BpmnGraph());
+        when(parser.graph(broken)).thenThrow(new IllegalStateException("storage is down"));
+        when(parser.graph(healthy)).thenReturn(graph);
+        Message brokenMessage = message(broken, UUID.randomUUID());
+
+        handler.createGraphListener(List.of(brokenMessage, message(healthy, process)));
+
+        verify(parser).publishGraph(process, graph);
+        verify(retryRouter).retryOrPark(eq(DCoreRMQConfig.FROM_SPPR_CREATE_GRAPH_QUEUE), eq(brokenMessage), any());
+    }
+
+    @Test
+    void redeliveredRequestIsNotParsedAgainUnlessReplayRequested() throws Exception {
+        UUID file = UUID.randomUUID();
+        UUID process = UUID.randomUUID();
+        CompactBpmnGraph graph = CompactBpmnGraph.of(new BpmnGraph());
+        when(parser.graph(file)).thenReturn(graph);
+
+        handler.createGraphListener(List.of(message(file, process)));
+        handler.createGraphListener(List.of(message(file, process)));
+
+        verify(parser, times(1)).graph(file);
+        verify(parser, times(1)).publishGraph(process, graph);
+
+        Message replay = message(file, process);
+        replay.getMessageProperties().setHeader(ProcessedMessages.REPLAY_HEADER, true);
+        handler.createGraphListener(List.of(replay));
+
+        verify(parser, times(2)).publishGraph(process, graph);
+    }
+
+    private Message message(UUID fileId, UUID processId) throws Exception {
+        return new Message(objectMapper.writeValueAsBytes(new RequestCreateGraph(fileId, processId)),
+                new MessageProperties());
+    }
+}
@@ -0,0 +1,72 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.configuration.rabbit.properties.IdempotencyProperties;
+import com.lytov.diplom.dparser.domain.repository.ProcessedMessageRepository;
+import com.lytov.diplom.dparser.service.dto.RequestCreateGraph;
+import com.lytov.diplom.dparser.service.idempotency.ProcessedMessages;
+import com.lytov.diplom.dparser.service.retry.DelayedRetryRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CreateGraphHandlerTest {
+
+    private final BpmnToGraphParserImpl parser = mock(BpmnToGraphParserImpl.class);
+    private final CreateGraphHandler handler = new CreateGraphHandler(parser, mock(DelayedRetryRouter.class),
+            new ProcessedMessages(mock(ProcessedMessageRepository.class), new IdempotencyProperties(), new SimpleMeterRegistry()));
+
+    @Test
+    void replayRepublishesLastGraphInsteadOfParsing() throws Exception {
+        RequestCreateGraph request = new RequestCreateGraph(UUID.randomUUID(), UUID.randomUUID());
+
+        handler.createGraphListener(request, new Message(new byte[0], new MessageProperties()));
+        handler.createGraphListener(request, new Message(new byte[0], new MessageProperties()));
+
+        verify(parser, times(1)).createGraph(request.getFileId(), request.getProcessId());
+        verify(parser, never()).republishGraph(any(), any());
+
+        Message replay = new Message(new byte[0], new MessageProperties());
+        replay.getMessageProperties().setHeader(ProcessedMessages.REPLAY_HEADER, true);
+        handler.createGraphListener(request, replay);
+
+        verify(parser).republishGraph(request.getFileId(), request.getProcessId());
+        verify(parser, times(1)).createGraph(any(), any());
+    }
+
+    @Test
+    void newMessageForSameFileAndProcessIsPublishedAgain() throws Exception {
+        RequestCreateGraph request = new RequestCreateGraph(UUID.randomUUID(), UUID.randomUUID());
+
+        handler.createGraphListener(request, message("m-1"));
+        handler.createGraphListener(request, message("m-2"));
+
+        verify(parser, times(2)).createGraph(request.getFileId(), request.getProcessId());
+    }
+
+    @Test
+    void redeliveryIsSkippedByFileAndProcess() throws Exception {
+        RequestCreateGraph request = new RequestCreateGraph(UUID.randomUUID(), UUID.randomUUID());
+        handler.createGraphListener(request, message("m-1"));
+
+        Message redelivered = message("m-2");
+        redelivered.getMessageProperties().setRedelivered(true);
+        handler.createGraphListener(request, redelivered);
+
+        verify(parser, times(1)).createGraph(request.getFileId(), request.getProcessId());
+    }
+
+    private static Message message(String messageId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(messageId);
+        return new Message(new byte[0], properties);
+    }
+}
@@ -0,0 +1,136 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.configuration.cache.properties.GraphIndexCacheProperties;
+import com.lytov.diplom.dparser.configuration.parser.properties.GraphQueryProperties;
+import com.lytov.diplom.dparser.domain.enums.EdgeType;
+import com.lytov.diplom.dparser.domain.enums.GraphDirection;
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.exception.GraphNodeNotFound;
+import com.lytov.diplom.dparser.exception.GraphNotBuilt;
+import com.lytov.diplom.dparser.service.cache.GraphIndexCache;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnCache;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.CompactBpmnGraph;
+import com.lytov.diplom.dparser.service.dto.GraphNeighbourDto;
+import com.lytov.diplom.dparser.service.dto.GraphPathsDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GraphQueryServiceImplTest {
+
+    private final UUID fileId = UUID.randomUUID();
+    private final ParsedBpmnCache parsedBpmnCache = mock(ParsedBpmnCache.class);
+    private final GraphQueryProperties properties = new GraphQueryProperties();
+    private GraphQueryServiceImpl service;
+
+    /**
+     * start → split → (a | b) → join → end, join → split; a читает store, b пишет в него.
+     */
+    @BeforeEach
+    void setUp() {
+        BpmnGraph graph = new BpmnGraph();
+        node(graph, "start", NodeType.START_EVENT);
+        node(graph, "split", NodeType.EXCLUSIVE_GATEWAY);
+        node(graph, "a", NodeType.USER_TASK);
+        node(graph, "b", NodeType.USER_TASK);
+        node(graph, "join", NodeType.EXCLUSIVE_GATEWAY);
+        node(graph, "end", NodeType.END_EVENT);
+        node(graph, "store", NodeType.DATA_STORE_REF);
+        flow(graph, "start", "split");
+        flow(graph, "split", "a");
+        flow(graph, "split", "b");
+        flow(graph, "a", "join");
+        flow(graph, "b", "join");
+        flow(graph, "join", "end");
+        flow(graph, "join", "split");
+        graph.addEdge(new BpmnGraph.BpmnEdge("in:store->a", EdgeType.DATA_ASSOCIATION, "store", "a"));
+        graph.addEdge(new BpmnGraph.BpmnEdge("out:b->store", EdgeType.DATA_ASSOCIATION, "b", "store"));
+        when(parsedBpmnCache.<CompactBpmnGraph>peek(eq(fileId), any())).thenReturn(CompactBpmnGraph.of(graph));
+
+        service = new GraphQueryServiceImpl(
+                new GraphIndexCache(parsedBpmnCache, new GraphIndexCacheProperties(), new SimpleMeterRegistry()),
+                properties);
+    }
+
+    @Test
+    void findsNodesByTypeAndNeighbours() {
+        assertThat(service.nodes(fileId, NodeType.USER_TASK)).extracting(BpmnGraph.BpmnNode::id)
+                .containsExactly("a", "b");
+
+        List<GraphNeighbourDto> neighbours = service.neighbours(fileId, "split", GraphDirection.BOTH, EdgeType.SEQUENCE_FLOW);
+        assertThat(neighbours).extracting(n -> n.getDirection() + ":" + n.getNode().id())
+                .containsExactly("OUT:a", "OUT:b", "IN:start", "IN:join");
+        assertThat(service.neighbours(fileId, "a", GraphDirection.IN, null)).extracting(n -> n.getEdge().id())
+                .containsExactly("split->a", "in:store->a");
+
+        assertThat(service.dataStoreNodes(fileId, "store")).extracting(BpmnGraph.BpmnNode::id)
+                .containsExactly("a", "b");
+        verify(parsedBpmnCache, times(1)).peek(eq(fileId), any());
+    }
+
+    @Test
+    void answersReachabilityAndPaths() {
+        assertThat(service.reachability(fileId, "a", "b").isReachable()).isTrue();
+        assertThat(service.reachability(fileId, "end", "start").isReachable()).isFalse();
+        assertThat(service.reachability(fileId, "store", "a").isReachable()).isFalse();
+
+        GraphPathsDto paths = service.paths(fileId, "start", "end", null);
+        assertThat(paths.getPaths()).containsExactly(
+                List.of("start", "split", "a", "join", "end"),
+                List.of("start", "split", "b", "join", "end"));
+        assertThat(paths.isTruncated()).isFalse();
+
+        GraphPathsDto limited = service.paths(fileId, "split", "join", 1);
+        assertThat(limited.getPaths()).hasSize(1);
+        assertThat(limited.isTruncated()).isTrue();
+
+        properties.setMaxPathLength(4);
+        assertThat(service.paths(fileId, "start", "end", null).getPaths()).isEmpty();
+    }
+
+    @Test
+    void rebuildsIndexForNewGraphInMemory() {
+        assertThat(service.nodes(fileId, NodeType.USER_TASK)).hasSize(2);
+
+        BpmnGraph changed = new BpmnGraph();
+        node(changed, "c", NodeType.USER_TASK);
+        when(parsedBpmnCache.<CompactBpmnGraph>peekInMemory(eq(fileId), any())).thenReturn(CompactBpmnGraph.of(changed));
+
+        assertThat(service.nodes(fileId, NodeType.USER_TASK)).extracting(BpmnGraph.BpmnNode::id).containsExactly("c");
+    }
+
+    @Test
+    void rejectsFileWithoutGraph() {
+        UUID unknown = UUID.randomUUID();
+
+        assertThatThrownBy(() -> service.nodes(unknown, NodeType.USER_TASK))
+                .isInstanceOf(GraphNotBuilt.class);
+    }
+
+    @Test
+    void rejectsUnknownNode() {
+        assertThatThrownBy(() -> service.reachability(fileId, "start", "missing"))
+                .isInstanceOf(GraphNodeNotFound.class);
+    }
+
+    private static void node(BpmnGraph graph, String id, NodeType type) {
+        graph.addNode(new BpmnGraph.BpmnNode(id, id, type));
+    }
+
+    private static void flow(BpmnGraph graph, String source, String target) {
+        graph.addEdge(new BpmnGraph.BpmnEdge(source + "->" + target, EdgeType.SEQUENCE_FLOW, source, target));
+    }
+}
@@ -0,0 +1,99 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.service.cache.ParsedBpmn;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnKey;
+import com.lytov.diplom.dparser.service.dto.AnalyzeRow;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.Association;
+import org.camunda.bpm.model.bpmn.instance.BoundaryEvent;
+import org.camunda.bpm.model.bpmn.instance.TextAnnotation;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MarkingServiceTest {
+
+    private static final String BPMN =
+            "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\""
+            + " xmlns:bpmndi=\"http://www.omg.org/spec/BPMN/20100524/DI\""
+            + " xmlns:dc=\"http://www.omg.org/spec/DD/20100524/DC\" id=\"D\" targetNamespace=\"t\">"
+            + "<process id=\"P\">"
+            + "<startEvent id=\"S\"/>"
+            + "<userTask id=\"T\"><dataOutputAssociation id=\"DA\"><targetRef>DOR</targetRef></dataOutputAssociation></userTask>"
+            + "<endEvent id=\"E\"/>"
+            + "<sequenceFlow id=\"F1\" sourceRef=\"S\" targetRef=\"T\"/>"
+            + "<sequenceFlow id=\"F2\" sourceRef=\"T\" targetRef=\"E\"/>"
+            + "<dataObjectReference id=\"DOR\" dataObjectRef=\"DO\"/><dataObject id=\"DO\"/>"
+            + "</process>"
+            + "<bpmndi:BPMNDiagram id=\"Diagram\"><bpmndi:BPMNPlane id=\"Plane\" bpmnElement=\"P\">"
+            + "<bpmndi:BPMNShape id=\"S_di\" bpmnElement=\"S\"><dc:Bounds x=\"0\" y=\"0\" width=\"36\" height=\"36\"/></bpmndi:BPMNShape>"
+            + "<bpmndi:BPMNShape id=\"T_di\" bpmnElement=\"T\"><dc:Bounds x=\"100\" y=\"0\" width=\"100\" height=\"80\"/></bpmndi:BPMNShape>"
+            + "<bpmndi:BPMNShape id=\"E_di\" bpmnElement=\"E\"><dc:Bounds x=\"300\" y=\"0\" width=\"36\" height=\"36\"/></bpmndi:BPMNShape>"
+            + "</bpmndi:BPMNPlane></bpmndi:BPMNDiagram>"
+            + "</definitions>";
+
+    private final ParsedBpmn source = source();
+
+    @Test
+    void risksOnSameElementCollapseIntoOneMark() {
+        BpmnModelInstance marked = MarkingService.mark(source, List.of(
+                new AnalyzeRow("NODE", "T", "risk-1"),
+                new AnalyzeRow("NODE", "T", "risk-2"),
+                new AnalyzeRow("NODE", "T", "risk-1"),
+                new AnalyzeRow("NODE", "E", "risk-3"),
+                new AnalyzeRow("EDGE", "F2", "risk-4"),
+                new AnalyzeRow("NODE", "Unknown", "risk-5")));
+
+        assertThat(marked.getModelElementsByType(BoundaryEvent.class)).singleElement().satisfies(boundary -> {
+            assertThat(boundary.getAttachedTo().getId()).isEqualTo("T");
+            assertThat(boundary.getDocumentations()).extracting(doc -> doc.getTextContent())
+                    .containsExactly("RISK_ID=risk-1", "RISK_ID=risk-2");
+        });
+        assertThat(annotationsByTarget(marked)).containsOnly(Map.entry("E", "Риски: risk-3; risk-4 (edge)"));
+        assertThat(marked.getModelElementsByType(BpmnShape.class)).hasSize(3 + 2);
+    }
+
+    @Test
+    void edgeRefsResolveToEndsAndOwningActivity() {
+        BpmnModelInstance marked = MarkingService.mark(source, List.of(
+                new AnalyzeRow("EDGE", "DA:T->DOR", "risk-1"),
+                new AnalyzeRow("EDGE", "Missing:S->Nowhere", "risk-2"),
+                new AnalyzeRow("EDGE", "F1", "risk-3")));
+
+        assertThat(annotationsByTarget(marked)).containsOnly(
+                Map.entry("T", "Риски: risk-1 (edge); risk-3 (edge)"),
+                Map.entry("S", "Риск: risk-2 (edge)"));
+        assertThat(marked.getModelElementsByType(BoundaryEvent.class)).isEmpty();
+    }
+
+    @Test
+    void sourceModelStaysUntouched() {
+        MarkingService.mark(source, List.of(new AnalyzeRow("NODE", "T", "risk-1")));
+
+        Collection<BoundaryEvent> boundaries = source.withModel(model -> model.getModelElementsByType(BoundaryEvent.class));
+        assertThat(boundaries).isEmpty();
+    }
+
+    private static Map<String, String> annotationsByTarget(BpmnModelInstance model) {
+        return model.getModelElementsByType(Association.class).stream()
+                .collect(Collectors.toMap(
+                        association -> association.getSource().getId(),
+                        association -> ((TextAnnotation) association.getTarget()).getText().getTextContent()));
+    }
+
+    private static ParsedBpmn source() {
+        ParsedBpmn entry = new ParsedBpmn(new ParsedBpmnKey(UUID.randomUUID(), "v1"));
+        entry.setModel(Bpmn.readModelFromStream(new ByteArrayInputStream(BPMN.getBytes(StandardCharsets.UTF_8))));
+        return entry;
+    }
+}
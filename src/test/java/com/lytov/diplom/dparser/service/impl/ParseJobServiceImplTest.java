@@ -0,0 +1,167 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lytov.diplom.dparser.configuration.jobs.properties.ParseJobProperties;
+import com.lytov.diplom.dparser.domain.entity.ParseJob;
+import com.lytov.diplom.dparser.domain.enums.ParseJobStatus;
+import com.lytov.diplom.dparser.domain.repository.ParseJobRepository;
+import com.lytov.diplom.dparser.exception.ParseJobRejected;
+import com.lytov.diplom.dparser.service.api.ParserProcessService;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.dto.ParseJobDto;
+import com.lytov.diplom.dparser.service.jobs.ParseJobMapper;
+import com.lytov.diplom.dparser.service.jobs.ParseJobSubscriptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ParseJobServiceImplTest {
+
+    private final Map<UUID, ParseJob> table = new HashMap<>();
+    private final ParseJobRepository repository = mock(ParseJobRepository.class);
+    private final ParserProcessService parserProcessService = mock(ParserProcessService.class);
+    private final ParseJobSubscriptions subscriptions = mock(ParseJobSubscriptions.class);
+    private final ParseJobMapper mapper = new ParseJobMapper(new ObjectMapper());
+    private final ParseJobProperties properties = new ParseJobProperties();
+    private final Clock clock = mock(Clock.class);
+    private Instant now = Instant.parse("2026-10-18T12:00:00Z");
+
+    @BeforeEach
+    void inMemoryTable() {
+        properties.setInstanceId("node-1");
+        when(clock.instant()).thenAnswer(inv -> now);
+        when(repository.save(any())).thenAnswer(inv -> {
+            ParseJob job = inv.getArgument(0);
+            table.put(job.getId(), job);
+            return job;
+        });
+        when(repository.findById(any())).thenAnswer(inv -> Optional.ofNullable(table.get(inv.<UUID>getArgument(0))));
+        doAnswer(inv -> table.remove(inv.<ParseJob>getArgument(0).getId())).when(repository).delete(any());
+    }
+
+    @Test
+    void storesComponentsOfSucceededJob() {
+        UUID fileId = UUID.randomUUID();
+        Component component = Component.builder().id("T1").name("Проверка").build();
+        when(parserProcessService.parserProcess(fileId)).thenReturn(List.of(component));
+        ParseJobServiceImpl service = service(new SyncTaskExecutor());
+
+        ParseJobDto submitted = service.submit(fileId);
+
+        ParseJobDto job = service.find(submitted.getId()).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(ParseJobStatus.SUCCEEDED);
+        assertThat(job.getComponents()).containsExactly(component);
+        assertThat(job.getStartedAt()).isNotNull();
+        assertThat(job.getFinishedAt()).isNotNull();
+        verify(subscriptions).publish(job);
+    }
+
+    @Test
+    void recordsFailureWithoutThrowingToCaller() {
+        UUID fileId = UUID.randomUUID();
+        when(parserProcessService.parserProcess(fileId)).thenThrow(new IllegalStateException("Empty object storage response"));
+        ParseJobServiceImpl service = service(new SyncTaskExecutor());
+
+        ParseJobDto job = service.find(service.submit(fileId).getId()).orElseThrow();
+
+        assertThat(job.getStatus()).isEqualTo(ParseJobStatus.FAILED);
+        assertThat(job.getError()).isEqualTo("Empty object storage response");
+        assertThat(job.getComponents()).isNull();
+    }
+
+    @Test
+    void jobFailedByTimeoutIsNotStartedLater() {
+        UUID fileId = UUID.randomUUID();
+        List<Runnable> queued = new ArrayList<>();
+        ParseJobServiceImpl service = service(queued::add);
+        ParseJobDto submitted = service.submit(fileId);
+        table.get(submitted.getId()).setStatus(ParseJobStatus.FAILED);
+
+        queued.forEach(Runnable::run);
+
+        assertThat(table.get(submitted.getId()).getStatus()).isEqualTo(ParseJobStatus.FAILED);
+        verify(parserProcessService, never()).parserProcess(any());
+    }
+
+    @Test
+    void rejectedJobIsNotKept() {
+        ParseJobServiceImpl service = service(task -> {
+            throw new TaskRejectedException("full");
+        });
+
+        assertThatThrownBy(() -> service.submit(UUID.randomUUID())).isInstanceOf(ParseJobRejected.class);
+        assertThat(table).isEmpty();
+    }
+
+    @Test
+    void jobBelongsToSubmittingInstance() {
+        UUID fileId = UUID.randomUUID();
+        ParseJobServiceImpl service = service(task -> {
+        });
+
+        ParseJobDto submitted = service.submit(fileId);
+
+        ParseJob job = table.get(submitted.getId());
+        assertThat(job.getInstanceId()).isEqualTo("node-1");
+        assertThat(job.getStatus()).isEqualTo(ParseJobStatus.QUEUED);
+        assertThat(job.getCreatedAt()).isEqualTo(now);
+    }
+
+    @Test
+    void startupFailsUnfinishedJobsOfPreviousRun() {
+        Instant startedAt = now;
+        ParseJobServiceImpl service = service(new SyncTaskExecutor());
+        now = now.plusSeconds(5);
+
+        service.failInterrupted();
+
+        // задачи, принятые этим запуском до ApplicationReadyEvent, не трогаются
+        verify(repository).fail(eq("node-1"), eq(EnumSet.of(ParseJobStatus.QUEUED, ParseJobStatus.RUNNING)),
+                eq(startedAt), anyString(), eq(now));
+    }
+
+    @Test
+    void expiredJobsArePurgedAtMostHourly() {
+        properties.setRetention(Duration.ofDays(7));
+        ParseJobServiceImpl service = service(task -> {
+        });
+
+        service.submit(UUID.randomUUID());
+        service.submit(UUID.randomUUID());
+        verify(repository).deleteCreatedBefore(now.minus(Duration.ofDays(7)));
+
+        now = now.plus(Duration.ofHours(1));
+        service.submit(UUID.randomUUID());
+        verify(repository).deleteCreatedBefore(now.minus(Duration.ofDays(7)));
+        verify(repository, times(2)).deleteCreatedBefore(any());
+    }
+
+    private ParseJobServiceImpl service(TaskExecutor executor) {
+        return new ParseJobServiceImpl(parserProcessService, repository, mapper, subscriptions, executor, properties, clock);
+    }
+}
@@ -0,0 +1,91 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.domain.enums.NodeType;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+
+class StaxBpmnToGraphParserTest {
+
+    /** Два пула, сообщение между ними, вложенный подпроцесс, данные и ссылки вперёд по документу. */
+    private static final String COLLABORATION =
+            "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" id=\"D\" targetNamespace=\"t\">"
+            + "<collaboration id=\"C\">"
+            + "<participant id=\"PA\" processRef=\"A\"/><participant id=\"PB\" processRef=\"B\"/>"
+            + "<messageFlow id=\"m1\" sourceRef=\"send\" targetRef=\"receive\"/>"
+            + "</collaboration>"
+            + "<process id=\"A\">"
+            + "<laneSet id=\"LS\"><lane id=\"L1\"><flowNodeRef>start</flowNodeRef></lane></laneSet>"
+            + "<sequenceFlow id=\"f1\" sourceRef=\"start\" targetRef=\"review\"/>"
+            + "<startEvent id=\"start\" name=\"Start\"/>"
+            + "<userTask id=\"review\" name=\"Review\">"
+            + "<ioSpecification id=\"io1\"><dataOutput id=\"o1\"/><inputSet id=\"is1\"/>"
+            + "<outputSet id=\"os1\"><dataOutputRefs>o1</dataOutputRefs></outputSet></ioSpecification>"
+            + "<dataOutputAssociation id=\"out1\"><sourceRef>o1</sourceRef><targetRef>doc</targetRef></dataOutputAssociation>"
+            + "</userTask>"
+            + "<boundaryEvent id=\"timer\" attachedToRef=\"review\"/>"
+            + "<subProcess id=\"sub\"><startEvent id=\"s2\"/><scriptTask id=\"calc\"/>"
+            + "<sequenceFlow id=\"f2\" sourceRef=\"s2\" targetRef=\"calc\"/></subProcess>"
+            + "<serviceTask id=\"send\">"
+            + "<ioSpecification id=\"io2\"><dataInput id=\"i1\"/><inputSet id=\"is2\"><dataInputRefs>i1</dataInputRefs>"
+            + "</inputSet><outputSet id=\"os2\"/></ioSpecification>"
+            + "<dataInputAssociation id=\"in1\"><sourceRef>store</sourceRef><targetRef>i1</targetRef></dataInputAssociation>"
+            + "</serviceTask>"
+            + "<sequenceFlow id=\"f3\" sourceRef=\"review\" targetRef=\"sub\"/>"
+            + "<sequenceFlow id=\"f4\" sourceRef=\"sub\" targetRef=\"send\"/>"
+            + "<dataObjectReference id=\"doc\" dataObjectRef=\"DO\"/><dataObject id=\"DO\"/>"
+            + "<dataStoreReference id=\"store\" name=\"Store\"/>"
+            + "</process>"
+            + "<process id=\"B\"><receiveTask id=\"receive\"/><exclusiveGateway id=\"gw\"/><endEvent id=\"end\"/>"
+            + "<sequenceFlow id=\"f5\" sourceRef=\"receive\" targetRef=\"gw\"/>"
+            + "<sequenceFlow id=\"f6\" sourceRef=\"gw\" targetRef=\"end\"/></process>"
+            + "</definitions>";
+
+    @Test
+    void producesSameGraphAsDomParser() {
+        byte[] xml = COLLABORATION.getBytes(StandardCharsets.UTF_8);
+
+        BpmnGraph dom = dom(xml);
+        BpmnGraph stax = new StaxBpmnToGraphParser().parse(new ByteArrayInputStream(xml));
+
+        // порядок узлов у DOM-парсера сгруппирован по типам, поэтому сравниваем множества
+        assertThat(stax.nodes.values()).containsExactlyInAnyOrderElementsOf(dom.nodes.values());
+        assertThat(stax.edges).containsExactlyInAnyOrderElementsOf(dom.edges);
+        assertThat(stax.edges).hasSize(9);
+        assertThat(stax.nodes.get("store").type()).isEqualTo(NodeType.DATA_STORE_REF);
+    }
+
+    @Test
+    void matchesDomParserOnAllSubProcessKinds() {
+        String xml = "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" id=\"D\" targetNamespace=\"t\">"
+                + "<process id=\"P\"><subProcess id=\"S\"/><transaction id=\"T\"/>"
+                + "<adHocSubProcess id=\"H\"><task id=\"A\"/><userTask id=\"B\"/>"
+                + "<sequenceFlow id=\"f2\" sourceRef=\"A\" targetRef=\"B\"/>"
+                + "<completionCondition>done</completionCondition></adHocSubProcess>"
+                + "<sequenceFlow id=\"f1\" sourceRef=\"S\" targetRef=\"T\"/>"
+                + "</process></definitions>";
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+
+        BpmnGraph dom = dom(bytes);
+        BpmnGraph stax = new StaxBpmnToGraphParser().parse(new ByteArrayInputStream(bytes));
+
+        assertThat(stax.nodes.values()).containsExactlyInAnyOrderElementsOf(dom.nodes.values());
+        assertThat(stax.edges).containsExactlyInAnyOrderElementsOf(dom.edges);
+        assertThat(stax.nodes.get("S").type()).isEqualTo(NodeType.SUB_PROCESS);
+        assertThat(stax.nodes.get("T").type()).isEqualTo(NodeType.SUB_PROCESS);
+        // adHocSubProcess в модели Camunda нет: узла нет, вложенные элементы есть
+        assertThat(stax.nodes).doesNotContainKey("H").containsKeys("A", "B");
+        assertThat(stax.edges).hasSize(2);
+    }
+
+    /** DOM-разбор не зависит от полей сервиса, поэтому собираем его без Spring-контекста. */
+    private static BpmnGraph dom(byte[] xml) {
+        return mock(BpmnToGraphParserImpl.class, CALLS_REAL_METHODS).parse(new ByteArrayInputStream(xml));
+    }
+}
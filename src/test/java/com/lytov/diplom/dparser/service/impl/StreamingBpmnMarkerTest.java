@@ -0,0 +1,208 @@
+package com.lytov.diplom.dparser.service.impl;
+
+import com.lytov.diplom.dparser.configuration.marking.properties.MarkingProperties;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmn;
+import com.lytov.diplom.dparser.service.cache.ParsedBpmnKey;
+import com.lytov.diplom.dparser.service.dto.AnalyzeRow;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics;
+import com.lytov.diplom.dparser.support.bpmn.BpmnSpec;
+import com.lytov.diplom.dparser.support.bpmn.SyntheticBpmnGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.Association;
+import org.camunda.bpm.model.bpmn.instance.BaseElement;
+import org.camunda.bpm.model.bpmn.instance.BoundaryEvent;
+import org.camunda.bpm.model.bpmn.instance.Documentation;
+import org.camunda.bpm.model.bpmn.instance.ExclusiveGateway;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.TextAnnotation;
+import org.camunda.bpm.model.bpmn.instance.UserTask;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnEdge;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnPlane;
+import org.camunda.bpm.model.bpmn.instance.bpmndi.BpmnShape;
+import org.camunda.bpm.model.bpmn.instance.dc.Bounds;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingBpmnMarkerTest {
+
+    private final MarkingProperties properties = new MarkingProperties();
+
+    private final StreamingBpmnMarker marker =
+            new StreamingBpmnMarker(new PipelineMetrics(new SimpleMeterRegistry()), properties);
+
+    @Test
+    void matchesDomMarking() throws IOException {
+        byte[] xml = SyntheticBpmnGenerator.generate(BpmnSpec.of(2_000));
+        BpmnModelInstance source = read(xml);
+        List<AnalyzeRow> rows = rows(source);
+
+        ParsedBpmn entry = new ParsedBpmn(new ParsedBpmnKey(UUID.randomUUID(), "v1"));
+        entry.setModel(source);
+        BpmnModelInstance dom = MarkingService.mark(entry, rows);
+        BpmnModelInstance stream = read(mark(xml, rows));
+
+        Bpmn.validateModel(stream);
+        assertThat(boundariesByHost(stream)).isNotEmpty().isEqualTo(boundariesByHost(dom));
+        assertThat(annotationsByTarget(stream)).isNotEmpty().isEqualTo(annotationsByTarget(dom));
+        assertThat(stream.getModelElementsByType(BpmnShape.class)).hasSameSizeAs(dom.getModelElementsByType(BpmnShape.class));
+        assertThat(stream.getModelElementsByType(BpmnEdge.class)).hasSameSizeAs(dom.getModelElementsByType(BpmnEdge.class));
+        assertThat(boundsOf(stream, BoundaryEvent.class)).isEqualTo(boundsOf(dom, BoundaryEvent.class));
+        assertThat(boundsOf(stream, TextAnnotation.class)).isEqualTo(boundsOf(dom, TextAnnotation.class));
+    }
+
+    @Test
+    void keepsSchemaOrderAndCreatesMissingDiagram() throws IOException {
+        String bpmn = "<?xml version=\"1.0\" encoding=\"windows-1251\"?>"
+                + "<bpmn2:definitions xmlns:bpmn2=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" id=\"D\" targetNamespace=\"t\">"
+                + "<bpmn2:process id=\"P\">"
+                + "<bpmn2:startEvent id=\"S\"/>"
+                + "<bpmn2:userTask id=\"T\" name=\"Проверка\"/>"
+                + "<bpmn2:sequenceFlow id=\"F1\" sourceRef=\"S\" targetRef=\"T\"/>"
+                + "<bpmn2:textAnnotation id=\"Note\"><bpmn2:text>Старая заметка</bpmn2:text></bpmn2:textAnnotation>"
+                + "</bpmn2:process>"
+                + "</bpmn2:definitions>";
+
+        // readModelFromStream проверяет XSD: boundary после существующей аннотации не прошёл бы
+        BpmnModelInstance marked = read(mark(bpmn.getBytes(Charset.forName("windows-1251")), List.of(
+                new AnalyzeRow("NODE", "T", "risk-1"),
+                new AnalyzeRow("EDGE", "F1", "risk-2"))));
+
+        assertThat(marked.getModelElementsByType(BoundaryEvent.class)).singleElement()
+                .satisfies(boundary -> assertThat(boundary.getAttachedTo().getId()).isEqualTo("T"));
+        assertThat(annotationsByTarget(marked)).containsOnly(Map.entry("T", "Риск: risk-2 (edge)"));
+        assertThat(marked.getModelElementById("T").getAttributeValue("name")).isEqualTo("Проверка");
+        assertThat(marked.getModelElementsByType(BpmnPlane.class)).singleElement()
+                .satisfies(plane -> assertThat(plane.getBpmnElement().getId()).isEqualTo("P"));
+        assertThat(marked.getModelElementsByType(BpmnShape.class)).hasSize(2);
+    }
+
+    @Test
+    void keepsPerformerBeforeFlowElementsOfSubProcess() throws IOException {
+        String bpmn = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" id=\"D\" targetNamespace=\"t\">"
+                + "<process id=\"P\">"
+                + "<subProcess id=\"Sub\">"
+                + "<performer id=\"Perf\"/>"
+                + "<userTask id=\"T\"/>"
+                + "<textAnnotation id=\"Note\"/>"
+                + "</subProcess>"
+                + "</process>"
+                + "</definitions>";
+
+        // в subProcess performer по XSD идёт до flowElement: boundary перед ним не прошёл бы проверку схемы
+        BpmnModelInstance marked = read(mark(bpmn.getBytes(StandardCharsets.UTF_8), List.of(
+                new AnalyzeRow("NODE", "T", "risk-1"))));
+
+        assertThat(marked.getModelElementsByType(BoundaryEvent.class)).singleElement()
+                .satisfies(boundary -> {
+                    assertThat(boundary.getAttachedTo().getId()).isEqualTo("T");
+                    assertThat(boundary.getParentElement().getAttributeValue("id")).isEqualTo("Sub");
+                });
+    }
+
+    @Test
+    void spoolsBodyOverBufferLimitToTempFile() throws IOException {
+        byte[] xml = SyntheticBpmnGenerator.generate(BpmnSpec.of(50));
+        List<AnalyzeRow> rows = rows(Bpmn.readModelFromStream(new ByteArrayInputStream(xml)));
+        BpmnModelInstance inMemory = Bpmn.readModelFromStream(new ByteArrayInputStream(mark(xml, rows)));
+
+        properties.setStreamBufferLimit(DataSize.ofBytes(16));
+        long spooled = spoolFiles();
+        BpmnModelInstance fromDisk = Bpmn.readModelFromStream(new ByteArrayInputStream(mark(xml, rows)));
+
+        // id новых элементов идут из общего счётчика, поэтому сравнивается содержание разметки
+        assertThat(boundariesByHost(fromDisk)).isEqualTo(boundariesByHost(inMemory));
+        assertThat(fromDisk.getModelElementsByType(TextAnnotation.class))
+                .hasSameSizeAs(inMemory.getModelElementsByType(TextAnnotation.class));
+        assertThat(fromDisk.getModelElementsByType(BpmnShape.class))
+                .hasSameSizeAs(inMemory.getModelElementsByType(BpmnShape.class));
+        assertThat(spoolFiles()).isEqualTo(spooled);
+    }
+
+    private static long spoolFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("d-parser-marking-")).count();
+        }
+    }
+
+    private byte[] mark(byte[] xml, List<AnalyzeRow> rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        marker.mark(new ByteArrayInputStream(xml), out, rows);
+        return out.toByteArray();
+    }
+
+    /** Каждая 10-я задача и шлюз, каждое 20-е ребро; на задачи — по два риска. */
+    private static List<AnalyzeRow> rows(BpmnModelInstance model) {
+        List<AnalyzeRow> rows = new ArrayList<>();
+        int i = 0;
+        for (UserTask task : model.getModelElementsByType(UserTask.class)) {
+            if (i++ % 10 != 0) continue;
+            rows.add(new AnalyzeRow("NODE", task.getId(), "risk-" + i));
+            rows.add(new AnalyzeRow("NODE", task.getId(), "risk-extra-" + i));
+        }
+        for (ExclusiveGateway gateway : model.getModelElementsByType(ExclusiveGateway.class)) {
+            if (i++ % 10 == 0) rows.add(new AnalyzeRow("NODE", gateway.getId(), "risk-" + i));
+        }
+        for (SequenceFlow flow : model.getModelElementsByType(SequenceFlow.class)) {
+            if (i++ % 20 == 0) rows.add(new AnalyzeRow("EDGE", flow.getId(), "risk-" + i));
+        }
+        rows.add(new AnalyzeRow("NODE", "Unknown", "risk-missing"));
+        return rows;
+    }
+
+    private static Map<String, List<String>> boundariesByHost(BpmnModelInstance model) {
+        return model.getModelElementsByType(BoundaryEvent.class).stream()
+                .filter(boundary -> boundary.getId().startsWith("RiskBoundary_"))
+                .collect(Collectors.toMap(
+                        boundary -> boundary.getAttachedTo().getId(),
+                        boundary -> boundary.getDocumentations().stream().map(Documentation::getTextContent).toList()));
+    }
+
+    private static Map<String, String> annotationsByTarget(BpmnModelInstance model) {
+        return model.getModelElementsByType(Association.class).stream()
+                .filter(association -> association.getTarget() instanceof TextAnnotation)
+                .collect(Collectors.toMap(
+                        association -> association.getSource().getId(),
+                        association -> ((TextAnnotation) association.getTarget()).getText().getTextContent()));
+    }
+
+    /** Границы shape новых элементов по элементу, к которому они привязаны. */
+    private static Map<String, List<Double>> boundsOf(BpmnModelInstance model, Class<? extends BaseElement> type) {
+        // поиск по типу обходит весь документ, поэтому ассоциации собираются один раз, а не на каждый shape
+        Map<String, String> associatedWith = model.getModelElementsByType(Association.class).stream()
+                .collect(Collectors.toMap(association -> association.getTarget().getId(),
+                        association -> association.getSource().getId(), (first, second) -> first));
+        return model.getModelElementsByType(BpmnShape.class).stream()
+                .filter(shape -> type.isInstance(shape.getBpmnElement()) && shape.getBpmnElement().getId().startsWith("Risk"))
+                .collect(Collectors.toMap(
+                        shape -> shape.getBpmnElement() instanceof BoundaryEvent boundary
+                                ? boundary.getAttachedTo().getId()
+                                : associatedWith.get(shape.getBpmnElement().getId()),
+                        shape -> {
+                            Bounds b = shape.getBounds();
+                            return List.of(b.getX(), b.getY(), b.getWidth(), b.getHeight());
+                        }));
+    }
+
+    private static BpmnModelInstance read(byte[] xml) {
+        return Bpmn.readModelFromStream(new ByteArrayInputStream(xml));
+    }
+}
@@ -0,0 +1,50 @@
+package com.lytov.diplom.dparser.service.jobs;
+
+import com.lytov.diplom.dparser.configuration.jobs.properties.ParseJobProperties;
+import com.lytov.diplom.dparser.domain.repository.ParseJobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ParseJobSweeperTest {
+
+    private final Instant now = Instant.parse("2026-10-18T12:00:00Z");
+    private final ParseJobRepository repository = mock(ParseJobRepository.class);
+    private final ParseJobProperties properties = new ParseJobProperties();
+    private ParseJobSweeper sweeper;
+
+    @AfterEach
+    void stop() {
+        sweeper.shutdown();
+    }
+
+    @Test
+    void failsJobsOlderThanTimeoutOfAnyInstance() {
+        properties.setJobTimeout(Duration.ofMinutes(30));
+        sweeper = new ParseJobSweeper(repository, properties, Clock.fixed(now, ZoneOffset.UTC));
+
+        sweeper.sweep();
+
+        verify(repository).failStale(eq(now.minus(Duration.ofMinutes(30))), anyString(), eq(now));
+    }
+
+    @Test
+    void databaseErrorDoesNotStopSweeping() {
+        when(repository.failStale(any(), anyString(), any())).thenThrow(new IllegalStateException("db is down"));
+        sweeper = new ParseJobSweeper(repository, properties, Clock.fixed(now, ZoneOffset.UTC));
+
+        assertThatCode(sweeper::sweep).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,59 @@
+package com.lytov.diplom.dparser.service.metrics;
+
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Pipeline;
+import com.lytov.diplom.dparser.service.metrics.PipelineMetrics.Stage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(registry);
+
+    @Test
+    void stagesAreTaggedWithEnclosingPipeline() {
+        String url = metrics.pipeline(Pipeline.MARKING, () -> {
+            metrics.recordFileSize(2048);
+            return metrics.stage(Stage.PRESIGN, () -> "https://storage/file");
+        });
+
+        assertThat(url).isEqualTo("https://storage/file");
+        assertThat(registry.get(PipelineMetrics.STAGE_TIMER)
+                .tags("pipeline", "marking", "stage", "presign", "outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get(PipelineMetrics.PIPELINE_TIMER)
+                .tags("pipeline", "marking", "outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get(PipelineMetrics.FILE_SIZE).tag("pipeline", "marking").summary().totalAmount())
+                .isEqualTo(2048);
+    }
+
+    @Test
+    void failureIsRecordedAsErrorOutcome() {
+        assertThatThrownBy(() -> metrics.pipeline(Pipeline.CREATE_GRAPH,
+                () -> metrics.stage(Stage.PARSE, () -> {
+                    throw new IOException("broken xml");
+                })))
+                .isInstanceOf(IOException.class);
+
+        assertThat(registry.get(PipelineMetrics.STAGE_TIMER)
+                .tags("pipeline", "create-graph", "stage", "parse", "outcome", "error").timer().count()).isEqualTo(1);
+        assertThat(registry.get(PipelineMetrics.PIPELINE_TIMER)
+                .tags("pipeline", "create-graph", "outcome", "error").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void nestedCallOfSamePipelineIsRecordedOnce() {
+        metrics.pipeline(Pipeline.CREATE_GRAPH, () -> metrics.pipeline(Pipeline.CREATE_GRAPH, () -> null));
+        metrics.recordGraphSize(10, 12);
+
+        assertThat(registry.get(PipelineMetrics.PIPELINE_TIMER).tag("pipeline", "create-graph").timer().count())
+                .isEqualTo(1);
+        // вне точки входа конвейер сброшен
+        assertThat(registry.get(PipelineMetrics.GRAPH_NODES).tag("pipeline", "none").summary().totalAmount())
+                .isEqualTo(10);
+    }
+}
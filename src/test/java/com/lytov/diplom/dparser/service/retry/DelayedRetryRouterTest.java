@@ -0,0 +1,113 @@
+package com.lytov.diplom.dparser.service.retry;
+
+import com.lytov.diplom.dparser.configuration.rabbit.properties.RetryProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class DelayedRetryRouterTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final RetryProperties properties = new RetryProperties();
+    private final DelayedRetryRouter router = new DelayedRetryRouter(rabbitTemplate, properties);
+
+    {
+        properties.setPublishTimeout(Duration.ofMillis(50));
+        properties.setPublishBackoff(Duration.ofMillis(1));
+    }
+
+    @Test
+    void firstFailureGoesToFirstDelayQueue() {
+        confirmWith(true, null);
+        Message message = new Message(new byte[0], new MessageProperties());
+
+        router.retryOrPark("q", message, new IllegalStateException("boom"));
+
+        verify(rabbitTemplate).send(eq(""), eq("q.retry.1"), eq(message), any(CorrelationData.class));
+        assertThat((Integer) message.getMessageProperties().getHeader(DelayedRetryRouter.ATTEMPT_HEADER)).isEqualTo(1);
+    }
+
+    @Test
+    void exhaustedAttemptsAreParked() {
+        confirmWith(true, null);
+        properties.setDelays(List.of(Duration.ofSeconds(1), Duration.ofSeconds(2)));
+        MessageProperties messageProperties = new MessageProperties();
+        messageProperties.setHeader(DelayedRetryRouter.ATTEMPT_HEADER, 2);
+        Message message = new Message(new byte[0], messageProperties);
+
+        router.retryOrPark("q", message, new IllegalStateException("boom"));
+
+        verify(rabbitTemplate).send(eq(""), eq("q.parking-lot"), eq(message), any(CorrelationData.class));
+    }
+
+    @Test
+    void nackedPublishRequeuesOriginalAfterBoundedAttempts() {
+        confirmWith(false, null);
+        Message message = new Message(new byte[0], new MessageProperties());
+
+        assertThatThrownBy(() -> router.retryOrPark("q", message, new IllegalStateException("boom")))
+                .isInstanceOf(ImmediateRequeueAmqpException.class);
+
+        verify(rabbitTemplate, times(properties.getPublishAttempts()))
+                .send(eq(""), eq("q.retry.1"), eq(message), any(CorrelationData.class));
+    }
+
+    @Test
+    void unroutablePublishRequeuesOriginal() {
+        Message message = new Message(new byte[0], new MessageProperties());
+        confirmWith(true, new ReturnedMessage(message, 312, "NO_ROUTE", "", "q.retry.1"));
+
+        assertThatThrownBy(() -> router.retryOrPark("q", message, new IllegalStateException("boom")))
+                .isInstanceOf(ImmediateRequeueAmqpException.class)
+                .hasMessageContaining("NO_ROUTE");
+    }
+
+    @Test
+    void missingConfirmRequeuesOriginal() {
+        Message message = new Message(new byte[0], new MessageProperties());
+
+        assertThatThrownBy(() -> router.retryOrPark("q", message, new IllegalStateException("boom")))
+                .isInstanceOf(ImmediateRequeueAmqpException.class)
+                .hasMessageContaining("no confirm");
+    }
+
+    @Test
+    void brokerErrorDoesNotEscapeAsIs() {
+        doThrow(new AmqpConnectException(new ConnectException("refused")))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+        Message message = new Message(new byte[0], new MessageProperties());
+
+        assertThatThrownBy(() -> router.retryOrPark("q", message, new IllegalStateException("boom")))
+                .isInstanceOf(ImmediateRequeueAmqpException.class)
+                .hasMessageContaining("refused");
+    }
+
+    private void confirmWith(boolean ack, ReturnedMessage returned) {
+        doAnswer(invocation -> {
+            CorrelationData correlation = invocation.getArgument(3);
+            correlation.setReturned(returned);
+            correlation.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nack"));
+            return null;
+        }).when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+}
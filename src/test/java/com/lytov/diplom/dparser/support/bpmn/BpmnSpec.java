@@ -0,0 +1,52 @@
+package com.lytov.diplom.dparser.support.bpmn;
+
+/**
+ * Параметры синтетической диаграммы для {@link SyntheticBpmnGenerator}.
+ *
+ * @param seed             зерно; одинаковые параметры дают побайтно одинаковый XML
+ * @param flowNodes        сколько flow node сгенерировать на всю диаграмму (с вложенными); результат
+ *                         может превысить его на размер последнего блока
+ * @param pools            число пулов, каждый со своим процессом
+ * @param lanes            дорожек в каждом пуле
+ * @param messageFlows     сколько message flow идёт из каждого пула в следующий
+ * @param subProcessDepth  максимальная вложенность подпроцессов, 0 — без подпроцессов
+ */
+public record BpmnSpec(long seed, int flowNodes, int pools, int lanes, int messageFlows, int subProcessDepth) {
+
+    public BpmnSpec {
+        if (flowNodes < 2) throw new IllegalArgumentException("flowNodes must be >= 2");
+        if (pools < 1) throw new IllegalArgumentException("pools must be >= 1");
+        if (lanes < 1) throw new IllegalArgumentException("lanes must be >= 1");
+        if (messageFlows < 0) throw new IllegalArgumentException("messageFlows must be >= 0");
+        if (subProcessDepth < 0) throw new IllegalArgumentException("subProcessDepth must be >= 0");
+    }
+
+    /** Три пула по три дорожки, по четыре сообщения между соседними пулами, подпроцессы до двух уровней. */
+    public static BpmnSpec of(int flowNodes) {
+        return new BpmnSpec(42L, flowNodes, 3, 3, 4, 2);
+    }
+
+    public BpmnSpec withSeed(long seed) {
+        return new BpmnSpec(seed, flowNodes, pools, lanes, messageFlows, subProcessDepth);
+    }
+
+    public BpmnSpec withFlowNodes(int flowNodes) {
+        return new BpmnSpec(seed, flowNodes, pools, lanes, messageFlows, subProcessDepth);
+    }
+
+    public BpmnSpec withPools(int pools) {
+        return new BpmnSpec(seed, flowNodes, pools, lanes, messageFlows, subProcessDepth);
+    }
+
+    public BpmnSpec withLanes(int lanes) {
+        return new BpmnSpec(seed, flowNodes, pools, lanes, messageFlows, subProcessDepth);
+    }
+
+    public BpmnSpec withMessageFlows(int messageFlows) {
+        return new BpmnSpec(seed, flowNodes, pools, lanes, messageFlows, subProcessDepth);
+    }
+
+    public BpmnSpec withSubProcessDepth(int subProcessDepth) {
+        return new BpmnSpec(seed, flowNodes, pools, lanes, messageFlows, subProcessDepth);
+    }
+}
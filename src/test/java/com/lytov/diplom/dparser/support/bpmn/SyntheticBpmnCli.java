@@ -0,0 +1,54 @@
+package com.lytov.diplom.dparser.support.bpmn;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Генерация синтетической диаграммы в файл:
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.lytov.diplom.dparser.support.bpmn.SyntheticBpmnCli \
+ *     -Dexec.args="--nodes=1000000 --seed=7 --out=target/large.bpmn"
+ * </pre>
+ * Параметры: --nodes, --seed, --pools, --lanes, --messages, --depth, --out; без --out XML идёт в stdout.
+ * Значения по умолчанию — {@link BpmnSpec#of(int)}.
+ */
+public final class SyntheticBpmnCli {
+
+    private SyntheticBpmnCli() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        BpmnSpec spec = BpmnSpec.of(10_000);
+        Path out = null;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "nodes" -> spec = spec.withFlowNodes(Integer.parseInt(value));
+                case "seed" -> spec = spec.withSeed(Long.parseLong(value));
+                case "pools" -> spec = spec.withPools(Integer.parseInt(value));
+                case "lanes" -> spec = spec.withLanes(Integer.parseInt(value));
+                case "messages" -> spec = spec.withMessageFlows(Integer.parseInt(value));
+                case "depth" -> spec = spec.withSubProcessDepth(Integer.parseInt(value));
+                case "out" -> out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+
+        SyntheticBpmnGenerator generator = new SyntheticBpmnGenerator(spec);
+        if (out == null) {
+            generator.writeTo(System.out);
+            System.out.flush();
+            return;
+        }
+        long started = System.nanoTime();
+        generator.writeTo(out);
+        System.err.printf("%s: %d bytes, %s, %d ms%n", out, Files.size(out), spec,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+}
@@ -0,0 +1,818 @@
+package com.lytov.diplom.dparser.support.bpmn;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Детерминированный генератор валидного BPMN 2.0 XML с DI для тестов, бенчмарков и нагрузочных прогонов.
+ * <p>
+ * В диаграмме есть пулы с дорожками, вложенные подпроцессы, call activity, boundary-события,
+ * развилки, объекты и хранилища данных с input/output ассоциациями и message flow между соседними пулами.
+ * Имена задач содержат слова, по которым {@code ComponentParserImpl} определяет тип операции.
+ * <p>
+ * XML пишется потоково: процесс каждого пула обходится несколько раз с одним и тем же зерном —
+ * по разу на каждую дорожку (flowNodeRef должны идти до элементов процесса), для семантики и для DI.
+ * Поэтому память не зависит от размера, а миллионы элементов ограничены только диском.
+ */
+public final class SyntheticBpmnGenerator {
+
+    static final String BPMN_NS = "http://www.omg.org/spec/BPMN/20100524/MODEL";
+    static final String BPMNDI_NS = "http://www.omg.org/spec/BPMN/20100524/DI";
+    static final String DC_NS = "http://www.omg.org/spec/DD/20100524/DC";
+    static final String DI_NS = "http://www.omg.org/spec/DD/20100524/DI";
+    static final String CAMUNDA_NS = "http://camunda.org/schema/1.0/bpmn";
+
+    private static final int COLUMN = 150;
+    private static final int ROW = 100;
+    private static final int TASK_WIDTH = 100;
+    private static final int TASK_HEIGHT = 80;
+    private static final int EVENT_SIZE = 36;
+    private static final int GATEWAY_SIZE = 50;
+    private static final int DATA_WIDTH = 36;
+    private static final int DATA_HEIGHT = 50;
+    private static final int POOL_HEADER = 30;
+    private static final int POOL_GAP = 40;
+    private static final int SUB_PROCESS_HEIGHT = 140;
+    private static final int SUB_PROCESS_PADDING = 20;
+    private static final int EVENT_COLUMN = 80;
+
+    // доли блоков верхнего уровня, остальное — одиночные задачи
+    private static final double GATEWAY_RATE = 0.12;
+    private static final double SUB_PROCESS_RATE = 0.06;
+    private static final double CALL_ACTIVITY_RATE = 0.04;
+    private static final double INTERMEDIATE_EVENT_RATE = 0.04;
+    private static final double BOUNDARY_EVENT_RATE = 0.08;
+    private static final double DATA_OUTPUT_RATE = 0.12;
+    private static final double DATA_INPUT_RATE = 0.10;
+    private static final double EXTERNAL_CALL_RATE = 0.3;
+    private static final double LANE_SWITCH_RATE = 0.25;
+    private static final double NESTED_SUB_PROCESS_RATE = 0.2;
+
+    private static final String[] TASK_TAGS = {
+            "userTask", "userTask", "serviceTask", "serviceTask", "scriptTask", "task", "manualTask", "businessRuleTask"
+    };
+    private static final String[] TASK_NAMES = {
+            "Утвердить заявку", "Ввести данные клиента", "Внести изменения в договор", "Проверить документы",
+            "Рассчитать стоимость", "Сформировать отчёт", "Approve invoice", "Input order details",
+            "Согласовать бюджет", "Отправить уведомление"
+    };
+    private static final String[] DEPARTMENTS = {
+            "Отдел продаж", "Бухгалтерия", "Склад", "Юридический отдел", "ИТ-служба", "Служба безопасности"
+    };
+    private static final String[] ROLES = {
+            "Менеджер", "Бухгалтер", "Кладовщик", "Юрист", "Аналитик", "Оператор", "Руководитель"
+    };
+    private static final String[] GATEWAYS = {"exclusiveGateway", "exclusiveGateway", "parallelGateway", "inclusiveGateway"};
+
+    private final BpmnSpec spec;
+    private final int laneHeight;
+
+    public SyntheticBpmnGenerator(BpmnSpec spec) {
+        this.spec = spec;
+        // выше всего — подпроцесс максимальной вложенности и три ветки развилки
+        this.laneHeight = Math.max(3 * ROW + 60, subProcessHeight(spec.subProcessDepth()) + 80);
+    }
+
+    public static byte[] generate(BpmnSpec spec) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SyntheticBpmnGenerator(spec).writeTo(out);
+        return out.toByteArray();
+    }
+
+    public void writeTo(Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            writeTo(out);
+        }
+    }
+
+    /** Пишет XML в поток, не закрывая его. */
+    public void writeTo(OutputStream out) {
+        try {
+            XMLStreamWriter w = XMLOutputFactory.newFactory().createXMLStreamWriter(out, "UTF-8");
+            writeDocument(w);
+            w.flush();
+            w.close();
+        } catch (XMLStreamException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            throw new IllegalStateException("Failed to write synthetic BPMN", e);
+        }
+    }
+
+    private void writeDocument(XMLStreamWriter w) throws XMLStreamException {
+        w.writeStartDocument("UTF-8", "1.0");
+        w.setDefaultNamespace(BPMN_NS);
+        w.writeStartElement("definitions");
+        w.writeDefaultNamespace(BPMN_NS);
+        w.writeNamespace("bpmndi", BPMNDI_NS);
+        w.writeNamespace("dc", DC_NS);
+        w.writeNamespace("di", DI_NS);
+        w.writeNamespace("camunda", CAMUNDA_NS);
+        w.writeAttribute("id", "Definitions_" + spec.seed());
+        w.writeAttribute("targetNamespace", "http://d-parser/synthetic");
+
+        for (int pool = 0; pool < spec.pools(); pool++) {
+            w.writeStartElement("process");
+            w.writeAttribute("id", processId(pool));
+            w.writeAttribute("isExecutable", "false");
+            w.writeStartElement("laneSet");
+            w.writeAttribute("id", prefix(pool) + "LaneSet");
+            for (int lane = 0; lane < spec.lanes(); lane++) {
+                w.writeStartElement("lane");
+                w.writeAttribute("id", laneId(pool, lane));
+                w.writeAttribute("name", cycled(ROLES, lane));
+                new PoolWalk(pool, new LaneSink(w, lane)).run();
+                w.writeEndElement();
+            }
+            w.writeEndElement();
+            new PoolWalk(pool, new SemanticSink(w)).run();
+            w.writeEndElement();
+        }
+
+        w.writeStartElement("collaboration");
+        w.writeAttribute("id", "Collaboration");
+        for (int pool = 0; pool < spec.pools(); pool++) {
+            w.writeEmptyElement("participant");
+            w.writeAttribute("id", participantId(pool));
+            w.writeAttribute("name", cycled(DEPARTMENTS, pool));
+            w.writeAttribute("processRef", processId(pool));
+        }
+        for (int pool = 0; pool + 1 < spec.pools(); pool++) {
+            for (int k = 1; k <= spec.messageFlows(); k++) {
+                w.writeEmptyElement("messageFlow");
+                w.writeAttribute("id", messageFlowId(pool, k));
+                w.writeAttribute("sourceRef", sendId(pool, k));
+                w.writeAttribute("targetRef", receiveId(pool + 1, k));
+            }
+        }
+        w.writeEndElement();
+
+        w.writeStartElement("bpmndi", "BPMNDiagram", BPMNDI_NS);
+        w.writeAttribute("id", "Diagram");
+        w.writeStartElement("bpmndi", "BPMNPlane", BPMNDI_NS);
+        w.writeAttribute("id", "Plane");
+        w.writeAttribute("bpmnElement", "Collaboration");
+        Element[][] sends = new Element[spec.pools()][spec.messageFlows() + 1];
+        Element[][] receives = new Element[spec.pools()][spec.messageFlows() + 1];
+        for (int pool = 0; pool < spec.pools(); pool++) {
+            DiSink di = new DiSink(w, sends[pool], receives[pool]);
+            PoolWalk walk = new PoolWalk(pool, di);
+            walk.run();
+            writePoolShapes(w, pool, walk.cursor + COLUMN);
+        }
+        for (int pool = 0; pool + 1 < spec.pools(); pool++) {
+            for (int k = 1; k <= spec.messageFlows(); k++) {
+                writeEdge(w, messageFlowId(pool, k), sends[pool][k], receives[pool + 1][k]);
+            }
+        }
+        w.writeEndElement();
+        w.writeEndElement();
+
+        w.writeEndElement();
+        w.writeEndDocument();
+    }
+
+    private void writePoolShapes(XMLStreamWriter w, int pool, int width) throws XMLStreamException {
+        int top = poolTop(pool);
+        writeShape(w, participantId(pool), 0, top, width, spec.lanes() * laneHeight, true, null);
+        for (int lane = 0; lane < spec.lanes(); lane++) {
+            writeShape(w, laneId(pool, lane), POOL_HEADER, top + lane * laneHeight,
+                    width - POOL_HEADER, laneHeight, true, null);
+        }
+    }
+
+    private int poolTop(int pool) {
+        return pool * (spec.lanes() * laneHeight + POOL_GAP);
+    }
+
+    private int flowNodeQuota(int pool) {
+        int base = spec.flowNodes() / spec.pools();
+        return base + (pool < spec.flowNodes() % spec.pools() ? 1 : 0);
+    }
+
+    private static int subProcessHeight(int nesting) {
+        return nesting <= 0 ? 0 : SUB_PROCESS_HEIGHT + 60 * (nesting - 1);
+    }
+
+    // ---------------------------------------------------------------- обход
+
+    /**
+     * Один обход процесса пула. Все решения берутся из собственного генератора, зерно которого
+     * зависит только от общего зерна и номера пула, поэтому обходы с разными приёмниками совпадают.
+     */
+    private final class PoolWalk {
+
+        private final int pool;
+        private final Sink sink;
+        private final SplittableRandom random;
+        private final int quota;
+
+        private int cursor = POOL_HEADER + 20;
+        private int lane;
+        private int flowNodes;
+        private int sequence;
+        private Element store;
+
+        private PoolWalk(int pool, Sink sink) {
+            this.pool = pool;
+            this.sink = sink;
+            this.random = new SplittableRandom(spec.seed() * 0x9E3779B97F4A7C15L + pool);
+            this.quota = flowNodeQuota(pool);
+        }
+
+        void run() throws XMLStreamException {
+            store = new Element("dataStoreReference", prefix(pool) + "Store", "Реестр " + pool, -1);
+            store.place(cursor + (COLUMN - TASK_WIDTH) / 2, laneTop(0) + 10, TASK_WIDTH, DATA_HEIGHT);
+            sink.dataReference(store);
+
+            Element previous = flowNode("startEvent", "Начало", lane);
+            previous.center(column(), laneCenter(), EVENT_SIZE, EVENT_SIZE);
+            sink.flowNode(previous);
+            cursor += COLUMN;
+
+            int message = 1;
+            while (flowNodes < quota) {
+                for (; message <= spec.messageFlows() && flowNodes >= threshold(message); message++) {
+                    previous = messageTasks(previous, message);
+                }
+                if (random.nextDouble() < LANE_SWITCH_RATE) {
+                    lane = random.nextInt(spec.lanes());
+                }
+                double roll = random.nextDouble();
+                if ((roll -= GATEWAY_RATE) < 0) {
+                    previous = gatewayBlock(previous);
+                } else if ((roll -= SUB_PROCESS_RATE) < 0 && spec.subProcessDepth() > 0) {
+                    previous = subProcessBlock(previous);
+                } else if ((roll -= CALL_ACTIVITY_RATE) < 0) {
+                    previous = callActivity(previous);
+                } else if ((roll -= INTERMEDIATE_EVENT_RATE) < 0) {
+                    previous = intermediateEvent(previous);
+                } else {
+                    previous = taskBlock(previous);
+                }
+            }
+            for (; message <= spec.messageFlows(); message++) {
+                previous = messageTasks(previous, message);
+            }
+
+            Element end = flowNode("endEvent", "Конец", lane);
+            end.center(column(), laneCenter(), EVENT_SIZE, EVENT_SIZE);
+            sink.flowNode(end);
+            flow(previous, end);
+        }
+
+        private int threshold(int message) {
+            return (int) ((long) quota * message / (spec.messageFlows() + 1));
+        }
+
+        private Element messageTasks(Element previous, int message) throws XMLStreamException {
+            if (pool > 0) {
+                Element receive = new Element("receiveTask", receiveId(pool, message), "Получить сообщение " + message, lane);
+                receive.center(column(), laneCenter(), TASK_WIDTH, TASK_HEIGHT);
+                flowNodes++;
+                sink.flowNode(receive);
+                sink.receive(message, receive);
+                flow(previous, receive);
+                previous = receive;
+                cursor += COLUMN;
+            }
+            if (pool + 1 < spec.pools()) {
+                Element send = new Element("sendTask", sendId(pool, message), "Отправить сообщение " + message, lane);
+                send.center(column(), laneCenter(), TASK_WIDTH, TASK_HEIGHT);
+                flowNodes++;
+                sink.flowNode(send);
+                sink.send(message, send);
+                flow(previous, send);
+                previous = send;
+                cursor += COLUMN;
+            }
+            return previous;
+        }
+
+        private Element taskBlock(Element previous) throws XMLStreamException {
+            Element task = task(lane, column(), laneCenter(), true);
+            flow(previous, task);
+            cursor += COLUMN;
+
+            if (random.nextDouble() < BOUNDARY_EVENT_RATE) {
+                Element boundary = flowNode("boundaryEvent", "Таймаут", lane);
+                boundary.attachedTo = task.id;
+                boundary.center(task.x + task.width - EVENT_SIZE / 2 - 4, task.y + task.height, EVENT_SIZE, EVENT_SIZE);
+                sink.flowNode(boundary);
+
+                Element escalation = flowNode("userTask", "Утвердить эскалацию", lane);
+                escalation.center(column(), laneCenter() + ROW, TASK_WIDTH, TASK_HEIGHT);
+                sink.flowNode(escalation);
+                flow(boundary, escalation);
+
+                Element end = flowNode("endEvent", "Эскалация завершена", lane);
+                end.center(column() + COLUMN, laneCenter() + ROW, EVENT_SIZE, EVENT_SIZE);
+                sink.flowNode(end);
+                flow(escalation, end);
+                // следующий блок не должен наложиться на ветку эскалации
+                cursor += 2 * COLUMN;
+            }
+            return task;
+        }
+
+        private Element gatewayBlock(Element previous) throws XMLStreamException {
+            String tag = GATEWAYS[random.nextInt(GATEWAYS.length)];
+            Element split = flowNode(tag, "Развилка", lane);
+            split.center(column(), laneCenter(), GATEWAY_SIZE, GATEWAY_SIZE);
+            sink.flowNode(split);
+            flow(previous, split);
+            cursor += COLUMN;
+
+            int branches = 2 + random.nextInt(2);
+            int[] lengths = new int[branches];
+            int longest = 0;
+            for (int b = 0; b < branches; b++) {
+                lengths[b] = 1 + random.nextInt(2);
+                longest = Math.max(longest, lengths[b]);
+            }
+
+            Element join = flowNode(tag, "Слияние", lane);
+            join.center(cursor + longest * COLUMN + COLUMN / 2, laneCenter(), GATEWAY_SIZE, GATEWAY_SIZE);
+            Element[] tails = new Element[branches];
+            for (int b = 0; b < branches; b++) {
+                int row = laneCenter() + (2 * b - (branches - 1)) * ROW / 2;
+                Element tail = split;
+                for (int i = 0; i < lengths[b]; i++) {
+                    Element task = task(lane, cursor + i * COLUMN + COLUMN / 2, row, false);
+                    flow(tail, task);
+                    tail = task;
+                }
+                tails[b] = tail;
+            }
+            sink.flowNode(join);
+            for (Element tail : tails) {
+                flow(tail, join);
+            }
+            cursor += (longest + 1) * COLUMN;
+            return join;
+        }
+
+        private Element callActivity(Element previous) throws XMLStreamException {
+            Element call = flowNode("callActivity", "Вызвать подпроцесс", lane);
+            call.calledElement = processId((pool + 1) % spec.pools());
+            call.center(column(), laneCenter(), TASK_WIDTH, TASK_HEIGHT);
+            sink.flowNode(call);
+            flow(previous, call);
+            cursor += COLUMN;
+            return call;
+        }
+
+        private Element intermediateEvent(Element previous) throws XMLStreamException {
+            boolean timer = random.nextBoolean();
+            Element event = flowNode(timer ? "intermediateCatchEvent" : "intermediateThrowEvent",
+                    timer ? "Ожидание" : "Этап пройден", lane);
+            event.timer = timer;
+            event.center(column(), laneCenter(), EVENT_SIZE, EVENT_SIZE);
+            sink.flowNode(event);
+            flow(previous, event);
+            cursor += COLUMN;
+            return event;
+        }
+
+        private Element subProcessBlock(Element previous) throws XMLStreamException {
+            SubProcessPlan plan = SubProcessPlan.draw(random, spec.subProcessDepth());
+            Element sub = subProcess(plan, lane, cursor + SUB_PROCESS_PADDING, laneCenter());
+            flow(previous, sub);
+            cursor += plan.width() + 2 * SUB_PROCESS_PADDING;
+            return sub;
+        }
+
+        /** Развёрнутый подпроцесс с левым краем {@code left}: старт, слоты плана по порядку, конец. */
+        private Element subProcess(SubProcessPlan plan, int laneOfNode, int left, int centerY) throws XMLStreamException {
+            Element sub = flowNode("subProcess", "Подпроцесс", laneOfNode);
+            sub.place(left, centerY - plan.height() / 2, plan.width(), plan.height());
+            sink.beginSubProcess(sub);
+
+            int x = left + SUB_PROCESS_PADDING;
+            Element inner = flowNode("startEvent", null, -1);
+            inner.center(x + EVENT_COLUMN / 2, centerY, EVENT_SIZE, EVENT_SIZE);
+            sink.flowNode(inner);
+            x += EVENT_COLUMN;
+            for (SubProcessPlan nested : plan.slots()) {
+                Element next;
+                if (nested == null) {
+                    next = task(-1, x + COLUMN / 2, centerY, false);
+                    x += COLUMN;
+                } else {
+                    next = subProcess(nested, -1, x + SUB_PROCESS_PADDING, centerY);
+                    x += nested.width() + 2 * SUB_PROCESS_PADDING;
+                }
+                flow(inner, next);
+                inner = next;
+            }
+            Element end = flowNode("endEvent", null, -1);
+            end.center(x + EVENT_COLUMN / 2, centerY, EVENT_SIZE, EVENT_SIZE);
+            sink.flowNode(end);
+            flow(inner, end);
+
+            sink.endSubProcess();
+            return sub;
+        }
+
+        /** Задача в точке (cx, cy); задачи верхнего уровня иногда читают реестр пула или пишут объект данных. */
+        private Element task(int laneOfNode, int cx, int cy, boolean withData) throws XMLStreamException {
+            String tag = TASK_TAGS[random.nextInt(TASK_TAGS.length)];
+            Element task = flowNode(tag, TASK_NAMES[random.nextInt(TASK_NAMES.length)], laneOfNode);
+            task.center(cx, cy, TASK_WIDTH, TASK_HEIGHT);
+            task.externalCall = tag.equals("serviceTask") && random.nextDouble() < EXTERNAL_CALL_RATE;
+            if (withData && random.nextDouble() < DATA_INPUT_RATE) {
+                task.readsFrom = store;
+            }
+            if (withData && random.nextDouble() < DATA_OUTPUT_RATE) {
+                Element data = new Element("dataObjectReference", task.id + "_Data", "Документ", -1);
+                data.center(cx, task.y - DATA_HEIGHT / 2 - 20, DATA_WIDTH, DATA_HEIGHT);
+                sink.dataReference(data);
+                task.writesTo = data;
+            }
+            sink.flowNode(task);
+            return task;
+        }
+
+        private Element flowNode(String tag, String name, int laneOfNode) {
+            flowNodes++;
+            return new Element(tag, prefix(pool) + "N" + (++sequence), name, laneOfNode);
+        }
+
+        private void flow(Element source, Element target) throws XMLStreamException {
+            sink.sequenceFlow(prefix(pool) + "F" + (++sequence), source, target);
+        }
+
+        private int column() {
+            return cursor + COLUMN / 2;
+        }
+
+        private int laneTop(int laneIndex) {
+            return poolTop(pool) + laneIndex * laneHeight;
+        }
+
+        private int laneCenter() {
+            return laneTop(lane) + laneHeight / 2;
+        }
+    }
+
+    /** Состав подпроцесса: {@code null} — задача, иначе вложенный подпроцесс. Размеры нужны до записи DI. */
+    private record SubProcessPlan(SubProcessPlan[] slots, int width, int height) {
+
+        static SubProcessPlan draw(SplittableRandom random, int depth) {
+            SubProcessPlan[] slots = new SubProcessPlan[2 + random.nextInt(4)];
+            int width = 2 * SUB_PROCESS_PADDING + 2 * EVENT_COLUMN;
+            for (int i = 0; i < slots.length; i++) {
+                if (depth > 1 && random.nextDouble() < NESTED_SUB_PROCESS_RATE) {
+                    slots[i] = draw(random, depth - 1);
+                    width += slots[i].width + 2 * SUB_PROCESS_PADDING;
+                } else {
+                    width += COLUMN;
+                }
+            }
+            return new SubProcessPlan(slots, width, subProcessHeight(depth));
+        }
+    }
+
+    private static final class Element {
+
+        final String tag;
+        final String id;
+        final String name;
+        /** Номер дорожки для flowNodeRef, -1 — элемент не ссылается из дорожек. */
+        final int lane;
+
+        int x;
+        int y;
+        int width;
+        int height;
+
+        String attachedTo;
+        String calledElement;
+        boolean timer;
+        boolean externalCall;
+        Element readsFrom;
+        Element writesTo;
+
+        Element(String tag, String id, String name, int lane) {
+            this.tag = tag;
+            this.id = id;
+            this.name = name;
+            this.lane = lane;
+        }
+
+        void place(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        void center(int cx, int cy, int width, int height) {
+            place(cx - width / 2, cy - height / 2, width, height);
+        }
+    }
+
+    // ---------------------------------------------------------------- приёмники обхода
+
+    private interface Sink {
+
+        default void flowNode(Element node) throws XMLStreamException {
+        }
+
+        default void beginSubProcess(Element sub) throws XMLStreamException {
+            flowNode(sub);
+        }
+
+        default void endSubProcess() throws XMLStreamException {
+        }
+
+        default void dataReference(Element data) throws XMLStreamException {
+        }
+
+        default void sequenceFlow(String id, Element source, Element target) throws XMLStreamException {
+        }
+
+        default void send(int message, Element task) {
+        }
+
+        default void receive(int message, Element task) {
+        }
+    }
+
+    /** flowNodeRef одной дорожки. */
+    private record LaneSink(XMLStreamWriter w, int lane) implements Sink {
+
+        @Override
+        public void flowNode(Element node) throws XMLStreamException {
+            if (node.lane == lane) {
+                w.writeStartElement("flowNodeRef");
+                w.writeCharacters(node.id);
+                w.writeEndElement();
+            }
+        }
+    }
+
+    /** Элементы процесса. */
+    private record SemanticSink(XMLStreamWriter w) implements Sink {
+
+        @Override
+        public void flowNode(Element node) throws XMLStreamException {
+            w.writeStartElement(node.tag);
+            writeCommonAttributes(node);
+            if (node.attachedTo != null) {
+                w.writeAttribute("attachedToRef", node.attachedTo);
+                w.writeAttribute("cancelActivity", "false");
+            }
+            if (node.calledElement != null) {
+                w.writeAttribute("calledElement", node.calledElement);
+            }
+            if (node.externalCall) {
+                w.writeStartElement("extensionElements");
+                w.writeStartElement("camunda", "connector", CAMUNDA_NS);
+                w.writeStartElement("camunda", "inputOutput", CAMUNDA_NS);
+                w.writeStartElement("camunda", "inputParameter", CAMUNDA_NS);
+                w.writeAttribute("name", "url");
+                w.writeCharacters("http://partner.example/rest/v1/" + node.id);
+                w.writeEndElement();
+                w.writeEndElement();
+                w.writeStartElement("camunda", "connectorId", CAMUNDA_NS);
+                w.writeCharacters("http-connector");
+                w.writeEndElement();
+                w.writeEndElement();
+                w.writeEndElement();
+            }
+            if (node.readsFrom != null) {
+                String input = node.id + "_Input";
+                w.writeStartElement("ioSpecification");
+                w.writeAttribute("id", node.id + "_Io");
+                w.writeEmptyElement("dataInput");
+                w.writeAttribute("id", input);
+                w.writeStartElement("inputSet");
+                w.writeAttribute("id", node.id + "_InputSet");
+                textElement("dataInputRefs", input);
+                w.writeEndElement();
+                w.writeEmptyElement("outputSet");
+                w.writeAttribute("id", node.id + "_OutputSet");
+                w.writeEndElement();
+
+                w.writeStartElement("dataInputAssociation");
+                w.writeAttribute("id", readId(node));
+                textElement("sourceRef", node.readsFrom.id);
+                textElement("targetRef", input);
+                w.writeEndElement();
+            }
+            if (node.writesTo != null) {
+                w.writeStartElement("dataOutputAssociation");
+                w.writeAttribute("id", writeId(node));
+                textElement("targetRef", node.writesTo.id);
+                w.writeEndElement();
+            }
+            if (node.attachedTo != null || node.timer) {
+                w.writeStartElement("timerEventDefinition");
+                w.writeAttribute("id", node.id + "_Timer");
+                textElement("timeDuration", "PT1H");
+                w.writeEndElement();
+            }
+            w.writeEndElement();
+        }
+
+        @Override
+        public void beginSubProcess(Element sub) throws XMLStreamException {
+            w.writeStartElement(sub.tag);
+            writeCommonAttributes(sub);
+        }
+
+        @Override
+        public void endSubProcess() throws XMLStreamException {
+            w.writeEndElement();
+        }
+
+        @Override
+        public void dataReference(Element data) throws XMLStreamException {
+            if (data.tag.equals("dataObjectReference")) {
+                w.writeEmptyElement("dataObject");
+                w.writeAttribute("id", data.id + "_Object");
+                w.writeEmptyElement(data.tag);
+                writeCommonAttributes(data);
+                w.writeAttribute("dataObjectRef", data.id + "_Object");
+            } else {
+                w.writeEmptyElement(data.tag);
+                writeCommonAttributes(data);
+            }
+        }
+
+        @Override
+        public void sequenceFlow(String id, Element source, Element target) throws XMLStreamException {
+            w.writeEmptyElement("sequenceFlow");
+            w.writeAttribute("id", id);
+            w.writeAttribute("sourceRef", source.id);
+            w.writeAttribute("targetRef", target.id);
+        }
+
+        private void writeCommonAttributes(Element element) throws XMLStreamException {
+            w.writeAttribute("id", element.id);
+            if (element.name != null) {
+                w.writeAttribute("name", element.name);
+            }
+        }
+
+        private void textElement(String name, String text) throws XMLStreamException {
+            w.writeStartElement(name);
+            w.writeCharacters(text);
+            w.writeEndElement();
+        }
+    }
+
+    /** Фигуры и рёбра DI; задачи message flow запоминаются для рёбер между пулами. */
+    private record DiSink(XMLStreamWriter w, Element[] sends, Element[] receives) implements Sink {
+
+        @Override
+        public void flowNode(Element node) throws XMLStreamException {
+            writeShape(w, node.id, node.x, node.y, node.width, node.height, false, null);
+            if (node.readsFrom != null) {
+                writeEdge(w, readId(node), node.readsFrom, node);
+            }
+            if (node.writesTo != null) {
+                writeEdge(w, writeId(node), node, node.writesTo);
+            }
+        }
+
+        @Override
+        public void beginSubProcess(Element sub) throws XMLStreamException {
+            writeShape(w, sub.id, sub.x, sub.y, sub.width, sub.height, false, Boolean.TRUE);
+        }
+
+        @Override
+        public void dataReference(Element data) throws XMLStreamException {
+            writeShape(w, data.id, data.x, data.y, data.width, data.height, false, null);
+        }
+
+        @Override
+        public void sequenceFlow(String id, Element source, Element target) throws XMLStreamException {
+            writeEdge(w, id, source, target);
+        }
+
+        @Override
+        public void send(int message, Element task) {
+            sends[message] = task;
+        }
+
+        @Override
+        public void receive(int message, Element task) {
+            receives[message] = task;
+        }
+    }
+
+    private static void writeShape(XMLStreamWriter w, String element, int x, int y, int width, int height,
+                                   boolean horizontal, Boolean expanded) throws XMLStreamException {
+        w.writeStartElement("bpmndi", "BPMNShape", BPMNDI_NS);
+        w.writeAttribute("id", element + "_di");
+        w.writeAttribute("bpmnElement", element);
+        if (horizontal) {
+            w.writeAttribute("isHorizontal", "true");
+        }
+        if (expanded != null) {
+            w.writeAttribute("isExpanded", expanded.toString());
+        }
+        w.writeEmptyElement("dc", "Bounds", DC_NS);
+        w.writeAttribute("x", Integer.toString(x));
+        w.writeAttribute("y", Integer.toString(y));
+        w.writeAttribute("width", Integer.toString(width));
+        w.writeAttribute("height", Integer.toString(height));
+        w.writeEndElement();
+    }
+
+    /** Ортогональное ребро: вправо, если цель правее источника, иначе вниз или вверх. */
+    private static void writeEdge(XMLStreamWriter w, String element, Element source, Element target)
+            throws XMLStreamException {
+        w.writeStartElement("bpmndi", "BPMNEdge", BPMNDI_NS);
+        w.writeAttribute("id", element + "_di");
+        w.writeAttribute("bpmnElement", element);
+        if (target.x >= source.x + source.width) {
+            int sy = source.y + source.height / 2;
+            int ty = target.y + target.height / 2;
+            int sx = source.x + source.width;
+            int tx = target.x;
+            waypoint(w, sx, sy);
+            if (sy != ty) {
+                int mx = (sx + tx) / 2;
+                waypoint(w, mx, sy);
+                waypoint(w, mx, ty);
+            }
+            waypoint(w, tx, ty);
+        } else {
+            boolean down = target.y >= source.y;
+            int sx = source.x + source.width / 2;
+            int tx = target.x + target.width / 2;
+            int sy = down ? source.y + source.height : source.y;
+            int ty = down ? target.y : target.y + target.height;
+            waypoint(w, sx, sy);
+            if (sx != tx) {
+                int my = (sy + ty) / 2;
+                waypoint(w, sx, my);
+                waypoint(w, tx, my);
+            }
+            waypoint(w, tx, ty);
+        }
+        w.writeEndElement();
+    }
+
+    private static void waypoint(XMLStreamWriter w, int x, int y) throws XMLStreamException {
+        w.writeEmptyElement("di", "waypoint", DI_NS);
+        w.writeAttribute("x", Integer.toString(x));
+        w.writeAttribute("y", Integer.toString(y));
+    }
+
+    // ---------------------------------------------------------------- идентификаторы
+
+    private static String prefix(int pool) {
+        return "P" + pool + "_";
+    }
+
+    static String processId(int pool) {
+        return "Process_" + pool;
+    }
+
+    static String participantId(int pool) {
+        return "Participant_" + pool;
+    }
+
+    private static String laneId(int pool, int lane) {
+        return prefix(pool) + "Lane_" + lane;
+    }
+
+    static String sendId(int pool, int message) {
+        return prefix(pool) + "Send_" + message;
+    }
+
+    static String receiveId(int pool, int message) {
+        return prefix(pool) + "Receive_" + message;
+    }
+
+    static String messageFlowId(int pool, int message) {
+        return "Message_" + pool + "_" + message;
+    }
+
+    private static String readId(Element task) {
+        return task.id + "_Read";
+    }
+
+    private static String writeId(Element task) {
+        return task.id + "_Write";
+    }
+
+    private static String cycled(String[] values, int index) {
+        String value = values[index % values.length];
+        return index < values.length ? value : value + " " + (index / values.length + 1);
+    }
+}
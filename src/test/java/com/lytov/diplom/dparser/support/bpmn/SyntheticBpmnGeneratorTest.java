@@ -0,0 +1,103 @@
+package com.lytov.diplom.dparser.support.bpmn;
+
+import com.lytov.diplom.dparser.configuration.parser.properties.OperationClassifierProperties;
+import com.lytov.diplom.dparser.domain.enums.OperationType;
+import com.lytov.diplom.dparser.service.classifier.OperationTypeClassifier;
+import com.lytov.diplom.dparser.service.dto.BpmnGraph;
+import com.lytov.diplom.dparser.service.dto.Component;
+import com.lytov.diplom.dparser.service.impl.BpmnToGraphParserImpl;
+import com.lytov.diplom.dparser.service.impl.ComponentParserImpl;
+import com.lytov.diplom.dparser.service.impl.StaxBpmnToGraphParser;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.BaseElement;
+import org.camunda.bpm.model.bpmn.instance.BoundaryEvent;
+import org.camunda.bpm.model.bpmn.instance.CallActivity;
+import org.camunda.bpm.model.bpmn.instance.DataInputAssociation;
+import org.camunda.bpm.model.bpmn.instance.DataObjectReference;
+import org.camunda.bpm.model.bpmn.instance.DataOutputAssociation;
+import org.camunda.bpm.model.bpmn.instance.DataStoreReference;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Lane;
+import org.camunda.bpm.model.bpmn.instance.MessageFlow;
+import org.camunda.bpm.model.bpmn.instance.Participant;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+
+class SyntheticBpmnGeneratorTest {
+
+    private static final BpmnSpec SPEC = BpmnSpec.of(2_000);
+
+    @Test
+    void sameSpecProducesSameBytes() {
+        assertThat(SyntheticBpmnGenerator.generate(SPEC)).isEqualTo(SyntheticBpmnGenerator.generate(SPEC));
+        assertThat(SyntheticBpmnGenerator.generate(SPEC.withSeed(7))).isNotEqualTo(SyntheticBpmnGenerator.generate(SPEC));
+    }
+
+    @Test
+    void producesValidModelWithAllConstructs() {
+        BpmnModelInstance model = read(SyntheticBpmnGenerator.generate(SPEC));
+        Bpmn.validateModel(model);
+
+        assertThat(model.getModelElementsByType(FlowNode.class)).hasSizeBetween(2_000, 2_100);
+        assertThat(model.getModelElementsByType(Participant.class)).hasSize(3);
+        assertThat(model.getModelElementsByType(Lane.class)).hasSize(9);
+        assertThat(model.getModelElementsByType(MessageFlow.class)).hasSize(2 * 4);
+        assertThat(model.getModelElementsByType(SubProcess.class))
+                .anyMatch(sub -> sub.getParentElement() instanceof SubProcess);
+        assertThat(model.getModelElementsByType(CallActivity.class)).isNotEmpty();
+        assertThat(model.getModelElementsByType(BoundaryEvent.class)).allMatch(event -> event.getAttachedTo() != null);
+        assertThat(model.getModelElementsByType(DataStoreReference.class)).hasSize(3);
+        assertThat(model.getModelElementsByType(DataObjectReference.class)).isNotEmpty();
+        assertThat(model.getModelElementsByType(DataInputAssociation.class)).isNotEmpty();
+        assertThat(model.getModelElementsByType(DataOutputAssociation.class)).isNotEmpty();
+
+        assertThat(model.getModelElementsByType(FlowNode.class)).allMatch(node -> node.getDiagramElement() != null);
+        assertThat(model.getModelElementsByType(SequenceFlow.class)).allMatch(flow -> flow.getDiagramElement() != null);
+        assertThat(model.getModelElementsByType(MessageFlow.class)).map(BaseElement::getDiagramElement).doesNotContainNull();
+    }
+
+    @Test
+    void domAndStaxParsersBuildSameGraph() {
+        byte[] xml = SyntheticBpmnGenerator.generate(SPEC.withSeed(11));
+
+        BpmnGraph dom = mock(BpmnToGraphParserImpl.class, CALLS_REAL_METHODS).parse(new ByteArrayInputStream(xml));
+        BpmnGraph stax = new StaxBpmnToGraphParser().parse(new ByteArrayInputStream(xml));
+
+        assertThat(stax.nodes.values()).containsExactlyInAnyOrderElementsOf(dom.nodes.values());
+        assertThat(stax.edges).containsExactlyInAnyOrderElementsOf(dom.edges);
+    }
+
+    @Test
+    void componentsGetRolesAndOperationTypes() {
+        List<Component> components = new ComponentParserImpl(new OperationTypeClassifier(new OperationClassifierProperties()))
+                .parserComponents(new ByteArrayInputStream(SyntheticBpmnGenerator.generate(SPEC)));
+
+        assertThat(components).isNotEmpty();
+        assertThat(components).filteredOn(component -> component.getRole() != null).isNotEmpty();
+        assertThat(components).extracting(Component::getOperationType)
+                .contains(OperationType.APPROVAL, OperationType.USER_INPUT, OperationType.EXTERNAL_CALL);
+    }
+
+    @Test
+    void singlePoolWithoutSubProcesses() {
+        BpmnModelInstance model = read(SyntheticBpmnGenerator.generate(
+                BpmnSpec.of(300).withPools(1).withLanes(1).withSubProcessDepth(0)));
+
+        assertThat(model.getModelElementsByType(MessageFlow.class)).isEmpty();
+        assertThat(model.getModelElementsByType(SubProcess.class)).isEmpty();
+        assertThat(model.getModelElementsByType(Lane.class)).hasSize(1);
+    }
+
+    private static BpmnModelInstance read(byte[] xml) {
+        return Bpmn.readModelFromStream(new ByteArrayInputStream(xml));
+    }
+}